@@ -3,7 +3,7 @@
 import { useState } from 'react'
 import { useQuery, useMutation, useQueryClient } from 'react-query'
 import { useParams } from 'next/navigation'
-import { documentsApi, aiApi, type Document, type DocumentAnalysis, type ExtractedClause } from '@/lib/api'
+import { documentsApi, aiApi, type AnalysisListItem, type DocumentAnalysis, type ExtractedClause } from '@/lib/api'
 import DashboardLayout from '@/components/layout/DashboardLayout'
 import { Button } from '@/components/ui/Button'
 import { toast } from '@/components/ui/Toaster'
@@ -23,34 +23,45 @@ import {
 } from 'lucide-react'
 import { formatDate, getImportanceColor } from '@/lib/utils'
 
+// Characters of the original text shown until the full text is requested
+const TEXT_PREVIEW_LENGTH = 500
+
 export default function DocumentDetailPage() {
   const params = useParams()
   const queryClient = useQueryClient()
   const documentId = parseInt(params.id as string)
   
-  const [activeTab, setActiveTab] = useState<'summary' | 'clauses' | 'qa'>('summary')
+  const [activeTab, setActiveTab] = useState<'summary' | 'clauses' | 'qa' | 'history'>('summary')
   const [question, setQuestion] = useState('')
   const [showFullText, setShowFullText] = useState(false)
+  const [expandedAnalysisId, setExpandedAnalysisId] = useState<number | null>(null)
 
-  // Fetch document
-  const { data: document, isLoading: documentLoading } = useQuery(
-    ['document', documentId],
-    () => documentsApi.getDocument(documentId),
+  // Metadata, summary, clauses and recent questions in one request
+  const { data: bundle, isLoading: bundleLoading } = useQuery(
+    ['bundle', documentId],
+    () => documentsApi.getBundle(documentId),
     { enabled: !!documentId }
   )
+  const document = bundle?.document
 
-  // Fetch analyses
-  const { data: analyses, isLoading: analysesLoading } = useQuery(
-    ['analyses', documentId],
-    () => aiApi.getDocumentAnalyses(documentId),
-    { enabled: !!documentId }
+  // The bundle leaves out the text; the preview needs only its first characters
+  const { data: text } = useQuery(
+    ['text', documentId, showFullText],
+    () => documentsApi.getText(documentId, 0, showFullText ? undefined : TEXT_PREVIEW_LENGTH + 1),
+    { enabled: !!document?.hasExtractedText, keepPreviousData: true }
   )
 
-  // Fetch clauses
-  const { data: clauses, isLoading: clausesLoading } = useQuery(
-    ['clauses', documentId],
-    () => aiApi.getDocumentClauses(documentId),
-    { enabled: !!documentId }
+  // Every analysis with a preview of its result; the full result is fetched when expanded
+  const { data: analysisList, isLoading: analysisListLoading } = useQuery(
+    ['analysisList', documentId],
+    () => aiApi.getAnalysisList(documentId) as Promise<AnalysisListItem[]>,
+    { enabled: !!documentId && activeTab === 'history' }
+  )
+
+  const { data: expandedAnalysis, isLoading: expandedAnalysisLoading } = useQuery(
+    ['analysis', expandedAnalysisId],
+    () => aiApi.getAnalysis(expandedAnalysisId!),
+    { enabled: expandedAnalysisId !== null }
   )
 
   // Mutations
@@ -58,7 +69,8 @@ export default function DocumentDetailPage() {
     () => aiApi.summarizeDocument(documentId),
     {
       onSuccess: () => {
-        queryClient.invalidateQueries(['analyses', documentId])
+        queryClient.invalidateQueries(['bundle', documentId])
+        queryClient.invalidateQueries(['analysisList', documentId])
         toast.success('Document summary generated!')
       },
       onError: (error: any) => {
@@ -71,7 +83,8 @@ export default function DocumentDetailPage() {
     () => aiApi.extractClauses(documentId),
     {
       onSuccess: () => {
-        queryClient.invalidateQueries(['clauses', documentId])
+        queryClient.invalidateQueries(['bundle', documentId])
+        queryClient.invalidateQueries(['analysisList', documentId])
         toast.success('Clauses extracted successfully!')
       },
       onError: (error: any) => {
@@ -84,7 +97,8 @@ export default function DocumentDetailPage() {
     (question: string) => aiApi.askQuestion(documentId, question),
     {
       onSuccess: () => {
-        queryClient.invalidateQueries(['analyses', documentId])
+        queryClient.invalidateQueries(['bundle', documentId])
+        queryClient.invalidateQueries(['analysisList', documentId])
         setQuestion('')
         toast.success('Question answered!')
       },
@@ -106,7 +120,7 @@ export default function DocumentDetailPage() {
     toast.success('Copied to clipboard!')
   }
 
-  if (documentLoading) {
+  if (bundleLoading) {
     return (
       <DashboardLayout>
         <div className="flex items-center justify-center h-64">
@@ -116,7 +130,7 @@ export default function DocumentDetailPage() {
     )
   }
 
-  if (!document) {
+  if (!bundle || !document) {
     return (
       <DashboardLayout>
         <div className="text-center py-12">
@@ -127,8 +141,9 @@ export default function DocumentDetailPage() {
     )
   }
 
-  const summary = analyses?.find((a: DocumentAnalysis) => a.analysisType === 'SUMMARY')
-  const qaResponses = analyses?.filter((a: DocumentAnalysis) => a.analysisType === 'QUESTION_ANSWER') || []
+  const summary = bundle.summary
+  const clauses = bundle.clauses
+  const qaResponses = bundle.recentQuestions
 
   return (
     <DashboardLayout>
@@ -174,6 +189,7 @@ export default function DocumentDetailPage() {
                 { id: 'summary', name: 'Summary', icon: Brain },
                 { id: 'clauses', name: 'Key Clauses', icon: Search },
                 { id: 'qa', name: 'Q&A', icon: MessageCircle },
+                { id: 'history', name: 'History', icon: Clock },
               ].map((tab) => (
                 <button
                   key={tab.id}
@@ -280,10 +296,11 @@ export default function DocumentDetailPage() {
                   
                   <div className="bg-gray-50 rounded-lg p-4 max-h-96 overflow-y-auto">
                     <p className="text-sm text-gray-700 whitespace-pre-wrap">
-                      {showFullText
-                        ? document.extractedText || 'No text extracted'
-                        : (document.extractedText?.substring(0, 500) || 'No text extracted') +
-                          (document.extractedText && document.extractedText.length > 500 ? '...' : '')
+                      {!text
+                        ? 'No text extracted'
+                        : showFullText || text.length <= TEXT_PREVIEW_LENGTH
+                          ? text
+                          : text.substring(0, TEXT_PREVIEW_LENGTH) + '...'
                       }
                     </p>
                   </div>
@@ -294,12 +311,7 @@ export default function DocumentDetailPage() {
             {/* Clauses Tab */}
             {activeTab === 'clauses' && (
               <div className="space-y-6">
-                {clausesLoading ? (
-                  <div className="text-center py-8">
-                    <div className="animate-spin rounded-full h-8 w-8 border-b-2 border-primary-600 mx-auto"></div>
-                    <p className="mt-2 text-sm text-gray-500">Loading clauses...</p>
-                  </div>
-                ) : !clauses || clauses.length === 0 ? (
+                {clauses.length === 0 ? (
                   <div className="text-center py-8">
                     <Search className="h-12 w-12 text-gray-400 mx-auto" />
                     <h3 className="mt-2 text-sm font-medium text-gray-900">
@@ -479,6 +491,64 @@ export default function DocumentDetailPage() {
                 )}
               </div>
             )}
+
+            {/* History Tab */}
+            {activeTab === 'history' && (
+              <div className="space-y-4">
+                {analysisListLoading ? (
+                  <div className="text-center py-8">
+                    <div className="animate-spin rounded-full h-8 w-8 border-b-2 border-primary-600 mx-auto"></div>
+                    <p className="mt-2 text-sm text-gray-500">Loading history...</p>
+                  </div>
+                ) : !analysisList || analysisList.length === 0 ? (
+                  <div className="text-center py-8">
+                    <Clock className="h-12 w-12 text-gray-400 mx-auto" />
+                    <h3 className="mt-2 text-sm font-medium text-gray-900">
+                      No analyses yet
+                    </h3>
+                  </div>
+                ) : (
+                  analysisList.map((item: AnalysisListItem) => {
+                    const expanded = expandedAnalysisId === item.id
+                    return (
+                      <div key={item.id} className="border border-gray-200 rounded-lg p-4">
+                        <div className="flex items-start justify-between mb-2">
+                          <div className="flex items-center space-x-2 text-sm">
+                            <span className="font-medium text-gray-900">{item.analysisType}</span>
+                            {item.status === 'FAILED' ? (
+                              <span className="flex items-center space-x-1 text-red-600">
+                                <AlertTriangle className="h-4 w-4" />
+                                <span>{item.errorMessage || 'Failed'}</span>
+                              </span>
+                            ) : (
+                              <span className="text-gray-500">{item.status}</span>
+                            )}
+                          </div>
+                          <span className="text-xs text-gray-500">{formatDate(item.createdAt)}</span>
+                        </div>
+
+                        <p className="text-sm text-gray-600 whitespace-pre-wrap">
+                          {expanded
+                            ? expandedAnalysisLoading ? 'Loading...' : expandedAnalysis?.result
+                            : item.resultPreview}
+                        </p>
+
+                        {item.resultPreview?.endsWith('…') && (
+                          <Button
+                            variant="ghost"
+                            size="sm"
+                            className="mt-2"
+                            onClick={() => setExpandedAnalysisId(expanded ? null : item.id)}
+                          >
+                            {expanded ? 'Show less' : 'Show full result'}
+                          </Button>
+                        )}
+                      </div>
+                    )
+                  })
+                )}
+              </div>
+            )}
           </div>
         </div>
       </div>
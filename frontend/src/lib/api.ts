@@ -114,6 +114,28 @@ export const authApi = {
   },
 }
 
+// Reuses one Idempotency-Key while the same operation is in flight, so double-clicks
+// and retries of expensive requests are executed only once by the backend
+const inFlightIdempotencyKeys = new Map<string, string>()
+
+const withIdempotencyKey = async <T>(operation: string, call: (key: string) => Promise<T>): Promise<T> => {
+  let key = inFlightIdempotencyKeys.get(operation)
+  const owner = !key
+  if (!key) {
+    key = crypto.randomUUID()
+    inFlightIdempotencyKeys.set(operation, key)
+  }
+  try {
+    return await call(key)
+  } finally {
+    if (owner) inFlightIdempotencyKeys.delete(operation)
+  }
+}
+
+// Last bundle received per document with its ETag, so reloads of an unchanged page are
+// answered with 304 Not Modified instead of the whole bundle
+const cachedBundles = new Map<number, { etag: string; bundle: DocumentBundle }>()
+
 // Documents API
 export const documentsApi = {
   uploadDocument: async (file: File) => {
@@ -135,18 +157,21 @@ export const documentsApi = {
     console.log('Token found, proceeding with upload')
     
     // Explicitly set headers for file upload
-    const config = {
-      headers: {
-        'Content-Type': undefined, // Let browser set this for FormData
-        'Authorization': `Bearer ${token}`
-      }
-    }
-    
-    console.log('Upload config:', config)
-    console.log('FormData created:', formData.has('file'))
+    const uploadKey = `upload:${file.name}:${file.size}:${file.lastModified}`
     
     try {
-      const response = await api.post('/api/documents/upload', formData, config)
+      const response = await withIdempotencyKey(uploadKey, (idempotencyKey) => {
+        const config = {
+          headers: {
+            'Content-Type': undefined, // Let browser set this for FormData
+            'Authorization': `Bearer ${token}`,
+            'Idempotency-Key': idempotencyKey,
+          }
+        }
+        console.log('Upload config:', config)
+        console.log('FormData created:', formData.has('file'))
+        return api.post('/api/documents/upload', formData, config)
+      })
       console.log('Upload successful:', response.data)
       return response.data
     } catch (error) {
@@ -157,6 +182,75 @@ export const documentsApi = {
     }
   },
 
+  uploadVersion: async (documentId: number, file: File) => {
+    const formData = new FormData()
+    formData.append('file', file)
+    const versionKey = `upload-version:${documentId}:${file.name}:${file.size}:${file.lastModified}`
+    const response = await withIdempotencyKey(versionKey, (key) =>
+      api.post(`/api/documents/${documentId}/versions`, formData, {
+        headers: { 'Content-Type': undefined, 'Idempotency-Key': key },
+      }))
+    return response.data
+  },
+
+  getVersions: async (documentId: number) => {
+    const response = await api.get(`/api/documents/${documentId}/versions`)
+    return response.data as Document[]
+  },
+
+  getNearDuplicates: async (documentId: number) => {
+    const response = await api.get(`/api/documents/${documentId}/near-duplicates`)
+    return response.data as NearDuplicate[]
+  },
+
+  // Everything the document page shows in one request (kept up to date by the server)
+  getBundle: async (documentId: number) => {
+    const cached = cachedBundles.get(documentId)
+    const response = await api.get(`/api/documents/${documentId}/bundle`, {
+      headers: cached ? { 'If-None-Match': cached.etag } : undefined,
+      validateStatus: (status) => (status >= 200 && status < 300) || status === 304,
+    })
+    if (response.status === 304 && cached) {
+      return cached.bundle
+    }
+    const bundle = response.data as DocumentBundle
+    const etag = response.headers.etag
+    if (etag) {
+      cachedBundles.set(documentId, { etag, bundle })
+    } else {
+      cachedBundles.delete(documentId)
+    }
+    return bundle
+  },
+
+  getOutline: async (documentId: number) => {
+    const response = await api.get(`/api/documents/${documentId}/outline`)
+    return response.data as OutlineSection[]
+  },
+
+  // Extracted text, or the characters [from, to) of it (e.g. a clause's startPosition/endPosition)
+  getText: async (documentId: number, from?: number, to?: number) => {
+    const params = new URLSearchParams()
+    if (from !== undefined) params.append('from', from.toString())
+    if (to !== undefined) params.append('to', to.toString())
+    const query = params.toString()
+    const response = await api.get(`/api/documents/${documentId}/text${query ? `?${query}` : ''}`, {
+      responseType: 'text',
+    })
+    return response.data as string
+  },
+
+  downloadFile: async (documentId: number) => {
+    const response = await api.get(`/api/documents/${documentId}/file`, { responseType: 'blob' })
+    return response.data as Blob
+  },
+
+  // PNG of a PDF page (1-based); the server answers 503 while its render pool is busy
+  getPagePreview: async (documentId: number, page: number) => {
+    const response = await api.get(`/api/documents/${documentId}/pages/${page}.png`, { responseType: 'blob' })
+    return response.data as Blob
+  },
+
   getDocuments: async (page = 0, size = 10, search?: string) => {
     const params = new URLSearchParams({
       page: page.toString(),
@@ -175,17 +269,35 @@ export const documentsApi = {
 
   deleteDocument: async (id: number) => {
     const response = await api.delete(`/api/documents/${id}`)
+    cachedBundles.delete(id)
     return response.data
   },
 
   // AI Analysis Methods
   summarizeDocument: async (documentId: number) => {
-    const response = await api.post(`/api/ai/documents/${documentId}/summarize`)
+    const response = await withIdempotencyKey(`summarize:${documentId}`, (key) =>
+      api.post(`/api/ai/documents/${documentId}/summarize`, undefined, { headers: { 'Idempotency-Key': key } }))
     return response.data
   },
 
   extractClauses: async (documentId: number) => {
-    const response = await api.post(`/api/ai/documents/${documentId}/extract-clauses`)
+    const response = await withIdempotencyKey(`extract-clauses:${documentId}`, (key) =>
+      api.post(`/api/ai/documents/${documentId}/extract-clauses`, undefined, { headers: { 'Idempotency-Key': key } }))
+    return response.data
+  },
+
+  // Carries forward the previous version's analysis and re-analyzes only the changed sections
+  reanalyzeDocument: async (documentId: number) => {
+    const response = await withIdempotencyKey(`reanalyze:${documentId}`, (key) =>
+      api.post(`/api/ai/documents/${documentId}/reanalyze`, undefined, { headers: { 'Idempotency-Key': key } }))
+    return response.data
+  },
+
+  // Reuses a near-duplicate's analysis, re-analyzing only the text that differs
+  reanalyzeFrom: async (documentId: number, baseDocumentId: number) => {
+    const response = await withIdempotencyKey(`reanalyze-from:${documentId}:${baseDocumentId}`, (key) =>
+      api.post(`/api/ai/documents/${documentId}/reanalyze-from/${baseDocumentId}`, undefined,
+        { headers: { 'Idempotency-Key': key } }))
     return response.data
   },
 
@@ -194,24 +306,200 @@ export const documentsApi = {
     return response.data
   },
 
+  analyzeDocument: async (documentId: number, questions: string[] = []) => {
+    const response = await api.post(`/api/ai/documents/${documentId}/analyze`, { questions })
+    return response.data
+  },
+
+  askQuestions: async (documentId: number, questions: string[]) => {
+    const response = await api.post(`/api/ai/documents/${documentId}/questions`, { questions })
+    return response.data
+  },
+
   getDocumentAnalyses: async (documentId: number) => {
     const response = await api.get(`/api/ai/documents/${documentId}/analyses`)
     return response.data
   },
 
+  // History list without results and prompts; pass fields to get only those fields of each item
+  getAnalysisList: async (documentId: number, fields?: (keyof AnalysisListItem)[]) => {
+    const params = fields ? { fields: fields.join(',') } : { view: 'list' }
+    const response = await api.get(`/api/ai/documents/${documentId}/analyses`, { params })
+    return response.data as Partial<AnalysisListItem>[]
+  },
+
+  getAnalysis: async (analysisId: number) => {
+    const response = await api.get(`/api/ai/analyses/${analysisId}`)
+    return response.data as DocumentAnalysis
+  },
+
   getDocumentClauses: async (documentId: number) => {
     const response = await api.get(`/api/ai/documents/${documentId}/clauses`)
     return response.data
   },
 }
 
+// Streams an SSE analysis endpoint, calling onDelta for every text chunk.
+// Resolves with the persisted analysis sent in the final "complete" event.
+const streamAnalysis = async (
+  path: string,
+  body: unknown,
+  onDelta: (text: string) => void
+): Promise<DocumentAnalysis> => {
+  const token = Cookies.get('authToken')
+  const response = await fetch(`${API_BASE_URL}${path}`, {
+    method: 'POST',
+    headers: {
+      'Content-Type': 'application/json',
+      Accept: 'text/event-stream',
+      ...(token ? { Authorization: `Bearer ${token}` } : {}),
+    },
+    body: body ? JSON.stringify(body) : undefined,
+  })
+  if (!response.ok || !response.body) {
+    throw new Error(`Streaming request failed with status ${response.status}`)
+  }
+
+  const reader = response.body.getReader()
+  const decoder = new TextDecoder()
+  let buffer = ''
+  let completed: DocumentAnalysis | undefined
+
+  while (true) {
+    const { done, value } = await reader.read()
+    if (done) break
+    buffer += decoder.decode(value, { stream: true })
+
+    let boundary
+    while ((boundary = buffer.indexOf('\n\n')) !== -1) {
+      const rawEvent = buffer.slice(0, boundary)
+      buffer = buffer.slice(boundary + 2)
+
+      let eventName = 'message'
+      let data = ''
+      for (const line of rawEvent.split('\n')) {
+        if (line.startsWith('event:')) eventName = line.slice(6).trim()
+        else if (line.startsWith('data:')) data += line.slice(5).trim()
+      }
+      if (!data) continue
+
+      const payload = JSON.parse(data)
+      if (eventName === 'delta') onDelta(payload.text)
+      else if (eventName === 'complete') completed = payload
+    }
+  }
+
+  if (!completed) {
+    throw new Error('Stream ended before the analysis completed')
+  }
+  return completed
+}
+
+export const streamingApi = {
+  streamSummary: (documentId: number, onDelta: (text: string) => void) =>
+    streamAnalysis(`/api/ai/documents/${documentId}/summarize/stream`, undefined, onDelta),
+
+  streamAnswer: (documentId: number, question: string, onDelta: (text: string) => void) =>
+    streamAnalysis(`/api/ai/documents/${documentId}/question/stream`, { question }, onDelta),
+
+  // Reads clauses as newline-delimited JSON, calling onClause as each one is extracted
+  streamClauses: async (documentId: number, onClause: (clause: ExtractedClause) => void) => {
+    const token = Cookies.get('authToken')
+    const response = await fetch(`${API_BASE_URL}/api/ai/documents/${documentId}/extract-clauses`, {
+      method: 'POST',
+      headers: {
+        Accept: 'application/x-ndjson',
+        ...(token ? { Authorization: `Bearer ${token}` } : {}),
+      },
+    })
+    if (!response.ok || !response.body) {
+      throw new Error(`Streaming request failed with status ${response.status}`)
+    }
+
+    const reader = response.body.getReader()
+    const decoder = new TextDecoder()
+    let buffer = ''
+    while (true) {
+      const { done, value } = await reader.read()
+      if (done) break
+      buffer += decoder.decode(value, { stream: true })
+
+      let newline
+      while ((newline = buffer.indexOf('\n')) !== -1) {
+        const line = buffer.slice(0, newline).trim()
+        buffer = buffer.slice(newline + 1)
+        if (line) onClause(JSON.parse(line))
+      }
+    }
+    if (buffer.trim()) onClause(JSON.parse(buffer))
+  },
+}
+
+// Conversation sessions API (multi-turn Q&A without resending the document)
+export const sessionsApi = {
+  startSession: async (documentId: number): Promise<ConversationSession> => {
+    const response = await api.post(`/api/ai/documents/${documentId}/sessions`)
+    return response.data
+  },
+
+  ask: async (sessionId: string, question: string): Promise<DocumentAnalysis> => {
+    const response = await api.post(`/api/ai/sessions/${sessionId}/questions`, { question })
+    return response.data
+  },
+
+  getHistory: async (sessionId: string): Promise<DocumentAnalysis[]> => {
+    const response = await api.get(`/api/ai/sessions/${sessionId}/history`)
+    return response.data
+  },
+
+  endSession: async (sessionId: string) => {
+    const response = await api.delete(`/api/ai/sessions/${sessionId}`)
+    return response.data
+  },
+}
+
 // AI API
+// Clause library across all of the user's documents
+export const clausesApi = {
+  findSimilar: async (query: {
+    clauseId?: number
+    text?: string
+    clauseType?: string
+    minImportance?: 'LOW' | 'MEDIUM' | 'HIGH' | 'CRITICAL'
+    limit?: number
+  }) => {
+    const response = await api.get('/api/clauses/similar', { params: query })
+    return response.data as SimilarClause[]
+  },
+}
+
+// Export of all of the user's analyses and clauses, streamed by the server
+export const exportApi = {
+  download: async (options: {
+    format?: 'ndjson' | 'csv'
+    include?: ('analyses' | 'clauses')[]
+    gzip?: boolean
+  } = {}) => {
+    const params = new URLSearchParams({ format: options.format ?? 'ndjson' })
+    if (options.include) params.append('include', options.include.join(','))
+    if (options.gzip) params.append('gzip', 'true')
+    const response = await api.get(`/api/export?${params.toString()}`, { responseType: 'blob' })
+    return response.data as Blob
+  },
+}
+
 export const aiApi = {
+  askCorpusQuestion: async (question: string) => {
+    const response = await api.post('/api/ai/corpus/question', { question })
+    return response.data as CorpusAnswer
+  },
+
   generateTemplate: async (templateType: string, requirements: string) => {
-    const response = await api.post('/api/ai/templates/generate', {
-      templateType,
-      requirements,
-    })
+    const response = await withIdempotencyKey(`template:${templateType}:${requirements}`, (key) =>
+      api.post('/api/ai/templates/generate', {
+        templateType,
+        requirements,
+      }, { headers: { 'Idempotency-Key': key } }))
     return response.data
   },
 }
@@ -238,6 +526,54 @@ export interface Document {
   createdAt: string
   updatedAt: string
   hasExtractedText: boolean
+  versionNumber: number
+  previousVersionId?: number
+}
+
+// Positions are offsets into the extracted text, usable with documentsApi.getText
+export interface OutlineSection {
+  index: number
+  parentIndex: number | null
+  level: number
+  kind: 'ARTICLE' | 'SECTION' | 'HEADING' | 'DEFINITION'
+  number: string | null
+  title: string | null
+  startPosition: number
+  endPosition: number
+}
+
+export interface NearDuplicate {
+  documentId: number
+  originalName: string
+  similarity: number
+  hasAnalysis: boolean
+  createdAt: string
+}
+
+export interface SimilarClause {
+  id: number
+  documentId: number
+  documentName: string
+  clauseType: string
+  clauseText: string
+  plainEnglishExplanation: string
+  importanceLevel: string
+  similarity: number
+}
+
+export interface CorpusCitation {
+  index: number
+  documentId: number
+  documentName: string
+  page?: number
+  excerpt: string
+  cited: boolean
+}
+
+export interface CorpusAnswer {
+  question: string
+  answer: string
+  citations: CorpusCitation[]
 }
 
 export interface DocumentAnalysis {
@@ -248,9 +584,29 @@ export interface DocumentAnalysis {
   confidenceScore?: number
   status: string
   errorMessage?: string
+  sessionId?: string
   createdAt: string
 }
 
+export interface AnalysisListItem {
+  id: number
+  analysisType: string
+  resultPreview: string   // Ends in an ellipsis if the result is longer
+  resultLength: number
+  confidenceScore?: number
+  status: string
+  errorMessage?: string
+  sessionId?: string
+  createdAt: string
+}
+
+export interface ConversationSession {
+  sessionId: string
+  documentId: number
+  contextMode: 'PROVIDER_CACHE' | 'LOCAL'
+  expiresAt: string
+}
+
 export interface ExtractedClause {
   id: number
   clauseType: string
@@ -258,9 +614,20 @@ export interface ExtractedClause {
   plainEnglishExplanation?: string
   importanceLevel: 'LOW' | 'MEDIUM' | 'HIGH' | 'CRITICAL'
   confidenceScore?: number
+  startPosition?: number
+  endPosition?: number
   createdAt: string
 }
 
+export interface DocumentBundle {
+  documentId: number
+  version: number
+  document: Document
+  summary: DocumentAnalysis | null
+  clauses: ExtractedClause[]        // Most important first
+  recentQuestions: DocumentAnalysis[] // Newest first; prompt is the question
+}
+
 export interface ApiError {
   message: string
   status?: number
@@ -3,10 +3,14 @@ package com.kimi.legaleraseai.config;
 import com.kimi.legaleraseai.security.AuthEntryPointJwt;
 import com.kimi.legaleraseai.security.AuthTokenFilter;
 import com.kimi.legaleraseai.security.CustomUserDetailsService;
+import com.kimi.legaleraseai.security.IdempotencyFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -42,6 +46,19 @@ public class WebSecurityConfig {
         return new AuthTokenFilter();
     }
 
+    @Bean
+    public IdempotencyFilter idempotencyFilter() {
+        return new IdempotencyFilter();
+    }
+
+    // Only run inside the security chain (after authentication), not as a plain servlet filter
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilterRegistration(IdempotencyFilter filter) {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
     public DaoAuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
@@ -67,9 +84,11 @@ public class WebSecurityConfig {
             .exceptionHandling(exception -> exception.authenticationEntryPoint(unauthorizedHandler))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth ->
-                auth.requestMatchers("/api/auth/**").permitAll()
+                // Async dispatches (SSE/streaming responses) were already authorized on the initial request
+                auth.dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+                    .requestMatchers("/api/auth/**").permitAll()
                     .requestMatchers("/api/test/**").permitAll()
-                    .requestMatchers("/actuator/**").permitAll()
+                    .requestMatchers("/actuator/health").permitAll()
                     .anyRequest().authenticated()
             );
 
@@ -78,6 +97,9 @@ public class WebSecurityConfig {
         // Add JWT filter AFTER UsernamePasswordAuthenticationFilter to avoid interfering with login
         http.addFilterAfter(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
 
+        // Replay or wait for duplicate expensive POSTs carrying an Idempotency-Key
+        http.addFilterAfter(idempotencyFilter(), AuthTokenFilter.class);
+
         return http.build();
     }
 
@@ -87,6 +109,9 @@ public class WebSecurityConfig {
         configuration.setAllowedOrigins(Arrays.asList(allowedOrigins.split(",")));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        // Read by the frontend for conditional and ranged requests of document text
+        configuration.setExposedHeaders(Arrays.asList(IdempotencyFilter.REPLAYED_HEADER, HttpHeaders.ETAG,
+                HttpHeaders.CONTENT_RANGE, "X-Text-Length"));
         configuration.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
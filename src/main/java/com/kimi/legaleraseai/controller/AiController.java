@@ -8,16 +8,31 @@ import com.kimi.legaleraseai.repository.DocumentRepository;
 import com.kimi.legaleraseai.repository.ExtractedClauseRepository;
 import com.kimi.legaleraseai.repository.UserRepository;
 import com.kimi.legaleraseai.security.UserPrincipal;
+import com.kimi.legaleraseai.service.AnalysisStreamEvent;
+import com.kimi.legaleraseai.service.ConversationService;
+import com.kimi.legaleraseai.service.ConversationSession;
+import com.kimi.legaleraseai.service.CorpusQuestionService;
+import com.kimi.legaleraseai.service.DocumentVersionService;
+import com.kimi.legaleraseai.service.FullAnalysisService;
 import com.kimi.legaleraseai.service.GeminiAiService;
+import com.kimi.legaleraseai.service.QuestionBatcher;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -37,6 +52,9 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/ai")
 public class AiController {
 
+    // Questions accepted by POST /documents/{id}/questions; each call to the model takes a few of them
+    private static final int MAX_QUESTIONS_PER_REQUEST = 20;
+
     // Dependency injection using @Autowired annotation
     // Spring will automatically provide instances of these services/repositories
     @Autowired
@@ -58,6 +76,28 @@ public class AiController {
     @Autowired
     private UserRepository userRepository;
 
+    // Merges questions about the same document that arrive within a short window
+    @Autowired
+    private QuestionBatcher questionBatcher;
+
+    // Multi-turn Q&A sessions that keep the document context between questions
+    @Autowired
+    private ConversationService conversationService;
+
+    // Runs summary, clause extraction and seeded questions for a document concurrently
+    @Autowired
+    private FullAnalysisService fullAnalysisService;
+
+    // Carries analysis forward between document versions and re-analyzes only what changed
+    @Autowired
+    private DocumentVersionService documentVersionService;
+
+    @Autowired
+    private CorpusQuestionService corpusQuestionService;
+
+    // Upper bound on how long a request waits for its micro-batch to be answered
+    private static final long BATCHED_ANSWER_TIMEOUT_SECONDS = 120;
+
     @GetMapping("/test-db")
     public ResponseEntity<?> testDatabase() {
         try {
@@ -114,6 +154,122 @@ public class AiController {
         }
     }
 
+    /**
+     * Streaming variant of summarize: relays the summary to the browser over SSE as it is generated
+     * 
+     * Emits "delta" events with {"text": ...} for every model chunk and a final "complete" event
+     * with the persisted analysis.
+     * 
+     * @PostMapping: HTTP POST request to "/documents/{documentId}/summarize/stream"
+     * @param documentId: ID of the document to summarize
+     * @param authentication: User authentication info
+     * @return ResponseEntity: text/event-stream of summary deltas, or 404 if not found
+     */
+    @PostMapping(value = "/documents/{documentId}/summarize/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<Object>>> streamSummary(@PathVariable Long documentId,
+                                                                     Authentication authentication) {
+        Document document = getDocumentForUser(documentId, authentication);
+        if (document == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(toServerSentEvents(geminiAiService.streamSummary(document)));
+    }
+
+    /**
+     * Endpoint to run a full analysis of a document in one request
+     * 
+     * Summary, clause extraction and any seeded questions run concurrently on the same loaded
+     * document, so the request takes as long as the slowest part instead of the sum of all parts.
+     * 
+     * @PostMapping: HTTP POST request to "/documents/{documentId}/analyze"
+     * @param documentId: ID of the document to analyze
+     * @param request: Optional questions to answer alongside the summary and clauses
+     * @param authentication: User authentication info
+     * @return ResponseEntity: Combined summary, clauses and answers or error message
+     */
+    @PostMapping("/documents/{documentId}/analyze")
+    public ResponseEntity<?> analyzeDocument(@PathVariable Long documentId,
+                                           @RequestBody(required = false) QuestionsRequest request,
+                                           Authentication authentication) {
+        try {
+            // Load and verify the document once for all parts of the analysis
+            Document document = getDocumentForUser(documentId, authentication);
+            if (document == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            List<String> questions = request != null && request.getQuestions() != null
+                    ? request.getQuestions()
+                    : List.of();
+            FullAnalysisService.FullAnalysis analysis = fullAnalysisService.analyze(document, questions);
+            return ResponseEntity.ok(new FullAnalysisResponse(analysis));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error analyzing document: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint to analyze a new version of a document incrementally
+     * 
+     * The document is diffed against its previous version: unchanged clauses are carried forward,
+     * only the changed sections are sent for clause extraction, and the summary is updated from the
+     * previous summary. Documents without a previous version are analyzed in full.
+     * 
+     * @PostMapping: HTTP POST request to "/documents/{documentId}/reanalyze"
+     * @param documentId: ID of the new version
+     * @param authentication: User authentication info
+     * @return ResponseEntity: Summary, clauses and what was reused, or error message
+     */
+    @PostMapping("/documents/{documentId}/reanalyze")
+    public ResponseEntity<?> reanalyzeDocument(@PathVariable Long documentId,
+                                             Authentication authentication) {
+        try {
+            Document document = getDocumentForUser(documentId, authentication);
+            if (document == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            DocumentVersionService.Reanalysis reanalysis = documentVersionService.reanalyze(document);
+            return ResponseEntity.ok(new ReanalysisResponse(reanalysis));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error re-analyzing document: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint to analyze a document by reusing the analysis of a near-identical document
+     * 
+     * Intended for matches from GET /api/documents/{id}/near-duplicates: clauses in text the two
+     * documents share are copied, and only the differing spans are sent for clause extraction.
+     * 
+     * @PostMapping: HTTP POST request to "/documents/{documentId}/reanalyze-from/{baseDocumentId}"
+     * @param documentId: ID of the document to analyze
+     * @param baseDocumentId: ID of the user's document whose analysis is reused
+     * @param authentication: User authentication info
+     * @return ResponseEntity: Summary, clauses and what was reused, or error message
+     */
+    @PostMapping("/documents/{documentId}/reanalyze-from/{baseDocumentId}")
+    public ResponseEntity<?> reanalyzeFromDocument(@PathVariable Long documentId,
+                                                 @PathVariable Long baseDocumentId,
+                                                 Authentication authentication) {
+        try {
+            Document document = getDocumentForUser(documentId, authentication);
+            Document base = getDocumentForUser(baseDocumentId, authentication);
+            if (document == null || base == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            DocumentVersionService.Reanalysis reanalysis = documentVersionService.reanalyzeFrom(document, base);
+            return ResponseEntity.ok(new ReanalysisResponse(reanalysis));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error re-analyzing document: " + e.getMessage()));
+        }
+    }
+
     /**
      * Endpoint to extract legal clauses from a document using AI
      * 
@@ -147,6 +303,27 @@ public class AiController {
         }
     }
 
+    /**
+     * NDJSON variant of clause extraction, selected with "Accept: application/x-ndjson"
+     * 
+     * Each clause is written as one JSON line as soon as the model has finished generating it,
+     * instead of waiting for the complete response.
+     * 
+     * @param documentId: ID of the document to analyze
+     * @param authentication: User authentication info
+     * @return ResponseEntity: Newline-delimited stream of extracted clauses or 404 if not found
+     */
+    @PostMapping(value = "/documents/{documentId}/extract-clauses", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<ClauseResponse>> streamClauses(@PathVariable Long documentId,
+                                                              Authentication authentication) {
+        Document document = getDocumentForUser(documentId, authentication);
+        if (document == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(geminiAiService.streamClauses(document).map(ClauseResponse::new));
+    }
+
     /**
      * Endpoint to ask questions about a specific document
      * 
@@ -169,8 +346,162 @@ public class AiController {
                 return ResponseEntity.notFound().build();
             }
 
-            // Use AI service to answer the question about the document
-            DocumentAnalysis analysis = geminiAiService.answerQuestion(document, request.getQuestion());
+            // Use AI service to answer the question about the document,
+            // sharing one model call with other questions queued for it when batching is enabled
+            DocumentAnalysis analysis = questionBatcher.isEnabled()
+                    ? questionBatcher.submit(document, request.getQuestion())
+                            .get(BATCHED_ANSWER_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    : geminiAiService.answerQuestion(document, request.getQuestion());
+            return ResponseEntity.ok(new AnalysisResponse(analysis));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error answering question: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint to ask a question across all of the user's documents
+     * 
+     * Passages are retrieved from the user's corpus index, so only a bounded set of excerpts
+     * is sent to the model; the answer cites them by number.
+     * 
+     * @PostMapping: HTTP POST request to "/corpus/question"
+     * @param request: Contains the question text
+     * @param authentication: User authentication info
+     * @return ResponseEntity: AI-generated answer with document and page citations or error message
+     */
+    @PostMapping("/corpus/question")
+    public ResponseEntity<?> askCorpusQuestion(@Valid @RequestBody QuestionRequest request,
+                                             Authentication authentication) {
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            CorpusQuestionService.CorpusAnswer answer =
+                    corpusQuestionService.answer(userPrincipal.getId(), request.getQuestion());
+            return ResponseEntity.ok(new CorpusAnswerResponse(request.getQuestion(), answer));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error answering question: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint to ask several questions about a document in one request
+     * 
+     * Questions are answered in as few model calls as possible and stored as separate analyses.
+     * 
+     * @PostMapping: HTTP POST request to "/documents/{documentId}/questions"
+     * @param documentId: ID of the document to ask about
+     * @param request: Contains the list of questions
+     * @param authentication: User authentication info
+     * @return ResponseEntity: One answer per question, in request order, or error message
+     */
+    @PostMapping("/documents/{documentId}/questions")
+    public ResponseEntity<?> askQuestions(@PathVariable Long documentId,
+                                        @Valid @RequestBody QuestionsRequest request,
+                                        Authentication authentication) {
+        try {
+            if (request.getQuestions() == null || request.getQuestions().isEmpty()) {
+                return ResponseEntity.badRequest().body(new MessageResponse("At least one question is required"));
+            }
+            if (request.getQuestions().size() > MAX_QUESTIONS_PER_REQUEST) {
+                return ResponseEntity.badRequest()
+                        .body(new MessageResponse("At most " + MAX_QUESTIONS_PER_REQUEST + " questions can be asked at once"));
+            }
+
+            // Verify document access
+            Document document = getDocumentForUser(documentId, authentication);
+            if (document == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            List<DocumentAnalysis> analyses = geminiAiService.answerQuestions(document, request.getQuestions());
+            List<AnalysisResponse> analysisResponses = analyses.stream()
+                    .map(AnalysisResponse::new)
+                    .collect(Collectors.toList());
+            return ResponseEntity.ok(analysisResponses);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error answering questions: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Streaming variant of question answering: relays the answer to the browser over SSE as it is generated
+     * 
+     * @PostMapping: HTTP POST request to "/documents/{documentId}/question/stream"
+     * @param documentId: ID of the document to ask about
+     * @param request: Contains the question text
+     * @param authentication: User authentication info
+     * @return ResponseEntity: text/event-stream of answer deltas, or 404 if not found
+     */
+    @PostMapping(value = "/documents/{documentId}/question/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<Object>>> streamAnswer(@PathVariable Long documentId,
+                                                                    @Valid @RequestBody QuestionRequest request,
+                                                                    Authentication authentication) {
+        Document document = getDocumentForUser(documentId, authentication);
+        if (document == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(toServerSentEvents(geminiAiService.streamAnswer(document, request.getQuestion())));
+    }
+
+    /**
+     * Endpoint to start a conversation about a document
+     * 
+     * The document context is prepared once (provider context cache or a local chunk set),
+     * so follow-up questions in the session only send the question and the recent turns.
+     * 
+     * @PostMapping: HTTP POST request to "/documents/{documentId}/sessions"
+     * @param documentId: ID of the document to discuss
+     * @param authentication: User authentication info
+     * @return ResponseEntity: The new session or error message
+     */
+    @PostMapping("/documents/{documentId}/sessions")
+    public ResponseEntity<?> startSession(@PathVariable Long documentId,
+                                        Authentication authentication) {
+        try {
+            // Verify document access
+            Document document = getDocumentForUser(documentId, authentication);
+            if (document == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            ConversationSession session = conversationService.start(document, userPrincipal.getId());
+            return ResponseEntity.ok(new SessionResponse(session, conversationService.expiresAt(session)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error starting session: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint to ask a question within a conversation session
+     * 
+     * @PostMapping: HTTP POST request to "/sessions/{sessionId}/questions"
+     * @param sessionId: ID returned when the session was started
+     * @param request: Contains the question text
+     * @param authentication: User authentication info
+     * @return ResponseEntity: AI-generated answer, 404 if the session does not exist or has expired
+     */
+    @PostMapping("/sessions/{sessionId}/questions")
+    public ResponseEntity<?> askInSession(@PathVariable String sessionId,
+                                        @Valid @RequestBody QuestionRequest request,
+                                        Authentication authentication) {
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            Optional<ConversationSession> session = conversationService.find(sessionId, userPrincipal.getId());
+            if (session.isEmpty()) {
+                return ResponseEntity.status(404).body(new MessageResponse("Session not found or expired"));
+            }
+
+            Document document = getDocumentForUser(session.get().getDocumentId(), authentication);
+            if (document == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            DocumentAnalysis analysis = conversationService.ask(session.get(), document, request.getQuestion());
             return ResponseEntity.ok(new AnalysisResponse(analysis));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -178,6 +509,51 @@ public class AiController {
         }
     }
 
+    /**
+     * Endpoint to retrieve the persisted question/answer history of a session
+     * 
+     * History is stored as analyses, so it stays available after the session itself has expired.
+     * 
+     * @GetMapping: HTTP GET request to "/sessions/{sessionId}/history"
+     * @param sessionId: ID of the session
+     * @param authentication: User authentication info
+     * @return ResponseEntity: Answers in the order they were given
+     */
+    @GetMapping("/sessions/{sessionId}/history")
+    public ResponseEntity<?> getSessionHistory(@PathVariable String sessionId,
+                                             Authentication authentication) {
+        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+
+        // Only return turns about documents owned by the current user
+        List<AnalysisResponse> history = analysisRepository.findBySessionIdOrderByCreatedAtAsc(sessionId).stream()
+                .filter(analysis -> analysis.getDocument().getUser().getId().equals(userPrincipal.getId()))
+                .map(AnalysisResponse::new)
+                .collect(Collectors.toList());
+
+        return ResponseEntity.ok(history);
+    }
+
+    /**
+     * Endpoint to end a session and release its document context
+     * 
+     * @DeleteMapping: HTTP DELETE request to "/sessions/{sessionId}"
+     * @param sessionId: ID of the session
+     * @param authentication: User authentication info
+     * @return ResponseEntity: Success message or 404 if not found
+     */
+    @DeleteMapping("/sessions/{sessionId}")
+    public ResponseEntity<?> endSession(@PathVariable String sessionId,
+                                      Authentication authentication) {
+        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+        Optional<ConversationSession> session = conversationService.find(sessionId, userPrincipal.getId());
+        if (session.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        conversationService.end(session.get());
+        return ResponseEntity.ok(new MessageResponse("Session ended"));
+    }
+
     /**
      * Endpoint to generate legal document templates using AI
      * 
@@ -204,30 +580,94 @@ public class AiController {
 
     /**
      * Endpoint to retrieve all analyses for a specific document
-     * 
+     *
+     * Without parameters every analysis is returned in full, including its result and prompt (for
+     * a summary, the whole document text). For history lists, view=list returns each analysis with
+     * a short preview of its result instead, and fields selects just the named fields of that list
+     * view; both read no result or prompt from the database. Full analyses are then fetched one
+     * at a time from "/analyses/{analysisId}".
+     *
      * @GetMapping: HTTP GET request to "/documents/{documentId}/analyses"
      * @param documentId: ID of the document
+     * @param view: "list" for the lightweight list view, "full" (default) for complete analyses
+     * @param fields: Fields of the list view to return, e.g. "id,analysisType,status,createdAt"
      * @param authentication: User authentication info
-     * @return ResponseEntity: List of document analyses or 404 if not found
+     * @return ResponseEntity: List of document analyses, 404 if not found, or error message
      */
     @GetMapping("/documents/{documentId}/analyses")
     public ResponseEntity<?> getDocumentAnalyses(@PathVariable Long documentId,
+                                                @RequestParam(required = false) String view,
+                                                @RequestParam(required = false) List<String> fields,
                                                 Authentication authentication) {
-        // Verify document access
-        Document document = getDocumentForUser(documentId, authentication);
-        if (document == null) {
-            return ResponseEntity.notFound().build();
+        if (fields == null && (view == null || view.equalsIgnoreCase("full"))) {
+            // Verify document access
+            Document document = getDocumentForUser(documentId, authentication);
+            if (document == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            // Get all analyses for the document, ordered by creation date (newest first)
+            List<DocumentAnalysis> analyses = analysisRepository.findByDocumentOrderByCreatedAtDesc(document);
+
+            // Convert to response DTOs
+            List<AnalysisResponse> analysisResponses = analyses.stream()
+                    .map(AnalysisResponse::new)
+                    .collect(Collectors.toList());
+
+            return ResponseEntity.ok(analysisResponses);
         }
 
-        // Get all analyses for the document, ordered by creation date (newest first)
-        List<DocumentAnalysis> analyses = analysisRepository.findByDocumentOrderByCreatedAtDesc(document);
-        
-        // Convert to response DTOs
-        List<AnalysisResponse> analysisResponses = analyses.stream()
-                .map(AnalysisResponse::new)
-                .collect(Collectors.toList());
+        try {
+            if (view != null && !view.equalsIgnoreCase("list")) {
+                throw new IllegalArgumentException("Unknown view: " + view);
+            }
+            List<String> selected = null;
+            if (fields != null) {
+                selected = fields.stream().map(String::trim).filter(field -> !field.isEmpty()).toList();
+                for (String field : selected) {
+                    if (!AnalysisListItemResponse.FIELDS.contains(field)) {
+                        throw new IllegalArgumentException("Unknown field: " + field + " (available: "
+                                + String.join(", ", AnalysisListItemResponse.FIELDS)
+                                + "; fetch /api/ai/analyses/{id} for the full result)");
+                    }
+                }
+            }
+
+            // Checks ownership without loading the user and the document's text
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            if (!documentRepository.existsByIdAndUserId(documentId, userPrincipal.getId())) {
+                return ResponseEntity.notFound().build();
+            }
+
+            List<AnalysisListItemResponse> items = listItems(documentId);
+            if (selected == null) {
+                return ResponseEntity.ok(items);
+            }
+            List<String> selectedFields = selected;
+            return ResponseEntity.ok(items.stream().map(item -> item.select(selectedFields)).toList());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error retrieving analyses: " + e.getMessage()));
+        }
+    }
 
-        return ResponseEntity.ok(analysisResponses);
+    /**
+     * Endpoint to retrieve one analysis in full
+     *
+     * @GetMapping: HTTP GET request to "/analyses/{analysisId}"
+     * @param analysisId: ID of the analysis
+     * @param authentication: User authentication info
+     * @return ResponseEntity: The analysis with its result and prompt, or 404 if not found
+     */
+    @GetMapping("/analyses/{analysisId}")
+    public ResponseEntity<?> getAnalysis(@PathVariable Long analysisId, Authentication authentication) {
+        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+        Optional<DocumentAnalysis> analysis = analysisRepository.findByIdAndDocumentUserId(analysisId,
+                userPrincipal.getId());
+        if (analysis.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new AnalysisResponse(analysis.get()));
     }
 
     /**
@@ -282,6 +722,58 @@ public class AiController {
         return documentOpt.orElse(null);  // Return null if document not found
     }
 
+    /**
+     * Helper method to read the list view of a document's analyses
+     *
+     * Analyses saved before previews were stored get theirs computed and saved here, once.
+     *
+     * @param documentId: ID of the document
+     * @return List view items, newest first
+     */
+    private List<AnalysisListItemResponse> listItems(Long documentId) {
+        List<AnalysisListItemResponse> items = analysisRepository.findListRowsByDocumentId(documentId).stream()
+                .map(AnalysisListItemResponse::new)
+                .collect(Collectors.toList());
+
+        // Pending and failed analyses have no result yet; saving one fills in its preview. A completed
+        // analysis without a result is stored with length 0, so it is not read again on the next view
+        Map<Long, AnalysisListItemResponse> missing = new HashMap<>();
+        for (AnalysisListItemResponse item : items) {
+            if (item.getResultPreview() == null && item.getResultLength() == null
+                    && DocumentAnalysis.AnalysisStatus.COMPLETED.name().equals(item.getStatus())) {
+                missing.put(item.getId(), item);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Object[] row : analysisRepository.findResultsByIds(missing.keySet())) {
+                AnalysisListItemResponse item = missing.get((Long) row[0]);
+                String result = (String) row[1];
+                item.setResultPreview(DocumentAnalysis.preview(result));
+                item.setResultLength(result != null ? result.length() : 0);
+                analysisRepository.updatePreview(item.getId(), item.getResultPreview(), item.getResultLength());
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Helper method to map streamed analysis events to server-sent events
+     * 
+     * @param events: Deltas followed by the completed analysis
+     * @return Flux of "delta" events and a final "complete" event
+     */
+    private Flux<ServerSentEvent<Object>> toServerSentEvents(Flux<AnalysisStreamEvent> events) {
+        return events.map(event -> event.isCompleted()
+                ? ServerSentEvent.<Object>builder()
+                        .event("complete")
+                        .data(new AnalysisResponse(event.analysis()))
+                        .build()
+                : ServerSentEvent.<Object>builder()
+                        .event("delta")
+                        .data(Map.of("text", event.delta()))
+                        .build());
+    }
+
     // ==================== REQUEST DTOs (Data Transfer Objects) ====================
     
     /**
@@ -296,6 +788,16 @@ public class AiController {
         public void setQuestion(String question) { this.question = question; }
     }
 
+    /**
+     * Request DTO for asking several questions about a document at once
+     */
+    public static class QuestionsRequest {
+        private List<String> questions;
+
+        public List<String> getQuestions() { return questions; }
+        public void setQuestions(List<String> questions) { this.questions = questions; }
+    }
+
     /**
      * Request DTO for generating document templates
      * Contains template type and specific requirements
@@ -313,6 +815,133 @@ public class AiController {
     }
 
     // ==================== RESPONSE DTOs (Data Transfer Objects) ====================
+
+    /**
+     * Response DTO for a full analysis: summary, clauses and answers to seeded questions
+     */
+    public static class FullAnalysisResponse {
+        private AnalysisResponse summary;           // Document summary
+        private List<ClauseResponse> clauses;       // Extracted clauses
+        private List<AnalysisResponse> answers;     // Answers in the order the questions were given
+
+        public FullAnalysisResponse(FullAnalysisService.FullAnalysis analysis) {
+            this.summary = new AnalysisResponse(analysis.summary());
+            this.clauses = analysis.clauses().stream()
+                    .map(ClauseResponse::new)
+                    .collect(Collectors.toList());
+            this.answers = analysis.answers().stream()
+                    .map(AnalysisResponse::new)
+                    .collect(Collectors.toList());
+        }
+
+        public AnalysisResponse getSummary() { return summary; }
+        public void setSummary(AnalysisResponse summary) { this.summary = summary; }
+
+        public List<ClauseResponse> getClauses() { return clauses; }
+        public void setClauses(List<ClauseResponse> clauses) { this.clauses = clauses; }
+
+        public List<AnalysisResponse> getAnswers() { return answers; }
+        public void setAnswers(List<AnalysisResponse> answers) { this.answers = answers; }
+    }
+
+    /**
+     * Response DTO for a question answered across the user's documents
+     */
+    public static class CorpusAnswerResponse {
+        private String question;
+        private String answer;
+        private List<CorpusQuestionService.Citation> citations;   // Excerpts sent to the model, numbered as in the answer
+
+        public CorpusAnswerResponse(String question, CorpusQuestionService.CorpusAnswer answer) {
+            this.question = question;
+            this.answer = answer.answer();
+            this.citations = answer.citations();
+        }
+
+        public String getQuestion() { return question; }
+        public void setQuestion(String question) { this.question = question; }
+
+        public String getAnswer() { return answer; }
+        public void setAnswer(String answer) { this.answer = answer; }
+
+        public List<CorpusQuestionService.Citation> getCitations() { return citations; }
+        public void setCitations(List<CorpusQuestionService.Citation> citations) { this.citations = citations; }
+    }
+
+    /**
+     * Response DTO for an incremental re-analysis of a document version
+     */
+    public static class ReanalysisResponse {
+        private AnalysisResponse summary;           // Updated summary, null if the previous version had none
+        private List<ClauseResponse> clauses;       // All clauses of the new version
+        private int carriedForwardClauses;          // Clauses reused from the previous version
+        private int reanalyzedSections;             // Changed sections sent for clause extraction
+        private int changedLines;
+        private int totalLines;
+        private boolean incremental;                // False if the document was analyzed from scratch
+
+        public ReanalysisResponse(DocumentVersionService.Reanalysis reanalysis) {
+            this.summary = reanalysis.summary() != null ? new AnalysisResponse(reanalysis.summary()) : null;
+            this.clauses = reanalysis.clauses().stream()
+                    .map(ClauseResponse::new)
+                    .collect(Collectors.toList());
+            this.carriedForwardClauses = reanalysis.carriedForwardClauses();
+            this.reanalyzedSections = reanalysis.reanalyzedSections();
+            this.changedLines = reanalysis.changedLines();
+            this.totalLines = reanalysis.totalLines();
+            this.incremental = reanalysis.incremental();
+        }
+
+        public AnalysisResponse getSummary() { return summary; }
+        public void setSummary(AnalysisResponse summary) { this.summary = summary; }
+
+        public List<ClauseResponse> getClauses() { return clauses; }
+        public void setClauses(List<ClauseResponse> clauses) { this.clauses = clauses; }
+
+        public int getCarriedForwardClauses() { return carriedForwardClauses; }
+        public void setCarriedForwardClauses(int carriedForwardClauses) { this.carriedForwardClauses = carriedForwardClauses; }
+
+        public int getReanalyzedSections() { return reanalyzedSections; }
+        public void setReanalyzedSections(int reanalyzedSections) { this.reanalyzedSections = reanalyzedSections; }
+
+        public int getChangedLines() { return changedLines; }
+        public void setChangedLines(int changedLines) { this.changedLines = changedLines; }
+
+        public int getTotalLines() { return totalLines; }
+        public void setTotalLines(int totalLines) { this.totalLines = totalLines; }
+
+        public boolean isIncremental() { return incremental; }
+        public void setIncremental(boolean incremental) { this.incremental = incremental; }
+    }
+
+    /**
+     * Response DTO for a conversation session
+     */
+    public static class SessionResponse {
+        private String sessionId;           // ID to send follow-up questions to
+        private Long documentId;            // Document being discussed
+        private String contextMode;         // PROVIDER_CACHE or LOCAL
+        private Instant expiresAt;          // When the session expires unless used again
+
+        public SessionResponse(ConversationSession session, Instant expiresAt) {
+            this.sessionId = session.getId();
+            this.documentId = session.getDocumentId();
+            this.contextMode = session.usesProviderCache() ? "PROVIDER_CACHE" : "LOCAL";
+            this.expiresAt = expiresAt;
+        }
+
+        public String getSessionId() { return sessionId; }
+        public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+        public Long getDocumentId() { return documentId; }
+        public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+        public String getContextMode() { return contextMode; }
+        public void setContextMode(String contextMode) { this.contextMode = contextMode; }
+
+        public Instant getExpiresAt() { return expiresAt; }
+        public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+    }
     
     /**
      * Response DTO for document analysis results
@@ -328,6 +957,7 @@ public class AiController {
         private Double confidenceScore;     // AI confidence in the result (0.0 to 1.0)
         private String status;              // Status of the analysis
         private String errorMessage;        // Error message if analysis failed
+        private String sessionId;           // Conversation session the answer belongs to, if any
         private LocalDateTime createdAt;    // When the analysis was created
 
         /**
@@ -342,6 +972,7 @@ public class AiController {
             this.confidenceScore = analysis.getConfidenceScore();
             this.status = analysis.getStatus().name();  // Convert enum to string
             this.errorMessage = analysis.getErrorMessage();
+            this.sessionId = analysis.getSessionId();
             this.createdAt = analysis.getCreatedAt();
         }
 
@@ -369,6 +1000,97 @@ public class AiController {
         public String getErrorMessage() { return errorMessage; }
         public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
 
+        public String getSessionId() { return sessionId; }
+        public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    }
+
+    /**
+     * Response DTO for the list view of analyses: everything but the result and prompt, with a
+     * short preview of the result instead
+     */
+    public static class AnalysisListItemResponse {
+        // Fields that can be selected with the fields parameter, in response order
+        static final List<String> FIELDS = List.of("id", "analysisType", "resultPreview", "resultLength",
+                "confidenceScore", "status", "errorMessage", "sessionId", "createdAt");
+
+        private Long id;                    // Unique identifier
+        private String analysisType;        // Type of analysis performed
+        private String resultPreview;       // Start of the result, ending in an ellipsis if cut
+        private Integer resultLength;       // Length of the full result in characters
+        private Double confidenceScore;     // AI confidence in the result (0.0 to 1.0)
+        private String status;              // Status of the analysis
+        private String errorMessage;        // Error message if analysis failed
+        private String sessionId;           // Conversation session the answer belongs to, if any
+        private LocalDateTime createdAt;    // When the analysis was created
+
+        /**
+         * Constructor from a row of DocumentAnalysisRepository.findListRowsByDocumentId
+         * @param row: [id, type, result preview, result length, confidence, status, error message, session id, created at]
+         */
+        public AnalysisListItemResponse(Object[] row) {
+            this.id = (Long) row[0];
+            this.analysisType = ((DocumentAnalysis.AnalysisType) row[1]).name();
+            this.resultPreview = (String) row[2];
+            this.resultLength = (Integer) row[3];
+            this.confidenceScore = (Double) row[4];
+            this.status = row[5] != null ? ((DocumentAnalysis.AnalysisStatus) row[5]).name() : null;
+            this.errorMessage = (String) row[6];
+            this.sessionId = (String) row[7];
+            this.createdAt = (LocalDateTime) row[8];
+        }
+
+        /**
+         * The selected fields only, in the order given
+         * @param fields: Names from FIELDS
+         */
+        public Map<String, Object> select(List<String> fields) {
+            Map<String, Object> selected = new LinkedHashMap<>();
+            for (String field : fields) {
+                selected.put(field, switch (field) {
+                    case "id" -> id;
+                    case "analysisType" -> analysisType;
+                    case "resultPreview" -> resultPreview;
+                    case "resultLength" -> resultLength;
+                    case "confidenceScore" -> confidenceScore;
+                    case "status" -> status;
+                    case "errorMessage" -> errorMessage;
+                    case "sessionId" -> sessionId;
+                    case "createdAt" -> createdAt;
+                    default -> throw new IllegalArgumentException("Unknown field: " + field);
+                });
+            }
+            return selected;
+        }
+
+        // ==================== GETTERS AND SETTERS ====================
+
+        public Long getId() { return id; }
+        public void setId(Long id) { this.id = id; }
+
+        public String getAnalysisType() { return analysisType; }
+        public void setAnalysisType(String analysisType) { this.analysisType = analysisType; }
+
+        public String getResultPreview() { return resultPreview; }
+        public void setResultPreview(String resultPreview) { this.resultPreview = resultPreview; }
+
+        public Integer getResultLength() { return resultLength; }
+        public void setResultLength(Integer resultLength) { this.resultLength = resultLength; }
+
+        public Double getConfidenceScore() { return confidenceScore; }
+        public void setConfidenceScore(Double confidenceScore) { this.confidenceScore = confidenceScore; }
+
+        public String getStatus() { return status; }
+        public void setStatus(String status) { this.status = status; }
+
+        public String getErrorMessage() { return errorMessage; }
+        public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+
+        public String getSessionId() { return sessionId; }
+        public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
         public LocalDateTime getCreatedAt() { return createdAt; }
         public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     }
@@ -384,6 +1106,8 @@ public class AiController {
         private String plainEnglishExplanation; // AI-generated explanation in plain English
         private String importanceLevel;         // Importance level of the clause
         private Double confidenceScore;         // AI confidence in the extraction
+        private Integer startPosition;          // Character range of the clause in the extracted text,
+        private Integer endPosition;            // null if it could not be found there
         private LocalDateTime createdAt;        // When the clause was extracted
 
         /**
@@ -397,6 +1121,8 @@ public class AiController {
             this.plainEnglishExplanation = clause.getPlainEnglishExplanation();
             this.importanceLevel = clause.getImportanceLevel().name();  // Convert enum to string
             this.confidenceScore = clause.getConfidenceScore();
+            this.startPosition = clause.getStartPosition();
+            this.endPosition = clause.getEndPosition();
             this.createdAt = clause.getCreatedAt();
         }
 
@@ -422,6 +1148,12 @@ public class AiController {
         public Double getConfidenceScore() { return confidenceScore; }
         public void setConfidenceScore(Double confidenceScore) { this.confidenceScore = confidenceScore; }
 
+        public Integer getStartPosition() { return startPosition; }
+        public void setStartPosition(Integer startPosition) { this.startPosition = startPosition; }
+
+        public Integer getEndPosition() { return endPosition; }
+        public void setEndPosition(Integer endPosition) { this.endPosition = endPosition; }
+
         public LocalDateTime getCreatedAt() { return createdAt; }
         public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     }
@@ -0,0 +1,169 @@
+package com.kimi.legaleraseai.controller;
+
+import com.kimi.legaleraseai.dto.MessageResponse;
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import com.kimi.legaleraseai.repository.ExtractedClauseRepository;
+import com.kimi.legaleraseai.security.UserPrincipal;
+import com.kimi.legaleraseai.service.ClauseIndex;
+import com.kimi.legaleraseai.util.TextVectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * REST Controller for the clause library across all of a user's documents
+ *
+ * Clauses are found through the in-memory clause index, so a search over thousands of
+ * contracts needs no model call and no scan of the clause table.
+ */
+@RestController
+@RequestMapping("/api/clauses")
+public class ClauseController {
+
+    private static final int MAX_LIMIT = 100;
+
+    @Autowired
+    private ClauseIndex clauseIndex;
+
+    @Autowired
+    private ExtractedClauseRepository clauseRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    /**
+     * Endpoint to find clauses similar to a given clause or text across the user's documents
+     *
+     * @GetMapping: HTTP GET request to "/api/clauses/similar"
+     * @param clauseId: Clause to find similar clauses to; clauses of the same type rank higher
+     * @param text: Free text to search for, used when no clauseId is given
+     * @param clauseType: Only return clauses of this type (case-insensitive)
+     * @param minImportance: Only return clauses at least this important (LOW, MEDIUM, HIGH, CRITICAL)
+     * @param limit: Maximum number of results
+     * @param authentication: User authentication info
+     * @return ResponseEntity: Matching clauses, most similar first, or error message
+     */
+    @GetMapping("/similar")
+    public ResponseEntity<?> findSimilar(@RequestParam(required = false) Long clauseId,
+                                       @RequestParam(required = false) String text,
+                                       @RequestParam(required = false) String clauseType,
+                                       @RequestParam(required = false) String minImportance,
+                                       @RequestParam(defaultValue = "20") int limit,
+                                       Authentication authentication) {
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            Long userId = userPrincipal.getId();
+
+            ExtractedClause.ImportanceLevel importance = minImportance != null
+                    ? ExtractedClause.ImportanceLevel.valueOf(minImportance.trim().toUpperCase())
+                    : null;
+
+            byte[] vector;
+            String typeBoost = null;
+            if (clauseId != null) {
+                // Users can only search from their own clauses
+                Optional<ExtractedClause> clause = clauseRepository.findById(clauseId)
+                        .filter(found -> found.getDocument().getUser().getId().equals(userId));
+                if (clause.isEmpty()) {
+                    return ResponseEntity.notFound().build();
+                }
+                vector = clauseIndex.vectorOf(userId, clauseId)
+                        .orElseGet(() -> TextVectors.vectorize(clause.get().getClauseText()));
+                typeBoost = clause.get().getClauseType();
+            } else if (text != null && !text.isBlank()) {
+                vector = TextVectors.vectorize(text);
+            } else {
+                return ResponseEntity.badRequest().body(new MessageResponse("Either clauseId or text is required"));
+            }
+
+            List<ClauseIndex.Match> matches = clauseIndex.search(userId, vector, clauseType, typeBoost, importance,
+                    clauseId, Math.max(1, Math.min(limit, MAX_LIMIT)));
+            return ResponseEntity.ok(toResponses(matches));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error searching clauses: " + e.getMessage()));
+        }
+    }
+
+    private List<SimilarClauseResponse> toResponses(List<ClauseIndex.Match> matches) {
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ExtractedClause> clauses = clauseRepository
+                .findAllById(matches.stream().map(ClauseIndex.Match::clauseId).toList())
+                .stream()
+                .collect(Collectors.toMap(ExtractedClause::getId, Function.identity()));
+        Map<Long, String> documentNames = new HashMap<>();
+        for (Object[] row : documentRepository.findNamesByIds(
+                matches.stream().map(ClauseIndex.Match::documentId).collect(Collectors.toSet()))) {
+            documentNames.put((Long) row[0], (String) row[1]);
+        }
+
+        List<SimilarClauseResponse> responses = new ArrayList<>();
+        for (ClauseIndex.Match match : matches) {
+            ExtractedClause clause = clauses.get(match.clauseId());
+            if (clause != null) {
+                responses.add(new SimilarClauseResponse(clause, match.documentId(),
+                        documentNames.get(match.documentId()), match.similarity()));
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Response DTO for a clause found by similarity search
+     */
+    public static class SimilarClauseResponse {
+        private Long id;
+        private Long documentId;
+        private String documentName;
+        private String clauseType;
+        private String clauseText;
+        private String plainEnglishExplanation;
+        private String importanceLevel;
+        private double similarity;          // Cosine similarity of the clause texts, 0 to 1
+
+        public SimilarClauseResponse(ExtractedClause clause, Long documentId, String documentName, double similarity) {
+            this.id = clause.getId();
+            this.documentId = documentId;
+            this.documentName = documentName;
+            this.clauseType = clause.getClauseType();
+            this.clauseText = clause.getClauseText();
+            this.plainEnglishExplanation = clause.getPlainEnglishExplanation();
+            this.importanceLevel = clause.getImportanceLevel().name();
+            this.similarity = similarity;
+        }
+
+        public Long getId() { return id; }
+        public void setId(Long id) { this.id = id; }
+
+        public Long getDocumentId() { return documentId; }
+        public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+        public String getDocumentName() { return documentName; }
+        public void setDocumentName(String documentName) { this.documentName = documentName; }
+
+        public String getClauseType() { return clauseType; }
+        public void setClauseType(String clauseType) { this.clauseType = clauseType; }
+
+        public String getClauseText() { return clauseText; }
+        public void setClauseText(String clauseText) { this.clauseText = clauseText; }
+
+        public String getPlainEnglishExplanation() { return plainEnglishExplanation; }
+        public void setPlainEnglishExplanation(String plainEnglishExplanation) {
+            this.plainEnglishExplanation = plainEnglishExplanation;
+        }
+
+        public String getImportanceLevel() { return importanceLevel; }
+        public void setImportanceLevel(String importanceLevel) { this.importanceLevel = importanceLevel; }
+
+        public double getSimilarity() { return similarity; }
+        public void setSimilarity(double similarity) { this.similarity = similarity; }
+    }
+}
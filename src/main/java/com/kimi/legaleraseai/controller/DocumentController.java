@@ -2,26 +2,62 @@ package com.kimi.legaleraseai.controller;
 
 import com.kimi.legaleraseai.dto.MessageResponse;
 import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentBundle;
+import com.kimi.legaleraseai.entity.Job;
 import com.kimi.legaleraseai.entity.User;
 import com.kimi.legaleraseai.repository.DocumentRepository;
 import com.kimi.legaleraseai.repository.UserRepository;
 import com.kimi.legaleraseai.security.UserPrincipal;
+import com.kimi.legaleraseai.service.DocumentBundleService;
 import com.kimi.legaleraseai.service.DocumentProcessingService;
+import com.kimi.legaleraseai.service.DocumentVersionService;
+import com.kimi.legaleraseai.service.JobQueue;
+import com.kimi.legaleraseai.service.NearDuplicateService;
+import com.kimi.legaleraseai.service.OutlineService;
+import com.kimi.legaleraseai.service.PagePreviewService;
+import com.kimi.legaleraseai.service.TextStore;
+import com.kimi.legaleraseai.util.OutlineBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api/documents")
 public class DocumentController {
 
+    private static final MediaType TEXT_UTF8 = new MediaType("text", "plain", StandardCharsets.UTF_8);
+
     @Autowired
     private DocumentProcessingService documentProcessingService;
 
@@ -31,14 +67,43 @@ public class DocumentController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private JobQueue jobQueue;
+
+    @Autowired
+    private DocumentVersionService documentVersionService;
+
+    @Autowired
+    private NearDuplicateService nearDuplicateService;
+
+    @Autowired
+    private TextStore textStore;
+
+    @Autowired
+    private PagePreviewService pagePreviewService;
+
+    @Autowired
+    private OutlineService outlineService;
+
+    @Autowired
+    private DocumentBundleService documentBundleService;
+
     @PostMapping("/upload")
     public ResponseEntity<?> uploadDocument(@RequestParam("file") MultipartFile file,
+                                          @RequestParam(defaultValue = "false") boolean async,
                                           Authentication authentication) {
         try {
             UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
             User user = userRepository.findById(userPrincipal.getId())
                     .orElseThrow(() -> new RuntimeException("User not found"));
 
+            if (async) {
+                // Store the file now and leave text extraction to a worker; the document stays PENDING until then
+                Document document = documentProcessingService.storeDocument(file, user);
+                jobQueue.enqueue(Job.JobType.EXTRACT_TEXT, document.getId(), user.getId(), null);
+                return ResponseEntity.accepted().body(new DocumentResponse(document));
+            }
+
             Document document = documentProcessingService.processDocument(file, user);
             return ResponseEntity.ok(new DocumentResponse(document));
         } catch (Exception e) {
@@ -47,6 +112,361 @@ public class DocumentController {
         }
     }
 
+    /**
+     * Endpoint to upload an amended contract as a new version of an existing document
+     *
+     * The new document links to the one it amends, so its analysis can be carried forward
+     * and only the changed sections re-analyzed (see POST /api/ai/documents/{id}/reanalyze).
+     *
+     * @PostMapping: HTTP POST request to "/api/documents/{id}/versions"
+     * @param id: ID of the document being amended
+     * @param file: The new version
+     * @param async: Queue text extraction instead of extracting during the request
+     * @param authentication: User authentication info
+     * @return ResponseEntity: The new version or error message
+     */
+    @PostMapping("/{id}/versions")
+    public ResponseEntity<?> uploadVersion(@PathVariable Long id,
+                                         @RequestParam("file") MultipartFile file,
+                                         @RequestParam(defaultValue = "false") boolean async,
+                                         Authentication authentication) {
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            User user = userRepository.findById(userPrincipal.getId())
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+
+            Optional<Document> previousOpt = documentRepository.findByIdAndUser(id, user);
+            if (previousOpt.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+
+            if (async) {
+                Document document = documentProcessingService.storeDocument(file, user, previousOpt.get());
+                jobQueue.enqueue(Job.JobType.EXTRACT_TEXT, document.getId(), user.getId(), null);
+                return ResponseEntity.accepted().body(new DocumentResponse(document));
+            }
+
+            Document document = documentProcessingService.processNewVersion(file, user, previousOpt.get());
+            return ResponseEntity.ok(new DocumentResponse(document));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error uploading document version: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint to list a document and its earlier versions
+     *
+     * @GetMapping: HTTP GET request to "/api/documents/{id}/versions"
+     * @param id: ID of the document
+     * @param authentication: User authentication info
+     * @return ResponseEntity: Versions newest first, or 404 if not found
+     */
+    @GetMapping("/{id}/versions")
+    public ResponseEntity<?> getVersions(@PathVariable Long id, Authentication authentication) {
+        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+        User user = userRepository.findById(userPrincipal.getId())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        Optional<Document> documentOpt = documentRepository.findByIdAndUser(id, user);
+        if (documentOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        List<DocumentResponse> versions = documentVersionService.getVersionHistory(documentOpt.get()).stream()
+                .map(DocumentResponse::new)
+                .toList();
+        return ResponseEntity.ok(versions);
+    }
+
+    /**
+     * Endpoint to find the user's earlier uploads that are near-identical to a document
+     *
+     * Matches that already have clauses or a summary can be reused with
+     * POST /api/ai/documents/{id}/reanalyze-from/{baseDocumentId}, which only re-analyzes the differing text.
+     *
+     * @GetMapping: HTTP GET request to "/api/documents/{id}/near-duplicates"
+     * @param id: ID of the document
+     * @param authentication: User authentication info
+     * @return ResponseEntity: Matches, most similar first, or 404 if not found
+     */
+    @GetMapping("/{id}/near-duplicates")
+    public ResponseEntity<?> getNearDuplicates(@PathVariable Long id, Authentication authentication) {
+        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+        User user = userRepository.findById(userPrincipal.getId())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        Optional<Document> documentOpt = documentRepository.findByIdAndUser(id, user);
+        if (documentOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        List<NearDuplicateService.NearDuplicate> found = nearDuplicateService.findNearDuplicates(documentOpt.get());
+        List<Long> ids = found.stream().map(NearDuplicateService.NearDuplicate::documentId).toList();
+        if (ids.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+
+        // Names and analysis state of all matches in three queries, without loading their text
+        Map<Long, Object[]> rows = new HashMap<>();
+        for (Object[] row : documentRepository.findListRows(ids, user.getId())) {
+            rows.put((Long) row[0], row);
+        }
+        Set<Long> analyzed = nearDuplicateService.withAnalysis(ids);
+        List<NearDuplicateResponse> matches = new ArrayList<>();
+        for (NearDuplicateService.NearDuplicate match : found) {
+            Object[] row = rows.get(match.documentId());
+            if (row != null) {
+                matches.add(new NearDuplicateResponse(match.documentId(), (String) row[1],
+                        (java.time.LocalDateTime) row[2], match.similarity(), analyzed.contains(match.documentId())));
+            }
+        }
+        return ResponseEntity.ok(matches);
+    }
+
+    /**
+     * Endpoint to get the section outline of a document
+     *
+     * Built once after text extraction; positions refer to the extracted text, so a section can be
+     * read with GET /api/documents/{id}/text?from={startPosition}&to={endPosition}.
+     *
+     * @GetMapping: HTTP GET request to "/api/documents/{id}/outline"
+     * @param id: ID of the document
+     * @param authentication: User authentication info
+     * @return ResponseEntity: Sections in document order, or 404 if not found or not extracted yet
+     */
+    @GetMapping("/{id}/outline")
+    public ResponseEntity<?> getOutline(@PathVariable Long id, Authentication authentication) {
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            if (!documentRepository.existsByIdAndUserId(id, userPrincipal.getId())) {
+                return ResponseEntity.notFound().build();
+            }
+            Optional<List<OutlineBuilder.Section>> outline = outlineService.get(id);
+            if (outline.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            List<OutlineSectionResponse> sections = new ArrayList<>(outline.get().size());
+            for (int i = 0; i < outline.get().size(); i++) {
+                sections.add(new OutlineSectionResponse(i, outline.get().get(i)));
+            }
+            return ResponseEntity.ok(sections);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error loading outline: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint to read the extracted text of a document, or a slice of it
+     *
+     * The text is served from its UTF-8 text file rather than the database, so the context of a
+     * clause can be fetched by its startPosition/endPosition without downloading the whole text.
+     * Byte Range requests apply to the selected slice; ETags allow conditional requests.
+     *
+     * @GetMapping: HTTP GET request to "/api/documents/{id}/text"
+     * @param id: ID of the document
+     * @param from: First character to return, default 0
+     * @param to: Character after the last one to return, default the end of the text
+     * @param headers: Request headers (Range, If-Range, If-None-Match)
+     * @param authentication: User authentication info
+     * @return ResponseEntity: UTF-8 text, 206 for a byte range, 304 if unchanged, 400 for an invalid
+     *         slice, 416 for an unsatisfiable range, or 404 if not found
+     * @throws IOException if the text file cannot be read, answered with 500
+     */
+    @GetMapping("/{id}/text")
+    public ResponseEntity<StreamingResponseBody> getDocumentText(@PathVariable Long id,
+                                                                 @RequestParam(required = false) Integer from,
+                                                                 @RequestParam(required = false) Integer to,
+                                                                 @RequestHeader HttpHeaders headers,
+                                                                 Authentication authentication) throws IOException {
+        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+        // Checks ownership without loading the document and its text
+        if (!documentRepository.existsByIdAndUserId(id, userPrincipal.getId())) {
+            return ResponseEntity.notFound().build();
+        }
+        Optional<TextStore.TextFile> fileOpt = textStore.open(id);
+        if (fileOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        TextStore.TextFile file = fileOpt.get();
+
+        int start = from != null ? from : 0;
+        int end = to != null ? Math.min(to, file.charLength()) : file.charLength();
+        if (start < 0 || start > end) {
+            return ResponseEntity.badRequest().build();
+        }
+        long sliceStart = textStore.byteOffset(file, start);
+        long sliceLength = textStore.byteOffset(file, end) - sliceStart;
+        String etag = start == 0 && end == file.charLength()
+                ? "\"" + file.contentHash() + "\""
+                : "\"" + file.contentHash() + "-" + start + "-" + end + "\"";
+
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.setContentType(TEXT_UTF8);
+        responseHeaders.setETag(etag);
+        responseHeaders.setCacheControl(CacheControl.noCache().cachePrivate());
+        responseHeaders.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        responseHeaders.set("X-Text-Length", String.valueOf(file.charLength()));
+
+        List<String> ifNoneMatch = headers.getIfNoneMatch();
+        if (ifNoneMatch.contains(etag) || ifNoneMatch.contains("*")) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(responseHeaders).build();
+        }
+
+        long bodyStart = sliceStart;
+        long bodyLength = sliceLength;
+        HttpStatus status = HttpStatus.OK;
+        List<HttpRange> ranges = parseRanges(headers);
+        String ifRange = headers.getFirst(HttpHeaders.IF_RANGE);
+        // Multiple ranges are not supported; the whole slice is a valid answer to them
+        if (ranges.size() == 1 && (ifRange == null || ifRange.equals(etag))) {
+            try {
+                if (sliceLength == 0) {
+                    throw new IllegalArgumentException("Empty slice");
+                }
+                long rangeStart = ranges.get(0).getRangeStart(sliceLength);
+                long rangeEnd = ranges.get(0).getRangeEnd(sliceLength);
+                bodyStart = sliceStart + rangeStart;
+                bodyLength = rangeEnd - rangeStart + 1;
+                status = HttpStatus.PARTIAL_CONTENT;
+                responseHeaders.set(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + rangeStart + "-" + rangeEnd + "/" + sliceLength);
+            } catch (IllegalArgumentException e) {
+                responseHeaders.set(HttpHeaders.CONTENT_RANGE, "bytes */" + sliceLength);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .headers(responseHeaders).build();
+            }
+        }
+
+        long transferStart = bodyStart;
+        long transferLength = bodyLength;
+        responseHeaders.setContentLength(transferLength);
+        return ResponseEntity.status(status)
+                .headers(responseHeaders)
+                .body(out -> textStore.transfer(file, transferStart, transferLength, out));
+    }
+
+    /**
+     * Endpoint to download the original uploaded file
+     *
+     * Range requests (resumed downloads, PDF viewers fetching parts of the file) and conditional
+     * requests on the ETag or Last-Modified are answered by Spring's resource handling.
+     *
+     * @GetMapping: HTTP GET request to "/api/documents/{id}/file"
+     * @param id: ID of the document
+     * @param authentication: User authentication info
+     * @return ResponseEntity: The file, 206 for a byte range, 304 if unchanged, or 404 if not found
+     */
+    @GetMapping("/{id}/file")
+    public ResponseEntity<Resource> downloadFile(@PathVariable Long id, Authentication authentication) {
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            Object[] stored = findStoredFile(id, userPrincipal.getId());
+            if (stored == null) {
+                return ResponseEntity.notFound().build();
+            }
+            Path path = Paths.get((String) stored[0]);
+            String contentType = (String) stored[1];
+            String originalName = (String) stored[2];
+
+            long size = Files.size(path);
+            long lastModified = Files.getLastModifiedTime(path).toMillis();
+            return ResponseEntity.ok()
+                    .contentType(contentType != null ? MediaType.parseMediaType(contentType)
+                            : MediaType.APPLICATION_OCTET_STREAM)
+                    .eTag("\"" + id + "-" + size + "-" + lastModified + "\"")
+                    .lastModified(lastModified)
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename(originalName != null ? originalName : path.getFileName().toString(),
+                                    StandardCharsets.UTF_8)
+                            .build().toString())
+                    .body(new FileSystemResource(path));
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Endpoint to get a PNG preview of a page of a PDF document
+     *
+     * Pages are rendered once and then served from a disk cache. Rendering is limited per
+     * document and overall; when the limit is reached the response is 503 with Retry-After.
+     *
+     * @GetMapping: HTTP GET request to "/api/documents/{id}/pages/{page}.png"
+     * @param id: ID of the document
+     * @param page: Page number, starting at 1
+     * @param headers: Request headers (If-None-Match)
+     * @param authentication: User authentication info
+     * @return ResponseEntity: The page image, 304 if unchanged, 404 if no such page, or 415 if not a PDF
+     * @throws IOException if the PDF cannot be read or rendered, answered with 500
+     */
+    @GetMapping("/{id}/pages/{page}.png")
+    public ResponseEntity<Resource> getPagePreview(@PathVariable Long id,
+                                                   @PathVariable int page,
+                                                   @RequestHeader HttpHeaders headers,
+                                                   Authentication authentication)
+            throws IOException, InterruptedException {
+        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+        Object[] stored = findStoredFile(id, userPrincipal.getId());
+        if (stored == null || page < 1) {
+            return ResponseEntity.notFound().build();
+        }
+        Path path = Paths.get((String) stored[0]);
+        String contentType = (String) stored[1];
+        if (!MediaType.APPLICATION_PDF_VALUE.equals(contentType)
+                && !path.getFileName().toString().toLowerCase().endsWith(".pdf")) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+        }
+        // The original file never changes, so neither does a rendered page; answered before
+        // opening the preview, which may not even be cached any more
+        String etag = "\"" + pagePreviewService.previewName(id, page) + "\"";
+        if (headers.getIfNoneMatch().contains(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        try {
+            Optional<PagePreviewService.Preview> preview = pagePreviewService.page(id, path, page);
+            if (preview.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_PNG)
+                    .contentLength(preview.get().size())
+                    .eTag(etag)
+                    .cacheControl(CacheControl.maxAge(Duration.ofDays(1)).cachePrivate())
+                    .body(new InputStreamResource(preview.get().content()));
+        } catch (PagePreviewService.BusyException | TimeoutException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "2")
+                    .build();
+        } catch (NoSuchFileException | FileNotFoundException e) {
+            // The uploaded PDF is gone
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * [file path, content type, original name] of a user's document, or null if there is none.
+     */
+    private Object[] findStoredFile(Long id, Long userId) {
+        List<Object[]> rows = documentRepository.findStoredFile(id, userId);
+        return rows.isEmpty() || rows.get(0)[0] == null ? null : rows.get(0);
+    }
+
+    /**
+     * Parsed Range header; a malformed header is ignored, as if it were absent.
+     */
+    private static List<HttpRange> parseRanges(HttpHeaders headers) {
+        try {
+            return headers.getRange();
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
     @GetMapping
     public ResponseEntity<Page<DocumentResponse>> getUserDocuments(
             @RequestParam(defaultValue = "0") int page,
@@ -85,6 +505,65 @@ public class DocumentController {
         return ResponseEntity.ok(new DocumentResponse(documentOpt.get()));
     }
 
+    /**
+     * Endpoint to get everything the document page shows in one response: the document, its
+     * latest summary, its clauses (most important first) and its recently answered questions
+     *
+     * The bundle is precomputed and kept up to date as analyses and clauses are written, so this
+     * is a single query; gzip-capable clients get the stored compressed bytes as they are.
+     *
+     * @GetMapping: HTTP GET request to "/api/documents/{id}/bundle"
+     * @param id: ID of the document
+     * @param headers: Request headers (If-None-Match, Accept-Encoding)
+     * @param authentication: User authentication info
+     * @return ResponseEntity: The bundle as JSON, 304 if unchanged, or 404 if not found
+     */
+    @GetMapping("/{id}/bundle")
+    public ResponseEntity<byte[]> getDocumentBundle(@PathVariable Long id,
+                                                    @RequestHeader HttpHeaders headers,
+                                                    Authentication authentication) {
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            String acceptEncoding = headers.getFirst(HttpHeaders.ACCEPT_ENCODING);
+            boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+            List<String> ifNoneMatch = headers.getIfNoneMatch();
+            if (!ifNoneMatch.isEmpty()) {
+                Optional<String> etag = documentBundleService.etag(id, userPrincipal.getId())
+                        .map(stored -> bundleEtag(stored, gzip));
+                if (etag.isPresent() && ifNoneMatch.contains(etag.get())) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                            .eTag(etag.get())
+                            .cacheControl(CacheControl.noCache().cachePrivate())
+                            .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                            .build();
+                }
+            }
+
+            Optional<DocumentBundle> bundleOpt = documentBundleService.get(id, userPrincipal.getId());
+            if (bundleOpt.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            DocumentBundle bundle = bundleOpt.get();
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .eTag(bundleEtag(bundle.getEtag(), gzip))
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING);
+            if (gzip) {
+                return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(bundle.getContent());
+            }
+            return response.body(documentBundleService.json(bundle));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // The gzipped and the plain bundle are different representations, so they need different strong ETags
+    private static String bundleEtag(String etag, boolean gzip) {
+        return gzip ? etag.substring(0, etag.length() - 1) + "-gzip\"" : etag;
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteDocument(@PathVariable Long id, Authentication authentication) {
         try {
@@ -106,6 +585,84 @@ public class DocumentController {
     }
 
     // Inner class for response DTOs
+    public static class NearDuplicateResponse {
+        private Long documentId;
+        private String originalName;
+        private double similarity;          // Estimated share of identical text, 0 to 1
+        private boolean hasAnalysis;        // Has clauses or a summary that can be reused
+        private java.time.LocalDateTime createdAt;
+
+        public NearDuplicateResponse(Long documentId, String originalName, java.time.LocalDateTime createdAt,
+                                     double similarity, boolean hasAnalysis) {
+            this.documentId = documentId;
+            this.originalName = originalName;
+            this.similarity = similarity;
+            this.hasAnalysis = hasAnalysis;
+            this.createdAt = createdAt;
+        }
+
+        public Long getDocumentId() { return documentId; }
+        public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+        public String getOriginalName() { return originalName; }
+        public void setOriginalName(String originalName) { this.originalName = originalName; }
+
+        public double getSimilarity() { return similarity; }
+        public void setSimilarity(double similarity) { this.similarity = similarity; }
+
+        public boolean isHasAnalysis() { return hasAnalysis; }
+        public void setHasAnalysis(boolean hasAnalysis) { this.hasAnalysis = hasAnalysis; }
+
+        public java.time.LocalDateTime getCreatedAt() { return createdAt; }
+        public void setCreatedAt(java.time.LocalDateTime createdAt) { this.createdAt = createdAt; }
+    }
+
+    public static class OutlineSectionResponse {
+        private int index;
+        private Integer parentIndex;        // Null for top-level sections
+        private int level;
+        private String kind;                // ARTICLE, SECTION, HEADING or DEFINITION
+        private String number;
+        private String title;
+        private int startPosition;
+        private int endPosition;
+
+        public OutlineSectionResponse(int index, OutlineBuilder.Section section) {
+            this.index = index;
+            this.parentIndex = section.parent() >= 0 ? section.parent() : null;
+            this.level = section.level();
+            this.kind = section.kind().name();
+            this.number = section.number();
+            this.title = section.title();
+            this.startPosition = section.start();
+            this.endPosition = section.end();
+        }
+
+        public int getIndex() { return index; }
+        public void setIndex(int index) { this.index = index; }
+
+        public Integer getParentIndex() { return parentIndex; }
+        public void setParentIndex(Integer parentIndex) { this.parentIndex = parentIndex; }
+
+        public int getLevel() { return level; }
+        public void setLevel(int level) { this.level = level; }
+
+        public String getKind() { return kind; }
+        public void setKind(String kind) { this.kind = kind; }
+
+        public String getNumber() { return number; }
+        public void setNumber(String number) { this.number = number; }
+
+        public String getTitle() { return title; }
+        public void setTitle(String title) { this.title = title; }
+
+        public int getStartPosition() { return startPosition; }
+        public void setStartPosition(int startPosition) { this.startPosition = startPosition; }
+
+        public int getEndPosition() { return endPosition; }
+        public void setEndPosition(int endPosition) { this.endPosition = endPosition; }
+    }
+
     public static class DocumentResponse {
         private Long id;
         private String fileName;
@@ -117,6 +674,8 @@ public class DocumentController {
         private java.time.LocalDateTime createdAt;
         private java.time.LocalDateTime updatedAt;
         private boolean hasExtractedText;
+        private int versionNumber;
+        private Long previousVersionId;
 
         public DocumentResponse(Document document) {
             this.id = document.getId();
@@ -129,6 +688,8 @@ public class DocumentController {
             this.createdAt = document.getCreatedAt();
             this.updatedAt = document.getUpdatedAt();
             this.hasExtractedText = document.getExtractedText() != null && !document.getExtractedText().trim().isEmpty();
+            this.versionNumber = document.getVersionNumber();
+            this.previousVersionId = document.getPreviousVersion() != null ? document.getPreviousVersion().getId() : null;
         }
 
         // Getters and Setters
@@ -161,5 +722,11 @@ public class DocumentController {
 
         public boolean isHasExtractedText() { return hasExtractedText; }
         public void setHasExtractedText(boolean hasExtractedText) { this.hasExtractedText = hasExtractedText; }
+
+        public int getVersionNumber() { return versionNumber; }
+        public void setVersionNumber(int versionNumber) { this.versionNumber = versionNumber; }
+
+        public Long getPreviousVersionId() { return previousVersionId; }
+        public void setPreviousVersionId(Long previousVersionId) { this.previousVersionId = previousVersionId; }
     }
 }
@@ -0,0 +1,113 @@
+package com.kimi.legaleraseai.controller;
+
+import com.kimi.legaleraseai.dto.MessageResponse;
+import com.kimi.legaleraseai.security.UserPrincipal;
+import com.kimi.legaleraseai.service.ExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * REST Controller for exporting all of a user's analyses and clauses, e.g. for audits
+ *
+ * The export is streamed page by page from the database into the response, so it starts right
+ * away and its size is not limited by server memory. Only this endpoint gets the long
+ * {@code app.export.request-timeout-minutes}; other async requests keep the container default.
+ */
+@RestController
+@RequestMapping("/api/export")
+public class ExportController {
+
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+    private static final MediaType APPLICATION_GZIP = new MediaType("application", "gzip");
+
+    @Autowired
+    private ExportService exportService;
+
+    @Value("${app.export.request-timeout-minutes:30}")
+    private long requestTimeoutMinutes;
+
+    /**
+     * Endpoint to export the user's analyses and clauses
+     *
+     * @GetMapping: HTTP GET request to "/api/export"
+     * @param format: "ndjson" (one JSON object per line) or "csv"
+     * @param include: Records to export, "analyses" and/or "clauses"
+     * @param gzip: Whether to gzip the export, served as a .gz file
+     * @param authentication: User authentication info
+     * @return ResponseEntity: The export as a download, or 400 with a message for an unknown format or record kind
+     */
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+                                                        @RequestParam(defaultValue = "analyses,clauses") List<String> include,
+                                                        @RequestParam(defaultValue = "false") boolean gzip,
+                                                        WebRequest request,
+                                                        Authentication authentication) {
+        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+        ExportService.Format exportFormat = switch (format.toLowerCase()) {
+            case "ndjson" -> ExportService.Format.NDJSON;
+            case "csv" -> ExportService.Format.CSV;
+            default -> throw new IllegalArgumentException("Unknown format: " + format);
+        };
+        boolean analyses = false;
+        boolean clauses = false;
+        for (String kind : include) {
+            switch (kind.trim().toLowerCase()) {
+                case "analyses" -> analyses = true;
+                case "clauses" -> clauses = true;
+                default -> throw new IllegalArgumentException("Unknown record kind: " + kind);
+            }
+        }
+
+        String fileName = "legaleraseai-export-" + LocalDate.now() + "." + format.toLowerCase()
+                + (gzip ? ".gz" : "");
+        HttpHeaders headers = new HttpHeaders();
+        if (gzip) {
+            headers.setContentType(APPLICATION_GZIP);
+        } else {
+            headers.setContentType(exportFormat == ExportService.Format.CSV ? TEXT_CSV : MediaType.APPLICATION_NDJSON);
+        }
+        headers.setCacheControl(CacheControl.noStore());
+        headers.setContentDisposition(ContentDisposition.attachment().filename(fileName).build());
+
+        // Applied just before the response body is handed to the async executor
+        long timeout = Duration.ofMinutes(requestTimeoutMinutes).toMillis();
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(ExportController.class,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest asyncRequest, Callable<T> task) {
+                        ((AsyncWebRequest) asyncRequest).setTimeout(timeout);
+                    }
+                });
+
+        Long userId = userPrincipal.getId();
+        boolean exportAnalyses = analyses;
+        boolean exportClauses = clauses;
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(out -> exportService.export(userId, exportFormat, exportAnalyses, exportClauses, gzip, out));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<MessageResponse> invalidRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(new MessageResponse("Error exporting: " + e.getMessage()));
+    }
+}
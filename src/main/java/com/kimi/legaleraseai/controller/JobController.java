@@ -0,0 +1,179 @@
+package com.kimi.legaleraseai.controller;
+
+import com.kimi.legaleraseai.dto.MessageResponse;
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.Job;
+import com.kimi.legaleraseai.entity.User;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import com.kimi.legaleraseai.repository.JobRepository;
+import com.kimi.legaleraseai.repository.UserRepository;
+import com.kimi.legaleraseai.security.UserPrincipal;
+import com.kimi.legaleraseai.service.JobQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * REST Controller for queued background work
+ *
+ * Jobs are stored in the database and executed by worker instances, so long-running
+ * extraction and AI operations survive restarts and scale with the number of workers.
+ * Clients submit a job, then poll its status and read the resulting analysis.
+ */
+@RestController
+@RequestMapping("/api/jobs")
+public class JobController {
+
+    @Autowired
+    private JobQueue jobQueue;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Endpoint to queue an operation on a document
+     *
+     * @PostMapping: HTTP POST request to "/api/jobs"
+     * @param request: Job type, document and optional payload (the question for ANSWER_QUESTION)
+     * @param authentication: User authentication info
+     * @return ResponseEntity: The queued job or error message
+     */
+    @PostMapping
+    public ResponseEntity<?> submitJob(@RequestBody JobRequest request,
+                                     Authentication authentication) {
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            User user = userRepository.findById(userPrincipal.getId())
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+
+            Job.JobType jobType = Job.JobType.valueOf(request.getJobType());
+            // Pre-analysis is queued on upload, within the user's daily limit
+            if (jobType == Job.JobType.PRE_ANALYZE) {
+                return ResponseEntity.badRequest().body(new MessageResponse("Unsupported job type"));
+            }
+            if (jobType == Job.JobType.ANSWER_QUESTION
+                    && (request.getPayload() == null || request.getPayload().isBlank())) {
+                return ResponseEntity.badRequest().body(new MessageResponse("A question is required"));
+            }
+
+            // Users can only queue work on their own documents
+            Optional<Document> document = documentRepository.findByIdAndUser(request.getDocumentId(), user);
+            if (document.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+
+            Job job = jobQueue.enqueue(jobType, request.getDocumentId(), user.getId(), request.getPayload());
+            return ResponseEntity.accepted().body(new JobResponse(job));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error submitting job: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint to check the status of a job
+     *
+     * @GetMapping: HTTP GET request to "/api/jobs/{jobId}"
+     * @param jobId: ID of the job
+     * @param authentication: User authentication info
+     * @return ResponseEntity: Job status or 404 if not found
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<?> getJob(@PathVariable Long jobId,
+                                  Authentication authentication) {
+        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+        Optional<Job> job = jobRepository.findById(jobId)
+                .filter(found -> found.getUserId().equals(userPrincipal.getId()));
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new JobResponse(job.get()));
+    }
+
+    /**
+     * Request DTO for submitting a job
+     */
+    public static class JobRequest {
+        private String jobType;     // EXTRACT_TEXT, INDEX_DOCUMENT, SUMMARIZE, EXTRACT_CLAUSES or ANSWER_QUESTION
+        private Long documentId;    // Document to work on
+        private String payload;     // Question text for ANSWER_QUESTION
+
+        public String getJobType() { return jobType; }
+        public void setJobType(String jobType) { this.jobType = jobType; }
+
+        public Long getDocumentId() { return documentId; }
+        public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+        public String getPayload() { return payload; }
+        public void setPayload(String payload) { this.payload = payload; }
+    }
+
+    /**
+     * Response DTO for a job
+     */
+    public static class JobResponse {
+        private Long id;
+        private String jobType;
+        private String status;
+        private Long documentId;
+        private int attempts;
+        private String lastError;
+        private Long resultAnalysisId;      // Analysis produced by SUMMARIZE or ANSWER_QUESTION
+        private LocalDateTime runAt;        // Earliest time of the next attempt while QUEUED
+        private LocalDateTime createdAt;
+        private LocalDateTime updatedAt;
+
+        public JobResponse(Job job) {
+            this.id = job.getId();
+            this.jobType = job.getJobType().name();
+            this.status = job.getStatus().name();
+            this.documentId = job.getDocumentId();
+            this.attempts = job.getAttempts();
+            this.lastError = job.getLastError();
+            this.resultAnalysisId = job.getResultAnalysisId();
+            this.runAt = job.getRunAt();
+            this.createdAt = job.getCreatedAt();
+            this.updatedAt = job.getUpdatedAt();
+        }
+
+        public Long getId() { return id; }
+        public void setId(Long id) { this.id = id; }
+
+        public String getJobType() { return jobType; }
+        public void setJobType(String jobType) { this.jobType = jobType; }
+
+        public String getStatus() { return status; }
+        public void setStatus(String status) { this.status = status; }
+
+        public Long getDocumentId() { return documentId; }
+        public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+        public int getAttempts() { return attempts; }
+        public void setAttempts(int attempts) { this.attempts = attempts; }
+
+        public String getLastError() { return lastError; }
+        public void setLastError(String lastError) { this.lastError = lastError; }
+
+        public Long getResultAnalysisId() { return resultAnalysisId; }
+        public void setResultAnalysisId(Long resultAnalysisId) { this.resultAnalysisId = resultAnalysisId; }
+
+        public LocalDateTime getRunAt() { return runAt; }
+        public void setRunAt(LocalDateTime runAt) { this.runAt = runAt; }
+
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+        public LocalDateTime getUpdatedAt() { return updatedAt; }
+        public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+    }
+}
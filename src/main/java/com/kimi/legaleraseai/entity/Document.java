@@ -40,6 +40,10 @@ public class Document {
     @Column(name = "extracted_text")
     private String extractedText;
 
+    // MinHash signature of the extracted text, for near-duplicate lookups
+    @Column(name = "minhash_signature")
+    private byte[] minhashSignature;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "processing_status")
     private ProcessingStatus processingStatus = ProcessingStatus.PENDING;
@@ -60,6 +64,14 @@ public class Document {
     @NotNull
     private User user;
 
+    // Earlier version of the same contract, when this document was uploaded as an amendment
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "previous_version_id")
+    private Document previousVersion;
+
+    @Column(name = "version_number")
+    private Integer versionNumber = 1;
+
     @OneToMany(mappedBy = "document", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Set<DocumentAnalysis> analyses = new HashSet<>();
 
@@ -133,6 +145,14 @@ public class Document {
         this.extractedText = extractedText;
     }
 
+    public byte[] getMinhashSignature() {
+        return minhashSignature;
+    }
+
+    public void setMinhashSignature(byte[] minhashSignature) {
+        this.minhashSignature = minhashSignature;
+    }
+
     public ProcessingStatus getProcessingStatus() {
         return processingStatus;
     }
@@ -173,6 +193,23 @@ public class Document {
         this.user = user;
     }
 
+    public Document getPreviousVersion() {
+        return previousVersion;
+    }
+
+    public void setPreviousVersion(Document previousVersion) {
+        this.previousVersion = previousVersion;
+    }
+
+    public Integer getVersionNumber() {
+        // Documents stored before versioning have no number
+        return versionNumber != null ? versionNumber : 1;
+    }
+
+    public void setVersionNumber(Integer versionNumber) {
+        this.versionNumber = versionNumber;
+    }
+
     public Set<DocumentAnalysis> getAnalyses() {
         return analyses;
     }
@@ -11,6 +11,9 @@ import java.time.LocalDateTime;
 @Table(name = "document_analyses")
 @EntityListeners(AuditingEntityListener.class)
 public class DocumentAnalysis {
+    // Characters of the result kept in result_preview
+    public static final int PREVIEW_LENGTH = 300;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -26,6 +29,14 @@ public class DocumentAnalysis {
     @Column(name = "prompt")
     private String prompt;
 
+    // Start of the result with whitespace collapsed, ending in an ellipsis if cut, so analysis
+    // listings never need to read the result itself
+    @Column(name = "result_preview", length = PREVIEW_LENGTH + 1)
+    private String resultPreview;
+
+    @Column(name = "result_length")
+    private Integer resultLength;
+
     @Column(name = "confidence_score")
     private Double confidenceScore;
 
@@ -36,6 +47,9 @@ public class DocumentAnalysis {
     @Column(name = "error_message")
     private String errorMessage;
 
+    @Column(name = "session_id", length = 36)
+    private String sessionId;
+
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -49,8 +63,8 @@ public class DocumentAnalysis {
 
     public DocumentAnalysis(AnalysisType analysisType, String result, Document document) {
         this.analysisType = analysisType;
-        this.result = result;
         this.document = document;
+        updateResult(result);
         this.status = AnalysisStatus.COMPLETED;
     }
 
@@ -76,7 +90,29 @@ public class DocumentAnalysis {
     }
 
     public void setResult(String result) {
+        updateResult(result);
+    }
+
+    private void updateResult(String result) {
         this.result = result;
+        this.resultPreview = preview(result);
+        this.resultLength = result != null ? result.length() : null;
+    }
+
+    public String getResultPreview() {
+        return resultPreview;
+    }
+
+    public void setResultPreview(String resultPreview) {
+        this.resultPreview = resultPreview;
+    }
+
+    public Integer getResultLength() {
+        return resultLength;
+    }
+
+    public void setResultLength(Integer resultLength) {
+        this.resultLength = resultLength;
     }
 
     public String getPrompt() {
@@ -111,6 +147,14 @@ public class DocumentAnalysis {
         this.errorMessage = errorMessage;
     }
 
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -127,6 +171,45 @@ public class DocumentAnalysis {
         this.document = document;
     }
 
+    /**
+     * The first PREVIEW_LENGTH characters of a result with runs of whitespace (e.g. the line breaks
+     * of a Markdown summary) collapsed to one space, followed by an ellipsis if the result is longer.
+     */
+    public static String preview(String result) {
+        if (result == null) {
+            return null;
+        }
+        StringBuilder preview = new StringBuilder(Math.min(result.length(), PREVIEW_LENGTH + 1));
+        boolean space = false;
+        int i = 0;
+        for (; i < result.length() && preview.length() < PREVIEW_LENGTH; i++) {
+            char c = result.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = !preview.isEmpty();
+            } else if (space && preview.length() == PREVIEW_LENGTH - 1) {
+                break;
+            } else {
+                if (space) {
+                    preview.append(' ');
+                    space = false;
+                }
+                preview.append(c);
+            }
+        }
+        // Never end on half of a surrogate pair
+        if (!preview.isEmpty() && Character.isHighSurrogate(preview.charAt(preview.length() - 1))) {
+            preview.setLength(preview.length() - 1);
+            i--;
+        }
+        while (i < result.length() && Character.isWhitespace(result.charAt(i))) {
+            i++;
+        }
+        if (i < result.length()) {
+            preview.append('\u2026');
+        }
+        return preview.toString();
+    }
+
     public enum AnalysisType {
         SUMMARY, QUESTION_ANSWER, TEMPLATE_GENERATION, RISK_ANALYSIS, COMPLIANCE_CHECK
     }
@@ -0,0 +1,121 @@
+package com.kimi.legaleraseai.entity;
+
+import jakarta.persistence.*;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * Everything the document detail page shows, as one gzipped JSON document: the document's
+ * metadata, its latest summary, its clauses and its recent questions (see DocumentBundleService).
+ *
+ * Keyed by the document id like DocumentOutline, with the owner's id copied in so a bundle can be
+ * looked up and access-checked in a single query.
+ */
+@Entity
+@Table(name = "document_bundles")
+@EntityListeners(AuditingEntityListener.class)
+public class DocumentBundle {
+    @Id
+    @Column(name = "document_id")
+    private Long documentId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // Layout of the JSON; bundles written in an older layout are rebuilt when read
+    @Column(name = "format", nullable = false)
+    private Integer format;
+
+    // Incremented on every change of the content
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @Column(name = "etag", nullable = false, length = 64)
+    private String etag;
+
+    @Column(name = "content", nullable = false)
+    private byte[] content;
+
+    // Length of the uncompressed JSON in bytes
+    @Column(name = "json_length", nullable = false)
+    private Integer jsonLength;
+
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public DocumentBundle() {}
+
+    public DocumentBundle(Long documentId, Long userId) {
+        this.documentId = documentId;
+        this.userId = userId;
+        this.version = 0L;
+    }
+
+    // Getters and Setters
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Integer getFormat() {
+        return format;
+    }
+
+    public void setFormat(Integer format) {
+        this.format = format;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public void setContent(byte[] content) {
+        this.content = content;
+    }
+
+    public Integer getJsonLength() {
+        return jsonLength;
+    }
+
+    public void setJsonLength(Integer jsonLength) {
+        this.jsonLength = jsonLength;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
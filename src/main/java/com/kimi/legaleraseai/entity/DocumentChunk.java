@@ -0,0 +1,158 @@
+package com.kimi.legaleraseai.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * A passage of a document's extracted text, cut once after extraction along section and page
+ * boundaries (see ChunkStore) and shared by the AI operations that work on parts of a document.
+ */
+@Entity
+@Table(name = "document_chunks", indexes = {
+        @Index(name = "idx_document_chunks_document", columnList = "document_id, chunk_index"),
+        @Index(name = "idx_document_chunks_hash", columnList = "content_hash")
+})
+public class DocumentChunk {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Not mapped as a relation, like DocumentOutline; chunks are deleted in bulk with their document
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(name = "chunk_index", nullable = false)
+    private Integer chunkIndex;
+
+    @Column(name = "start_position", nullable = false)
+    private Integer startPosition;
+
+    @Column(name = "end_position", nullable = false)
+    private Integer endPosition;
+
+    // 1-based, from the page breaks in the extracted text
+    @Column(name = "page_number")
+    private Integer pageNumber;
+
+    // Outline path of the section the chunk starts in, e.g. "Article IV Confidentiality > 4.2 Exceptions"
+    @Column(name = "section_path", length = 500)
+    private String sectionPath;
+
+    // Estimated tokens of the compressed text, as sent in prompts
+    @Column(name = "token_estimate", nullable = false)
+    private Integer tokenEstimate;
+
+    // Hash of the compressed text; equal for unchanged passages across versions and uploads
+    @Column(name = "content_hash", nullable = false, length = 32)
+    private String contentHash;
+
+    @Lob
+    @Column(name = "text", nullable = false)
+    private String text;
+
+    // Partial summary of the chunk group starting here, valid while the group's key is summaryKey
+    @Lob
+    @Column(name = "summary")
+    private String summary;
+
+    @Column(name = "summary_key", length = 32)
+    private String summaryKey;
+
+    public DocumentChunk() {}
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public Integer getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public void setChunkIndex(Integer chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+
+    public Integer getStartPosition() {
+        return startPosition;
+    }
+
+    public void setStartPosition(Integer startPosition) {
+        this.startPosition = startPosition;
+    }
+
+    public Integer getEndPosition() {
+        return endPosition;
+    }
+
+    public void setEndPosition(Integer endPosition) {
+        this.endPosition = endPosition;
+    }
+
+    public Integer getPageNumber() {
+        return pageNumber;
+    }
+
+    public void setPageNumber(Integer pageNumber) {
+        this.pageNumber = pageNumber;
+    }
+
+    public String getSectionPath() {
+        return sectionPath;
+    }
+
+    public void setSectionPath(String sectionPath) {
+        this.sectionPath = sectionPath;
+    }
+
+    public Integer getTokenEstimate() {
+        return tokenEstimate;
+    }
+
+    public void setTokenEstimate(Integer tokenEstimate) {
+        this.tokenEstimate = tokenEstimate;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public String getSummaryKey() {
+        return summaryKey;
+    }
+
+    public void setSummaryKey(String summaryKey) {
+        this.summaryKey = summaryKey;
+    }
+}
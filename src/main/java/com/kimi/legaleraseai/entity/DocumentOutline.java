@@ -0,0 +1,75 @@
+package com.kimi.legaleraseai.entity;
+
+import jakarta.persistence.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * Section tree of a document's extracted text (see OutlineBuilder), built once after extraction.
+ *
+ * Keyed by the document id rather than mapped as a relation, so loading a document never loads
+ * its outline and the outline can be read without the document's text.
+ */
+@Entity
+@Table(name = "document_outlines")
+@EntityListeners(AuditingEntityListener.class)
+public class DocumentOutline {
+    @Id
+    @Column(name = "document_id")
+    private Long documentId;
+
+    // JSON array of the sections in document order, each with its parent's index and text offsets
+    @Lob
+    @Column(name = "sections", nullable = false)
+    private String sections;
+
+    @Column(name = "section_count", nullable = false)
+    private Integer sectionCount;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    public DocumentOutline() {}
+
+    public DocumentOutline(Long documentId, String sections, int sectionCount) {
+        this.documentId = documentId;
+        this.sections = sections;
+        this.sectionCount = sectionCount;
+    }
+
+    // Getters and Setters
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public String getSections() {
+        return sections;
+    }
+
+    public void setSections(String sections) {
+        this.sections = sections;
+    }
+
+    public Integer getSectionCount() {
+        return sectionCount;
+    }
+
+    public void setSectionCount(Integer sectionCount) {
+        this.sectionCount = sectionCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
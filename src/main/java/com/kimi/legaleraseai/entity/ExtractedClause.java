@@ -1,5 +1,6 @@
 package com.kimi.legaleraseai.entity;
 
+import com.kimi.legaleraseai.util.TextVectors;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.annotation.CreatedDate;
@@ -28,6 +29,11 @@ public class ExtractedClause {
     @Column(name = "end_position")
     private Integer endPosition;
 
+    // Set once anchoring has run, so clauses that cannot be placed are not tried again; null for older clauses
+    @Column(name = "anchoring_attempted")
+    private Boolean anchoringAttempted;
+
+    // 0.9 and above: labelled by the local ClausePreClassifier; 0.8 or 0.6: parsed from model output
     @Column(name = "confidence_score")
     private Double confidenceScore;
 
@@ -39,6 +45,10 @@ public class ExtractedClause {
     @Column(name = "plain_english_explanation")
     private String plainEnglishExplanation;
 
+    // Hashed word vector of the clause text for similarity search (see TextVectors)
+    @Column(name = "similarity_vector")
+    private byte[] similarityVector;
+
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -97,6 +107,14 @@ public class ExtractedClause {
         this.endPosition = endPosition;
     }
 
+    public Boolean getAnchoringAttempted() {
+        return anchoringAttempted;
+    }
+
+    public void setAnchoringAttempted(Boolean anchoringAttempted) {
+        this.anchoringAttempted = anchoringAttempted;
+    }
+
     public Double getConfidenceScore() {
         return confidenceScore;
     }
@@ -121,6 +139,14 @@ public class ExtractedClause {
         this.plainEnglishExplanation = plainEnglishExplanation;
     }
 
+    public byte[] getSimilarityVector() {
+        return similarityVector;
+    }
+
+    public void setSimilarityVector(byte[] similarityVector) {
+        this.similarityVector = similarityVector;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -137,6 +163,13 @@ public class ExtractedClause {
         this.document = document;
     }
 
+    @PrePersist
+    void computeSimilarityVector() {
+        if (similarityVector == null) {
+            similarityVector = TextVectors.vectorize(clauseText);
+        }
+    }
+
     public enum ImportanceLevel {
         LOW, MEDIUM, HIGH, CRITICAL
     }
@@ -0,0 +1,223 @@
+package com.kimi.legaleraseai.entity;
+
+import jakarta.persistence.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "jobs", indexes = {
+        @Index(name = "idx_jobs_status_run_at", columnList = "status, run_at")
+})
+@EntityListeners(AuditingEntityListener.class)
+public class Job {
+    // Background work that should only use workers nobody else is waiting for
+    public static final int LOW_PRIORITY = -1;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "job_type", nullable = false)
+    private JobType jobType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private JobStatus status = JobStatus.QUEUED;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // Job input, e.g. the question for ANSWER_QUESTION
+    @Column(name = "payload", columnDefinition = "TEXT")
+    private String payload;
+
+    // Due jobs are leased highest priority first; 0 unless enqueued otherwise
+    @Column(name = "priority", nullable = false, columnDefinition = "integer default 0")
+    private int priority;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "max_attempts", nullable = false)
+    private int maxAttempts;
+
+    // Earliest time the job may be leased; pushed back after a failed attempt
+    @Column(name = "run_at", nullable = false)
+    private LocalDateTime runAt;
+
+    @Column(name = "locked_by")
+    private String lockedBy;
+
+    // Visibility timeout: once passed, another worker may lease the job again
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "result_analysis_id")
+    private Long resultAnalysisId;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public Job() {}
+
+    public Job(JobType jobType, Long documentId, Long userId, String payload, int maxAttempts) {
+        this.jobType = jobType;
+        this.documentId = documentId;
+        this.userId = userId;
+        this.payload = payload;
+        this.maxAttempts = maxAttempts;
+        this.runAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public JobType getJobType() {
+        return jobType;
+    }
+
+    public void setJobType(JobType jobType) {
+        this.jobType = jobType;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(JobStatus status) {
+        this.status = status;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public LocalDateTime getRunAt() {
+        return runAt;
+    }
+
+    public void setRunAt(LocalDateTime runAt) {
+        this.runAt = runAt;
+    }
+
+    public String getLockedBy() {
+        return lockedBy;
+    }
+
+    public void setLockedBy(String lockedBy) {
+        this.lockedBy = lockedBy;
+    }
+
+    public LocalDateTime getLockedUntil() {
+        return lockedUntil;
+    }
+
+    public void setLockedUntil(LocalDateTime lockedUntil) {
+        this.lockedUntil = lockedUntil;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public Long getResultAnalysisId() {
+        return resultAnalysisId;
+    }
+
+    public void setResultAnalysisId(Long resultAnalysisId) {
+        this.resultAnalysisId = resultAnalysisId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public enum JobType {
+        EXTRACT_TEXT, INDEX_DOCUMENT, SUMMARIZE, EXTRACT_CLAUSES, ANSWER_QUESTION, PRE_ANALYZE
+    }
+
+    public enum JobStatus {
+        QUEUED, RUNNING, SUCCEEDED, DEAD
+    }
+}
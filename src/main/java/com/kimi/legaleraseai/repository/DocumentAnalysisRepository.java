@@ -2,9 +2,15 @@ package com.kimi.legaleraseai.repository;
 
 import com.kimi.legaleraseai.entity.Document;
 import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,4 +23,63 @@ public interface DocumentAnalysisRepository extends JpaRepository<DocumentAnalys
     
     List<DocumentAnalysis> findByDocumentAndAnalysisTypeOrderByCreatedAtDesc(Document document, 
                                                                             DocumentAnalysis.AnalysisType analysisType);
+
+    List<DocumentAnalysis> findBySessionIdOrderByCreatedAtAsc(String sessionId);
+
+    boolean existsByDocumentAndAnalysisTypeAndStatus(Document document, DocumentAnalysis.AnalysisType analysisType,
+                                                     DocumentAnalysis.AnalysisStatus status);
+
+    @Query("SELECT DISTINCT a.document.id FROM DocumentAnalysis a WHERE a.document.id IN :documentIds " +
+           "AND a.analysisType = :type AND a.status = :status")
+    List<Long> findDocumentIdsWithAnalysis(@Param("documentIds") Collection<Long> documentIds,
+                                           @Param("type") DocumentAnalysis.AnalysisType type,
+                                           @Param("status") DocumentAnalysis.AnalysisStatus status);
+
+    // Access check and load in one query
+    Optional<DocumentAnalysis> findByIdAndDocumentUserId(Long id, Long userId);
+
+    // Rows of [id, type, result preview, result length, confidence, status, error message, session id, created at]
+    // of a document's analyses, newest first; reads neither the result nor the prompt
+    @Query("SELECT a.id, a.analysisType, a.resultPreview, a.resultLength, a.confidenceScore, a.status, " +
+           "a.errorMessage, a.sessionId, a.createdAt FROM DocumentAnalysis a " +
+           "WHERE a.document.id = :documentId ORDER BY a.createdAt DESC, a.id DESC")
+    List<Object[]> findListRowsByDocumentId(@Param("documentId") Long documentId);
+
+    // Rows of [id, result], for filling in previews of analyses saved before previews were stored
+    @Query("SELECT a.id, a.result FROM DocumentAnalysis a WHERE a.id IN :ids")
+    List<Object[]> findResultsByIds(@Param("ids") Collection<Long> ids);
+
+    // Bulk update, so filling in a preview does not count as a change of the analysis
+    @Transactional
+    @Modifying
+    @Query("UPDATE DocumentAnalysis a SET a.resultPreview = :preview, a.resultLength = :length WHERE a.id = :id")
+    int updatePreview(@Param("id") Long id, @Param("preview") String preview, @Param("length") Integer length);
+
+    // Rows of [id, type, result, confidence, status, error message, session id, created at] of a document's
+    // analyses of one type and status, newest first; without the prompt, which for summaries is the whole text
+    @Query("SELECT a.id, a.analysisType, a.result, a.confidenceScore, a.status, a.errorMessage, a.sessionId, " +
+           "a.createdAt FROM DocumentAnalysis a WHERE a.document.id = :documentId AND a.analysisType = :type " +
+           "AND a.status = :status ORDER BY a.createdAt DESC, a.id DESC")
+    List<Object[]> findResultRows(@Param("documentId") Long documentId,
+                                  @Param("type") DocumentAnalysis.AnalysisType type,
+                                  @Param("status") DocumentAnalysis.AnalysisStatus status,
+                                  Pageable pageable);
+
+    // Rows of [id, result, confidence, session id, created at, question] of a document's answered questions,
+    // newest first
+    @Query("SELECT a.id, a.result, a.confidenceScore, a.sessionId, a.createdAt, a.prompt FROM DocumentAnalysis a " +
+           "WHERE a.document.id = :documentId AND a.analysisType = :type AND a.status = :status " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<Object[]> findAnswerRows(@Param("documentId") Long documentId,
+                                  @Param("type") DocumentAnalysis.AnalysisType type,
+                                  @Param("status") DocumentAnalysis.AnalysisStatus status,
+                                  Pageable pageable);
+
+    // Rows of [id, document id, document name, type, status, confidence, created at, result, error message]
+    // of a user's analyses with ids after afterId, in id order; one page of an export
+    @Query("SELECT a.id, d.id, d.originalName, a.analysisType, a.status, a.confidenceScore, a.createdAt, " +
+           "a.result, a.errorMessage FROM DocumentAnalysis a JOIN a.document d " +
+           "WHERE d.user.id = :userId AND a.id > :afterId ORDER BY a.id")
+    List<Object[]> findExportRowsByUserIdAfter(@Param("userId") Long userId, @Param("afterId") Long afterId,
+                                              Pageable pageable);
 }
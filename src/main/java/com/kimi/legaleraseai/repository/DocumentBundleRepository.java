@@ -0,0 +1,34 @@
+package com.kimi.legaleraseai.repository;
+
+import com.kimi.legaleraseai.entity.DocumentBundle;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface DocumentBundleRepository extends JpaRepository<DocumentBundle, Long> {
+    Optional<DocumentBundle> findByDocumentIdAndUserId(Long documentId, Long userId);
+
+    // Just the ETag, for answering conditional requests without reading the content
+    @Query("SELECT b.etag FROM DocumentBundle b " +
+           "WHERE b.documentId = :documentId AND b.userId = :userId AND b.format = :format")
+    Optional<String> findEtag(@Param("documentId") Long documentId, @Param("userId") Long userId,
+                              @Param("format") Integer format);
+
+    // Locks the row so concurrent updates of different parts of one bundle do not overwrite each other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM DocumentBundle b WHERE b.documentId = :documentId")
+    Optional<DocumentBundle> findForUpdate(@Param("documentId") Long documentId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM DocumentBundle b WHERE b.documentId = :documentId")
+    int deleteByDocumentId(@Param("documentId") Long documentId);
+}
@@ -0,0 +1,38 @@
+package com.kimi.legaleraseai.repository;
+
+import com.kimi.legaleraseai.entity.DocumentChunk;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.stream.Stream;
+
+/**
+ * Chunks are read through cursors (streams with a fetch size), so a long document's chunks are
+ * never all materialized by the driver at once. Streams must be consumed inside a transaction.
+ */
+@Repository
+public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, Long> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "50"))
+    Stream<DocumentChunk> streamByDocumentIdOrderByChunkIndex(Long documentId);
+
+    // Rows of [content hash, summary key, summary] of a document's chunks that carry a partial summary
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "50"))
+    @Query("SELECT c.contentHash, c.summaryKey, c.summary FROM DocumentChunk c " +
+           "WHERE c.documentId = :documentId AND c.summary IS NOT NULL")
+    Stream<Object[]> streamSummaries(@Param("documentId") Long documentId);
+
+    boolean existsByDocumentId(Long documentId);
+
+    // Bulk delete; chunks have no listeners that need to see each removal
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM DocumentChunk c WHERE c.documentId = :documentId")
+    int deleteByDocumentId(@Param("documentId") Long documentId);
+}
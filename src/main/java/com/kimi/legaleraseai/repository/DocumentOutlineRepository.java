@@ -0,0 +1,9 @@
+package com.kimi.legaleraseai.repository;
+
+import com.kimi.legaleraseai.entity.DocumentOutline;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DocumentOutlineRepository extends JpaRepository<DocumentOutline, Long> {
+}
@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,4 +29,42 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
                                           Pageable pageable);
     
     long countByUser(User user);
+
+    List<Document> findByPreviousVersionOrderByCreatedAtDesc(Document previousVersion);
+
+    // Rows of [id, user id, signature], in id order, for rebuilding the near-duplicate index page by page
+    @Query("SELECT d.id, d.user.id, d.minhashSignature FROM Document d " +
+           "WHERE d.minhashSignature IS NOT NULL AND d.id > :afterId ORDER BY d.id")
+    List<Object[]> findSignaturesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Rows of [id, original name] without loading the extracted text
+    @Query("SELECT d.id, d.originalName FROM Document d WHERE d.id IN :ids")
+    List<Object[]> findNamesByIds(@Param("ids") Collection<Long> ids);
+
+    // Rows of [id, original name, created at] of a user's documents, without loading the extracted text
+    @Query("SELECT d.id, d.originalName, d.createdAt FROM Document d WHERE d.id IN :ids AND d.user.id = :userId")
+    List<Object[]> findListRows(@Param("ids") Collection<Long> ids, @Param("userId") Long userId);
+
+    // Rows of [id, signature] without loading the extracted text
+    @Query("SELECT d.id, d.minhashSignature FROM Document d WHERE d.id IN :ids AND d.user.id = :userId")
+    List<Object[]> findSignatures(@Param("ids") Collection<Long> ids, @Param("userId") Long userId);
+
+    // Rows of [id, original name, extracted text] of a user's extracted documents, in id order, page by page
+    @Query("SELECT d.id, d.originalName, d.extractedText FROM Document d " +
+           "WHERE d.user.id = :userId AND d.extractedText IS NOT NULL AND d.id > :afterId ORDER BY d.id")
+    List<Object[]> findTextsByUserIdAfter(@Param("userId") Long userId, @Param("afterId") Long afterId,
+                                          Pageable pageable);
+
+    // One row of [count, id sum] of a user's extracted documents, to tell whether a loaded corpus index is current
+    @Query("SELECT COUNT(d), SUM(d.id) FROM Document d WHERE d.user.id = :userId AND d.extractedText IS NOT NULL")
+    List<Object[]> findTextFingerprintByUserId(@Param("userId") Long userId);
+
+    boolean existsByIdAndUserId(Long id, Long userId);
+
+    @Query("SELECT d.extractedText FROM Document d WHERE d.id = :id AND d.extractedText IS NOT NULL")
+    Optional<String> findExtractedTextById(@Param("id") Long id);
+
+    // Rows of [file path, content type, original name] of a user's document, without loading the extracted text
+    @Query("SELECT d.filePath, d.contentType, d.originalName FROM Document d WHERE d.id = :id AND d.user.id = :userId")
+    List<Object[]> findStoredFile(@Param("id") Long id, @Param("userId") Long userId);
 }
@@ -2,9 +2,14 @@ package com.kimi.legaleraseai.repository;
 
 import com.kimi.legaleraseai.entity.Document;
 import com.kimi.legaleraseai.entity.ExtractedClause;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -15,4 +20,42 @@ public interface ExtractedClauseRepository extends JpaRepository<ExtractedClause
     
     List<ExtractedClause> findByDocumentAndImportanceLevelOrderByCreatedAtDesc(Document document, 
                                                                               ExtractedClause.ImportanceLevel importanceLevel);
+
+    boolean existsByDocument(Document document);
+
+    @Query("SELECT DISTINCT c.document.id FROM ExtractedClause c WHERE c.document.id IN :documentIds")
+    List<Long> findDocumentIdsWithClauses(@Param("documentIds") Collection<Long> documentIds);
+
+    // Derived delete removes the entities one by one, so the clause index sees each removal
+    @Transactional
+    long deleteByDocument(Document document);
+
+    // Documents with clauses saved before anchoring ran on every save, in id order, for the one-time backfill
+    @Query("SELECT DISTINCT c.document.id FROM ExtractedClause c " +
+           "WHERE c.anchoringAttempted IS NULL AND c.document.id > :afterId ORDER BY c.document.id")
+    List<Long> findDocumentIdsToAnchorAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    List<ExtractedClause> findByDocumentAndAnchoringAttemptedIsNull(Document document);
+
+    // Rows of [id, document id, clause type, importance, vector] for building a user's clause index
+    @Query("SELECT c.id, c.document.id, c.clauseType, c.importanceLevel, c.similarityVector " +
+           "FROM ExtractedClause c WHERE c.document.user.id = :userId AND c.similarityVector IS NOT NULL")
+    List<Object[]> findIndexRowsByUserId(@Param("userId") Long userId);
+
+    // One row of [count, id sum] of a user's clauses, to tell whether a loaded clause index is current
+    @Query("SELECT COUNT(c), SUM(c.id) FROM ExtractedClause c WHERE c.document.user.id = :userId")
+    List<Object[]> findFingerprintByUserId(@Param("userId") Long userId);
+
+    // Same rows with the clause text instead, for clauses saved before vectors were stored
+    @Query("SELECT c.id, c.document.id, c.clauseType, c.importanceLevel, c.clauseText " +
+           "FROM ExtractedClause c WHERE c.document.user.id = :userId AND c.similarityVector IS NULL")
+    List<Object[]> findUnindexedRowsByUserId(@Param("userId") Long userId);
+
+    // Rows of [id, document id, document name, clause type, importance, confidence, start, end, created at,
+    // clause text, explanation] of a user's clauses with ids after afterId, in id order; one page of an export
+    @Query("SELECT c.id, d.id, d.originalName, c.clauseType, c.importanceLevel, c.confidenceScore, " +
+           "c.startPosition, c.endPosition, c.createdAt, c.clauseText, c.plainEnglishExplanation " +
+           "FROM ExtractedClause c JOIN c.document d WHERE d.user.id = :userId AND c.id > :afterId ORDER BY c.id")
+    List<Object[]> findExportRowsByUserIdAfter(@Param("userId") Long userId, @Param("afterId") Long afterId,
+                                              Pageable pageable);
 }
@@ -0,0 +1,64 @@
+package com.kimi.legaleraseai.repository;
+
+import com.kimi.legaleraseai.entity.Job;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Queue operations on the jobs table. Times are taken from the database clock so
+ * leases behave the same regardless of clock differences between nodes.
+ */
+@Repository
+public interface JobRepository extends JpaRepository<Job, Long> {
+
+    // Due jobs plus running jobs whose lease expired (their worker died or hung);
+    // rows locked by another worker's lease transaction are skipped rather than waited on
+    @Query(value = "SELECT id FROM jobs " +
+            "WHERE (status = 'QUEUED' AND run_at <= now()) " +
+            "   OR (status = 'RUNNING' AND locked_until < now()) " +
+            "ORDER BY priority DESC, run_at " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> findDueIdsForUpdate(@Param("limit") int limit);
+
+    boolean existsByDocumentIdAndJobTypeAndStatusIn(Long documentId, Job.JobType jobType,
+                                                    Collection<Job.JobStatus> statuses);
+
+    long countByUserIdAndJobTypeAndCreatedAtGreaterThanEqual(Long userId, Job.JobType jobType, LocalDateTime since);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query(value = "UPDATE jobs SET status = 'RUNNING', locked_by = :workerId, " +
+            "locked_until = now() + :leaseSeconds * interval '1 second', " +
+            "attempts = attempts + 1, updated_at = now() " +
+            "WHERE id IN (:ids)", nativeQuery = true)
+    int lease(@Param("ids") Collection<Long> ids, @Param("workerId") String workerId,
+              @Param("leaseSeconds") double leaseSeconds);
+
+    @Modifying
+    @Query(value = "UPDATE jobs SET locked_until = now() + :leaseSeconds * interval '1 second' " +
+            "WHERE id IN (:ids) AND locked_by = :workerId AND status = 'RUNNING'", nativeQuery = true)
+    int extendLeases(@Param("ids") Collection<Long> ids, @Param("workerId") String workerId,
+                     @Param("leaseSeconds") double leaseSeconds);
+
+    // Only the worker still holding the lease may finish the job
+    @Modifying
+    @Query(value = "UPDATE jobs SET status = 'SUCCEEDED', locked_by = NULL, locked_until = NULL, " +
+            "result_analysis_id = CAST(:resultAnalysisId AS bigint), last_error = NULL, updated_at = now() " +
+            "WHERE id = :id AND locked_by = :workerId AND status = 'RUNNING'", nativeQuery = true)
+    int markSucceeded(@Param("id") Long id, @Param("workerId") String workerId,
+                      @Param("resultAnalysisId") Long resultAnalysisId);
+
+    @Modifying
+    @Query(value = "UPDATE jobs SET status = :status, run_at = now() + :delaySeconds * interval '1 second', " +
+            "locked_by = NULL, locked_until = NULL, last_error = :error, updated_at = now() " +
+            "WHERE id = :id AND locked_by = :workerId AND status = 'RUNNING'", nativeQuery = true)
+    int markFailed(@Param("id") Long id, @Param("workerId") String workerId, @Param("status") String status,
+                   @Param("delaySeconds") double delaySeconds, @Param("error") String error);
+}
@@ -0,0 +1,310 @@
+package com.kimi.legaleraseai.security;
+
+import com.kimi.legaleraseai.service.IdempotencyStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.Part;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Suppresses duplicate executions of expensive POST endpoints that carry an Idempotency-Key header.
+ *
+ * Runs after authentication so keys are scoped per user. The first request with a key
+ * executes normally and its response is stored; a concurrent duplicate waits for that
+ * execution and a later duplicate gets the stored response, marked with an
+ * Idempotent-Replayed header. Server errors are not stored, so a retry executes again,
+ * and client errors are only kept briefly, since the client may fix what it sent.
+ *
+ * The key is bound to a SHA-256 fingerprint of the method, path, query and body of the
+ * request that first used it; reusing the key for a different request is answered with
+ * 422 Unprocessable Entity. JSON bodies are buffered for this, multipart bodies are read
+ * through their parts, which the container keeps for the controller.
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyFilter.class);
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String IN_PROGRESS_MESSAGE = "A request with this Idempotency-Key is still in progress";
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.idempotency.paths:/api/ai/documents/*/summarize,/api/ai/documents/*/extract-clauses,"
+            + "/api/ai/documents/*/reanalyze,/api/ai/documents/*/reanalyze-from/*,/api/ai/templates/generate,"
+            + "/api/documents/upload,/api/documents/*/versions}")
+    private List<String> paths;
+
+    @Value("${app.idempotency.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    // 4xx responses are replayed to duplicates in flight, but not for long
+    @Value("${app.idempotency.client-error-ttl-seconds:30}")
+    private long clientErrorTtlSeconds;
+
+    @Value("${app.idempotency.wait-timeout-seconds:180}")
+    private long waitTimeoutSeconds;
+
+    @Value("${app.idempotency.max-stored-body-bytes:1048576}")
+    private int maxStoredBodyBytes;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod()) || !StringUtils.hasText(request.getHeader(IDEMPOTENCY_KEY_HEADER))) {
+            return true;
+        }
+        // Streamed responses cannot be buffered and replayed
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept != null && (accept.contains(MediaType.APPLICATION_NDJSON_VALUE)
+                || accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE))) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return paths.stream().noneMatch(pattern -> pathMatcher.match(pattern.trim(), path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), IDEMPOTENCY_KEY_HEADER + " is too long");
+            return;
+        }
+
+        // Unauthenticated requests are rejected further down the chain; nothing to deduplicate
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String key = authentication.getName() + ":" + request.getRequestURI() + ":" + idempotencyKey;
+
+        HttpServletRequest fingerprinted = isMultipart(request) ? request : new CachedBodyRequest(request);
+        String fingerprint = fingerprint(fingerprinted);
+
+        IdempotencyStore.Claim claim = idempotencyStore.claim(key, fingerprint);
+        if (!claim.owner()) {
+            if (claim.mismatch()) {
+                countDuplicate("mismatch");
+                writeError(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                        IDEMPOTENCY_KEY_HEADER + " was already used for a different request");
+                return;
+            }
+            if (replay(claim, response)) {
+                return;
+            }
+            // The first execution failed and released the key; execute this request instead
+            claim = idempotencyStore.claim(key, fingerprint);
+            if (!claim.owner()) {
+                if (claim.mismatch() || !replay(claim, response)) {
+                    writeError(response, HttpStatus.CONFLICT, IN_PROGRESS_MESSAGE);
+                }
+                return;
+            }
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(fingerprinted, wrapper);
+        } catch (IOException | ServletException | RuntimeException e) {
+            idempotencyStore.release(key, e);
+            throw e;
+        }
+
+        int status = wrapper.getStatus();
+        byte[] body = wrapper.getContentAsByteArray();
+        if (status >= 500 || body.length > maxStoredBodyBytes) {
+            idempotencyStore.release(key, new IllegalStateException("Response with status " + status + " is not stored"));
+        } else {
+            Duration ttl = status >= 400 ? Duration.ofSeconds(clientErrorTtlSeconds) : Duration.ofMinutes(ttlMinutes);
+            idempotencyStore.complete(key, new IdempotencyStore.StoredResponse(status, wrapper.getContentType(), body), ttl);
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    /**
+     * Writes the stored response of the first execution, waiting for it if it is still running.
+     *
+     * @return false if the first execution failed and released the key
+     */
+    private boolean replay(IdempotencyStore.Claim claim, HttpServletResponse response) throws IOException {
+        boolean inProgress = !claim.response().isDone();
+        IdempotencyStore.StoredResponse stored;
+        try {
+            stored = claim.response().get(waitTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return false;
+        } catch (TimeoutException e) {
+            countDuplicate("timeout");
+            writeError(response, HttpStatus.CONFLICT, IN_PROGRESS_MESSAGE);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeError(response, HttpStatus.CONFLICT, IN_PROGRESS_MESSAGE);
+            return true;
+        }
+
+        countDuplicate(inProgress ? "waited" : "replayed");
+        logger.debug("Replaying stored response for duplicate request (status {})", stored.status());
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+        return true;
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getOutputStream().write(("{\"message\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean isMultipart(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && contentType.toLowerCase().startsWith("multipart/");
+    }
+
+    private static String fingerprint(HttpServletRequest request) throws IOException, ServletException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(digest, request.getMethod());
+        update(digest, request.getRequestURI());
+        update(digest, request.getQueryString());
+        if (request instanceof CachedBodyRequest cached) {
+            digest.update(cached.body);
+        } else {
+            for (Part part : request.getParts()) {
+                update(digest, part.getName());
+                update(digest, part.getSubmittedFileName());
+                try (InputStream in = part.getInputStream()) {
+                    byte[] buffer = new byte[8192];
+                    for (int n; (n = in.read(buffer)) > 0; ) {
+                        digest.update(buffer, 0, n);
+                    }
+                }
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Each value is terminated, so "ab" + "c" and "a" + "bc" hash differently
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+
+    private void countDuplicate(String outcome) {
+        meterRegistry.counter("http.idempotency.duplicates", "outcome", outcome).increment();
+    }
+
+    /**
+     * Request whose body has been read up front for the fingerprint and is served again from memory.
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException("Asynchronous reads are not supported");
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws UnsupportedEncodingException {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding != null ? encoding : StandardCharsets.UTF_8.name()));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
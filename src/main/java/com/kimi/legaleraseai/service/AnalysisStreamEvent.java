@@ -0,0 +1,22 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+
+/**
+ * Event emitted while an analysis is being streamed from the model.
+ * Delta events carry a piece of generated text; the final event carries the persisted analysis.
+ */
+public record AnalysisStreamEvent(String delta, DocumentAnalysis analysis) {
+
+    public static AnalysisStreamEvent ofDelta(String text) {
+        return new AnalysisStreamEvent(text, null);
+    }
+
+    public static AnalysisStreamEvent ofCompletion(DocumentAnalysis analysis) {
+        return new AnalysisStreamEvent(null, analysis);
+    }
+
+    public boolean isCompleted() {
+        return analysis != null;
+    }
+}
@@ -0,0 +1,322 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentChunk;
+import com.kimi.legaleraseai.repository.DocumentChunkRepository;
+import com.kimi.legaleraseai.util.OutlineBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * The document_chunks of each document: its text cut once, after extraction, into passages of
+ * about {@code target-tokens} that start at section starts and page breaks where possible, each
+ * with its offsets, page, section path, token estimate and a hash of its compressed text.
+ *
+ * Q&A picks relevant passages from the chunks and summaries of long documents are built from
+ * groups of them. Groups end at content-defined points (a chunk whose hash has its low bits
+ * zero, once the group is half full), so an edit in one part of a new version only changes the
+ * groups around it, and the partial summaries of all other groups are reused: they are stored on
+ * the group's first chunk under the group's key and carried over from the previous version when
+ * the version is chunked.
+ */
+@Service
+public class ChunkStore {
+    private static final Logger logger = LoggerFactory.getLogger(ChunkStore.class);
+
+    // A group may end after a chunk whose hash has these bits zero, i.e. on average every 4th chunk
+    private static final int GROUP_BOUNDARY_MASK = 0x3;
+
+    /**
+     * Consecutive chunks summarized together.
+     *
+     * @param key hash of the chunk hashes, identifying the group's content
+     * @param cachedSummary the stored partial summary of this content, or null
+     */
+    public record Group(List<DocumentChunk> chunks, String key, String text, String cachedSummary) {
+    }
+
+    @Value("${app.ai.chunks.target-tokens:800}")
+    private int targetTokens;
+
+    @Autowired
+    private DocumentChunkRepository chunkRepository;
+
+    @Autowired
+    private OutlineService outlineService;
+
+    @Autowired
+    private PromptBuilder promptBuilder;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Chunks a document's text, replacing its previous chunks. Partial summaries of the previous
+     * version are carried over to chunks whose content did not change.
+     */
+    public List<DocumentChunk> build(Document document, List<OutlineBuilder.Section> outline) {
+        String text = document.getExtractedText();
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<DocumentChunk> chunks = split(document.getId(), text, outline);
+
+        Document previous = document.getPreviousVersion();
+        int carried = 0;
+        if (previous != null) {
+            Map<String, Object[]> summaries = transactionTemplate.execute(status -> {
+                Map<String, Object[]> byHash = new HashMap<>();
+                try (Stream<Object[]> rows = chunkRepository.streamSummaries(previous.getId())) {
+                    rows.forEach(row -> byHash.putIfAbsent((String) row[0], row));
+                }
+                return byHash;
+            });
+            for (DocumentChunk chunk : chunks) {
+                Object[] row = summaries.get(chunk.getContentHash());
+                if (row != null) {
+                    chunk.setSummaryKey((String) row[1]);
+                    chunk.setSummary((String) row[2]);
+                    carried++;
+                }
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            chunkRepository.deleteByDocumentId(document.getId());
+            chunkRepository.saveAll(chunks);
+        });
+        logger.debug("Chunked document {} into {} chunks, {} partial summaries carried over",
+                document.getId(), chunks.size(), carried);
+        return chunks;
+    }
+
+    /**
+     * The document's chunks in order, chunking it first if it was extracted before chunks were stored.
+     */
+    public List<DocumentChunk> chunks(Document document) {
+        List<DocumentChunk> chunks = transactionTemplate.execute(status -> {
+            try (Stream<DocumentChunk> stream = chunkRepository.streamByDocumentIdOrderByChunkIndex(document.getId())) {
+                return stream.toList();
+            }
+        });
+        if (chunks.isEmpty() && document.getExtractedText() != null) {
+            List<OutlineBuilder.Section> outline = outlineService.get(document.getId()).orElse(List.of());
+            return build(document, outline);
+        }
+        return chunks;
+    }
+
+    public void delete(Long documentId) {
+        chunkRepository.deleteByDocumentId(documentId);
+    }
+
+    /**
+     * The document as passages of at most roughly maxTokens, each a run of whole chunks.
+     */
+    public List<String> pack(Document document, int maxTokens) {
+        List<String> passages = new ArrayList<>();
+        List<DocumentChunk> run = new ArrayList<>();
+        int runTokens = 0;
+        for (DocumentChunk chunk : chunks(document)) {
+            if (runTokens + chunk.getTokenEstimate() > maxTokens && !run.isEmpty()) {
+                passages.add(text(run));
+                run.clear();
+                runTokens = 0;
+            }
+            run.add(chunk);
+            runTokens += chunk.getTokenEstimate();
+        }
+        if (!run.isEmpty()) {
+            passages.add(text(run));
+        }
+        return passages;
+    }
+
+    /**
+     * The document as groups of at most roughly maxTokens for summarizing part by part.
+     */
+    public List<Group> groups(Document document, int maxTokens) {
+        List<DocumentChunk> chunks = chunks(document);
+        List<Group> groups = new ArrayList<>();
+        int groupStart = 0;
+        int groupTokens = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            groupTokens += chunks.get(i).getTokenEstimate();
+            boolean last = i == chunks.size() - 1;
+            boolean full = !last && groupTokens + chunks.get(i + 1).getTokenEstimate() > maxTokens;
+            boolean boundary = groupTokens >= maxTokens / 2
+                    && (Character.digit(chunks.get(i).getContentHash().charAt(31), 16) & GROUP_BOUNDARY_MASK) == 0;
+            if (last || full || boundary) {
+                groups.add(group(chunks.subList(groupStart, i + 1)));
+                groupStart = i + 1;
+                groupTokens = 0;
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Stores the partial summary of a group for later summaries of this document and its next versions.
+     */
+    public void saveSummary(Group group, String summary) {
+        DocumentChunk first = group.chunks().get(0);
+        first.setSummary(summary);
+        first.setSummaryKey(group.key());
+        chunkRepository.save(first);
+    }
+
+    private Group group(List<DocumentChunk> chunks) {
+        MessageDigest digest = sha256();
+        for (DocumentChunk chunk : chunks) {
+            digest.update(chunk.getContentHash().getBytes(StandardCharsets.US_ASCII));
+        }
+        String key = HexFormat.of().formatHex(digest.digest(), 0, 16);
+        DocumentChunk first = chunks.get(0);
+        String cached = key.equals(first.getSummaryKey()) ? first.getSummary() : null;
+        return new Group(List.copyOf(chunks), key, text(chunks), cached);
+    }
+
+    /**
+     * Compressed text of consecutive chunks, with the section path before each change of section.
+     */
+    private String text(List<DocumentChunk> chunks) {
+        StringBuilder text = new StringBuilder();
+        String path = null;
+        for (DocumentChunk chunk : chunks) {
+            if (!text.isEmpty()) {
+                text.append("\n\n");
+            }
+            if (chunk.getSectionPath() != null && !chunk.getSectionPath().equals(path)) {
+                text.append('[').append(chunk.getSectionPath()).append("]\n");
+            }
+            path = chunk.getSectionPath();
+            text.append(promptBuilder.compress(chunk.getText()));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Cuts the text at line starts. A chunk ends before a section start or page break once it has a
+     * quarter of the target size, before a paragraph once it has the target size, and before any
+     * line that would take it past twice the target size.
+     */
+    private List<DocumentChunk> split(Long documentId, String text, List<OutlineBuilder.Section> outline) {
+        List<DocumentChunk> chunks = new ArrayList<>();
+        int maxTokens = targetTokens * 2;
+        int chunkStart = 0;
+        int chunkTokens = 0;
+        int page = 1;
+        int chunkPage = 1;
+
+        // Innermost section open at the current line, and the next section to enter
+        int section = -1;
+        int nextSection = 0;
+        int chunkSection = -1;
+
+        boolean afterBlank = false;
+        boolean afterPageBreak = false;
+        int lineStart = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = lineStart;
+            while (lineEnd < text.length() && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\f') {
+                lineEnd++;
+            }
+
+            boolean sectionStart = false;
+            while (nextSection < outline.size() && outline.get(nextSection).start() < lineEnd) {
+                if (outline.get(nextSection).kind() != OutlineBuilder.Kind.DEFINITION) {
+                    section = nextSection;
+                    sectionStart = true;
+                }
+                nextSection++;
+            }
+            while (section >= 0 && outline.get(section).end() <= lineStart) {
+                section = outline.get(section).parent();
+            }
+
+            boolean blank = text.substring(lineStart, lineEnd).isBlank();
+            if (!blank) {
+                int lineTokens = promptBuilder.estimateTokens(text.subSequence(lineStart, lineEnd));
+                boolean cut = chunkTokens > 0 && (
+                        ((sectionStart || afterPageBreak) && chunkTokens >= targetTokens / 4)
+                        || (afterBlank && chunkTokens >= targetTokens)
+                        || chunkTokens + lineTokens > maxTokens);
+                if (cut) {
+                    addChunk(chunks, documentId, text, chunkStart, lineStart, chunkPage, chunkSection, outline);
+                    chunkTokens = 0;
+                }
+                if (chunkTokens == 0) {
+                    chunkStart = lineStart;
+                    chunkPage = page;
+                    chunkSection = section;
+                }
+                if (lineTokens > maxTokens) {
+                    // A line longer than a chunk (e.g. a whole paragraph without line breaks) is cut at spaces
+                    int pieceChars = targetTokens * 3;
+                    int pieceStart = lineStart;
+                    while (lineEnd - pieceStart > pieceChars) {
+                        int pieceEnd = text.lastIndexOf(' ', pieceStart + pieceChars);
+                        if (pieceEnd <= pieceStart) {
+                            pieceEnd = pieceStart + pieceChars;
+                        }
+                        addChunk(chunks, documentId, text, chunkStart, pieceEnd, chunkPage, chunkSection, outline);
+                        pieceStart = pieceEnd;
+                        chunkStart = pieceEnd;
+                    }
+                    lineTokens = promptBuilder.estimateTokens(text.subSequence(pieceStart, lineEnd));
+                }
+                chunkTokens += lineTokens;
+                afterPageBreak = false;
+            }
+            afterBlank = blank;
+
+            if (lineEnd < text.length() && text.charAt(lineEnd) == '\f') {
+                page++;
+                afterPageBreak = true;
+            }
+            lineStart = lineEnd + 1;
+        }
+        if (chunkTokens > 0) {
+            addChunk(chunks, documentId, text, chunkStart, text.length(), chunkPage, chunkSection, outline);
+        }
+        return chunks;
+    }
+
+    private void addChunk(List<DocumentChunk> chunks, Long documentId, String text, int start, int end,
+                          int page, int section, List<OutlineBuilder.Section> outline) {
+        String chunkText = text.substring(start, end);
+        String compressed = promptBuilder.compress(chunkText);
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setDocumentId(documentId);
+        chunk.setChunkIndex(chunks.size());
+        chunk.setStartPosition(start);
+        chunk.setEndPosition(end);
+        chunk.setPageNumber(page);
+        if (section >= 0) {
+            String path = OutlineBuilder.path(outline, section);
+            chunk.setSectionPath(path.length() > 500 ? path.substring(0, 500) : path);
+        }
+        chunk.setTokenEstimate(promptBuilder.estimateTokens(compressed));
+        chunk.setContentHash(HexFormat.of().formatHex(sha256().digest(compressed.getBytes(StandardCharsets.UTF_8)), 0, 16));
+        chunk.setText(chunkText);
+        chunks.add(chunk);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
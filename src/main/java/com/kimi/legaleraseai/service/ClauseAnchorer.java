@@ -0,0 +1,108 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import com.kimi.legaleraseai.repository.ExtractedClauseRepository;
+import com.kimi.legaleraseai.util.TextAnchorIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Sets the start and end positions of extracted clauses in their document's text, so clients
+ * can highlight a clause or fetch just its range of the text.
+ *
+ * Model-returned clause text often differs from the document in whitespace, quotes or a few
+ * words; {@link TextAnchorIndex} anchors all clauses of a document in one pass and tolerates that.
+ */
+@Component
+public class ClauseAnchorer {
+    private static final Logger logger = LoggerFactory.getLogger(ClauseAnchorer.class);
+
+    private static final int BACKFILL_PAGE_SIZE = 500;
+
+    // Share of a paraphrased clause's word 3-grams that must be found in order in the text
+    @Value("${app.ai.clause-anchoring.min-similarity:0.5}")
+    private double minSimilarity;
+
+    @Autowired
+    private ExtractedClauseRepository clauseRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    public TextAnchorIndex index(String text) {
+        return new TextAnchorIndex(text != null ? text : "");
+    }
+
+    /**
+     * Sets the positions of all given clauses; clauses that cannot be placed get none.
+     *
+     * @return the clauses, for chaining
+     */
+    public List<ExtractedClause> anchor(TextAnchorIndex index, List<ExtractedClause> clauses) {
+        if (clauses.isEmpty()) {
+            return clauses;
+        }
+        TextAnchorIndex.Span[] spans = index.anchorAll(
+                clauses.stream().map(ExtractedClause::getClauseText).toList(), minSimilarity);
+        for (int i = 0; i < spans.length; i++) {
+            ExtractedClause clause = clauses.get(i);
+            clause.setStartPosition(spans[i] != null ? spans[i].start() : null);
+            clause.setEndPosition(spans[i] != null ? spans[i].end() : null);
+            clause.setAnchoringAttempted(true);
+        }
+        return clauses;
+    }
+
+    public List<ExtractedClause> anchor(String text, List<ExtractedClause> clauses) {
+        return clauses.isEmpty() ? clauses : anchor(index(text), clauses);
+    }
+
+    /**
+     * Anchors clauses stored before positions were set on every save, once, in the background.
+     * Each clause is marked as attempted whether or not it could be placed, so the backfill
+     * finds nothing to do on later startups.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        Thread.ofVirtual().name("clause-anchor-backfill").start(() -> {
+            int documents = 0;
+            long afterId = 0;
+            List<Long> page;
+            do {
+                page = clauseRepository.findDocumentIdsToAnchorAfter(afterId, PageRequest.of(0, BACKFILL_PAGE_SIZE));
+                for (Long documentId : page) {
+                    afterId = documentId;
+                    try {
+                        documentRepository.findById(documentId).ifPresent(this::backfill);
+                        documents++;
+                    } catch (RuntimeException e) {
+                        logger.warn("Could not anchor clauses of document {}: {}", documentId, e.getMessage());
+                    }
+                }
+            } while (page.size() == BACKFILL_PAGE_SIZE);
+            if (documents > 0) {
+                logger.info("Anchored clauses of {} documents", documents);
+            }
+        });
+    }
+
+    private void backfill(Document document) {
+        List<ExtractedClause> clauses = clauseRepository.findByDocumentAndAnchoringAttemptedIsNull(document);
+        if (document.getExtractedText() == null) {
+            clauses.forEach(clause -> clause.setAnchoringAttempted(true));
+        } else {
+            anchor(document.getExtractedText(), clauses);
+        }
+        clauseRepository.saveAll(clauses);
+    }
+}
@@ -0,0 +1,346 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import com.kimi.legaleraseai.repository.ExtractedClauseRepository;
+import com.kimi.legaleraseai.util.TextVectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of every extracted clause of a user, for similarity search across documents.
+ *
+ * Each user's clauses are packed into primitive arrays: ids, clause type, importance and a
+ * 256-byte text vector per clause. A search scans the rows that pass the type and importance
+ * filters and keeps the top matches by cosine similarity, which is exact and takes a few
+ * milliseconds even at a hundred thousand clauses. Users are loaded from the stored vectors on
+ * first search and kept in an LRU cache; {@link ClauseIndexListener} applies committed clause
+ * saves and deletions to loaded users.
+ *
+ * The listener only sees changes committed by this node. Clauses written elsewhere, e.g. by a
+ * worker's EXTRACT_CLAUSES job, are picked up by comparing the count and id sum of the user's
+ * clauses with the database at most every {@code refresh-check-seconds}; the user is reloaded when
+ * they differ. Clauses are never edited after they are saved, so ids are all that can change.
+ */
+@Service
+public class ClauseIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ClauseIndex.class);
+
+    private static final ExtractedClause.ImportanceLevel[] IMPORTANCE_LEVELS = ExtractedClause.ImportanceLevel.values();
+
+    public record Match(long clauseId, long documentId, double similarity, double score) {
+    }
+
+    /**
+     * A saved or deleted clause, captured while its session is open so it can be applied after commit.
+     */
+    public record Change(long userId, long clauseId, long documentId, String clauseType,
+                         ExtractedClause.ImportanceLevel importance, byte[] vector, boolean removed) {
+
+        /**
+         * @return null if the clause is not stored or has no owner
+         */
+        public static Change of(ExtractedClause clause, boolean removed) {
+            if (clause.getId() == null || clause.getDocument() == null || clause.getDocument().getUser() == null) {
+                return null;
+            }
+            byte[] vector = removed ? null : clause.getSimilarityVector() != null
+                    ? clause.getSimilarityVector()
+                    : TextVectors.vectorize(clause.getClauseText());
+            return new Change(clause.getDocument().getUser().getId(), clause.getId(), clause.getDocument().getId(),
+                    clause.getClauseType(), clause.getImportanceLevel(), vector, removed);
+        }
+    }
+
+    @Value("${app.clauses.index.max-users:200}")
+    private int maxUsers;
+
+    // Added to the score of clauses with the same type as the query clause when the type is not a filter
+    @Value("${app.clauses.index.type-weight:0.1}")
+    private double typeWeight;
+
+    @Value("${app.clauses.index.refresh-check-seconds:10}")
+    private long refreshCheckSeconds;
+
+    @Autowired
+    private ExtractedClauseRepository clauseRepository;
+
+    // Guarded by "this"; access order makes it an LRU
+    private final LinkedHashMap<Long, UserClauses> users = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Finds the user's clauses most similar to a vector.
+     *
+     * @param typeFilter only clauses of this type, or null for any type
+     * @param typeBoost clauses of this type rank higher, or null
+     * @param minImportance only clauses at least this important, or null
+     * @param excludeClauseId clause to leave out (the query clause itself), or null
+     */
+    public List<Match> search(Long userId, byte[] vector, String typeFilter, String typeBoost,
+                              ExtractedClause.ImportanceLevel minImportance, Long excludeClauseId, int limit) {
+        return userClauses(userId).search(vector, typeFilter, typeBoost, minImportance, excludeClauseId, limit);
+    }
+
+    /**
+     * Vector of one of the user's clauses, if it is indexed.
+     */
+    public Optional<byte[]> vectorOf(Long userId, Long clauseId) {
+        return Optional.ofNullable(userClauses(userId).vectorOf(clauseId));
+    }
+
+    /**
+     * Applies a clause save or deletion to the clause's user, if that user is loaded.
+     */
+    public void apply(Change change) {
+        UserClauses loaded;
+        synchronized (this) {
+            loaded = users.get(change.userId());
+        }
+        // Users that are not loaded need no update; they are read from the database on their next search.
+        // A user still loading is updated once the load is done
+        if (loaded == null) {
+            return;
+        }
+        if (change.removed()) {
+            loaded.remove(change.clauseId());
+        } else {
+            loaded.add(change.clauseId(), change.documentId(), change.clauseType(), change.importance(),
+                    change.vector());
+        }
+    }
+
+    private UserClauses userClauses(Long userId) {
+        UserClauses user = userEntry(userId);
+        user.ensureLoaded(userId);
+        if (user.refreshDue(refreshCheckSeconds) && !user.matches(clauseRepository.findFingerprintByUserId(userId))) {
+            logger.debug("Clauses of user {} changed on another node, reloading the clause index", userId);
+            synchronized (this) {
+                users.remove(userId, user);
+            }
+            user = userEntry(userId);
+            user.ensureLoaded(userId);
+        }
+        return user;
+    }
+
+    private synchronized UserClauses userEntry(Long userId) {
+        UserClauses user = users.get(userId);
+        if (user == null) {
+            user = new UserClauses();
+            users.put(userId, user);
+            if (users.size() > maxUsers) {
+                Iterator<Long> eldest = users.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return user;
+    }
+
+    private static String typeKey(String clauseType) {
+        return clauseType == null ? "" : clauseType.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Clauses of one user in parallel arrays; removal moves the last row into the gap.
+     */
+    private final class UserClauses {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Long, Integer> rowByClauseId = new HashMap<>();
+        private final Map<String, Integer> typeIds = new HashMap<>();
+        private volatile boolean loaded;
+        private volatile long checkedAt;
+
+        private int size;
+        // Sum of the indexed clause ids; with size, what is compared with the database
+        private long idSum;
+        private long[] clauseIds = new long[64];
+        private long[] documentIds = new long[64];
+        private int[] types = new int[64];
+        private byte[] importance = new byte[64];
+        private byte[] vectors = new byte[64 * TextVectors.DIMENSIONS];
+
+        /**
+         * Reads the user's clauses from the database on first use. The load holds this user's write
+         * lock, so other users are not blocked by the queries, and clause changes for this user
+         * wait for it rather than being missed.
+         */
+        void ensureLoaded(Long userId) {
+            if (loaded) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                if (loaded) {
+                    return;
+                }
+                long started = System.currentTimeMillis();
+                for (Object[] row : clauseRepository.findIndexRowsByUserId(userId)) {
+                    add((Long) row[0], (Long) row[1], (String) row[2], (ExtractedClause.ImportanceLevel) row[3],
+                            (byte[]) row[4]);
+                }
+                for (Object[] row : clauseRepository.findUnindexedRowsByUserId(userId)) {
+                    add((Long) row[0], (Long) row[1], (String) row[2], (ExtractedClause.ImportanceLevel) row[3],
+                            TextVectors.vectorize((String) row[4]));
+                }
+                loaded = true;
+                checkedAt = System.nanoTime();
+                logger.debug("Loaded {} clauses of user {} into the clause index in {} ms",
+                        size, userId, System.currentTimeMillis() - started);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return size;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Whether the refresh interval has passed since the last check; if so, the next check starts now.
+         */
+        boolean refreshDue(long intervalSeconds) {
+            long now = System.nanoTime();
+            if (now - checkedAt < TimeUnit.SECONDS.toNanos(intervalSeconds)) {
+                return false;
+            }
+            checkedAt = now;
+            return true;
+        }
+
+        /**
+         * Whether the index holds the clauses described by a [count, id sum] row from the database.
+         */
+        boolean matches(List<Object[]> fingerprint) {
+            if (fingerprint.isEmpty()) {
+                return true;
+            }
+            Object[] row = fingerprint.get(0);
+            long count = row[0] != null ? ((Number) row[0]).longValue() : 0;
+            long sum = row[1] != null ? ((Number) row[1]).longValue() : 0;
+            lock.readLock().lock();
+            try {
+                return count == size && sum == idSum;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void add(long clauseId, long documentId, String clauseType, ExtractedClause.ImportanceLevel level,
+                 byte[] vector) {
+            if (vector == null || vector.length != TextVectors.DIMENSIONS) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                Integer existing = rowByClauseId.get(clauseId);
+                int row = existing != null ? existing : size;
+                if (existing == null) {
+                    if (size == clauseIds.length) {
+                        grow();
+                    }
+                    rowByClauseId.put(clauseId, row);
+                    size++;
+                    idSum += clauseId;
+                }
+                clauseIds[row] = clauseId;
+                documentIds[row] = documentId;
+                types[row] = typeIds.computeIfAbsent(typeKey(clauseType), key -> typeIds.size());
+                importance[row] = (byte) (level != null ? level : ExtractedClause.ImportanceLevel.MEDIUM).ordinal();
+                System.arraycopy(vector, 0, vectors, row * TextVectors.DIMENSIONS, TextVectors.DIMENSIONS);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long clauseId) {
+            lock.writeLock().lock();
+            try {
+                Integer row = rowByClauseId.remove(clauseId);
+                if (row == null) {
+                    return;
+                }
+                int last = --size;
+                idSum -= clauseId;
+                if (row != last) {
+                    clauseIds[row] = clauseIds[last];
+                    documentIds[row] = documentIds[last];
+                    types[row] = types[last];
+                    importance[row] = importance[last];
+                    System.arraycopy(vectors, last * TextVectors.DIMENSIONS, vectors, row * TextVectors.DIMENSIONS,
+                            TextVectors.DIMENSIONS);
+                    rowByClauseId.put(clauseIds[row], row);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        byte[] vectorOf(long clauseId) {
+            lock.readLock().lock();
+            try {
+                Integer row = rowByClauseId.get(clauseId);
+                return row == null ? null : Arrays.copyOfRange(vectors, row * TextVectors.DIMENSIONS,
+                        (row + 1) * TextVectors.DIMENSIONS);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        List<Match> search(byte[] vector, String typeFilter, String typeBoost,
+                           ExtractedClause.ImportanceLevel minImportance, Long excludeClauseId, int limit) {
+            PriorityQueue<Match> top = new PriorityQueue<>(Comparator.comparingDouble(Match::score));
+            lock.readLock().lock();
+            try {
+                int filterType = typeFilter != null ? typeIds.getOrDefault(typeKey(typeFilter), -1) : -2;
+                if (filterType == -1) {
+                    return List.of();
+                }
+                int boostType = typeBoost != null ? typeIds.getOrDefault(typeKey(typeBoost), -1) : -1;
+                int minLevel = minImportance != null ? minImportance.ordinal() : 0;
+                long excluded = excludeClauseId != null ? excludeClauseId : Long.MIN_VALUE;
+
+                for (int row = 0; row < size; row++) {
+                    if ((filterType >= 0 && types[row] != filterType) || importance[row] < minLevel
+                            || clauseIds[row] == excluded) {
+                        continue;
+                    }
+                    double similarity = TextVectors.cosine(vector, vectors, row * TextVectors.DIMENSIONS);
+                    double score = types[row] == boostType ? similarity + typeWeight : similarity;
+                    if (top.size() < limit) {
+                        top.add(new Match(clauseIds[row], documentIds[row], similarity, score));
+                    } else if (score > top.peek().score()) {
+                        top.poll();
+                        top.add(new Match(clauseIds[row], documentIds[row], similarity, score));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            List<Match> matches = new ArrayList<>(top);
+            matches.sort(Comparator.comparingDouble(Match::score).reversed());
+            return matches;
+        }
+
+        private void grow() {
+            int capacity = clauseIds.length * 2;
+            clauseIds = Arrays.copyOf(clauseIds, capacity);
+            documentIds = Arrays.copyOf(documentIds, capacity);
+            types = Arrays.copyOf(types, capacity);
+            importance = Arrays.copyOf(importance, capacity);
+            vectors = Arrays.copyOf(vectors, capacity * TextVectors.DIMENSIONS);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the {@link ClauseIndex} in step with clause saves and deletions.
+ *
+ * Registered with Hibernate's event listeners at startup, so the entity does not know about the
+ * index. Changes are collected per transaction and applied after it commits, so a rolled-back
+ * save never reaches the index and a user loaded meanwhile cannot miss a committed one.
+ */
+@Component
+public class ClauseIndexListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ClauseIndex clauseIndex;
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        changed(event.getEntity(), false);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        changed(event.getEntity(), false);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        changed(event.getEntity(), true);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private void changed(Object entity, boolean removed) {
+        if (!(entity instanceof ExtractedClause clause)) {
+            return;
+        }
+        ClauseIndex.Change change = ClauseIndex.Change.of(clause, removed);
+        if (change == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            clauseIndex.apply(change);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<ClauseIndex.Change> pending = (List<ClauseIndex.Change>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<ClauseIndex.Change> created = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    created.forEach(clauseIndex::apply);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ClauseIndexListener.this);
+                }
+            });
+            pending = created;
+        }
+        pending.add(change);
+    }
+}
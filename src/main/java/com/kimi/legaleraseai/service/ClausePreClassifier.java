@@ -0,0 +1,355 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import com.kimi.legaleraseai.util.AhoCorasick;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deterministic detector for standard clauses, run before clause extraction so the model only
+ * sees the sections it is needed for.
+ *
+ * The text is split into sections at headings (numbered lines such as "12. Governing Law" or
+ * "Section 4 - Notices", and short all-caps lines). Heading keywords and characteristic phrases
+ * of each clause type are matched with two precompiled Aho-Corasick automata. A section is
+ * labelled locally only when its heading names a boilerplate type; sections that match a
+ * high-importance type (liability, indemnification, termination, ...) anywhere, sections under
+ * other headings and text before the first heading are left for the model, since a phrase alone
+ * does not tell what else the text contains.
+ *
+ * Locally detected clauses carry a confidence of {@link #HEADING_AND_PHRASE_CONFIDENCE} or
+ * {@link #HEADING_CONFIDENCE}, above the 0.8 and 0.6 given to clauses parsed from model output,
+ * so the score also tells where a clause came from.
+ */
+@Component
+public class ClausePreClassifier {
+
+    public static final double HEADING_AND_PHRASE_CONFIDENCE = 0.95;
+    public static final double HEADING_CONFIDENCE = 0.9;
+
+    // "12.", "12.1", "(a)", "IV." or "Section 12" / "Article IV", then a title of up to ~10 words
+    private static final Pattern NUMBERED_HEADING = Pattern.compile(
+            "^(?:(?i:section|article|clause)\\s+)?(?:\\d{1,3}(?:\\.\\d{1,3})*\\.?|\\(?[a-zA-Z]\\)|(?i:[ivxlc]{1,6})\\.)" +
+            "\\s*[-:\u2013\u2014]?\\s*(\\p{Lu}[^.:;\\n]{0,80})");
+    private static final int MAX_HEADING_WORDS = 10;
+
+    private record Rule(String type, ExtractedClause.ImportanceLevel importance, boolean local,
+                        String explanation, List<String> headings, List<String> phrases) {
+    }
+
+    public record Detection(String type, ExtractedClause.ImportanceLevel importance, String explanation,
+                            int start, int end, double confidence) {
+    }
+
+    /**
+     * @param detections clauses recognized locally, with offsets into the classified text
+     * @param remainingText the sections still to be sent to the model, in document order
+     */
+    public record Classification(List<Detection> detections, String remainingText) {
+
+        public List<ExtractedClause> toClauses(Document document, String text) {
+            List<ExtractedClause> clauses = new ArrayList<>(detections.size());
+            for (Detection detection : detections) {
+                ExtractedClause clause = new ExtractedClause(detection.type(),
+                        text.substring(detection.start(), detection.end()), document);
+                clause.setStartPosition(detection.start());
+                clause.setEndPosition(detection.end());
+                clause.setConfidenceScore(detection.confidence());
+                clause.setImportanceLevel(detection.importance());
+                clause.setPlainEnglishExplanation(detection.explanation());
+                clauses.add(clause);
+            }
+            return clauses;
+        }
+    }
+
+    private static final List<Rule> RULES = List.of(
+            new Rule("Governing Law", ExtractedClause.ImportanceLevel.MEDIUM, true,
+                    "Names the jurisdiction whose laws apply to the agreement and how it is interpreted.",
+                    List.of("governing law", "choice of law", "applicable law", "jurisdiction", "venue"),
+                    List.of("governed by the laws of", "governed by and construed in accordance with",
+                            "construed in accordance with the laws of", "exclusive jurisdiction of the courts")),
+            new Rule("Notices", ExtractedClause.ImportanceLevel.LOW, true,
+                    "Explains how and where formal notices under the agreement must be sent.",
+                    List.of("notices", "notice"),
+                    List.of("all notices", "notices shall be in writing", "notice shall be in writing",
+                            "notices under this agreement", "addressed as follows")),
+            new Rule("Severability", ExtractedClause.ImportanceLevel.LOW, true,
+                    "If one part of the agreement is found invalid, the rest of it still applies.",
+                    List.of("severability", "severable"),
+                    List.of("held to be invalid", "held invalid", "held to be unenforceable",
+                            "remaining provisions shall continue in full force")),
+            new Rule("Entire Agreement", ExtractedClause.ImportanceLevel.MEDIUM, true,
+                    "The written agreement is the complete deal and replaces earlier discussions and agreements.",
+                    List.of("entire agreement", "integration", "merger clause"),
+                    List.of("constitutes the entire agreement", "entire agreement between the parties",
+                            "supersedes all prior")),
+            new Rule("Counterparts", ExtractedClause.ImportanceLevel.LOW, true,
+                    "The agreement can be signed in separate copies that together count as one agreement.",
+                    List.of("counterparts"),
+                    List.of("executed in counterparts", "in one or more counterparts",
+                            "each of which shall be deemed an original")),
+            new Rule("Headings", ExtractedClause.ImportanceLevel.LOW, true,
+                    "Section titles are only for convenience and do not change the meaning of the agreement.",
+                    List.of("headings", "captions"),
+                    List.of("headings are for convenience", "headings are for reference",
+                            "headings used in this agreement")),
+            new Rule("Waiver", ExtractedClause.ImportanceLevel.LOW, true,
+                    "Not enforcing a right once does not mean giving it up for the future.",
+                    List.of("waiver", "no waiver"),
+                    List.of("shall not be deemed a waiver", "shall not constitute a waiver",
+                            "failure to enforce", "no waiver of any")),
+            new Rule("Amendments", ExtractedClause.ImportanceLevel.MEDIUM, true,
+                    "The agreement can only be changed in writing, signed by the parties.",
+                    List.of("amendment", "amendments", "modification", "modifications"),
+                    List.of("may be amended only", "amended or modified only",
+                            "only by a written instrument signed")),
+            new Rule("Assignment", ExtractedClause.ImportanceLevel.MEDIUM, true,
+                    "Limits whether a party can transfer its rights or obligations under the agreement to someone else.",
+                    List.of("assignment"),
+                    List.of("may not assign", "shall not assign", "may not be assigned", "assign or transfer")),
+            new Rule("Force Majeure", ExtractedClause.ImportanceLevel.MEDIUM, true,
+                    "Excuses a party from performing when events outside its control, such as natural disasters, prevent it.",
+                    List.of("force majeure"),
+                    List.of("acts of god", "beyond its reasonable control", "beyond the reasonable control")),
+            new Rule("Relationship of the Parties", ExtractedClause.ImportanceLevel.LOW, true,
+                    "The parties stay independent; the agreement does not make them partners, employees or agents.",
+                    List.of("relationship of the parties", "independent contractors"),
+                    List.of("independent contractor", "shall not be construed to create a partnership",
+                            "joint venture")),
+            new Rule("Survival", ExtractedClause.ImportanceLevel.LOW, true,
+                    "Some obligations continue to apply after the agreement ends.",
+                    List.of("survival"),
+                    List.of("shall survive termination", "shall survive the termination",
+                            "shall survive expiration", "shall survive any termination")),
+
+            // Recognized only to keep their sections away from local labelling
+            new Rule("Indemnification", ExtractedClause.ImportanceLevel.HIGH, false, null,
+                    List.of("indemnification", "indemnity"),
+                    List.of("indemnify", "hold harmless")),
+            new Rule("Limitation of Liability", ExtractedClause.ImportanceLevel.CRITICAL, false, null,
+                    List.of("limitation of liability", "liability", "limitations of liability"),
+                    List.of("in no event shall", "consequential damages", "aggregate liability")),
+            new Rule("Termination", ExtractedClause.ImportanceLevel.HIGH, false, null,
+                    List.of("termination", "term and termination"),
+                    List.of("may terminate", "terminate this agreement")),
+            new Rule("Payment Terms", ExtractedClause.ImportanceLevel.HIGH, false, null,
+                    List.of("payment", "payment terms", "fees", "compensation"),
+                    List.of("shall pay", "payable within", "invoice")),
+            new Rule("Confidentiality", ExtractedClause.ImportanceLevel.HIGH, false, null,
+                    List.of("confidentiality", "confidential information", "non-disclosure"),
+                    List.of("confidential information", "shall not disclose")),
+            new Rule("Restrictive Covenants", ExtractedClause.ImportanceLevel.HIGH, false, null,
+                    List.of("non-competition", "non-compete", "non-solicitation"),
+                    List.of("shall not compete", "shall not solicit")),
+            new Rule("Intellectual Property", ExtractedClause.ImportanceLevel.HIGH, false, null,
+                    List.of("intellectual property"),
+                    List.of("all intellectual property", "work made for hire")));
+
+    @Value("${app.ai.clause-detector.enabled:true}")
+    private boolean enabled;
+
+    // Longer sections are left to the model even when their heading matches
+    @Value("${app.ai.clause-detector.max-section-words:400}")
+    private int maxSectionWords;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final AhoCorasick headingMatcher;
+    private final int[] headingRules;
+    private final AhoCorasick phraseMatcher;
+    private final int[] phraseRules;
+
+    private Counter localClauses;
+    private Counter skippedCharacters;
+
+    public ClausePreClassifier() {
+        List<String> headings = new ArrayList<>();
+        List<Integer> headingOwners = new ArrayList<>();
+        List<String> phrases = new ArrayList<>();
+        List<Integer> phraseOwners = new ArrayList<>();
+        for (int r = 0; r < RULES.size(); r++) {
+            for (String heading : RULES.get(r).headings()) {
+                headings.add(heading);
+                headingOwners.add(r);
+            }
+            for (String phrase : RULES.get(r).phrases()) {
+                phrases.add(phrase);
+                phraseOwners.add(r);
+            }
+        }
+        headingMatcher = new AhoCorasick(headings);
+        headingRules = headingOwners.stream().mapToInt(Integer::intValue).toArray();
+        phraseMatcher = new AhoCorasick(phrases);
+        phraseRules = phraseOwners.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @PostConstruct
+    void init() {
+        localClauses = Counter.builder("ai.clause-detector.clauses")
+                .description("Clauses labelled by the local detector instead of the model")
+                .register(meterRegistry);
+        skippedCharacters = Counter.builder("ai.clause-detector.skipped-characters")
+                .description("Characters of document text not sent to the model for clause extraction")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Labels the standard clauses of a text and returns the rest for the model.
+     */
+    public Classification classify(String text) {
+        if (!enabled || text == null || text.isBlank()) {
+            return new Classification(List.of(), text == null ? "" : text);
+        }
+
+        List<Detection> detections = new ArrayList<>();
+        StringBuilder remaining = new StringBuilder();
+        int[] headingHits = new int[RULES.size()];
+        int[] phraseHits = new int[RULES.size()];
+
+        for (int[] section : sections(text)) {
+            Arrays.fill(headingHits, 0);
+            Arrays.fill(phraseHits, 0);
+            int titleEnd = section[2];
+            if (titleEnd > section[0]) {
+                headingMatcher.search(text, section[0], titleEnd,
+                        (keyword, start, end) -> headingHits[headingRules[keyword]]++);
+            }
+            phraseMatcher.search(text, section[0], section[1],
+                    (keyword, start, end) -> phraseHits[phraseRules[keyword]]++);
+
+            Detection detection = detect(headingHits, phraseHits, section, text);
+            if (detection != null) {
+                detections.add(detection);
+            } else {
+                if (!remaining.isEmpty()) {
+                    remaining.append("\n\n");
+                }
+                remaining.append(text, section[0], section[1]);
+            }
+        }
+
+        if (!detections.isEmpty()) {
+            localClauses.increment(detections.size());
+            skippedCharacters.increment(detections.stream().mapToInt(found -> found.end() - found.start()).sum());
+        }
+        return new Classification(detections, remaining.toString());
+    }
+
+    private Detection detect(int[] headingHits, int[] phraseHits, int[] section, String text) {
+        int best = -1;
+        double bestConfidence = 0;
+        for (int r = 0; r < RULES.size(); r++) {
+            if ((headingHits[r] > 0 || phraseHits[r] > 0) && !RULES.get(r).local()) {
+                // Anything that looks like a high-importance clause goes to the model
+                return null;
+            }
+            // Heading hits are only counted for sections that start with a heading
+            double confidence = headingHits[r] > 0 && phraseHits[r] > 0 ? HEADING_AND_PHRASE_CONFIDENCE
+                    : headingHits[r] > 0 ? HEADING_CONFIDENCE
+                    : 0;
+            if (confidence > bestConfidence) {
+                best = r;
+                bestConfidence = confidence;
+            }
+        }
+        if (best < 0 || countWords(text, section[0], section[1]) > maxSectionWords) {
+            return null;
+        }
+        Rule rule = RULES.get(best);
+        return new Detection(rule.type(), rule.importance(), rule.explanation(), section[0], section[1], bestConfidence);
+    }
+
+    /**
+     * Sections as [start, end, title end]; the title end equals the start for sections without a heading.
+     * Sections start at a heading line and end at the last non-blank character before the next heading.
+     */
+    static List<int[]> sections(String text) {
+        List<int[]> sections = new ArrayList<>();
+        int sectionStart = -1;
+        int titleEnd = -1;
+        int contentEnd = -1;
+
+        int lineStart = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = text.length();
+            }
+            int start = lineStart;
+            int end = lineEnd;
+            while (start < end && Character.isWhitespace(text.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                end--;
+            }
+
+            if (start < end) {
+                int headingTitleEnd = headingTitleEnd(text, start, end);
+                if (headingTitleEnd >= 0 || sectionStart < 0) {
+                    if (sectionStart >= 0) {
+                        sections.add(new int[]{sectionStart, contentEnd, titleEnd});
+                    }
+                    sectionStart = start;
+                    titleEnd = headingTitleEnd >= 0 ? headingTitleEnd : start;
+                }
+                contentEnd = end;
+            }
+            lineStart = lineEnd + 1;
+        }
+        if (sectionStart >= 0) {
+            sections.add(new int[]{sectionStart, contentEnd, titleEnd});
+        }
+        return sections;
+    }
+
+    /**
+     * End offset of the heading title if the trimmed line [start, end) starts with a heading (the start
+     * for a numbered section without a title), otherwise -1.
+     */
+    private static int headingTitleEnd(String text, int start, int end) {
+        Matcher numbered = NUMBERED_HEADING.matcher(text).region(start, end);
+        if (numbered.lookingAt()) {
+            // "12. Governing Law. This Agreement ..." - the title is the part before the first period;
+            // a long one is the first sentence of an untitled section
+            return countWords(text, numbered.start(1), numbered.end(1)) <= MAX_HEADING_WORDS ? numbered.end(1) : start;
+        }
+
+        int words = countWords(text, start, end);
+        boolean hasLetter = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.isLowerCase(c)) {
+                return -1;
+            }
+            hasLetter |= Character.isLetter(c);
+        }
+        return hasLetter && words <= MAX_HEADING_WORDS ? end : -1;
+    }
+
+    private static int countWords(String text, int start, int end) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = start; i < end; i++) {
+            boolean space = Character.isWhitespace(text.charAt(i));
+            if (!space && !inWord) {
+                words++;
+            }
+            inWord = !space;
+        }
+        return words;
+    }
+}
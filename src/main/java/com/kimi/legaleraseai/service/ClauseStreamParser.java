@@ -0,0 +1,350 @@
+package com.kimi.legaleraseai.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Incremental parser for the clause JSON returned by the model.
+ *
+ * Text is fed in chunks as it arrives. The JSON value is taken to start at the
+ * first '[' or '{' that opens a line, so prose and Markdown code fences before it
+ * are skipped; if that turns out not to be JSON after all, the search resumes at
+ * the next candidate. Anything after the top-level value has closed is ignored.
+ * Each clause is returned as soon as its object closes, so a truncated array
+ * still yields every complete clause before the cut.
+ *
+ * The clauses may come as a root array, inside the arrays of a wrapper object
+ * such as {"clauses": [...]}, or as a single root object. Objects with neither a
+ * clause type nor a clause text are skipped.
+ *
+ * If the response contains no JSON clauses at all, {@link #finish()} falls back to
+ * a linear "Clause type: / Clause text:" line scan of the raw text.
+ */
+public class ClauseStreamParser {
+    private static final Logger logger = LoggerFactory.getLogger(ClauseStreamParser.class);
+
+    // Lines opening with '[' or '{' that turned out not to be JSON before we give up on finding it
+    private static final int MAX_FALSE_STARTS = 3;
+
+    private final ObjectMapper objectMapper;
+    private final Document document;
+    private final StringBuilder raw = new StringBuilder();
+
+    private JsonParser parser;
+    private ByteArrayFeeder feeder;
+
+    // Position in raw up to which we have looked for the start of the JSON value
+    private int scanned;
+    private boolean atLineStart = true;
+    private int valueStart = -1;
+    private int falseStarts;
+
+    private boolean started;
+    private boolean done;
+    private int depth;
+    private int clauseDepth = -1;
+    // Whether a root object may still turn out to wrap the clause array rather than be a clause
+    private boolean maybeWrapper;
+    private TokenBuffer currentClause;
+    private int emitted;
+
+    public ClauseStreamParser(ObjectMapper objectMapper, Document document) {
+        this.objectMapper = objectMapper;
+        this.document = document;
+    }
+
+    /**
+     * Parses a complete response in one go.
+     */
+    public static List<ExtractedClause> parseAll(ObjectMapper objectMapper, Document document, String response) {
+        ClauseStreamParser clauseParser = new ClauseStreamParser(objectMapper, document);
+        List<ExtractedClause> clauses = new ArrayList<>(clauseParser.feed(response));
+        clauses.addAll(clauseParser.finish());
+        return clauses;
+    }
+
+    /**
+     * Feeds the next chunk of model output.
+     *
+     * @return clauses whose JSON objects closed within this chunk
+     */
+    public List<ExtractedClause> feed(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return Collections.emptyList();
+        }
+        raw.append(chunk);
+        if (done) {
+            return Collections.emptyList();
+        }
+
+        List<ExtractedClause> clauses = new ArrayList<>();
+        String json = chunk;
+        if (!started) {
+            if (!findValueStart()) {
+                return Collections.emptyList();
+            }
+            json = raw.substring(valueStart);
+        }
+        feedJson(json, clauses);
+        emitted += clauses.size();
+        return clauses;
+    }
+
+    /**
+     * Signals the end of the model output.
+     *
+     * @return fallback clauses if no JSON clause could be parsed, otherwise an empty list
+     */
+    public List<ExtractedClause> finish() {
+        List<ExtractedClause> clauses = new ArrayList<>();
+        while (!done && started) {
+            feeder.endOfInput();
+            try {
+                drain(clauses);
+                break;
+            } catch (IOException e) {
+                if (emitted + clauses.size() == 0 && retryAfterFalseStart()) {
+                    if (started) {
+                        feedJson(raw.substring(valueStart), clauses);
+                    }
+                    continue;
+                }
+                // Truncated array or object: the complete clauses have already been emitted
+                logger.debug("Clause JSON ended early: {}", e.getMessage());
+                break;
+            }
+        }
+        done = true;
+        emitted += clauses.size();
+
+        if (emitted > 0) {
+            return clauses;
+        }
+        logger.warn("No JSON clauses found in response, falling back to line parsing");
+        return parseClauseLines(raw, document);
+    }
+
+    private void feedJson(String json, List<ExtractedClause> clauses) {
+        while (true) {
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            try {
+                feeder.feedInput(bytes, 0, bytes.length);
+                drain(clauses);
+                return;
+            } catch (IOException e) {
+                if (emitted + clauses.size() == 0 && retryAfterFalseStart()) {
+                    if (!started) {
+                        return;
+                    }
+                    json = raw.substring(valueStart);
+                    continue;
+                }
+                // Malformed JSON: keep what we already emitted and ignore the rest
+                logger.warn("Stopped parsing clause JSON after {} clauses: {}", emitted + clauses.size(), e.getMessage());
+                done = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Looks for the next '[' or '{' opening a line in the text received so far and, once found,
+     * opens a fresh JSON parser for it.
+     */
+    private boolean findValueStart() {
+        for (; scanned < raw.length(); scanned++) {
+            char c = raw.charAt(scanned);
+            if (c == '\n') {
+                atLineStart = true;
+            } else if (atLineStart && (c == '[' || c == '{')) {
+                valueStart = scanned;
+                // The next search, if this is not JSON, starts on the following line
+                scanned++;
+                atLineStart = false;
+                started = true;
+                openParser();
+                return true;
+            } else if (!Character.isWhitespace(c)) {
+                atLineStart = false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Called when the text from the current start on is not valid JSON and no clause came out of it,
+     * e.g. a prose line opening with "[Note]". Resumes the search after the false start.
+     *
+     * @return false if we already gave up on finding JSON in this response
+     */
+    private boolean retryAfterFalseStart() {
+        if (++falseStarts > MAX_FALSE_STARTS) {
+            return false;
+        }
+        logger.debug("Text at offset {} is not clause JSON, looking further", valueStart);
+        started = false;
+        depth = 0;
+        clauseDepth = -1;
+        maybeWrapper = false;
+        currentClause = null;
+        findValueStart();
+        return true;
+    }
+
+    private void openParser() {
+        try {
+            parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create non-blocking JSON parser", e);
+        }
+        feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    private void drain(List<ExtractedClause> clauses) throws IOException {
+        JsonToken token;
+        while (!done && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (clauseDepth < 0) {
+                // Clauses live inside a root array, or at the root until a wrapper array shows up
+                clauseDepth = token == JsonToken.START_ARRAY ? 1 : 0;
+                maybeWrapper = clauseDepth == 0;
+            }
+
+            if (maybeWrapper && depth == 1) {
+                if (token == JsonToken.FIELD_NAME && isClauseField(parser.currentName())) {
+                    // The root object is a clause itself, so its arrays are just values
+                    maybeWrapper = false;
+                } else if (token == JsonToken.START_ARRAY) {
+                    // A wrapper such as {"clauses": [...]}: the clauses are the objects in its arrays
+                    maybeWrapper = false;
+                    clauseDepth = 2;
+                    currentClause = null;
+                }
+            }
+
+            if (token == JsonToken.START_OBJECT && depth == clauseDepth && currentClause == null) {
+                currentClause = new TokenBuffer(parser);
+            }
+            if (currentClause != null) {
+                currentClause.copyCurrentEvent(parser);
+            }
+
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+                if (depth == clauseDepth && currentClause != null) {
+                    ExtractedClause clause = createClause(objectMapper.readTree(currentClause.asParser()));
+                    if (clause != null) {
+                        clauses.add(clause);
+                    }
+                    currentClause = null;
+                }
+                if (depth == 0) {
+                    if (emitted + clauses.size() == 0) {
+                        // e.g. a "[1]" footnote marker opening a line of prose
+                        throw new IOException("No clauses in JSON value");
+                    }
+                    // Whatever follows the root value (e.g. a closing code fence) is not ours
+                    done = true;
+                }
+            }
+        }
+    }
+
+    private static boolean isClauseField(String name) {
+        return "clauseType".equals(name) || "clauseText".equals(name);
+    }
+
+    private ExtractedClause createClause(JsonNode clauseNode) {
+        if (!clauseNode.hasNonNull("clauseType") && !clauseNode.hasNonNull("clauseText")) {
+            return null;
+        }
+        try {
+            String clauseType = clauseNode.path("clauseType").asText();
+            String clauseText = clauseNode.path("clauseText").asText();
+            String explanation = clauseNode.path("explanation").asText();
+            String importance = clauseNode.path("importance").asText("MEDIUM");
+
+            ExtractedClause clause = new ExtractedClause(clauseType, clauseText, document);
+            clause.setPlainEnglishExplanation(explanation);
+            clause.setImportanceLevel(ExtractedClause.ImportanceLevel.valueOf(importance.toUpperCase()));
+            clause.setConfidenceScore(0.8); // Default confidence
+
+            return clause;
+        } catch (Exception e) {
+            logger.error("Error creating clause from JSON: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Line-based fallback for responses such as:
+     * <pre>
+     * Clause type: Termination
+     * Clause text: Either party may terminate ...
+     * </pre>
+     * Runs in a single pass over the text, so it cannot backtrack on large malformed responses.
+     */
+    static List<ExtractedClause> parseClauseLines(CharSequence response, Document document) {
+        List<ExtractedClause> clauses = new ArrayList<>();
+        String clauseType = null;
+
+        for (String line : response.toString().split("\n")) {
+            String trimmed = stripListMarker(line.trim());
+            String lower = trimmed.toLowerCase();
+
+            String typeValue = valueAfterLabel(trimmed, lower, "clause type", "type");
+            if (typeValue != null) {
+                clauseType = typeValue;
+                continue;
+            }
+
+            String textValue = valueAfterLabel(trimmed, lower, "clause text", "text");
+            if (textValue != null && clauseType != null) {
+                ExtractedClause clause = new ExtractedClause(clauseType, textValue, document);
+                clause.setImportanceLevel(ExtractedClause.ImportanceLevel.MEDIUM);
+                clause.setConfidenceScore(0.6); // Lower confidence for line parsing
+                clauses.add(clause);
+                clauseType = null;
+            }
+        }
+
+        return clauses;
+    }
+
+    private static String valueAfterLabel(String line, String lower, String... labels) {
+        for (String label : labels) {
+            if (lower.startsWith(label)) {
+                String rest = line.substring(label.length()).trim();
+                if (rest.startsWith(":")) {
+                    String value = rest.substring(1).trim();
+                    return value.isEmpty() ? null : value;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String stripListMarker(String line) {
+        int i = 0;
+        while (i < line.length() && "-*#>0123456789.) ".indexOf(line.charAt(i)) >= 0) {
+            i++;
+        }
+        // Markdown bold labels such as **Clause type:**
+        return line.substring(i).replace("**", "");
+    }
+}
@@ -0,0 +1,181 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps multi-turn Q&A sessions so a conversation does not resend the whole document every turn.
+ *
+ * When a session starts, the compressed document is uploaded once as a provider cached content
+ * (if enabled and the document is large enough for context caching), or split into a local chunk
+ * set from which each follow-up question only sends the most relevant passages. Sessions expire
+ * after a period of inactivity, and the least recently used ones are evicted when the sessions
+ * together exceed the memory cap.
+ */
+@Service
+public class ConversationService {
+    private static final Logger logger = LoggerFactory.getLogger(ConversationService.class);
+
+    @Value("${app.ai.sessions.idle-ttl-minutes:30}")
+    private long idleTtlMinutes;
+
+    // Also the lifetime of the provider cached content, so a session never outlives its context
+    @Value("${app.ai.sessions.max-lifetime-minutes:120}")
+    private long maxLifetimeMinutes;
+
+    @Value("${app.ai.sessions.max-memory-mb:64}")
+    private long maxMemoryMb;
+
+    @Value("${app.ai.sessions.max-recent-turns:4}")
+    private int maxRecentTurns;
+
+    @Value("${app.ai.sessions.chunk-tokens:1500}")
+    private int chunkTokens;
+
+    @Value("${app.ai.sessions.context-tokens:6000}")
+    private int contextTokens;
+
+    @Value("${app.ai.sessions.provider-cache.enabled:false}")
+    private boolean providerCacheEnabled;
+
+    @Value("${app.ai.sessions.provider-cache.min-tokens:4096}")
+    private int providerCacheMinTokens;
+
+    @Autowired
+    private GeminiAiService geminiAiService;
+
+    @Autowired
+    private PromptBuilder promptBuilder;
+
+    private final Map<String, ConversationSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Prepares the document context once and opens a session for the user.
+     */
+    public ConversationSession start(Document document, Long userId) {
+        String compressed = promptBuilder.compress(document.getExtractedText());
+
+        ConversationSession session = null;
+        if (providerCacheEnabled && promptBuilder.estimateTokens(compressed) >= providerCacheMinTokens) {
+            try {
+                String cachedContent = geminiAiService.createCachedContent(compressed, maxLifetime());
+                session = new ConversationSession(document.getId(), userId, cachedContent, List.of(), maxRecentTurns);
+            } catch (Exception e) {
+                logger.warn("Context caching failed for document {}, using local context: {}",
+                        document.getId(), e.getMessage());
+            }
+        }
+        if (session == null) {
+            List<String> chunks = compressed.isEmpty() ? List.of() : promptBuilder.split(compressed, chunkTokens);
+            session = new ConversationSession(document.getId(), userId, null, chunks, maxRecentTurns);
+        }
+
+        sessions.put(session.getId(), session);
+        logger.debug("Started {} session {} for document {}",
+                session.usesProviderCache() ? "cached" : "local", session.getId(), document.getId());
+        enforceMemoryCap();
+        return session;
+    }
+
+    /**
+     * Returns the user's live session with the given id and marks it as used.
+     */
+    public Optional<ConversationSession> find(String sessionId, Long userId) {
+        ConversationSession session = sessions.get(sessionId);
+        if (session == null || !session.getUserId().equals(userId)) {
+            return Optional.empty();
+        }
+        if (isExpired(session, Instant.now())) {
+            evict(session);
+            return Optional.empty();
+        }
+        session.touch();
+        return Optional.of(session);
+    }
+
+    /**
+     * Answers a question in the session, sending only what the model does not already have.
+     */
+    public DocumentAnalysis ask(ConversationSession session, Document document, String question) {
+        String excerpts = null;
+        if (!session.usesProviderCache()) {
+            // Earlier questions help resolve follow-ups like "and what is the penalty for that?"
+            StringBuilder query = new StringBuilder(question);
+            for (ConversationSession.Turn turn : session.getRecentTurns()) {
+                query.append(' ').append(turn.question());
+            }
+            excerpts = promptBuilder.selectRelevant(session.getContextChunks(), query.toString(), contextTokens);
+        }
+
+        DocumentAnalysis analysis = geminiAiService.answerInSession(session, document, question, excerpts);
+        enforceMemoryCap();
+        return analysis;
+    }
+
+    public void end(ConversationSession session) {
+        evict(session);
+    }
+
+    public Instant expiresAt(ConversationSession session) {
+        Instant idleExpiry = session.getLastAccessedAt().plus(Duration.ofMinutes(idleTtlMinutes));
+        Instant lifetimeExpiry = session.getCreatedAt().plus(maxLifetime());
+        return idleExpiry.isBefore(lifetimeExpiry) ? idleExpiry : lifetimeExpiry;
+    }
+
+    @Scheduled(fixedDelayString = "${app.ai.sessions.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        Instant now = Instant.now();
+        for (ConversationSession session : sessions.values()) {
+            if (isExpired(session, now)) {
+                evict(session);
+            }
+        }
+    }
+
+    private void enforceMemoryCap() {
+        long maxBytes = maxMemoryMb * 1024 * 1024;
+        long used = 0;
+        for (ConversationSession session : sessions.values()) {
+            used += session.estimatedBytes();
+        }
+        if (used <= maxBytes) {
+            return;
+        }
+
+        List<ConversationSession> byLastAccess = new ArrayList<>(sessions.values());
+        byLastAccess.sort(Comparator.comparing(ConversationSession::getLastAccessedAt));
+        for (ConversationSession session : byLastAccess) {
+            if (used <= maxBytes) {
+                break;
+            }
+            used -= session.estimatedBytes();
+            evict(session);
+            logger.info("Evicted session {} to stay within the {} MB session memory cap", session.getId(), maxMemoryMb);
+        }
+    }
+
+    private boolean isExpired(ConversationSession session, Instant now) {
+        return !expiresAt(session).isAfter(now);
+    }
+
+    private void evict(ConversationSession session) {
+        if (sessions.remove(session.getId(), session) && session.usesProviderCache()) {
+            geminiAiService.deleteCachedContent(session.getCachedContentName());
+        }
+    }
+
+    private Duration maxLifetime() {
+        return Duration.ofMinutes(maxLifetimeMinutes);
+    }
+}
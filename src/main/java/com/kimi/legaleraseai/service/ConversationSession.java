@@ -0,0 +1,104 @@
+package com.kimi.legaleraseai.service;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A multi-turn Q&A conversation about one document.
+ *
+ * The document context is prepared once when the session starts: either a provider-side
+ * cached content (referenced by name) or a local set of compressed chunks from which the
+ * passages relevant to each question are picked. Only the most recent turns are kept in
+ * memory; the full history is persisted as QUESTION_ANSWER analyses tagged with the session id.
+ */
+public class ConversationSession {
+
+    public record Turn(String question, String answer) {
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final Long documentId;
+    private final Long userId;
+    private final String cachedContentName;
+    private final List<String> contextChunks;
+    private final int maxRecentTurns;
+    private final Instant createdAt = Instant.now();
+    private final Deque<Turn> recentTurns = new ArrayDeque<>();
+    private volatile Instant lastAccessedAt = createdAt;
+    private long contextChars;
+    private long turnChars;
+
+    public ConversationSession(Long documentId, Long userId, String cachedContentName,
+                               List<String> contextChunks, int maxRecentTurns) {
+        this.documentId = documentId;
+        this.userId = userId;
+        this.cachedContentName = cachedContentName;
+        this.contextChunks = contextChunks;
+        this.maxRecentTurns = maxRecentTurns;
+        for (String chunk : contextChunks) {
+            contextChars += chunk.length();
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    /**
+     * Name of the provider cached content holding the document, or null when the local chunk set is used.
+     */
+    public String getCachedContentName() {
+        return cachedContentName;
+    }
+
+    public boolean usesProviderCache() {
+        return cachedContentName != null;
+    }
+
+    public List<String> getContextChunks() {
+        return contextChunks;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getLastAccessedAt() {
+        return lastAccessedAt;
+    }
+
+    public void touch() {
+        lastAccessedAt = Instant.now();
+    }
+
+    public synchronized List<Turn> getRecentTurns() {
+        return List.copyOf(recentTurns);
+    }
+
+    public synchronized void addTurn(String question, String answer) {
+        recentTurns.addLast(new Turn(question, answer));
+        turnChars += question.length() + answer.length();
+        while (recentTurns.size() > maxRecentTurns) {
+            Turn dropped = recentTurns.removeFirst();
+            turnChars -= dropped.question().length() + dropped.answer().length();
+        }
+    }
+
+    /**
+     * Approximate heap held by the session (UTF-16 chars), used for the memory cap.
+     */
+    public synchronized long estimatedBytes() {
+        return 2 * (contextChars + turnChars);
+    }
+}
@@ -0,0 +1,486 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory BM25 index of passages from all of a user's documents, for questions across the corpus.
+ *
+ * Extracted text is cut into passages of about {@code chunk-words} words along page (form feed)
+ * and paragraph boundaries, so every passage knows the page it came from. Each term has a
+ * posting list of passage numbers and counts in primitive arrays; a search only walks the
+ * postings of the query terms, so its cost depends on the index and not on the amount of text.
+ * Users are loaded on first search and kept in an LRU cache; new and deleted documents of
+ * loaded users are applied in place. Documents extracted or deleted on other nodes are picked up
+ * by comparing the count and id sum of the user's extracted documents with the database at most
+ * every {@code refresh-check-seconds}, reloading the user when they differ.
+ */
+@Service
+public class CorpusIndex {
+    private static final Logger logger = LoggerFactory.getLogger(CorpusIndex.class);
+
+    private static final int LOAD_PAGE_SIZE = 100;
+
+    // Standard BM25 term-frequency saturation and length normalization
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Pattern BLANK_LINES = Pattern.compile("\\n\\s*\\n");
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "the", "this", "that", "these", "those", "is", "are", "was", "were", "be", "been",
+            "do", "does", "did", "of", "in", "on", "at", "to", "for", "from", "by", "with", "about", "as",
+            "and", "or", "any", "all", "there", "it", "its", "i", "we", "you", "my", "our", "your", "me", "us",
+            "can", "could", "would", "should", "will", "shall", "may", "might", "must", "such", "which",
+            "what", "who", "how", "please", "hereby", "herein", "thereof");
+
+    public record Passage(long documentId, String documentName, Integer page, String text, double score) {
+    }
+
+    record Chunk(Integer page, String text) {
+    }
+
+    @Value("${app.ai.corpus-qa.chunk-words:200}")
+    private int chunkWords;
+
+    @Value("${app.ai.corpus-qa.max-users:50}")
+    private int maxUsers;
+
+    // Share of deleted passages at which a user's index is dropped and rebuilt on the next search
+    @Value("${app.ai.corpus-qa.max-removed-ratio:0.3}")
+    private double maxRemovedRatio;
+
+    @Value("${app.ai.corpus-qa.refresh-check-seconds:10}")
+    private long refreshCheckSeconds;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    // Guarded by "this"; access order makes it an LRU
+    private final LinkedHashMap<Long, UserCorpus> users = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Passages of the user's documents that best match the query, highest BM25 score first.
+     */
+    public List<Passage> search(Long userId, String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(terms(query));
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        return userCorpus(userId).search(terms, limit);
+    }
+
+    public void index(Document document) {
+        if (document.getId() == null || document.getUser() == null || document.getExtractedText() == null) {
+            return;
+        }
+        UserCorpus loaded = loadedUser(document.getUser().getId());
+        if (loaded != null) {
+            loaded.add(document.getId(), document.getOriginalName(), chunk(document.getExtractedText(), chunkWords));
+        }
+    }
+
+    public void remove(Document document) {
+        if (document.getId() == null || document.getUser() == null) {
+            return;
+        }
+        Long userId = document.getUser().getId();
+        UserCorpus loaded = loadedUser(userId);
+        if (loaded != null && loaded.remove(document.getId()) > maxRemovedRatio) {
+            synchronized (this) {
+                users.remove(userId, loaded);
+            }
+        }
+    }
+
+    /**
+     * Users that are not loaded need no update; they are read from the database on their next search.
+     * A user still loading is updated once the load is done.
+     */
+    private synchronized UserCorpus loadedUser(Long userId) {
+        return users.get(userId);
+    }
+
+    private UserCorpus userCorpus(Long userId) {
+        UserCorpus user = loadedEntry(userId);
+        if (user.refreshDue(refreshCheckSeconds)
+                && !user.matches(documentRepository.findTextFingerprintByUserId(userId))) {
+            logger.debug("Documents of user {} changed on another node, reloading the corpus index", userId);
+            synchronized (this) {
+                users.remove(userId, user);
+            }
+            user = loadedEntry(userId);
+        }
+        return user;
+    }
+
+    private UserCorpus loadedEntry(Long userId) {
+        UserCorpus user = userEntry(userId);
+        user.ensureLoaded(() -> load(userId, user));
+        return user;
+    }
+
+    private synchronized UserCorpus userEntry(Long userId) {
+        UserCorpus user = users.get(userId);
+        if (user == null) {
+            user = new UserCorpus();
+            users.put(userId, user);
+            if (users.size() > maxUsers) {
+                Iterator<Long> eldest = users.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return user;
+    }
+
+    private void load(Long userId, UserCorpus user) {
+        long started = System.currentTimeMillis();
+        long afterId = 0;
+        List<Object[]> rows;
+        do {
+            rows = documentRepository.findTextsByUserIdAfter(userId, afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+            for (Object[] row : rows) {
+                afterId = (Long) row[0];
+                user.add(afterId, (String) row[1], chunk((String) row[2], chunkWords));
+            }
+        } while (rows.size() == LOAD_PAGE_SIZE);
+        logger.debug("Loaded {} passages of user {} into the corpus index in {} ms",
+                user.size(), userId, System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Lower-case, stemmed words of a text without stop words, in order.
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() >= 2 && !STOP_WORDS.contains(word)) {
+                terms.add(QuestionAnswerCache.stem(word));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Cuts text into passages of about {@code chunkWords} words. Passages never span a page; paragraphs
+     * are kept whole unless they are longer than a passage, in which case they are cut between words.
+     * Pages are numbered from 1 when the text has form feeds, and are null otherwise.
+     */
+    static List<Chunk> chunk(String text, int chunkWords) {
+        List<Chunk> chunks = new ArrayList<>();
+        String[] pages = text.split("\f", -1);
+        for (int p = 0; p < pages.length; p++) {
+            Integer page = pages.length > 1 ? p + 1 : null;
+            StringBuilder current = new StringBuilder();
+            int words = 0;
+            for (String paragraph : BLANK_LINES.split(pages[p])) {
+                String rest = paragraph.strip();
+                int paragraphWords = countWords(rest);
+                if (words > 0 && words + paragraphWords > chunkWords) {
+                    chunks.add(new Chunk(page, current.toString()));
+                    current.setLength(0);
+                    words = 0;
+                }
+                while (paragraphWords > chunkWords) {
+                    int end = endOfWords(rest, chunkWords);
+                    chunks.add(new Chunk(page, rest.substring(0, end)));
+                    rest = rest.substring(end).strip();
+                    paragraphWords = countWords(rest);
+                }
+                if (paragraphWords == 0) {
+                    continue;
+                }
+                if (!current.isEmpty()) {
+                    current.append("\n\n");
+                }
+                current.append(rest);
+                words += paragraphWords;
+            }
+            if (words > 0) {
+                chunks.add(new Chunk(page, current.toString()));
+            }
+        }
+        return chunks;
+    }
+
+    private static int countWords(String text) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean space = Character.isWhitespace(text.charAt(i));
+            if (!space && !inWord) {
+                words++;
+            }
+            inWord = !space;
+        }
+        return words;
+    }
+
+    /**
+     * Offset just after the given number of words.
+     */
+    private static int endOfWords(String text, int words) {
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean space = Character.isWhitespace(text.charAt(i));
+            if (space && inWord && --words == 0) {
+                return i;
+            }
+            inWord = !space;
+        }
+        return text.length();
+    }
+
+    /**
+     * Term postings of one user's passages. Deleted passages stay in the arrays, marked as removed,
+     * until the user is rebuilt.
+     */
+    private static final class UserCorpus {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Postings> postings = new HashMap<>();
+        private final Map<Long, String> documentNames = new HashMap<>();
+        // Passages of a document are numbered consecutively: [first, end)
+        private final Map<Long, int[]> passageRanges = new HashMap<>();
+        private final BitSet removed = new BitSet();
+        private volatile boolean loaded;
+        private volatile long checkedAt;
+
+        private int size;
+        private int removedCount;
+        // Sum of the indexed document ids; with their number, what is compared with the database
+        private long documentIdSum;
+        private long totalLength;
+        private long[] documentIds = new long[256];
+        private int[] pages = new int[256];
+        private int[] lengths = new int[256];
+        private String[] texts = new String[256];
+
+        /**
+         * Runs the loader on first use while holding this user's write lock, so other users are not
+         * blocked by its queries and documents indexed or removed meanwhile wait for it rather than
+         * being missed.
+         */
+        void ensureLoaded(Runnable loader) {
+            if (loaded) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                if (!loaded) {
+                    loader.run();
+                    loaded = true;
+                    checkedAt = System.nanoTime();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return size - removedCount;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Whether the refresh interval has passed since the last check; if so, the next check starts now.
+         */
+        boolean refreshDue(long intervalSeconds) {
+            long now = System.nanoTime();
+            if (now - checkedAt < TimeUnit.SECONDS.toNanos(intervalSeconds)) {
+                return false;
+            }
+            checkedAt = now;
+            return true;
+        }
+
+        /**
+         * Whether the index holds the documents described by a [count, id sum] row from the database.
+         */
+        boolean matches(List<Object[]> fingerprint) {
+            if (fingerprint.isEmpty()) {
+                return true;
+            }
+            Object[] row = fingerprint.get(0);
+            long count = row[0] != null ? ((Number) row[0]).longValue() : 0;
+            long sum = row[1] != null ? ((Number) row[1]).longValue() : 0;
+            lock.readLock().lock();
+            try {
+                return count == passageRanges.size() && sum == documentIdSum;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void add(long documentId, String documentName, List<Chunk> chunks) {
+            // Tokenize before taking the lock
+            List<Map<String, Integer>> counts = new ArrayList<>(chunks.size());
+            int[] chunkLengths = new int[chunks.size()];
+            for (int i = 0; i < chunks.size(); i++) {
+                Map<String, Integer> chunkCounts = new HashMap<>();
+                for (String term : terms(chunks.get(i).text())) {
+                    chunkCounts.merge(term, 1, Integer::sum);
+                    chunkLengths[i]++;
+                }
+                counts.add(chunkCounts);
+            }
+
+            lock.writeLock().lock();
+            try {
+                removeLocked(documentId);
+                documentNames.put(documentId, documentName);
+                passageRanges.put(documentId, new int[]{size, size + chunks.size()});
+                documentIdSum += documentId;
+                for (int i = 0; i < chunks.size(); i++) {
+                    if (size == texts.length) {
+                        grow();
+                    }
+                    int passage = size++;
+                    Chunk chunk = chunks.get(i);
+                    documentIds[passage] = documentId;
+                    pages[passage] = chunk.page() != null ? chunk.page() : 0;
+                    lengths[passage] = chunkLengths[i];
+                    texts[passage] = chunk.text();
+                    totalLength += chunkLengths[i];
+                    for (Map.Entry<String, Integer> term : counts.get(i).entrySet()) {
+                        postings.computeIfAbsent(term.getKey(), key -> new Postings()).add(passage, term.getValue());
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * @return the share of passages now marked as removed
+         */
+        double remove(long documentId) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(documentId);
+                return size == 0 ? 0 : (double) removedCount / size;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void removeLocked(long documentId) {
+            int[] range = passageRanges.remove(documentId);
+            if (range == null) {
+                return;
+            }
+            documentNames.remove(documentId);
+            documentIdSum -= documentId;
+            for (int passage = range[0]; passage < range[1]; passage++) {
+                removed.set(passage);
+                removedCount++;
+                totalLength -= lengths[passage];
+                // The text is no longer needed; the postings are skipped through the removed set
+                texts[passage] = null;
+            }
+        }
+
+        List<Passage> search(Set<String> terms, int limit) {
+            lock.readLock().lock();
+            try {
+                int live = size - removedCount;
+                if (live == 0) {
+                    return List.of();
+                }
+                double averageLength = Math.max(1, (double) totalLength / live);
+                float[] scores = new float[size];
+                int[] touched = new int[16];
+                int touchedCount = 0;
+
+                for (String term : terms) {
+                    Postings termPostings = postings.get(term);
+                    if (termPostings == null) {
+                        continue;
+                    }
+                    // Document frequency still counts removed passages until the user is rebuilt
+                    int frequency = Math.min(termPostings.size, live);
+                    double idf = Math.log(1 + (live - frequency + 0.5) / (frequency + 0.5));
+                    for (int i = 0; i < termPostings.size; i++) {
+                        int passage = termPostings.passages[i];
+                        if (removed.get(passage)) {
+                            continue;
+                        }
+                        int count = termPostings.counts[i];
+                        double normalized = count * (K1 + 1)
+                                / (count + K1 * (1 - B + B * lengths[passage] / averageLength));
+                        if (scores[passage] == 0) {
+                            if (touchedCount == touched.length) {
+                                touched = Arrays.copyOf(touched, touchedCount * 2);
+                            }
+                            touched[touchedCount++] = passage;
+                        }
+                        scores[passage] += (float) (idf * normalized);
+                    }
+                }
+
+                PriorityQueue<Integer> top = new PriorityQueue<>(Comparator.comparingDouble(passage -> scores[passage]));
+                for (int i = 0; i < touchedCount; i++) {
+                    int passage = touched[i];
+                    if (top.size() < limit) {
+                        top.add(passage);
+                    } else if (scores[passage] > scores[top.peek()]) {
+                        top.poll();
+                        top.add(passage);
+                    }
+                }
+                List<Passage> passages = new ArrayList<>(top.size());
+                for (int passage : top) {
+                    long documentId = documentIds[passage];
+                    passages.add(new Passage(documentId, documentNames.get(documentId),
+                            pages[passage] > 0 ? pages[passage] : null, texts[passage], scores[passage]));
+                }
+                passages.sort(Comparator.comparingDouble(Passage::score).reversed());
+                return passages;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void grow() {
+            int capacity = texts.length * 2;
+            documentIds = Arrays.copyOf(documentIds, capacity);
+            pages = Arrays.copyOf(pages, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+        }
+    }
+
+    private static final class Postings {
+        private int size;
+        private int[] passages = new int[4];
+        private int[] counts = new int[4];
+
+        void add(int passage, int count) {
+            if (size == passages.length) {
+                passages = Arrays.copyOf(passages, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            passages[size] = passage;
+            counts[size++] = count;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.kimi.legaleraseai.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Answers questions across all of a user's documents.
+ *
+ * Candidate passages come from the {@link CorpusIndex}; near-identical passages (the same
+ * boilerplate in several contracts) are dropped and each document contributes at most a few,
+ * so the evidence covers more documents. Only a bounded evidence set, numbered for citation,
+ * is sent to the model, whatever the size of the corpus.
+ */
+@Service
+public class CorpusQuestionService {
+
+    private static final String NO_EVIDENCE_ANSWER =
+            "None of your documents contain passages that match this question.";
+
+    private static final Pattern CITATION = Pattern.compile("\\[(\\d{1,3})]");
+
+    private static final int EXCERPT_PREVIEW_LENGTH = 300;
+
+    public record Citation(int index, long documentId, String documentName, Integer page, String excerpt,
+                           boolean cited) {
+    }
+
+    public record CorpusAnswer(String answer, List<Citation> citations) {
+    }
+
+    @Value("${app.ai.corpus-qa.max-candidates:50}")
+    private int maxCandidates;
+
+    @Value("${app.ai.corpus-qa.max-evidence:12}")
+    private int maxEvidence;
+
+    @Value("${app.ai.corpus-qa.max-passages-per-document:3}")
+    private int maxPassagesPerDocument;
+
+    @Value("${app.ai.corpus-qa.evidence-tokens:6000}")
+    private int evidenceTokens;
+
+    // Word-set Jaccard similarity at which a passage counts as a duplicate of one already selected
+    @Value("${app.ai.corpus-qa.duplicate-similarity:0.8}")
+    private double duplicateSimilarity;
+
+    @Autowired
+    private CorpusIndex corpusIndex;
+
+    @Autowired
+    private GeminiAiService geminiAiService;
+
+    @Autowired
+    private PromptBuilder promptBuilder;
+
+    public CorpusAnswer answer(Long userId, String question) throws Exception {
+        List<CorpusIndex.Passage> evidence = selectEvidence(corpusIndex.search(userId, question, maxCandidates));
+        if (evidence.isEmpty()) {
+            return new CorpusAnswer(NO_EVIDENCE_ANSWER, List.of());
+        }
+
+        StringBuilder excerpts = new StringBuilder();
+        for (int i = 0; i < evidence.size(); i++) {
+            CorpusIndex.Passage passage = evidence.get(i);
+            excerpts.append('[').append(i + 1).append("] ").append(passage.documentName());
+            if (passage.page() != null) {
+                excerpts.append(", page ").append(passage.page());
+            }
+            excerpts.append(":\n").append(passage.text()).append("\n\n");
+        }
+        String answer = geminiAiService.answerFromExcerpts(question, excerpts.toString());
+
+        Set<Integer> cited = new HashSet<>();
+        Matcher matcher = CITATION.matcher(answer);
+        while (matcher.find()) {
+            cited.add(Integer.parseInt(matcher.group(1)));
+        }
+        List<Citation> citations = new ArrayList<>(evidence.size());
+        for (int i = 0; i < evidence.size(); i++) {
+            CorpusIndex.Passage passage = evidence.get(i);
+            citations.add(new Citation(i + 1, passage.documentId(), passage.documentName(), passage.page(),
+                    preview(passage.text()), cited.contains(i + 1)));
+        }
+        return new CorpusAnswer(answer, citations);
+    }
+
+    /**
+     * Best candidates without near-duplicates, at most a few per document, within the evidence budget.
+     */
+    private List<CorpusIndex.Passage> selectEvidence(List<CorpusIndex.Passage> candidates) {
+        List<CorpusIndex.Passage> selected = new ArrayList<>();
+        List<Set<String>> selectedTerms = new ArrayList<>();
+        Map<Long, Integer> perDocument = new HashMap<>();
+        int tokens = 0;
+
+        for (CorpusIndex.Passage candidate : candidates) {
+            if (selected.size() >= maxEvidence) {
+                break;
+            }
+            if (perDocument.getOrDefault(candidate.documentId(), 0) >= maxPassagesPerDocument) {
+                continue;
+            }
+            Set<String> terms = new HashSet<>(CorpusIndex.terms(candidate.text()));
+            if (selectedTerms.stream().anyMatch(other -> jaccard(terms, other) >= duplicateSimilarity)) {
+                continue;
+            }
+            // A later, shorter passage may still fit
+            int cost = promptBuilder.estimateTokens(candidate.text());
+            if (tokens + cost > evidenceTokens) {
+                continue;
+            }
+            tokens += cost;
+            selected.add(candidate);
+            selectedTerms.add(terms);
+            perDocument.merge(candidate.documentId(), 1, Integer::sum);
+        }
+        return selected;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1;
+        }
+        int shared = 0;
+        for (String term : a) {
+            if (b.contains(term)) {
+                shared++;
+            }
+        }
+        return (double) shared / (a.size() + b.size() - shared);
+    }
+
+    private static String preview(String text) {
+        return text.length() <= EXCERPT_PREVIEW_LENGTH ? text : text.substring(0, EXCERPT_PREVIEW_LENGTH) + "...";
+    }
+}
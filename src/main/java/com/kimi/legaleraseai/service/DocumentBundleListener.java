@@ -0,0 +1,78 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports writes of documents, analyses and clauses to the {@link DocumentBundleService}.
+ *
+ * Registered with Hibernate's event listeners at startup, so the entities do not know about
+ * bundles. The service collects the reports per transaction and updates bundles after it commits.
+ */
+@Component
+public class DocumentBundleListener implements PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DocumentBundleService bundleService;
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        childChanged(event.getEntity());
+    }
+
+    // New and deleted documents have no bundle yet or any more, so only their updates matter
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Document document) {
+            bundleService.documentChanged(document);
+        } else {
+            childChanged(event.getEntity());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        childChanged(event.getEntity());
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private void childChanged(Object entity) {
+        if (entity instanceof DocumentAnalysis analysis) {
+            bundleService.changed(analysis.getDocument().getId(), DocumentBundleService.Part.ANALYSES);
+        } else if (entity instanceof ExtractedClause clause) {
+            bundleService.changed(clause.getDocument().getId(), DocumentBundleService.Part.CLAUSES);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.kimi.legaleraseai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.entity.DocumentBundle;
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import com.kimi.legaleraseai.repository.DocumentAnalysisRepository;
+import com.kimi.legaleraseai.repository.DocumentBundleRepository;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import com.kimi.legaleraseai.repository.ExtractedClauseRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps one precomputed JSON bundle per document with everything its detail page shows, so the
+ * page loads with a single query instead of a user lookup, a document lookup and two list queries
+ * mapped to DTOs on every request.
+ *
+ * A bundle is built when it is first read. After that, writes of the document, its analyses or its
+ * clauses only replace the affected part of it: {@link DocumentBundleListener} reports them, and
+ * once the writing transaction has committed each changed document is updated once, however many
+ * rows the transaction wrote. Bundles are stored gzipped and served as stored to clients that
+ * accept gzip, with an ETag of the JSON's hash (DocumentController adds a -gzip suffix for the
+ * compressed representation).
+ */
+@Service
+public class DocumentBundleService {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentBundleService.class);
+
+    // Bump when the layout of the JSON changes; older bundles are then rebuilt when read
+    public static final int FORMAT = 1;
+
+    public enum Part { DOCUMENT, ANALYSES, CLAUSES }
+
+    // Field names follow DocumentController.DocumentResponse, so clients can share one type
+    public record DocumentPart(Long id, String fileName, String originalName, Long fileSize, String contentType,
+                               String processingStatus, String processingError, LocalDateTime createdAt,
+                               LocalDateTime updatedAt, boolean hasExtractedText, int versionNumber,
+                               Long previousVersionId) {
+        static DocumentPart of(Document document) {
+            return new DocumentPart(document.getId(), document.getFileName(), document.getOriginalName(),
+                    document.getFileSize(), document.getContentType(), document.getProcessingStatus().name(),
+                    document.getProcessingError(), document.getCreatedAt(), document.getUpdatedAt(),
+                    document.getExtractedText() != null && !document.getExtractedText().isBlank(),
+                    document.getVersionNumber(),
+                    document.getPreviousVersion() != null ? document.getPreviousVersion().getId() : null);
+        }
+    }
+
+    // Field names follow AiController.AnalysisResponse; prompt is the question of an answer, null for a summary
+    public record AnalysisPart(Long id, String analysisType, String result, String prompt, Double confidenceScore,
+                               String status, String errorMessage, String sessionId, LocalDateTime createdAt) {
+    }
+
+    // Field names follow AiController.ClauseResponse
+    public record ClausePart(Long id, String clauseType, String clauseText, String plainEnglishExplanation,
+                             String importanceLevel, Double confidenceScore, Integer startPosition,
+                             Integer endPosition, LocalDateTime createdAt) {
+        static ClausePart of(ExtractedClause clause) {
+            return new ClausePart(clause.getId(), clause.getClauseType(), clause.getClauseText(),
+                    clause.getPlainEnglishExplanation(), clause.getImportanceLevel().name(),
+                    clause.getConfidenceScore(), clause.getStartPosition(), clause.getEndPosition(),
+                    clause.getCreatedAt());
+        }
+    }
+
+    // Most important first (the column holds enum names, so the database would sort them alphabetically)
+    private static final Comparator<ExtractedClause> BY_IMPORTANCE = Comparator
+            .comparing(ExtractedClause::getImportanceLevel, Comparator.reverseOrder())
+            .thenComparing(ExtractedClause::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private static final class Pending {
+        final EnumSet<Part> parts = EnumSet.noneOf(Part.class);
+        DocumentPart document;
+    }
+
+    @Value("${app.documents.bundle.recent-questions:10}")
+    private int recentQuestions;
+
+    @Autowired
+    private DocumentBundleRepository bundleRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentAnalysisRepository analysisRepository;
+
+    @Autowired
+    private ExtractedClauseRepository clauseRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Updates run after another transaction has committed, so they need a transaction of their own
+    private TransactionTemplate newTransaction;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @PostConstruct
+    void init() {
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * The user's bundle of a document, built first if the document has none yet.
+     *
+     * @return empty if the user has no such document
+     */
+    public Optional<DocumentBundle> get(Long documentId, Long userId) {
+        Optional<DocumentBundle> stored = bundleRepository.findByDocumentIdAndUserId(documentId, userId);
+        if (stored.isPresent() && stored.get().getFormat() == FORMAT) {
+            return stored;
+        }
+        if (stored.isEmpty() && !documentRepository.existsByIdAndUserId(documentId, userId)) {
+            return Optional.empty();
+        }
+        return Optional.of(build(documentId));
+    }
+
+    /**
+     * The ETag of the user's current bundle of a document, if there is one.
+     */
+    public Optional<String> etag(Long documentId, Long userId) {
+        return bundleRepository.findEtag(documentId, userId, FORMAT);
+    }
+
+    /**
+     * The uncompressed JSON of a bundle.
+     */
+    public byte[] json(DocumentBundle bundle) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bundle.getContent()))) {
+            return in.readAllBytes();
+        }
+    }
+
+    public void delete(Long documentId) {
+        bundleRepository.deleteByDocumentId(documentId);
+    }
+
+    /**
+     * Builds a document's bundle from scratch, replacing the stored one.
+     */
+    public DocumentBundle build(Long documentId) {
+        try {
+            // Lock the stored bundle before reading, so an update committed meanwhile waits for this
+            // build instead of being overwritten by state read before it
+            return transactionTemplate.execute(status -> {
+                Optional<DocumentBundle> stored = bundleRepository.findForUpdate(documentId);
+                Document document = documentRepository.findById(documentId)
+                        .orElseThrow(() -> new IllegalArgumentException("Document not found: " + documentId));
+                List<ExtractedClause> clauses =
+                        clauseRepository.findByDocumentOrderByImportanceLevelDescCreatedAtDesc(document);
+
+                ObjectNode bundle = objectMapper.createObjectNode();
+                bundle.put("documentId", documentId);
+                bundle.put("version", 0);
+                bundle.set("document", objectMapper.valueToTree(DocumentPart.of(document)));
+                setAnalyses(bundle, documentId);
+                setClauses(bundle, clauses);
+
+                Long userId = document.getUser().getId();
+                return write(stored.orElseGet(() -> new DocumentBundle(documentId, userId)), bundle);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Built at the same time by another request
+            return bundleRepository.findById(documentId).orElseThrow(() -> e);
+        }
+    }
+
+    /**
+     * Records that the document was written; its bundle is updated after the transaction commits.
+     */
+    void documentChanged(Document document) {
+        schedule(document.getId(), Part.DOCUMENT, DocumentPart.of(document));
+    }
+
+    /**
+     * Records that analyses or clauses of the document were written, added or removed.
+     */
+    void changed(Long documentId, Part part) {
+        schedule(documentId, part, null);
+    }
+
+    private void schedule(Long documentId, Part part, DocumentPart document) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Pending pending = new Pending();
+            pending.parts.add(part);
+            pending.document = document;
+            update(documentId, pending);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<Long, Pending> pendingByDocument = (Map<Long, Pending>) TransactionSynchronizationManager.getResource(this);
+        if (pendingByDocument == null) {
+            Map<Long, Pending> created = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    created.forEach(DocumentBundleService.this::update);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(DocumentBundleService.this);
+                }
+            });
+            pendingByDocument = created;
+        }
+        Pending pending = pendingByDocument.computeIfAbsent(documentId, id -> new Pending());
+        pending.parts.add(part);
+        if (document != null) {
+            pending.document = document;
+        }
+    }
+
+    private void update(Long documentId, Pending pending) {
+        try {
+            newTransaction.executeWithoutResult(status -> {
+                Optional<DocumentBundle> stored = bundleRepository.findForUpdate(documentId);
+                // Documents whose page was never opened have no bundle; it is built when first read
+                if (stored.isEmpty() || stored.get().getFormat() != FORMAT) {
+                    return;
+                }
+                ObjectNode bundle = read(stored.get());
+                if (pending.document != null) {
+                    bundle.set("document", objectMapper.valueToTree(pending.document));
+                }
+                if (pending.parts.contains(Part.ANALYSES)) {
+                    setAnalyses(bundle, documentId);
+                }
+                if (pending.parts.contains(Part.CLAUSES)) {
+                    setClauses(bundle, clauseRepository.findByDocumentOrderByImportanceLevelDescCreatedAtDesc(
+                            documentRepository.getReferenceById(documentId)));
+                }
+                write(stored.get(), bundle);
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Could not update bundle of document {}: {}", documentId, e.getMessage());
+            // Without the update the bundle is stale; dropping it makes the next read rebuild it
+            try {
+                newTransaction.executeWithoutResult(status -> bundleRepository.deleteByDocumentId(documentId));
+            } catch (RuntimeException deleteError) {
+                logger.error("Could not drop stale bundle of document {}: {}", documentId, deleteError.getMessage());
+            }
+        }
+    }
+
+    private void setAnalyses(ObjectNode bundle, Long documentId) {
+        List<Object[]> summaries = analysisRepository.findResultRows(documentId,
+                DocumentAnalysis.AnalysisType.SUMMARY, DocumentAnalysis.AnalysisStatus.COMPLETED, PageRequest.of(0, 1));
+        bundle.set("summary", summaries.isEmpty() ? NullNode.getInstance() : objectMapper.valueToTree(
+                summary(summaries.get(0))));
+
+        List<AnalysisPart> answers = new ArrayList<>();
+        for (Object[] row : analysisRepository.findAnswerRows(documentId, DocumentAnalysis.AnalysisType.QUESTION_ANSWER,
+                DocumentAnalysis.AnalysisStatus.COMPLETED, PageRequest.of(0, recentQuestions))) {
+            answers.add(new AnalysisPart((Long) row[0], DocumentAnalysis.AnalysisType.QUESTION_ANSWER.name(),
+                    (String) row[1], (String) row[5], (Double) row[2],
+                    DocumentAnalysis.AnalysisStatus.COMPLETED.name(), null, (String) row[3], (LocalDateTime) row[4]));
+        }
+        bundle.set("recentQuestions", objectMapper.valueToTree(answers));
+    }
+
+    private static AnalysisPart summary(Object[] row) {
+        return new AnalysisPart((Long) row[0], ((DocumentAnalysis.AnalysisType) row[1]).name(), (String) row[2], null,
+                (Double) row[3], ((DocumentAnalysis.AnalysisStatus) row[4]).name(), (String) row[5],
+                (String) row[6], (LocalDateTime) row[7]);
+    }
+
+    private void setClauses(ObjectNode bundle, List<ExtractedClause> clauses) {
+        bundle.set("clauses", objectMapper.valueToTree(clauses.stream()
+                .sorted(BY_IMPORTANCE)
+                .map(ClausePart::of)
+                .toList()));
+    }
+
+    private DocumentBundle write(DocumentBundle stored, ObjectNode bundle) {
+        stored.setVersion(stored.getVersion() + 1);
+        bundle.put("version", stored.getVersion());
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(bundle);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(json);
+            }
+            stored.setFormat(FORMAT);
+            stored.setEtag("\"" + HexFormat.of().formatHex(sha256().digest(json), 0, 16) + "\"");
+            stored.setContent(compressed.toByteArray());
+            stored.setJsonLength(json.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bundleRepository.save(stored);
+    }
+
+    private ObjectNode read(DocumentBundle stored) {
+        try {
+            return (ObjectNode) objectMapper.readTree(json(stored));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable bundle of document " + stored.getDocumentId(), e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
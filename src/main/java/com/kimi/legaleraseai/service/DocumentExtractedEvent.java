@@ -0,0 +1,7 @@
+package com.kimi.legaleraseai.service;
+
+/**
+ * Published on the node that extracted the text, once the document is saved as COMPLETED.
+ */
+public record DocumentExtractedEvent(Long documentId, Long userId) {
+}
@@ -1,22 +1,37 @@
 package com.kimi.legaleraseai.service;
 
 import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.Job;
 import com.kimi.legaleraseai.entity.User;
 import com.kimi.legaleraseai.repository.DocumentRepository;
 import org.apache.tika.Tika;
 import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.ToTextContentHandler;
+import org.apache.tika.sax.WriteOutContentHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.UUID;
 
 @Service
@@ -28,9 +43,62 @@ public class DocumentProcessingService {
     @Autowired
     private DocumentRepository documentRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private NearDuplicateService nearDuplicateService;
+
+    @Autowired
+    private CorpusIndex corpusIndex;
+
+    @Autowired
+    private TextStore textStore;
+
+    @Autowired
+    private PagePreviewService pagePreviewService;
+
+    @Autowired
+    private OutlineService outlineService;
+
+    @Autowired
+    private ChunkStore chunkStore;
+
+    @Autowired
+    private DocumentBundleService documentBundleService;
+
+    @Autowired
+    private JobQueue jobQueue;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     private final Tika tika = new Tika();
 
     public Document processDocument(MultipartFile file, User user) throws IOException {
+        Document document = storeDocument(file, user);
+        return extractText(document);
+    }
+
+    /**
+     * Stores an amended contract as the next version of an existing document and extracts its text.
+     */
+    public Document processNewVersion(MultipartFile file, User user, Document previousVersion) throws IOException {
+        Document document = storeDocument(file, user, previousVersion);
+        return extractText(document);
+    }
+
+    public Document storeDocument(MultipartFile file, User user) throws IOException {
+        return storeDocument(file, user, null);
+    }
+
+    /**
+     * Validates the upload, saves it to disk and creates the document record without extracting text.
+     * Used directly when extraction is queued as a job.
+     *
+     * @param previousVersion document this upload amends, or null for a new document
+     */
+    public Document storeDocument(MultipartFile file, User user, Document previousVersion) throws IOException {
         logger.info("=== Starting document processing ===");
         logger.info("File: {}, Size: {}, Type: {}", file.getOriginalFilename(), file.getSize(), file.getContentType());
         
@@ -64,31 +132,78 @@ public class DocumentProcessingService {
                 user
         );
         document.setFilePath(filePath.toString());
-        document.setProcessingStatus(Document.ProcessingStatus.PROCESSING);
+        document.setProcessingStatus(Document.ProcessingStatus.PENDING);
+        if (previousVersion != null) {
+            document.setPreviousVersion(previousVersion);
+            document.setVersionNumber(previousVersion.getVersionNumber() + 1);
+        }
 
         // Save document to database
         document = documentRepository.save(document);
         logger.info("Document saved to database with ID: {}", document.getId());
+        return document;
+    }
+
+    /**
+     * Extracts the text of a stored document and marks it COMPLETED or FAILED.
+     *
+     * Once the COMPLETED document is saved, it is added to this node's near-duplicate and corpus
+     * indexes and a {@link DocumentExtractedEvent} is published here, as both only take effect in
+     * this JVM. The stored outline, chunks and text file are queued as an INDEX_DOCUMENT job, so
+     * the upload does not wait for them.
+     */
+    public Document extractText(Document document) {
+        document.setProcessingStatus(Document.ProcessingStatus.PROCESSING);
+        document = documentRepository.save(document);
 
-        // Extract text asynchronously (in real implementation, use @Async)
         logger.info("Starting text extraction...");
         try {
-            String extractedText = extractTextFromFile(filePath.toFile());
+            String extractedText = extractTextFromFile(Paths.get(document.getFilePath()).toFile());
             logger.info("Text extraction successful, length: {} characters", extractedText.length());
             document.setExtractedText(extractedText);
+            document.setMinhashSignature(nearDuplicateService.computeSignature(extractedText));
             document.setProcessingStatus(Document.ProcessingStatus.COMPLETED);
-            logger.info("Document processing COMPLETED: {}", originalFilename);
+            document.setProcessingError(null);
+            logger.info("Document processing COMPLETED: {}", document.getOriginalName());
         } catch (Exception e) {
-            logger.error("Text extraction FAILED for document: {}", originalFilename, e);
+            logger.error("Text extraction FAILED for document: {}", document.getOriginalName(), e);
             document.setProcessingStatus(Document.ProcessingStatus.FAILED);
             document.setProcessingError(e.getMessage());
         }
 
         Document finalDocument = documentRepository.save(document);
         logger.info("Final document status: {}", finalDocument.getProcessingStatus());
+
+        if (finalDocument.getProcessingStatus() == Document.ProcessingStatus.COMPLETED) {
+            nearDuplicateService.index(finalDocument);
+            corpusIndex.index(finalDocument);
+            jobQueue.enqueue(Job.JobType.INDEX_DOCUMENT, finalDocument.getId(), finalDocument.getUser().getId(), null);
+            eventPublisher.publishEvent(new DocumentExtractedEvent(finalDocument.getId(), finalDocument.getUser().getId()));
+        }
         return finalDocument;
     }
 
+    /**
+     * Stores what is derived from a document's extracted text: its outline, chunks and text file.
+     * Runs as the INDEX_DOCUMENT job after extraction and may run again on retry; every step
+     * replaces what an earlier run built. All three are also built on first use if the job has
+     * not run yet, e.g. while no job worker is enabled.
+     */
+    public void indexDocument(Document document) {
+        if (document.getProcessingStatus() != Document.ProcessingStatus.COMPLETED
+                || document.getExtractedText() == null) {
+            logger.debug("Document {} has no extracted text to index", document.getId());
+            return;
+        }
+        chunkStore.build(document, outlineService.build(document.getId(), document.getExtractedText()));
+        try {
+            textStore.write(document.getId(), document.getExtractedText());
+        } catch (IOException e) {
+            // Written again from the database when the text is first requested
+            logger.warn("Could not write text file of document {}: {}", document.getId(), e.getMessage());
+        }
+    }
+
     private void validateFile(MultipartFile file) throws IOException {
         if (file.isEmpty()) {
             throw new IOException("File is empty");
@@ -125,7 +240,7 @@ public class DocumentProcessingService {
         
         try {
             logger.info("Starting Tika text extraction...");
-            String text = tika.parseToString(file);
+            String text = parseWithPageBreaks(file);
             logger.info("Tika extraction completed, raw text length: {}", text != null ? text.length() : 0);
             
             if (text != null) {
@@ -142,18 +257,85 @@ public class DocumentProcessingService {
         }
     }
 
-    public void deleteDocument(Document document) throws IOException {
-        // Delete file from disk
-        if (document.getFilePath() != null) {
-            Path filePath = Paths.get(document.getFilePath());
-            if (Files.exists(filePath)) {
-                Files.delete(filePath);
-                logger.info("Deleted file: {}", document.getFilePath());
+    /**
+     * Same text as {@link Tika#parseToString(File)}, with a form feed after each page of paged
+     * formats such as PDF so answers can cite page numbers.
+     */
+    private String parseWithPageBreaks(File file) throws IOException, TikaException, SAXException {
+        PageBreakTextHandler text = new PageBreakTextHandler();
+        WriteOutContentHandler limited = new WriteOutContentHandler(text, tika.getMaxStringLength());
+        Metadata metadata = new Metadata();
+        Parser parser = tika.getParser();
+        ParseContext context = new ParseContext();
+        context.set(Parser.class, parser);
+        try (InputStream stream = TikaInputStream.get(file.toPath(), metadata)) {
+            parser.parse(stream, new BodyContentHandler(limited), metadata, context);
+        } catch (SAXException e) {
+            // Like parseToString, keep the text up to the limit instead of failing
+            if (!limited.isWriteLimitReached(e)) {
+                throw e;
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes character content as plain text and a form feed at the end of each page element.
+     */
+    private static class PageBreakTextHandler extends ToTextContentHandler {
+        private static final char[] PAGE_BREAK = {'\f'};
+
+        // One entry per open div: whether it is a page
+        private final Deque<Boolean> divs = new ArrayDeque<>();
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            if ("div".equals(localName)) {
+                divs.push("page".equals(atts.getValue("class")));
+            }
+            super.startElement(uri, localName, qName, atts);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            super.endElement(uri, localName, qName);
+            if ("div".equals(localName) && !divs.isEmpty() && divs.pop()) {
+                characters(PAGE_BREAK, 0, 1);
             }
         }
+    }
 
-        // Delete from database
-        documentRepository.delete(document);
+    /**
+     * Deletes the document's rows in one transaction, then its files and in-memory index entries.
+     * A failed transaction leaves the document intact; files that cannot be deleted once it has
+     * committed are only logged, since the document is gone either way.
+     */
+    public void deleteDocument(Document document) {
+        transactionTemplate.executeWithoutResult(status -> {
+            // Keep the version chain intact: later versions now follow this document's predecessor
+            for (Document next : documentRepository.findByPreviousVersionOrderByCreatedAtDesc(document)) {
+                next.setPreviousVersion(document.getPreviousVersion());
+                documentRepository.save(next);
+            }
+            outlineService.delete(document.getId());
+            chunkStore.delete(document.getId());
+            documentRepository.delete(document);
+            // Bundle updates for the removed analyses and clauses run after commit and find no bundle
+            documentBundleService.delete(document.getId());
+        });
         logger.info("Deleted document from database: {}", document.getOriginalName());
+
+        nearDuplicateService.remove(document);
+        corpusIndex.remove(document);
+        try {
+            if (document.getFilePath() != null) {
+                Files.deleteIfExists(Paths.get(document.getFilePath()));
+                logger.info("Deleted file: {}", document.getFilePath());
+            }
+            textStore.delete(document.getId());
+            pagePreviewService.delete(document.getId());
+        } catch (IOException e) {
+            logger.warn("Could not delete files of document {}: {}", document.getId(), e.getMessage());
+        }
     }
 }
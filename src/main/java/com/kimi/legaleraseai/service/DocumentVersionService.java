@@ -0,0 +1,355 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import com.kimi.legaleraseai.repository.DocumentAnalysisRepository;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import com.kimi.legaleraseai.repository.ExtractedClauseRepository;
+import com.kimi.legaleraseai.util.TextDiff;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Re-analyzes a new version of a document incrementally against its previous version
+ * (or against a near-duplicate upload of the same user, see {@link NearDuplicateService}).
+ *
+ * The two extracted texts are diffed line by line. Clauses of the previous version whose text
+ * lies entirely in unchanged lines are carried forward; only the changed sections (expanded to
+ * their surrounding paragraph) are sent for clause extraction, and the summary is updated from
+ * the previous summary plus the removed and added text. The cost is therefore proportional to the
+ * size of the edit. Versions that changed too much are analyzed from scratch.
+ */
+@Service
+public class DocumentVersionService {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentVersionService.class);
+
+    /**
+     * Outcome of {@link #reanalyze}.
+     *
+     * @param summary the new summary, or null if the base document had none to update
+     * @param incremental false if the document was analyzed from scratch
+     */
+    public record Reanalysis(DocumentAnalysis summary, List<ExtractedClause> clauses, int carriedForwardClauses,
+                             int reanalyzedSections, int changedLines, int totalLines, boolean incremental) {
+    }
+
+    @Value("${app.ai.versions.max-diff-edits:5000}")
+    private int maxDiffEdits;
+
+    @Value("${app.ai.versions.max-incremental-change-ratio:0.5}")
+    private double maxIncrementalChangeRatio;
+
+    @Value("${app.ai.versions.context-lines:10}")
+    private int contextLines;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentAnalysisRepository analysisRepository;
+
+    @Autowired
+    private ExtractedClauseRepository clauseRepository;
+
+    @Autowired
+    private GeminiAiService geminiAiService;
+
+    @Autowired
+    private ClauseAnchorer clauseAnchorer;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * The document and its earlier versions, newest first.
+     */
+    public List<Document> getVersionHistory(Document document) {
+        List<Document> history = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (Document current = document; current != null && seen.add(current.getId());
+             current = findPreviousVersion(current)) {
+            history.add(current);
+        }
+        return history;
+    }
+
+    public Document findPreviousVersion(Document document) {
+        Document previous = document.getPreviousVersion();
+        // Reading the id does not initialize the lazy proxy, so this also works outside a session
+        return previous != null ? documentRepository.findById(previous.getId()).orElse(null) : null;
+    }
+
+    /**
+     * Summarizes and extracts the clauses of a document, reusing the analysis of its previous version.
+     */
+    public Reanalysis reanalyze(Document document) throws Exception {
+        return reanalyzeFrom(document, findPreviousVersion(document));
+    }
+
+    /**
+     * Summarizes and extracts the clauses of a document, reusing the analysis of a similar base
+     * document: its previous version or a near-duplicate upload.
+     *
+     * @param base document whose analysis is carried forward, or null to analyze in full
+     */
+    public Reanalysis reanalyzeFrom(Document document, Document base) throws Exception {
+        if (document.getExtractedText() == null || document.getExtractedText().isBlank()) {
+            throw new IllegalStateException("Document text has not been extracted yet");
+        }
+        if (base == null || base.getExtractedText() == null) {
+            return analyzeFully(document, 0, 0);
+        }
+
+        Lines oldLines = Lines.of(base.getExtractedText());
+        Lines newLines = Lines.of(document.getExtractedText());
+        TextDiff.Result diff = TextDiff.diffLines(oldLines.keys, newLines.keys, maxDiffEdits);
+        int changedLines = diff.removedCount() + diff.addedCount();
+        int totalLines = oldLines.size() + newLines.size();
+        if (changedLines > maxIncrementalChangeRatio * totalLines) {
+            logger.info("Document {} differs from document {} in {} of {} lines; analyzing from scratch",
+                    document.getId(), base.getId(), changedLines, totalLines);
+            return analyzeFully(document, changedLines, totalLines);
+        }
+
+        // Clauses
+        // Clauses that cannot be found in the base text are dropped: there is no telling whether
+        // an edit touched them, and carrying them forward would keep them through every version
+        List<ExtractedClause> carried = new ArrayList<>();
+        for (ExtractedClause clause : clauseRepository.findByDocumentOrderByImportanceLevelDescCreatedAtDesc(base)) {
+            int[] span = oldLines.locate(clause.getClauseText());
+            if (span != null && !touchesChange(diff.removed(), oldLines.lineRange(span))) {
+                carried.add(copyTo(clause, document));
+            }
+        }
+
+        List<TextDiff.Range> sections = changedSections(newLines, diff);
+        List<ExtractedClause> fresh = new ArrayList<>();
+        if (!sections.isEmpty()) {
+            String changedText = sections.stream()
+                    .map(newLines::text)
+                    .collect(Collectors.joining("\n\n"));
+            fresh = geminiAiService.extractClausesFromText(document, changedText);
+        }
+
+        // Context lines around an edit may repeat clauses that were carried forward
+        Set<String> carriedTexts = carried.stream()
+                .map(clause -> normalize(clause.getClauseText()))
+                .collect(Collectors.toSet());
+        fresh.removeIf(clause -> carriedTexts.contains(normalize(clause.getClauseText())));
+
+        List<ExtractedClause> clauses = new ArrayList<>(carried);
+        clauses.addAll(fresh);
+        // Positions of fresh clauses are relative to the changed sections until anchored in the new text
+        clauseAnchorer.anchor(document.getExtractedText(), clauses);
+        // One transaction, so a failed save leaves the previous clauses in place
+        List<ExtractedClause> toSave = clauses;
+        clauses = transactionTemplate.execute(status -> {
+            clauseRepository.deleteByDocument(document);
+            return clauseRepository.saveAll(toSave);
+        });
+
+        // Summary
+        DocumentAnalysis summary = null;
+        Optional<DocumentAnalysis> previousSummary = latestSummary(base);
+        if (previousSummary.isPresent()) {
+            if (diff.isUnchanged()) {
+                summary = new DocumentAnalysis(DocumentAnalysis.AnalysisType.SUMMARY,
+                        previousSummary.get().getResult(), document);
+                summary.setPrompt("Unchanged from document " + base.getId());
+                summary = analysisRepository.save(summary);
+            } else {
+                summary = geminiAiService.updateSummary(document, previousSummary.get().getResult(),
+                        describeChanges(oldLines, newLines, diff));
+            }
+        }
+
+        logger.info("Re-analyzed document {} against document {}: {} of {} lines changed, {} clauses carried forward, " +
+                        "{} sections re-extracted", document.getId(), base.getId(), changedLines,
+                totalLines, carried.size(), sections.size());
+        return new Reanalysis(summary, clauses, carried.size(), sections.size(),
+                changedLines, totalLines, true);
+    }
+
+    private Reanalysis analyzeFully(Document document, int changedLines, int totalLines) throws Exception {
+        DocumentAnalysis summary = geminiAiService.summarizeDocument(document);
+        List<ExtractedClause> clauses = geminiAiService.extractClauses(document);
+        return new Reanalysis(summary, clauses, 0, 1, changedLines, totalLines, false);
+    }
+
+    private Optional<DocumentAnalysis> latestSummary(Document document) {
+        return analysisRepository
+                .findByDocumentAndAnalysisTypeOrderByCreatedAtDesc(document, DocumentAnalysis.AnalysisType.SUMMARY)
+                .stream()
+                .filter(analysis -> analysis.getStatus() == DocumentAnalysis.AnalysisStatus.COMPLETED)
+                .findFirst();
+    }
+
+    /**
+     * Added lines and the places where lines were removed, each expanded to its surrounding
+     * paragraph (up to the configured number of context lines) so the model sees whole clauses.
+     */
+    private List<TextDiff.Range> changedSections(Lines newLines, TextDiff.Result diff) {
+        List<TextDiff.Range> edits = new ArrayList<>(diff.addedRanges());
+        int[] positionInNew = positionsInNew(diff);
+        for (TextDiff.Range removed : diff.removedRanges()) {
+            int anchor = positionInNew[removed.start()];
+            edits.add(new TextDiff.Range(anchor, anchor));
+        }
+        edits.sort(Comparator.comparingInt(TextDiff.Range::start));
+
+        List<TextDiff.Range> sections = new ArrayList<>();
+        for (TextDiff.Range edit : edits) {
+            int start = edit.start();
+            while (start > 0 && edit.start() - start < contextLines && !newLines.isBlank(start - 1)) {
+                start--;
+            }
+            int end = edit.end();
+            while (end < newLines.size() && end - edit.end() < contextLines && !newLines.isBlank(end)) {
+                end++;
+            }
+            if (start == end) {
+                continue;
+            }
+            TextDiff.Range last = sections.isEmpty() ? null : sections.get(sections.size() - 1);
+            if (last != null && start <= last.end()) {
+                sections.set(sections.size() - 1, new TextDiff.Range(last.start(), Math.max(last.end(), end)));
+            } else {
+                sections.add(new TextDiff.Range(start, end));
+            }
+        }
+        return sections;
+    }
+
+    /**
+     * For each old line, the index in the new text where it is (or, if removed, would have been).
+     */
+    private static int[] positionsInNew(TextDiff.Result diff) {
+        boolean[] removed = diff.removed();
+        boolean[] added = diff.added();
+        int[] positions = new int[removed.length];
+        int i = 0;
+        int j = 0;
+        while (i < removed.length) {
+            if (removed[i]) {
+                positions[i++] = j;
+            } else if (j < added.length && added[j]) {
+                j++;
+            } else {
+                positions[i++] = j++;
+            }
+        }
+        return positions;
+    }
+
+    private static String describeChanges(Lines oldLines, Lines newLines, TextDiff.Result diff) {
+        StringBuilder changes = new StringBuilder();
+        List<TextDiff.Range> removed = diff.removedRanges();
+        if (!removed.isEmpty()) {
+            changes.append("Removed text:\n");
+            removed.forEach(range -> changes.append(oldLines.text(range)).append("\n\n"));
+        }
+        List<TextDiff.Range> added = diff.addedRanges();
+        if (!added.isEmpty()) {
+            changes.append("Added text:\n");
+            added.forEach(range -> changes.append(newLines.text(range)).append("\n\n"));
+        }
+        return changes.toString();
+    }
+
+    private static boolean touchesChange(boolean[] changed, TextDiff.Range lines) {
+        for (int i = lines.start(); i < lines.end(); i++) {
+            if (changed[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ExtractedClause copyTo(ExtractedClause clause, Document document) {
+        ExtractedClause copy = new ExtractedClause(clause.getClauseType(), clause.getClauseText(), document);
+        copy.setConfidenceScore(clause.getConfidenceScore());
+        copy.setImportanceLevel(clause.getImportanceLevel());
+        copy.setPlainEnglishExplanation(clause.getPlainEnglishExplanation());
+        copy.setSimilarityVector(clause.getSimilarityVector());
+        return copy;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Lines of a text with their character offsets. Lines are compared with whitespace collapsed,
+     * so re-flowed spacing from text extraction does not count as a change.
+     */
+    private static final class Lines {
+        private final String text;
+        private final List<String> keys = new ArrayList<>();
+        private final List<Integer> starts = new ArrayList<>();
+
+        private Lines(String text) {
+            this.text = text;
+        }
+
+        static Lines of(String text) {
+            Lines lines = new Lines(text);
+            int start = 0;
+            while (start <= text.length()) {
+                int end = text.indexOf('\n', start);
+                if (end < 0) {
+                    end = text.length();
+                }
+                lines.starts.add(start);
+                lines.keys.add(text.substring(start, end).strip().replaceAll("\\s+", " "));
+                start = end + 1;
+            }
+            return lines;
+        }
+
+        int size() {
+            return keys.size();
+        }
+
+        boolean isBlank(int line) {
+            return keys.get(line).isEmpty();
+        }
+
+        String text(TextDiff.Range range) {
+            int end = range.end() < size() ? starts.get(range.end()) - 1 : text.length();
+            return text.substring(starts.get(range.start()), end);
+        }
+
+        /**
+         * Character span [start, end) of the clause text, allowing any whitespace between words.
+         */
+        int[] locate(String clauseText) {
+            if (clauseText == null || clauseText.isBlank()) {
+                return null;
+            }
+            String pattern = Arrays.stream(clauseText.strip().split("\\s+"))
+                    .map(Pattern::quote)
+                    .collect(Collectors.joining("\\s+"));
+            Matcher matcher = Pattern.compile(pattern).matcher(text);
+            return matcher.find() ? new int[]{matcher.start(), matcher.end()} : null;
+        }
+
+        TextDiff.Range lineRange(int[] span) {
+            return new TextDiff.Range(lineAt(span[0]), lineAt(Math.max(span[0], span[1] - 1)) + 1);
+        }
+
+        private int lineAt(int offset) {
+            int index = Collections.binarySearch(starts, offset);
+            return index >= 0 ? index : -index - 2;
+        }
+    }
+}
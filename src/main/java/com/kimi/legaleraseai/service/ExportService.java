@@ -0,0 +1,268 @@
+package com.kimi.legaleraseai.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.kimi.legaleraseai.repository.DocumentAnalysisRepository;
+import com.kimi.legaleraseai.repository.ExtractedClauseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports all of a user's analyses and clauses as NDJSON or CSV.
+ *
+ * Rows are read as plain column values in pages of {@code PAGE_SIZE} ids, each page in a short
+ * read-only transaction of its own, and written out before the next page is fetched. No
+ * connection is held while a slow client reads, and memory use is the same for ten documents and
+ * for ten thousand. Records are in id order; rows written while the export runs may or may not be
+ * included.
+ *
+ * Both record kinds share one set of fields: "type" is the analysis type or clause type and "text"
+ * the analysis result or clause text. An NDJSON record only has the fields of its kind; a CSV row
+ * has every column, empty where the field does not apply. Analysis prompts are not exported, as
+ * for summaries they hold the whole document text.
+ */
+@Service
+public class ExportService {
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PAGE_SIZE = 200;
+
+    public enum Format { NDJSON, CSV }
+
+    private static final String[] FIELDS = {
+            "record", "id", "documentId", "documentName", "type", "status", "importance", "confidenceScore",
+            "startPosition", "endPosition", "createdAt", "text", "explanation", "errorMessage"
+    };
+    private static final boolean[] ANALYSIS_FIELDS = {
+            true, true, true, true, true, true, false, true, false, false, true, true, false, true
+    };
+    private static final boolean[] CLAUSE_FIELDS = {
+            true, true, true, true, true, false, true, true, true, true, true, true, true, false
+    };
+
+    @Autowired
+    private DocumentAnalysisRepository analysisRepository;
+
+    @Autowired
+    private ExtractedClauseRepository clauseRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnly;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @PostConstruct
+    void init() {
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    /**
+     * Writes the export to the stream, which is left open.
+     *
+     * @param gzip whether to gzip the output as it is written
+     * @return the number of records written
+     */
+    public long export(Long userId, Format format, boolean analyses, boolean clauses, boolean gzip,
+                       OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(gzipOut != null ? gzipOut : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        RecordWriter records = format == Format.CSV ? new CsvWriter(writer) : new NdjsonWriter(writer);
+
+        long count = 0;
+        Object[] values = new Object[FIELDS.length];
+        if (analyses) {
+            List<Object[]> rows;
+            long afterId = 0;
+            do {
+                long after = afterId;
+                rows = readOnly.execute(status -> analysisRepository.findExportRowsByUserIdAfter(userId, after,
+                        PageRequest.of(0, PAGE_SIZE)));
+                for (Object[] row : rows) {
+                    Arrays.fill(values, null);
+                    values[0] = "analysis";
+                    values[1] = row[0];
+                    values[2] = row[1];
+                    values[3] = row[2];
+                    values[4] = row[3];
+                    values[5] = row[4];
+                    values[7] = row[5];
+                    values[10] = row[6];
+                    values[11] = row[7];
+                    values[13] = row[8];
+                    records.write(values, ANALYSIS_FIELDS);
+                    count++;
+                    afterId = (Long) row[0];
+                }
+            } while (rows.size() == PAGE_SIZE);
+        }
+        if (clauses) {
+            List<Object[]> rows;
+            long afterId = 0;
+            do {
+                long after = afterId;
+                rows = readOnly.execute(status -> clauseRepository.findExportRowsByUserIdAfter(userId, after,
+                        PageRequest.of(0, PAGE_SIZE)));
+                for (Object[] row : rows) {
+                    Arrays.fill(values, null);
+                    values[0] = "clause";
+                    values[1] = row[0];
+                    values[2] = row[1];
+                    values[3] = row[2];
+                    values[4] = row[3];
+                    values[6] = row[4];
+                    values[7] = row[5];
+                    values[8] = row[6];
+                    values[9] = row[7];
+                    values[10] = row[8];
+                    values[11] = row[9];
+                    values[12] = row[10];
+                    records.write(values, CLAUSE_FIELDS);
+                    count++;
+                    afterId = (Long) row[0];
+                }
+            } while (rows.size() == PAGE_SIZE);
+        }
+        records.finish();
+        writer.flush();
+        if (gzipOut != null) {
+            gzipOut.finish();
+        }
+        logger.debug("Exported {} records of user {} as {} in {} ms", count, userId, format,
+                (System.nanoTime() - start) / 1_000_000);
+        return count;
+    }
+
+    private interface RecordWriter {
+        void write(Object[] values, boolean[] fields) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * One JSON object per line, written with a streaming generator.
+     */
+    private class NdjsonWriter implements RecordWriter {
+        private final JsonGenerator generator;
+
+        NdjsonWriter(Writer writer) throws IOException {
+            this.generator = jsonFactory.createGenerator(writer);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(Object[] values, boolean[] fields) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < FIELDS.length; i++) {
+                if (!fields[i]) {
+                    continue;
+                }
+                Object value = values[i];
+                generator.writeFieldName(FIELDS[i]);
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof Double number) {
+                    generator.writeNumber(number);
+                } else if (value instanceof Number number) {
+                    generator.writeNumber(number.longValue());
+                } else {
+                    generator.writeString(String.valueOf(value));
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+
+    /**
+     * RFC 4180 CSV with a header row. Text cells that a spreadsheet would read as a formula get a
+     * leading apostrophe, since clause text comes from uploaded documents.
+     */
+    private static class CsvWriter implements RecordWriter {
+        private final Writer writer;
+
+        CsvWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            for (int i = 0; i < FIELDS.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(FIELDS[i]);
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(Object[] values, boolean[] fields) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    cell(values[i]);
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        private void cell(Object value) throws IOException {
+            if (value instanceof Number) {
+                writer.write(value.toString());
+                return;
+            }
+            String text = value.toString();
+            boolean formula = !text.isEmpty() && "=+-@\t\r".indexOf(text.charAt(0)) >= 0;
+            boolean quote = formula;
+            for (int i = 0; i < text.length() && !quote; i++) {
+                char c = text.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            if (formula) {
+                writer.write('\'');
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    writer.write('"');
+                }
+                writer.write(c);
+            }
+            writer.write('"');
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+}
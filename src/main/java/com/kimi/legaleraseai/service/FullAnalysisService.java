@@ -0,0 +1,96 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs summary, clause extraction and seeded questions for one document concurrently.
+ *
+ * Each part runs on its own virtual thread against the same loaded document, so the
+ * wall time is that of the slowest part rather than the sum. The parts are joined as a
+ * unit: if one fails with an exception or the deadline passes, the others are interrupted
+ * and the whole analysis fails. Model errors of the summary and answers are recorded as
+ * FAILED analyses and do not count; a failed clause extraction has no such record, so it
+ * fails the analysis rather than being reported as a contract without clauses.
+ */
+@Service
+public class FullAnalysisService {
+    private static final Logger logger = LoggerFactory.getLogger(FullAnalysisService.class);
+
+    @Value("${app.ai.analyze.timeout-seconds:180}")
+    private long timeoutSeconds;
+
+    @Autowired
+    private GeminiAiService geminiAiService;
+
+    public record FullAnalysis(DocumentAnalysis summary, List<ExtractedClause> clauses,
+                               List<DocumentAnalysis> answers) {
+    }
+
+    public FullAnalysis analyze(Document document, List<String> questions) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletionService<Object> completion = new ExecutorCompletionService<>(executor);
+            List<Future<Object>> tasks = new ArrayList<>();
+
+            Future<Object> summary = fork(completion, tasks, () -> geminiAiService.summarizeDocument(document));
+            Future<Object> clauses = fork(completion, tasks, () -> geminiAiService.extractClauses(document));
+            Future<Object> answers = questions.isEmpty()
+                    ? null
+                    : fork(completion, tasks, () -> geminiAiService.answerQuestions(document, questions));
+
+            joinAll(completion, tasks);
+
+            @SuppressWarnings("unchecked")
+            List<ExtractedClause> clauseList = (List<ExtractedClause>) clauses.get();
+            @SuppressWarnings("unchecked")
+            List<DocumentAnalysis> answerList = answers == null ? List.of() : (List<DocumentAnalysis>) answers.get();
+            return new FullAnalysis((DocumentAnalysis) summary.get(), clauseList, answerList);
+        }
+    }
+
+    private static Future<Object> fork(CompletionService<Object> completion, List<Future<Object>> tasks,
+                                       Callable<Object> task) {
+        Future<Object> future = completion.submit(task);
+        tasks.add(future);
+        return future;
+    }
+
+    /**
+     * Waits for every task; on the first failure or at the deadline, cancels the rest and rethrows.
+     */
+    private void joinAll(CompletionService<Object> completion, List<Future<Object>> tasks) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        try {
+            for (int remaining = tasks.size(); remaining > 0; remaining--) {
+                Future<Object> done = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    throw new TimeoutException("Analysis did not finish within " + timeoutSeconds + " seconds");
+                }
+                done.get();
+            }
+        } catch (ExecutionException e) {
+            cancelAll(tasks);
+            logger.error("Full analysis failed, cancelled remaining tasks: {}", e.getCause().getMessage(), e.getCause());
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (TimeoutException | InterruptedException e) {
+            cancelAll(tasks);
+            throw e;
+        }
+    }
+
+    private static void cancelAll(List<Future<Object>> tasks) {
+        for (Future<Object> task : tasks) {
+            task.cancel(true);
+        }
+    }
+}
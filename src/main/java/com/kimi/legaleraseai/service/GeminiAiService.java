@@ -7,19 +7,25 @@ import com.kimi.legaleraseai.entity.DocumentAnalysis;
 import com.kimi.legaleraseai.entity.ExtractedClause;
 import com.kimi.legaleraseai.repository.DocumentAnalysisRepository;
 import com.kimi.legaleraseai.repository.ExtractedClauseRepository;
+import com.kimi.legaleraseai.util.TextAnchorIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserter;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Service
 public class GeminiAiService {
@@ -31,35 +37,123 @@ public class GeminiAiService {
     @Value("${google.gemini.api.url}")
     private String apiUrl;
 
+    @Value("${google.gemini.api.stream-url}")
+    private String streamUrl;
+
+    @Value("${google.gemini.api.model:models/gemini-pro}")
+    private String model;
+
+    @Value("${google.gemini.api.cached-contents-url:https://generativelanguage.googleapis.com/v1beta/cachedContents}")
+    private String cachedContentsUrl;
+
+    // Size of the passages (runs of stored chunks) that relevant excerpts are picked from for Q&A on long documents
+    @Value("${app.ai.chunks.question-passage-tokens:1500}")
+    private int questionChunkTokens;
+
+    // Larger batches are answered in several calls of at most this many questions
+    @Value("${app.ai.questions.max-per-call:8}")
+    private int questionsPerCall = 8;
+
     @Autowired
     private DocumentAnalysisRepository analysisRepository;
 
     @Autowired
     private ExtractedClauseRepository clauseRepository;
 
+    @Autowired
+    private RequestHedger requestHedger;
+
+    @Autowired
+    private GeminiQuotaBudget quotaBudget;
+
+    @Autowired
+    private PromptBuilder promptBuilder;
+
+    @Autowired
+    private QuestionAnswerCache answerCache;
+
+    @Autowired
+    private ClausePreClassifier clausePreClassifier;
+
+    @Autowired
+    private ClauseAnchorer clauseAnchorer;
+
+    @Autowired
+    private ChunkStore chunkStore;
+
+    private static final String SUMMARY_INSTRUCTION =
+            "Please provide a comprehensive summary of the following legal document in plain English. " +
+            "Focus on the main purpose, key parties, important terms, and significant obligations or rights. " +
+            "Make it accessible to someone without legal training:\n\n";
+
+    private static final String SECTION_SUMMARY_INSTRUCTION =
+            "The following is one part of a longer legal document. Summarize this part in plain English, " +
+            "keeping the parties, key terms, obligations, rights, dates and amounts it mentions:\n\n";
+
+    private static final String COMBINE_SUMMARIES_INSTRUCTION =
+            "The following are plain English summaries of consecutive parts of one legal document. " +
+            "Combine them into a single comprehensive summary of the whole document. " +
+            "Focus on the main purpose, key parties, important terms, and significant obligations or rights. " +
+            "Make it accessible to someone without legal training:\n\n";
+
+    private static final String CLAUSE_INSTRUCTION =
+            "Analyze the following legal document and extract key clauses. " +
+            "For each clause, provide: 1) Clause type (e.g., 'Payment Terms', 'Termination', 'Liability', etc.), " +
+            "2) The exact text of the clause, 3) A plain English explanation, 4) Importance level (LOW/MEDIUM/HIGH/CRITICAL). " +
+            "Format as JSON array with fields: clauseType, clauseText, explanation, importance.\n\n";
+
+    private static final String UPDATE_SUMMARY_INSTRUCTION =
+            "Below is the plain English summary of a legal document, followed by the text that was removed " +
+            "and added to produce a new version of it. Update the summary so it describes the new version, " +
+            "keeping everything the changes do not affect, and briefly note what changed. " +
+            "Make it accessible to someone without legal training.\n\n" +
+            "Previous summary:\n%s\n\nChanges:\n";
+
+    private static final String SESSION_CONTEXT_INSTRUCTION =
+            "The following legal document will be discussed in a series of questions. " +
+            "Answer each question based only on the information in the document.\n\n" +
+            "Document content:\n";
+
+    // Partial summaries normally fit after one round; this only guards against pathological input
+    private static final int MAX_SUMMARY_ROUNDS = 3;
+
+    // Output allowance per question in a batched call, up to the model's output limit
+    private static final int BATCH_OUTPUT_TOKENS_PER_QUESTION = 1024;
+    private static final int MAX_BATCH_OUTPUT_TOKENS = 8192;
+
+    // Streamed clauses are saved in groups of at most this many, or whatever arrived within the window.
+    // Clause ids are IDENTITY, so Hibernate still sends one insert per clause; the grouping only bounds
+    // how many round trips and saveAll calls a fast stream causes
+    private static final int CLAUSE_BATCH_SIZE = 20;
+    private static final Duration CLAUSE_BATCH_WINDOW = Duration.ofMillis(500);
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_EVENT_TYPE =
+            new ParameterizedTypeReference<>() {};
+
     private final WebClient webClient;
     private final ObjectMapper objectMapper;
+    private final GeminiRequestWriter requestWriter;
 
     public GeminiAiService() {
         this.webClient = WebClient.builder()
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .build();
         this.objectMapper = new ObjectMapper();
+        this.requestWriter = new GeminiRequestWriter(objectMapper.getFactory());
     }
 
     public DocumentAnalysis summarizeDocument(Document document) {
-        String prompt = "Please provide a comprehensive summary of the following legal document in plain English. " +
-                "Focus on the main purpose, key parties, important terms, and significant obligations or rights. " +
-                "Make it accessible to someone without legal training:\n\n" + document.getExtractedText();
+        Prompt prompt = buildSummaryPrompt(document);
 
         try {
-            String summary = callGeminiApi(prompt);
+            Prompt fittingPrompt = reduceSummaryPrompt(document, prompt);
+            String summary = callGeminiApi(fittingPrompt, DocumentAnalysis.AnalysisType.SUMMARY);
             DocumentAnalysis analysis = new DocumentAnalysis(
                     DocumentAnalysis.AnalysisType.SUMMARY,
                     summary,
                     document
             );
-            analysis.setPrompt(prompt);
+            analysis.setPrompt(prompt.text());
             return analysisRepository.save(analysis);
         } catch (Exception e) {
             logger.error("Error summarizing document: {}", e.getMessage(), e);
@@ -72,38 +166,86 @@ public class GeminiAiService {
         }
     }
 
-    public List<ExtractedClause> extractClauses(Document document) {
-        String prompt = "Analyze the following legal document and extract key clauses. " +
-                "For each clause, provide: 1) Clause type (e.g., 'Payment Terms', 'Termination', 'Liability', etc.), " +
-                "2) The exact text of the clause, 3) A plain English explanation, 4) Importance level (LOW/MEDIUM/HIGH/CRITICAL). " +
-                "Format as JSON array with fields: clauseType, clauseText, explanation, importance.\n\n" +
-                document.getExtractedText();
+    /**
+     * Extracts the clauses of the whole document, replacing any clauses extracted before.
+     * Each clause is stored with its position in the document text where it can be found.
+     *
+     * Model errors are thrown rather than recorded, so callers such as the job worker can retry;
+     * the previous extraction is kept in that case.
+     */
+    public List<ExtractedClause> extractClauses(Document document) throws Exception {
+        List<ExtractedClause> clauses = extractClausesFromText(document, document.getExtractedText());
+        // Keep the previous extraction if the model returned nothing usable
+        if (!clauses.isEmpty()) {
+            clauseRepository.deleteByDocument(document);
+        }
+        return clauseRepository.saveAll(clauseAnchorer.anchor(document.getExtractedText(), clauses));
+    }
+
+    /**
+     * Extracts clauses from part of a document's text without saving them.
+     * Used to re-analyze only the sections that changed between two versions.
+     *
+     * Standard clauses recognized by the {@link ClausePreClassifier} are labelled locally;
+     * only the remaining sections are sent to the model.
+     */
+    public List<ExtractedClause> extractClausesFromText(Document document, String text) throws Exception {
+        ClausePreClassifier.Classification classification = clausePreClassifier.classify(text);
+        List<ExtractedClause> clauses = new ArrayList<>(classification.toClauses(document, text));
+        for (Prompt prompt : buildClausePrompts(classification.remainingText())) {
+            String response = callGeminiApi(prompt, null);
+            clauses.addAll(ClauseStreamParser.parseAll(objectMapper, document, response));
+        }
+        return clauses;
+    }
+
+    /**
+     * Summarizes a new version of a document from the previous version's summary and the changed text only.
+     *
+     * @param changes removed and added sections between the two versions
+     * @return the stored summary, or a full summary if the changes are too large for one prompt
+     */
+    public DocumentAnalysis updateSummary(Document document, String previousSummary, String changes) {
+        Prompt prompt = promptBuilder.build(PromptBuilder.Purpose.SUMMARY,
+                String.format(UPDATE_SUMMARY_INSTRUCTION, previousSummary), changes);
+        if (!prompt.fitsBudget()) {
+            return summarizeDocument(document);
+        }
 
         try {
-            String response = callGeminiApi(prompt);
-            List<ExtractedClause> clauses = parseClausesFromResponse(response, document);
-            return clauseRepository.saveAll(clauses);
+            String summary = callGeminiApi(prompt, DocumentAnalysis.AnalysisType.SUMMARY);
+            DocumentAnalysis analysis = new DocumentAnalysis(DocumentAnalysis.AnalysisType.SUMMARY, summary, document);
+            analysis.setPrompt(prompt.text());
+            return analysisRepository.save(analysis);
         } catch (Exception e) {
-            logger.error("Error extracting clauses: {}", e.getMessage(), e);
-            return Collections.emptyList();
+            logger.error("Error updating summary: {}", e.getMessage(), e);
+            DocumentAnalysis analysis = new DocumentAnalysis();
+            analysis.setDocument(document);
+            analysis.setAnalysisType(DocumentAnalysis.AnalysisType.SUMMARY);
+            analysis.setStatus(DocumentAnalysis.AnalysisStatus.FAILED);
+            analysis.setErrorMessage(e.getMessage());
+            return analysisRepository.save(analysis);
         }
     }
 
     public DocumentAnalysis answerQuestion(Document document, String question) {
-        String prompt = "Based on the following legal document, please answer this question: " + question + 
-                "\n\nProvide a clear, accurate answer based only on the information in the document. " +
-                "If the answer is not found in the document, please state that clearly.\n\n" +
-                "Document content:\n" + document.getExtractedText();
+        Optional<DocumentAnalysis> cached = answerCache.lookup(document, question);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
 
         try {
-            String answer = callGeminiApi(prompt);
+            Prompt prompt = buildQuestionPrompt(document, question);
+            String answer = callGeminiApi(prompt, DocumentAnalysis.AnalysisType.QUESTION_ANSWER);
             DocumentAnalysis analysis = new DocumentAnalysis(
                     DocumentAnalysis.AnalysisType.QUESTION_ANSWER,
                     answer,
                     document
             );
             analysis.setPrompt(question);
-            return analysisRepository.save(analysis);
+            DocumentAnalysis saved = analysisRepository.save(analysis);
+            answerCache.put(document, question, saved);
+            return saved;
         } catch (Exception e) {
             logger.error("Error answering question: {}", e.getMessage(), e);
             DocumentAnalysis analysis = new DocumentAnalysis();
@@ -116,6 +258,225 @@ public class GeminiAiService {
         }
     }
 
+    /**
+     * Answers a question from numbered excerpts of several documents, citing them as [n].
+     *
+     * The answer is not stored, since it belongs to no single document.
+     */
+    public String answerFromExcerpts(String question, String excerpts) throws Exception {
+        String instruction = "Based on the following numbered excerpts from several legal documents, " +
+                "please answer this question: " + question +
+                "\n\nProvide a clear, accurate answer based only on the information in the excerpts, " +
+                "and cite the excerpts each statement relies on by their number in square brackets, e.g. [2]. " +
+                "If the answer is not found in the excerpts, please state that clearly.\n\n" +
+                "Excerpts:\n";
+        return callGeminiApi(promptBuilder.wrap(instruction, excerpts), DocumentAnalysis.AnalysisType.QUESTION_ANSWER);
+    }
+
+    /**
+     * Answers several questions about the same document with as few model calls as possible.
+     *
+     * Up to {@code app.ai.questions.max-per-call} questions share one call, whose response limit
+     * grows with the number of questions. The model returns a JSON map of question number to answer,
+     * which is split back into one QUESTION_ANSWER analysis per question, in the order given.
+     * Questions the batch response does not answer fall back to an individual call. Questions
+     * already answered in the answer cache are not sent to the model at all.
+     */
+    public List<DocumentAnalysis> answerQuestions(Document document, List<String> questions) {
+        DocumentAnalysis[] results = new DocumentAnalysis[questions.size()];
+        List<Integer> uncached = new ArrayList<>();
+        for (int i = 0; i < questions.size(); i++) {
+            Optional<DocumentAnalysis> cached = answerCache.lookup(document, questions.get(i));
+            if (cached.isPresent()) {
+                results[i] = cached.get();
+            } else {
+                uncached.add(i);
+            }
+        }
+
+        for (int from = 0; from < uncached.size(); from += questionsPerCall) {
+            List<Integer> group = uncached.subList(from, Math.min(uncached.size(), from + questionsPerCall));
+            if (group.size() == 1) {
+                int index = group.get(0);
+                results[index] = answerQuestion(document, questions.get(index));
+            } else {
+                answerBatch(document, questions, group, results);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private void answerBatch(Document document, List<String> questions, List<Integer> group,
+                             DocumentAnalysis[] results) {
+        List<String> pending = group.stream().map(questions::get).toList();
+        Map<String, String> answers;
+        try {
+            Prompt prompt = buildBatchQuestionPrompt(document, pending).withMaxOutputTokens(
+                    Math.min(MAX_BATCH_OUTPUT_TOKENS, BATCH_OUTPUT_TOKENS_PER_QUESTION * pending.size()));
+            answers = parseAnswerMap(callGeminiApi(prompt, DocumentAnalysis.AnalysisType.QUESTION_ANSWER));
+        } catch (Exception e) {
+            logger.error("Error answering question batch, answering individually: {}", e.getMessage(), e);
+            answers = Collections.emptyMap();
+        }
+
+        for (int i = 0; i < pending.size(); i++) {
+            String question = pending.get(i);
+            String answer = answers.get(String.valueOf(i + 1));
+            if (answer == null || answer.isBlank()) {
+                results[group.get(i)] = answerQuestion(document, question);
+                continue;
+            }
+            DocumentAnalysis analysis = new DocumentAnalysis(
+                    DocumentAnalysis.AnalysisType.QUESTION_ANSWER,
+                    answer,
+                    document
+            );
+            analysis.setPrompt(question);
+            DocumentAnalysis saved = analysisRepository.save(analysis);
+            answerCache.put(document, question, saved);
+            results[group.get(i)] = saved;
+        }
+    }
+
+    /**
+     * Streams extracted clauses as the model generates them, replacing any clauses extracted before.
+     * Each clause is parsed as soon as its JSON object closes and inserted in small batches.
+     * Standard clauses labelled locally come first, without waiting for the model.
+     * The previous clauses are deleted just before the first batch is saved, so a model call
+     * that fails before producing any clause leaves them in place.
+     */
+    public Flux<ExtractedClause> streamClauses(Document document) {
+        return Flux.defer(() -> {
+            boolean[] replaced = {false};
+            String text = document.getExtractedText();
+            ClausePreClassifier.Classification classification = clausePreClassifier.classify(text);
+            TextAnchorIndex anchors = clauseAnchorer.index(text);
+            // Locally labelled clauses are emitted before the first model call
+            return Flux.fromIterable(classification.toClauses(document, text))
+                    .concatWith(Flux.fromIterable(buildClausePrompts(classification.remainingText()))
+                            .concatMap(prompt -> Flux.defer(() -> {
+                                // Each chunk gets its own response, hence its own JSON array and parser
+                                ClauseStreamParser parser = new ClauseStreamParser(objectMapper, document);
+                                return streamGeminiApi(prompt)
+                                        .concatMapIterable(parser::feed)
+                                        .concatWith(Flux.defer(() -> Flux.fromIterable(parser.finish())));
+                            })))
+                    .bufferTimeout(CLAUSE_BATCH_SIZE, CLAUSE_BATCH_WINDOW)
+                    .publishOn(Schedulers.boundedElastic())
+                    .concatMapIterable(batch -> {
+                        // Batches are saved one at a time on this thread
+                        if (!replaced[0]) {
+                            clauseRepository.deleteByDocument(document);
+                            replaced[0] = true;
+                        }
+                        return clauseRepository.saveAll(clauseAnchorer.anchor(anchors, batch));
+                    });
+        })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnError(e -> logger.error("Error streaming clauses: {}", e.getMessage(), e));
+    }
+
+    /**
+     * Streams a summary of the document as it is generated.
+     * Emits one delta event per model chunk and a final event carrying the persisted analysis.
+     */
+    public Flux<AnalysisStreamEvent> streamSummary(Document document) {
+        Prompt prompt = buildSummaryPrompt(document);
+        // Oversized documents are summarized section by section first; only the final pass is streamed
+        Mono<Prompt> modelPrompt = prompt.fitsBudget()
+                ? Mono.just(prompt)
+                : Mono.fromCallable(() -> reduceSummaryPrompt(document, prompt)).subscribeOn(Schedulers.boundedElastic());
+        return streamAnalysis(modelPrompt, prompt.text(), DocumentAnalysis.AnalysisType.SUMMARY, document);
+    }
+
+    /**
+     * Streams the answer to a question about the document as it is generated.
+     * Emits one delta event per model chunk and a final event carrying the persisted analysis.
+     */
+    public Flux<AnalysisStreamEvent> streamAnswer(Document document, String question) {
+        Optional<DocumentAnalysis> cached = answerCache.lookup(document, question);
+        if (cached.isPresent()) {
+            return Flux.just(AnalysisStreamEvent.ofDelta(cached.get().getResult()),
+                    AnalysisStreamEvent.ofCompletion(cached.get()));
+        }
+        Prompt prompt = buildQuestionPrompt(document, question);
+        return streamAnalysis(Mono.just(prompt), question, DocumentAnalysis.AnalysisType.QUESTION_ANSWER, document);
+    }
+
+    /**
+     * Answers a follow-up question within a conversation session.
+     *
+     * Only the question, the session's recent turns and, for sessions without a provider cache,
+     * the given excerpts are sent; the answer is persisted with the session id and appended to the session.
+     *
+     * @param excerpts document passages relevant to the question, or null when the session uses a cached content
+     */
+    public DocumentAnalysis answerInSession(ConversationSession session, Document document,
+                                            String question, String excerpts) {
+        List<ConversationSession.Turn> history = session.getRecentTurns();
+
+        try {
+            Prompt prompt = buildSessionPrompt(question, excerpts);
+            String answer = callGeminiApi(requestWriter.body(session.getCachedContentName(), history, prompt),
+                    DocumentAnalysis.AnalysisType.QUESTION_ANSWER);
+            DocumentAnalysis analysis = new DocumentAnalysis(
+                    DocumentAnalysis.AnalysisType.QUESTION_ANSWER,
+                    answer,
+                    document
+            );
+            analysis.setPrompt(question);
+            analysis.setSessionId(session.getId());
+            DocumentAnalysis saved = analysisRepository.save(analysis);
+            session.addTurn(question, answer);
+            return saved;
+        } catch (Exception e) {
+            logger.error("Error answering question in session {}: {}", session.getId(), e.getMessage(), e);
+            DocumentAnalysis analysis = new DocumentAnalysis();
+            analysis.setDocument(document);
+            analysis.setAnalysisType(DocumentAnalysis.AnalysisType.QUESTION_ANSWER);
+            analysis.setStatus(DocumentAnalysis.AnalysisStatus.FAILED);
+            analysis.setErrorMessage(e.getMessage());
+            analysis.setPrompt(question);
+            analysis.setSessionId(session.getId());
+            return analysisRepository.save(analysis);
+        }
+    }
+
+    /**
+     * Uploads compressed document text as a provider cached content so later requests can reference it by name.
+     *
+     * @return the cached content name, e.g. "cachedContents/abc123"
+     */
+    public String createCachedContent(String documentText, Duration ttl) throws Exception {
+        quotaBudget.record();
+        Prompt prompt = promptBuilder.wrap(SESSION_CONTEXT_INSTRUCTION, documentText);
+        String response = webClient.post()
+                .uri(cachedContentsUrl + "?key=" + apiKey)
+                .body(requestWriter.cachedContentBody(model, prompt, ttl))
+                .retrieve()
+                .bodyToMono(String.class)
+                .block();
+
+        String name = objectMapper.readTree(response).path("name").asText("");
+        if (name.isEmpty()) {
+            throw new RuntimeException("Invalid response format from Gemini API");
+        }
+        return name;
+    }
+
+    /**
+     * Deletes a provider cached content in the background; it would otherwise only go away at its TTL.
+     */
+    public void deleteCachedContent(String name) {
+        String baseUrl = cachedContentsUrl.substring(0, cachedContentsUrl.lastIndexOf('/') + 1);
+        webClient.delete()
+                .uri(baseUrl + name + "?key=" + apiKey)
+                .retrieve()
+                .toBodilessEntity()
+                .subscribe(response -> logger.debug("Deleted cached content {}", name),
+                        e -> logger.warn("Could not delete cached content {}: {}", name, e.getMessage()));
+    }
+
     public DocumentAnalysis generateTemplate(String templateType, String requirements) {
         String prompt = "Generate a simple legal " + templateType + " template based on these requirements: " +
                 requirements + "\n\n" +
@@ -124,7 +485,12 @@ public class GeminiAiService {
                 "Add a disclaimer that this is a basic template and legal review is recommended.";
 
         try {
-            String template = callGeminiApi(prompt);
+            Prompt templatePrompt = promptBuilder.build(PromptBuilder.Purpose.TEMPLATE, prompt, null);
+            if (!templatePrompt.fitsBudget()) {
+                throw new IllegalArgumentException("Template requirements are too long (~" +
+                        templatePrompt.getEstimatedTokens() + " tokens, limit " + templatePrompt.getBudget() + ")");
+            }
+            String template = callGeminiApi(templatePrompt, DocumentAnalysis.AnalysisType.TEMPLATE_GENERATION);
             DocumentAnalysis analysis = new DocumentAnalysis(
                     DocumentAnalysis.AnalysisType.TEMPLATE_GENERATION,
                     template,
@@ -143,35 +509,196 @@ public class GeminiAiService {
         }
     }
 
-    private String callGeminiApi(String prompt) throws Exception {
-        Map<String, Object> requestBody = createGeminiRequestBody(prompt);
-        
-        String response = webClient.post()
+    private String callGeminiApi(Prompt prompt, DocumentAnalysis.AnalysisType analysisType) throws Exception {
+        return callGeminiApi(requestWriter.body(prompt), analysisType);
+    }
+
+    private String callGeminiApi(BodyInserter<Prompt, ReactiveHttpOutputMessage> body,
+                                 DocumentAnalysis.AnalysisType analysisType) throws Exception {
+        // The Mono is cold, so the hedger can subscribe twice to issue an identical request;
+        // the body is written straight into the outbound buffer on each subscription
+        Mono<String> request = webClient.post()
                 .uri(apiUrl + "?key=" + apiKey)
-                .bodyValue(requestBody)
+                .body(body)
                 .retrieve()
-                .bodyToMono(String.class)
-                .block();
+                .bodyToMono(String.class);
+
+        String response = requestHedger.execute(request, analysisType).block();
 
         return parseGeminiResponse(response);
     }
 
-    private Map<String, Object> createGeminiRequestBody(String prompt) {
-        Map<String, Object> content = new HashMap<>();
-        Map<String, Object> part = new HashMap<>();
-        part.put("text", prompt);
-        content.put("parts", Arrays.asList(part));
+    private Prompt buildSummaryPrompt(Document document) {
+        return promptBuilder.build(PromptBuilder.Purpose.SUMMARY, SUMMARY_INSTRUCTION, document.getExtractedText());
+    }
+
+    /**
+     * Summarizes an oversized document part by part until the partial summaries fit into one prompt.
+     * The first round summarizes groups of the document's stored chunks; the partial summary of a
+     * group is stored with it and reused while its content is unchanged, also by later versions.
+     */
+    private Prompt reduceSummaryPrompt(Document document, Prompt prompt) throws Exception {
+        if (prompt.fitsBudget()) {
+            return prompt;
+        }
+        int partTokens = Math.max(256, promptBuilder.budgetFor(PromptBuilder.Purpose.SUMMARY) - 1024);
+        List<String> partials = new ArrayList<>();
+        int reused = 0;
+        for (ChunkStore.Group group : chunkStore.groups(document, partTokens)) {
+            String partial = group.cachedSummary();
+            if (partial == null) {
+                partial = callGeminiApi(promptBuilder.wrap(SECTION_SUMMARY_INSTRUCTION, group.text()),
+                        DocumentAnalysis.AnalysisType.SUMMARY);
+                chunkStore.saveSummary(group, partial);
+            } else {
+                reused++;
+            }
+            partials.add(partial);
+        }
+        logger.debug("Summarized document {} in {} parts, {} reused", document.getId(), partials.size(), reused);
+        prompt = promptBuilder.build(PromptBuilder.Purpose.SUMMARY, COMBINE_SUMMARIES_INSTRUCTION,
+                String.join("\n\n", partials));
+
+        for (int round = 1; round < MAX_SUMMARY_ROUNDS && !prompt.fitsBudget(); round++) {
+            partials = new ArrayList<>();
+            for (String chunk : promptBuilder.split(prompt.getDocumentText(), PromptBuilder.Purpose.SUMMARY)) {
+                partials.add(callGeminiApi(promptBuilder.wrap(SECTION_SUMMARY_INSTRUCTION, chunk),
+                        DocumentAnalysis.AnalysisType.SUMMARY));
+            }
+            prompt = promptBuilder.build(PromptBuilder.Purpose.SUMMARY, COMBINE_SUMMARIES_INSTRUCTION,
+                    String.join("\n\n", partials));
+        }
+        return prompt;
+    }
+
+    /**
+     * One prompt for documents within the clause budget, otherwise one prompt per chunk.
+     */
+    private List<Prompt> buildClausePrompts(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        Prompt prompt = promptBuilder.build(PromptBuilder.Purpose.CLAUSE_EXTRACTION, CLAUSE_INSTRUCTION, text);
+        if (prompt.fitsBudget()) {
+            return List.of(prompt);
+        }
+        List<Prompt> prompts = new ArrayList<>();
+        for (String chunk : promptBuilder.split(prompt.getDocumentText(), PromptBuilder.Purpose.CLAUSE_EXTRACTION)) {
+            prompts.add(promptBuilder.wrap(CLAUSE_INSTRUCTION, chunk));
+        }
+        return prompts;
+    }
+
+    /**
+     * Full document when it fits the budget, otherwise the chunks most relevant to the question.
+     */
+    private Prompt buildQuestionPrompt(Document document, String question) {
+        String instruction = "Based on the following legal document, please answer this question: " + question +
+                "\n\nProvide a clear, accurate answer based only on the information in the document. " +
+                "If the answer is not found in the document, please state that clearly.\n\n" +
+                "Document content:\n";
+        return buildDocumentPrompt(document, instruction, question);
+    }
+
+    private Prompt buildBatchQuestionPrompt(Document document, List<String> questions) {
+        StringBuilder instruction = new StringBuilder(
+                "Based on the following legal document, please answer each of these questions:\n");
+        for (int i = 0; i < questions.size(); i++) {
+            instruction.append(i + 1).append(". ").append(questions.get(i)).append('\n');
+        }
+        instruction.append("\nProvide clear, accurate answers based only on the information in the document. ")
+                .append("If an answer is not found in the document, state that clearly in that answer. ")
+                .append("Respond only with a JSON object that maps each question number to its answer, ")
+                .append("e.g. {\"1\": \"...\", \"2\": \"...\"}.\n\n")
+                .append("Document content:\n");
+        return buildDocumentPrompt(document, instruction.toString(), String.join(" ", questions));
+    }
+
+    private Prompt buildSessionPrompt(String question, String excerpts) {
+        if (excerpts == null) {
+            return promptBuilder.wrap("Question about the document: " + question, "");
+        }
+        String instruction = "Based on the following excerpts of a legal document and our conversation so far, " +
+                "please answer this question: " + question +
+                "\n\nProvide a clear, accurate answer based only on the information in the document. " +
+                "If the answer is not found in the excerpts, please state that clearly.\n\n" +
+                "Document excerpts:\n";
+        return promptBuilder.wrap(instruction, excerpts);
+    }
+
+    /**
+     * Full document when it fits the Q&A budget, otherwise the sections most relevant to the query.
+     */
+    private Prompt buildDocumentPrompt(Document document, String instruction, String relevanceQuery) {
+        Prompt prompt = promptBuilder.build(PromptBuilder.Purpose.QUESTION_ANSWER, instruction, document.getExtractedText());
+        if (prompt.fitsBudget()) {
+            return prompt;
+        }
+
+        int instructionTokens = promptBuilder.estimateTokens(instruction);
+        List<String> chunks = chunkStore.pack(document, questionChunkTokens);
+        String relevant = promptBuilder.selectRelevant(chunks, relevanceQuery, prompt.getBudget() - instructionTokens);
+        return new Prompt(instruction, relevant, instructionTokens + promptBuilder.estimateTokens(relevant),
+                prompt.getBudget());
+    }
+
+    private Flux<AnalysisStreamEvent> streamAnalysis(Mono<Prompt> modelPrompt, String storedPrompt,
+                                                     DocumentAnalysis.AnalysisType analysisType,
+                                                     Document document) {
+        return Flux.defer(() -> {
+            StringBuilder assembled = new StringBuilder();
 
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("contents", Arrays.asList(content));
+            Flux<AnalysisStreamEvent> deltas = modelPrompt
+                    .flatMapMany(this::streamGeminiApi)
+                    .doOnNext(assembled::append)
+                    .map(AnalysisStreamEvent::ofDelta);
 
-        // Add safety settings and generation config
-        Map<String, Object> generationConfig = new HashMap<>();
-        generationConfig.put("temperature", 0.1);
-        generationConfig.put("maxOutputTokens", 2048);
-        requestBody.put("generationConfig", generationConfig);
+            // Persist once the stream completes; JPA is blocking, so keep it off the Netty event loop
+            Mono<AnalysisStreamEvent> completion = Mono.fromCallable(() -> {
+                        DocumentAnalysis analysis = new DocumentAnalysis(analysisType, assembled.toString(), document);
+                        analysis.setPrompt(storedPrompt);
+                        DocumentAnalysis saved = analysisRepository.save(analysis);
+                        if (analysisType == DocumentAnalysis.AnalysisType.QUESTION_ANSWER) {
+                            answerCache.put(document, storedPrompt, saved);
+                        }
+                        return AnalysisStreamEvent.ofCompletion(saved);
+                    })
+                    .subscribeOn(Schedulers.boundedElastic());
 
-        return requestBody;
+            return deltas.concatWith(completion)
+                    .onErrorResume(e -> Mono.fromCallable(() -> {
+                                logger.error("Error streaming {} analysis: {}", analysisType, e.getMessage(), e);
+                                DocumentAnalysis analysis = new DocumentAnalysis();
+                                analysis.setDocument(document);
+                                analysis.setAnalysisType(analysisType);
+                                analysis.setStatus(DocumentAnalysis.AnalysisStatus.FAILED);
+                                analysis.setErrorMessage(e.getMessage());
+                                analysis.setPrompt(storedPrompt);
+                                return AnalysisStreamEvent.ofCompletion(analysisRepository.save(analysis));
+                            })
+                            .subscribeOn(Schedulers.boundedElastic()));
+        });
+    }
+
+    private Flux<String> streamGeminiApi(Prompt prompt) {
+        quotaBudget.record();
+        return webClient.post()
+                .uri(streamUrl + "?alt=sse&key=" + apiKey)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .body(requestWriter.body(prompt))
+                .retrieve()
+                .bodyToFlux(SSE_EVENT_TYPE)
+                .mapNotNull(ServerSentEvent::data)
+                .<String>handle((data, sink) -> {
+                    try {
+                        String text = parseGeminiChunk(data);
+                        if (!text.isEmpty()) {
+                            sink.next(text);
+                        }
+                    } catch (Exception e) {
+                        sink.error(e);
+                    }
+                });
     }
 
     private String parseGeminiResponse(String response) throws Exception {
@@ -190,66 +717,32 @@ public class GeminiAiService {
         throw new RuntimeException("Invalid response format from Gemini API");
     }
 
-    private List<ExtractedClause> parseClausesFromResponse(String response, Document document) {
-        List<ExtractedClause> clauses = new ArrayList<>();
-        
-        try {
-            // Try to parse as JSON first
-            JsonNode jsonResponse = objectMapper.readTree(response);
-            if (jsonResponse.isArray()) {
-                for (JsonNode clauseNode : jsonResponse) {
-                    ExtractedClause clause = createClauseFromJson(clauseNode, document);
-                    if (clause != null) {
-                        clauses.add(clause);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // If JSON parsing fails, try to extract clauses using regex
-            logger.warn("Failed to parse clauses as JSON, trying regex parsing: {}", e.getMessage());
-            clauses = parseClausesWithRegex(response, document);
+    private Map<String, String> parseAnswerMap(String response) throws Exception {
+        // Tolerate prose or Markdown code fences around the JSON object
+        int start = response.indexOf('{');
+        int end = response.lastIndexOf('}');
+        if (start < 0 || end <= start) {
+            throw new RuntimeException("No JSON object in batch answer response");
         }
-        
-        return clauses;
-    }
-
-    private ExtractedClause createClauseFromJson(JsonNode clauseNode, Document document) {
-        try {
-            String clauseType = clauseNode.path("clauseType").asText();
-            String clauseText = clauseNode.path("clauseText").asText();
-            String explanation = clauseNode.path("explanation").asText();
-            String importance = clauseNode.path("importance").asText("MEDIUM");
 
-            ExtractedClause clause = new ExtractedClause(clauseType, clauseText, document);
-            clause.setPlainEnglishExplanation(explanation);
-            clause.setImportanceLevel(ExtractedClause.ImportanceLevel.valueOf(importance.toUpperCase()));
-            clause.setConfidenceScore(0.8); // Default confidence
-
-            return clause;
-        } catch (Exception e) {
-            logger.error("Error creating clause from JSON: {}", e.getMessage());
-            return null;
+        Map<String, String> answers = new HashMap<>();
+        JsonNode root = objectMapper.readTree(response.substring(start, end + 1));
+        Iterator<Map.Entry<String, JsonNode>> fields = root.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            answers.put(field.getKey().trim(), value.isTextual() ? value.asText() : value.toString());
         }
+        return answers;
     }
 
-    private List<ExtractedClause> parseClausesWithRegex(String response, Document document) {
-        List<ExtractedClause> clauses = new ArrayList<>();
-        
-        // Simple regex-based parsing as fallback
-        Pattern pattern = Pattern.compile("(?i)(clause type|type):\\s*(.+?)\\n.*?(clause text|text):\\s*(.+?)\\n", 
-                Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(response);
-        
-        while (matcher.find()) {
-            String clauseType = matcher.group(2).trim();
-            String clauseText = matcher.group(4).trim();
-            
-            ExtractedClause clause = new ExtractedClause(clauseType, clauseText, document);
-            clause.setImportanceLevel(ExtractedClause.ImportanceLevel.MEDIUM);
-            clause.setConfidenceScore(0.6); // Lower confidence for regex parsing
-            clauses.add(clause);
+    private String parseGeminiChunk(String chunk) throws Exception {
+        // Streamed chunks share the generateContent shape, but the final one may carry no text
+        JsonNode parts = objectMapper.readTree(chunk).path("candidates").path(0).path("content").path("parts");
+        StringBuilder text = new StringBuilder();
+        for (JsonNode part : parts) {
+            text.append(part.path("text").asText(""));
         }
-        
-        return clauses;
+        return text.toString();
     }
 }
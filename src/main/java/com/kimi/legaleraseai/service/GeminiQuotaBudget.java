@@ -0,0 +1,68 @@
+package com.kimi.legaleraseai.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fixed-window requests-per-minute budget for the Gemini API.
+ *
+ * Every upstream call is recorded against the window. Optional extra calls
+ * (such as hedged requests) only go out while the window still has headroom
+ * above the configured reserve, so they never push us into quota errors.
+ */
+@Component
+public class GeminiQuotaBudget {
+    private static final long WINDOW_MILLIS = 60_000L;
+
+    @Value("${google.gemini.quota.requests-per-minute:60}")
+    private int requestsPerMinute;
+
+    @Value("${google.gemini.quota.optional-reserve:10}")
+    private int optionalReserve;
+
+    private long windowStart = System.currentTimeMillis();
+    private int used;
+
+    /**
+     * Records a mandatory call. Mandatory calls are never refused.
+     */
+    public synchronized void record() {
+        rollWindow();
+        used++;
+    }
+
+    /**
+     * Tries to reserve quota for an optional call.
+     *
+     * @return true if the call fits into the current window without eating into the reserve
+     */
+    public synchronized boolean tryAcquireOptional() {
+        rollWindow();
+        if (used + optionalReserve >= requestsPerMinute) {
+            return false;
+        }
+        used++;
+        return true;
+    }
+
+    /**
+     * Whether optional work could start now without eating into the reserve. Does not reserve anything.
+     */
+    public synchronized boolean hasOptionalHeadroom() {
+        rollWindow();
+        return used + optionalReserve < requestsPerMinute;
+    }
+
+    public synchronized int remaining() {
+        rollWindow();
+        return Math.max(0, requestsPerMinute - used);
+    }
+
+    private void rollWindow() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= WINDOW_MILLIS) {
+            windowStart = now;
+            used = 0;
+        }
+    }
+}
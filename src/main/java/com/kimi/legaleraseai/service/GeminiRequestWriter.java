@@ -0,0 +1,153 @@
+package com.kimi.legaleraseai.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.web.reactive.function.BodyInserter;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Writes generateContent request bodies with a streaming JSON generator.
+ *
+ * The prompt is read through a {@link Reader} and JSON-escaped on the fly directly
+ * into a buffer obtained from the outbound connection's buffer factory (pooled Netty
+ * buffers for the reactor-netty client), so no request map, concatenated prompt
+ * String or intermediate serialized byte[] is created per call.
+ */
+public class GeminiRequestWriter {
+    private static final double TEMPERATURE = 0.1;
+    private static final int MAX_OUTPUT_TOKENS = 2048;
+    // Braces, field names and generation config around the prompt text
+    private static final int ENVELOPE_BYTES = 160;
+
+    private final JsonFactory jsonFactory;
+
+    public GeminiRequestWriter(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Body inserter for WebClient. The body is written anew on every subscription,
+     * so retried or hedged requests re-read the prompt instead of sharing a buffer.
+     */
+    public BodyInserter<Prompt, ReactiveHttpOutputMessage> body(Prompt prompt) {
+        return body(null, List.of(), prompt);
+    }
+
+    /**
+     * Body inserter for a conversation turn: earlier turns are replayed as user/model
+     * messages before the prompt, and the document context may come from a cached content.
+     *
+     * @param cachedContent name of a provider cached content, or null
+     * @param history earlier turns, oldest first
+     */
+    public BodyInserter<Prompt, ReactiveHttpOutputMessage> body(String cachedContent,
+                                                               List<ConversationSession.Turn> history,
+                                                               Prompt prompt) {
+        return (message, context) -> message.writeWith(
+                Mono.fromCallable(() -> write(cachedContent, history, prompt, message.bufferFactory())));
+    }
+
+    /**
+     * Body inserter for creating a cached content that holds the prompt for the given time to live.
+     */
+    public BodyInserter<Prompt, ReactiveHttpOutputMessage> cachedContentBody(String model, Prompt prompt, Duration ttl) {
+        return (message, context) -> message.writeWith(Mono.fromCallable(() ->
+                writeJson(message.bufferFactory(), estimateSize(prompt, List.of()), generator -> {
+                    generator.writeStringField("model", model);
+                    generator.writeArrayFieldStart("contents");
+                    writeContent(generator, "user", prompt);
+                    generator.writeEndArray();
+                    generator.writeStringField("ttl", ttl.toSeconds() + "s");
+                })));
+    }
+
+    public DataBuffer write(Prompt prompt, DataBufferFactory bufferFactory) throws IOException {
+        return write(null, List.of(), prompt, bufferFactory);
+    }
+
+    public DataBuffer write(String cachedContent, List<ConversationSession.Turn> history, Prompt prompt,
+                            DataBufferFactory bufferFactory) throws IOException {
+        return writeJson(bufferFactory, estimateSize(prompt, history), generator -> {
+            if (cachedContent != null) {
+                generator.writeStringField("cachedContent", cachedContent);
+            }
+            generator.writeArrayFieldStart("contents");
+            for (ConversationSession.Turn turn : history) {
+                writeContent(generator, "user", turn.question());
+                writeContent(generator, "model", turn.answer());
+            }
+            writeContent(generator, "user", prompt);
+            generator.writeEndArray();
+
+            generator.writeObjectFieldStart("generationConfig");
+            generator.writeNumberField("temperature", TEMPERATURE);
+            generator.writeNumberField("maxOutputTokens",
+                    prompt.getMaxOutputTokens() > 0 ? prompt.getMaxOutputTokens() : MAX_OUTPUT_TOKENS);
+            generator.writeEndObject();
+        });
+    }
+
+    private DataBuffer writeJson(DataBufferFactory bufferFactory, int estimatedSize, JsonBody body) throws IOException {
+        DataBuffer buffer = bufferFactory.allocateBuffer(estimatedSize);
+
+        try {
+            try (OutputStream out = buffer.asOutputStream();
+                 JsonGenerator generator = jsonFactory.createGenerator(out)) {
+                generator.writeStartObject();
+                body.writeFields(generator);
+                generator.writeEndObject();
+            }
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    private static int estimateSize(Prompt prompt, List<ConversationSession.Turn> history) {
+        int chars = prompt.length();
+        for (ConversationSession.Turn turn : history) {
+            chars += turn.question().length() + turn.answer().length() + ENVELOPE_BYTES;
+        }
+        // Most legal text is ASCII; a little slack avoids regrowing the buffer for escapes
+        return ENVELOPE_BYTES + chars + (chars >> 4);
+    }
+
+    private static void writeContent(JsonGenerator generator, String role, Prompt prompt) throws IOException {
+        try (Reader text = prompt.openReader()) {
+            writeContent(generator, role, text);
+        }
+    }
+
+    private static void writeContent(JsonGenerator generator, String role, String text) throws IOException {
+        writeContent(generator, role, new StringReader(text));
+    }
+
+    private static void writeContent(JsonGenerator generator, String role, Reader text) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("role", role);
+        generator.writeArrayFieldStart("parts");
+        generator.writeStartObject();
+        generator.writeFieldName("text");
+        generator.writeString(text, -1);
+        generator.writeEndObject();
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    @FunctionalInterface
+    private interface JsonBody {
+        void writeFields(JsonGenerator generator) throws IOException;
+    }
+}
@@ -0,0 +1,99 @@
+package com.kimi.legaleraseai.service;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory store of Idempotency-Key → in-progress or completed response.
+ *
+ * The first request with a key claims it and later completes it with its response;
+ * duplicates get the same future, so they can wait for the first execution or replay
+ * its stored response. Each key is bound to a fingerprint of the request that claimed it,
+ * so reusing a key for a different request is detected rather than answered with the
+ * wrong response. Completed entries expire after the TTL given on completion; entries are
+ * per node, so clients should retry against the same instance (the default with sticky sessions).
+ */
+@Component
+public class IdempotencyStore {
+
+    public record StoredResponse(int status, String contentType, byte[] body) {
+    }
+
+    /**
+     * Result of {@link #claim}: either this request owns the key, or another request already does.
+     * A key already claimed by a request with a different fingerprint is a mismatch.
+     */
+    public record Claim(boolean owner, boolean mismatch, CompletableFuture<StoredResponse> response) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Claims the key for a request.
+     *
+     * @param fingerprint hash identifying the request, such as its method, path and body
+     */
+    public Claim claim(String key, String fingerprint) {
+        Entry created = new Entry(fingerprint);
+        Entry existing = entries.putIfAbsent(key, created);
+        if (existing != null && !existing.isExpired(Instant.now())) {
+            return new Claim(false, !existing.fingerprint.equals(fingerprint), existing.response);
+        }
+        if (existing != null) {
+            // Expired but not swept yet; replace it atomically
+            if (!entries.replace(key, existing, created)) {
+                return claim(key, fingerprint);
+            }
+        }
+        return new Claim(true, false, created.response);
+    }
+
+    /**
+     * Stores the owner's response for replay until the TTL passes.
+     */
+    public void complete(String key, StoredResponse response, Duration ttl) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.expiresAt = Instant.now().plus(ttl);
+            entry.response.complete(response);
+        }
+    }
+
+    /**
+     * Releases a key whose request failed so a retry executes again. Waiting duplicates are released too.
+     */
+    public void release(String key, Throwable cause) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entries.remove(key, entry);
+            entry.response.completeExceptionally(cause);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        Instant now = Instant.now();
+        entries.entrySet().removeIf(entry -> entry.getValue().isExpired(now));
+    }
+
+    private static class Entry {
+        private final String fingerprint;
+        private final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+        // Unset while in progress; in-progress entries never expire
+        private volatile Instant expiresAt;
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        boolean isExpired(Instant now) {
+            return expiresAt != null && !expiresAt.isAfter(now);
+        }
+    }
+}
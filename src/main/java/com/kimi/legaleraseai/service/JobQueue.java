@@ -0,0 +1,119 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Job;
+import com.kimi.legaleraseai.repository.JobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Durable work queue on the jobs table, shared by every instance of the application.
+ *
+ * Workers lease due jobs with SELECT ... FOR UPDATE SKIP LOCKED, so concurrent workers on
+ * any number of nodes never receive the same job. A lease is a visibility timeout: if the
+ * worker does not finish or extend it in time, the job becomes leasable again. Failed
+ * attempts are retried with exponential backoff and jitter; a job that runs out of
+ * attempts is moved to DEAD and kept for inspection.
+ */
+@Service
+public class JobQueue {
+    private static final Logger logger = LoggerFactory.getLogger(JobQueue.class);
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    @Value("${app.jobs.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.jobs.backoff.initial-seconds:10}")
+    private long initialBackoffSeconds;
+
+    @Value("${app.jobs.backoff.max-seconds:900}")
+    private long maxBackoffSeconds;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    public Job enqueue(Job.JobType jobType, Long documentId, Long userId, String payload) {
+        return enqueue(jobType, documentId, userId, payload, 0, maxAttempts);
+    }
+
+    /**
+     * Enqueues a job that is leased after every due job of higher priority, with its own attempt limit.
+     */
+    public Job enqueue(Job.JobType jobType, Long documentId, Long userId, String payload,
+                       int priority, int maxAttempts) {
+        Job job = new Job(jobType, documentId, userId, payload, maxAttempts);
+        job.setPriority(priority);
+        job = jobRepository.save(job);
+        logger.debug("Enqueued job {} ({}) for document {}", job.getId(), jobType, documentId);
+        return job;
+    }
+
+    /**
+     * Leases up to limit due jobs for the worker. The returned jobs are RUNNING with their attempt counted.
+     */
+    @Transactional
+    public List<Job> lease(String workerId, int limit, long leaseSeconds) {
+        List<Long> ids = jobRepository.findDueIdsForUpdate(limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        jobRepository.lease(ids, workerId, leaseSeconds);
+        return jobRepository.findAllById(ids);
+    }
+
+    /**
+     * Pushes back the visibility timeout of jobs the worker is still running.
+     */
+    @Transactional
+    public void extendLeases(Collection<Long> jobIds, String workerId, long leaseSeconds) {
+        if (!jobIds.isEmpty()) {
+            jobRepository.extendLeases(jobIds, workerId, leaseSeconds);
+        }
+    }
+
+    @Transactional
+    public void complete(Job job, String workerId, Long resultAnalysisId) {
+        if (jobRepository.markSucceeded(job.getId(), workerId, resultAnalysisId) == 0) {
+            logger.warn("Job {} finished after its lease was lost; result kept, status left to the new owner", job.getId());
+        }
+    }
+
+    /**
+     * Records a failed attempt: the job is retried after a backoff, or dead-lettered once out of attempts.
+     */
+    @Transactional
+    public void fail(Job job, String workerId, String error) {
+        String message = error == null || error.isBlank() ? "Unknown error" : error;
+        if (message.length() > MAX_ERROR_LENGTH) {
+            message = message.substring(0, MAX_ERROR_LENGTH);
+        }
+
+        if (job.getAttempts() >= job.getMaxAttempts()) {
+            jobRepository.markFailed(job.getId(), workerId, Job.JobStatus.DEAD.name(), 0, message);
+            logger.error("Job {} ({}) moved to dead letter after {} attempts: {}",
+                    job.getId(), job.getJobType(), job.getAttempts(), message);
+            return;
+        }
+
+        double delay = backoffSeconds(job.getAttempts());
+        jobRepository.markFailed(job.getId(), workerId, Job.JobStatus.QUEUED.name(), delay, message);
+        logger.warn("Job {} ({}) attempt {} failed, retrying in {}s: {}",
+                job.getId(), job.getJobType(), job.getAttempts(), Math.round(delay), message);
+    }
+
+    /**
+     * Exponential backoff with +/-20% jitter so retries from a burst of failures spread out.
+     */
+    double backoffSeconds(int attempt) {
+        double base = Math.min(maxBackoffSeconds, initialBackoffSeconds * Math.pow(2, Math.max(0, attempt - 1)));
+        return base * ThreadLocalRandom.current().nextDouble(0.8, 1.2);
+    }
+}
@@ -0,0 +1,178 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.entity.Job;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs jobs from the {@link JobQueue} on this node.
+ *
+ * Disabled by default so web nodes only enqueue; start additional instances of the
+ * application with the "worker" profile to scale text extraction and AI work
+ * independently of the web tier. Each poll leases at most as many jobs as there are
+ * free slots, and leases of running jobs are extended until they finish.
+ */
+@Component
+public class JobWorker {
+    private static final Logger logger = LoggerFactory.getLogger(JobWorker.class);
+
+    @Value("${app.jobs.worker.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.jobs.worker.concurrency:4}")
+    private int concurrency;
+
+    @Value("${app.jobs.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Autowired
+    private JobQueue jobQueue;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentProcessingService documentProcessingService;
+
+    @Autowired
+    private GeminiAiService geminiAiService;
+
+    @Autowired
+    private PreAnalysisService preAnalysisService;
+
+    private final String workerId = workerId();
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Scheduled(fixedDelayString = "${app.jobs.worker.poll-interval-ms:1000}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        int free = concurrency - running.size();
+        if (free <= 0) {
+            return;
+        }
+
+        List<Job> jobs;
+        try {
+            jobs = jobQueue.lease(workerId, free, leaseSeconds);
+        } catch (Exception e) {
+            logger.error("Could not lease jobs: {}", e.getMessage(), e);
+            return;
+        }
+        for (Job job : jobs) {
+            running.add(job.getId());
+            workers.execute(() -> execute(job));
+        }
+    }
+
+    // Well inside the lease so a slow database round trip does not let a live job expire
+    @Scheduled(fixedDelayString = "${app.jobs.worker.heartbeat-interval-ms:60000}")
+    public void heartbeat() {
+        if (!enabled || running.isEmpty()) {
+            return;
+        }
+        try {
+            jobQueue.extendLeases(Set.copyOf(running), workerId, leaseSeconds);
+        } catch (Exception e) {
+            logger.error("Could not extend job leases: {}", e.getMessage(), e);
+        }
+    }
+
+    private void execute(Job job) {
+        try {
+            if (job.getAttempts() > job.getMaxAttempts()) {
+                // Leased again after its last attempt's worker died without reporting back
+                jobQueue.fail(job, workerId, "Lease expired on the final attempt: " + job.getLastError());
+                return;
+            }
+            Long resultAnalysisId = handle(job);
+            jobQueue.complete(job, workerId, resultAnalysisId);
+        } catch (Exception e) {
+            logger.error("Job {} ({}) failed: {}", job.getId(), job.getJobType(), e.getMessage(), e);
+            jobQueue.fail(job, workerId, e.getMessage());
+        } finally {
+            running.remove(job.getId());
+        }
+    }
+
+    /**
+     * Runs the job and returns the id of the analysis it produced, if any.
+     */
+    private Long handle(Job job) throws Exception {
+        Document document = documentRepository.findById(job.getDocumentId())
+                .orElseThrow(() -> new IllegalStateException("Document " + job.getDocumentId() + " no longer exists"));
+
+        switch (job.getJobType()) {
+            case EXTRACT_TEXT -> {
+                Document extracted = documentProcessingService.extractText(document);
+                if (extracted.getProcessingStatus() == Document.ProcessingStatus.FAILED) {
+                    throw new IllegalStateException(extracted.getProcessingError());
+                }
+                return null;
+            }
+            case INDEX_DOCUMENT -> {
+                documentProcessingService.indexDocument(document);
+                return null;
+            }
+            case SUMMARIZE -> {
+                return requireCompleted(geminiAiService.summarizeDocument(document)).getId();
+            }
+            case EXTRACT_CLAUSES -> {
+                // Throws on model errors, so the job is retried
+                geminiAiService.extractClauses(document);
+                return null;
+            }
+            case ANSWER_QUESTION -> {
+                return requireCompleted(geminiAiService.answerQuestion(document, job.getPayload())).getId();
+            }
+            case PRE_ANALYZE -> {
+                preAnalysisService.preAnalyze(document);
+                return null;
+            }
+            default -> throw new IllegalStateException("Unknown job type " + job.getJobType());
+        }
+    }
+
+    // The AI service records model errors as FAILED analyses; surface them so the job is retried
+    private static DocumentAnalysis requireCompleted(DocumentAnalysis analysis) {
+        if (analysis.getStatus() == DocumentAnalysis.AnalysisStatus.FAILED) {
+            throw new IllegalStateException(analysis.getErrorMessage());
+        }
+        return analysis;
+    }
+
+    private static String workerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + ":" + ManagementFactory.getRuntimeMXBean().getPid() + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Unfinished jobs are picked up by another worker once their lease expires
+        workers.shutdownNow();
+    }
+}
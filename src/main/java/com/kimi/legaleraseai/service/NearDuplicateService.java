@@ -0,0 +1,206 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.repository.DocumentAnalysisRepository;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import com.kimi.legaleraseai.repository.ExtractedClauseRepository;
+import com.kimi.legaleraseai.util.LshIndex;
+import com.kimi.legaleraseai.util.MinHash;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Finds earlier uploads of the same user that are near-identical to a document,
+ * e.g. the same NDA template with different party names.
+ *
+ * A MinHash signature of the extracted text is stored with each document and added to an
+ * in-memory LSH index, rebuilt from the stored signatures at startup. A lookup probes one
+ * bucket per band, then checks the few best candidates' signatures. Matches are limited to
+ * the user's own documents, so analyses are never reused across accounts.
+ */
+@Service
+public class NearDuplicateService {
+    private static final Logger logger = LoggerFactory.getLogger(NearDuplicateService.class);
+
+    private static final long SIGNATURE_SEED = 0x4C6567616C457261L;
+    private static final int REBUILD_PAGE_SIZE = 5000;
+
+    public record NearDuplicate(Long documentId, double similarity) {
+    }
+
+    @Value("${app.ai.near-duplicates.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.ai.near-duplicates.similarity-threshold:0.8}")
+    private double similarityThreshold;
+
+    @Value("${app.ai.near-duplicates.shingle-size:4}")
+    private int shingleSize;
+
+    @Value("${app.ai.near-duplicates.bands:16}")
+    private int bands;
+
+    @Value("${app.ai.near-duplicates.rows:7}")
+    private int rows;
+
+    @Value("${app.ai.near-duplicates.max-candidates:10}")
+    private int maxCandidates;
+
+    @Value("${app.ai.near-duplicates.max-bucket-scan:256}")
+    private int maxBucketScan;
+
+    @Value("${app.ai.near-duplicates.expected-documents:10000}")
+    private int expectedDocuments;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentAnalysisRepository analysisRepository;
+
+    @Autowired
+    private ExtractedClauseRepository clauseRepository;
+
+    private MinHash minHash;
+    private LshIndex index;
+
+    @PostConstruct
+    void init() {
+        minHash = new MinHash(bands * rows, shingleSize, SIGNATURE_SEED);
+        index = new LshIndex(bands, rows, expectedDocuments, maxBucketScan);
+    }
+
+    /**
+     * Loads the stored signatures into the index without delaying startup.
+     * Documents indexed meanwhile by {@link #index} are not added twice.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        if (!enabled) {
+            return;
+        }
+        Thread.ofVirtual().name("near-duplicate-index").start(() -> {
+            long started = System.currentTimeMillis();
+            long afterId = 0;
+            List<Object[]> page;
+            do {
+                page = documentRepository.findSignaturesAfter(afterId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+                for (Object[] row : page) {
+                    afterId = (Long) row[0];
+                    int[] signature = MinHash.fromBytes((byte[]) row[2]);
+                    if (signature.length == index.signatureLength()) {
+                        index.add(afterId, (Long) row[1], signature);
+                    }
+                }
+            } while (page.size() == REBUILD_PAGE_SIZE);
+            logger.info("Near-duplicate index loaded {} documents in {} ms",
+                    index.size(), System.currentTimeMillis() - started);
+        });
+    }
+
+    /**
+     * Signature to store with a document, or null if the text has no words.
+     */
+    public byte[] computeSignature(String text) {
+        if (!enabled || text == null) {
+            return null;
+        }
+        int[] signature = minHash.signature(text);
+        return MinHash.isEmpty(signature) ? null : MinHash.toBytes(signature);
+    }
+
+    public void index(Document document) {
+        int[] signature = signatureOf(document);
+        if (signature != null) {
+            index.add(document.getId(), document.getUser().getId(), signature);
+        }
+    }
+
+    public void remove(Document document) {
+        int[] signature = signatureOf(document);
+        if (signature != null) {
+            index.remove(document.getId(), document.getUser().getId(), signature);
+        }
+    }
+
+    /**
+     * The user's other documents whose estimated similarity is at least the threshold, most similar first.
+     * Documents extracted before signatures existed get one computed and indexed on first lookup.
+     */
+    public List<NearDuplicate> findNearDuplicates(Document document) {
+        if (!enabled || document.getExtractedText() == null) {
+            return List.of();
+        }
+        if (document.getMinhashSignature() == null) {
+            document.setMinhashSignature(computeSignature(document.getExtractedText()));
+            if (document.getMinhashSignature() == null) {
+                return List.of();
+            }
+            document = documentRepository.save(document);
+            index(document);
+        }
+        int[] signature = signatureOf(document);
+        if (signature == null) {
+            return List.of();
+        }
+
+        Long documentId = document.getId();
+        Map<Long, Integer> candidates = index.candidates(document.getUser().getId(), signature);
+        List<Long> best = candidates.entrySet().stream()
+                .filter(candidate -> !candidate.getKey().equals(documentId))
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed())
+                .limit(maxCandidates)
+                .map(Map.Entry::getKey)
+                .toList();
+        if (best.isEmpty()) {
+            return List.of();
+        }
+
+        // Band matches only bound the similarity; confirm with the full signatures
+        List<NearDuplicate> matches = new ArrayList<>();
+        for (Object[] row : documentRepository.findSignatures(best, document.getUser().getId())) {
+            int[] candidateSignature = MinHash.fromBytes((byte[]) row[1]);
+            if (candidateSignature.length != signature.length) {
+                continue;
+            }
+            double similarity = MinHash.similarity(signature, candidateSignature);
+            if (similarity >= similarityThreshold) {
+                matches.add(new NearDuplicate((Long) row[0], similarity));
+            }
+        }
+        matches.sort(Comparator.comparingDouble(NearDuplicate::similarity).reversed());
+        return matches;
+    }
+
+    /**
+     * The ones among the given documents that have clauses or a completed summary that can be reused.
+     */
+    public Set<Long> withAnalysis(Collection<Long> documentIds) {
+        if (documentIds.isEmpty()) {
+            return Set.of();
+        }
+        Set<Long> analyzed = new HashSet<>(clauseRepository.findDocumentIdsWithClauses(documentIds));
+        analyzed.addAll(analysisRepository.findDocumentIdsWithAnalysis(documentIds,
+                DocumentAnalysis.AnalysisType.SUMMARY, DocumentAnalysis.AnalysisStatus.COMPLETED));
+        return analyzed;
+    }
+
+    private int[] signatureOf(Document document) {
+        if (!enabled || document.getId() == null || document.getMinhashSignature() == null) {
+            return null;
+        }
+        int[] signature = MinHash.fromBytes(document.getMinhashSignature());
+        // Signatures from a different bands/rows configuration cannot be compared
+        return signature.length == index.signatureLength() ? signature : null;
+    }
+}
@@ -0,0 +1,78 @@
+package com.kimi.legaleraseai.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kimi.legaleraseai.entity.DocumentOutline;
+import com.kimi.legaleraseai.repository.DocumentOutlineRepository;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import com.kimi.legaleraseai.util.OutlineBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Builds and stores document outlines. {@link ChunkStore} cuts documents into chunks along them.
+ */
+@Service
+public class OutlineService {
+    private static final Logger logger = LoggerFactory.getLogger(OutlineService.class);
+
+    private static final TypeReference<List<OutlineBuilder.Section>> SECTIONS = new TypeReference<>() {
+    };
+
+    @Autowired
+    private DocumentOutlineRepository outlineRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Builds and stores the outline of a document's extracted text.
+     */
+    public List<OutlineBuilder.Section> build(Long documentId, String text) {
+        long start = System.nanoTime();
+        List<OutlineBuilder.Section> sections = OutlineBuilder.build(text);
+        try {
+            outlineRepository.save(new DocumentOutline(documentId, objectMapper.writeValueAsString(sections),
+                    sections.size()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize outline", e);
+        }
+        logger.debug("Outlined document {}: {} sections in {} ms", documentId, sections.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return sections;
+    }
+
+    /**
+     * The stored outline, built from the database text for documents extracted before outlines existed.
+     *
+     * @return empty if the document has no extracted text
+     */
+    public Optional<List<OutlineBuilder.Section>> get(Long documentId) {
+        Optional<DocumentOutline> stored = outlineRepository.findById(documentId);
+        if (stored.isPresent()) {
+            return Optional.of(parse(stored.get()));
+        }
+        return documentRepository.findExtractedTextById(documentId).map(text -> build(documentId, text));
+    }
+
+    public void delete(Long documentId) {
+        outlineRepository.deleteById(documentId);
+    }
+
+    private List<OutlineBuilder.Section> parse(DocumentOutline outline) {
+        try {
+            return objectMapper.readValue(outline.getSections(), SECTIONS);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable outline of document " + outline.getDocumentId(), e);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.kimi.legaleraseai.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * PNG previews of PDF pages.
+ *
+ * Rendered pages are kept in a disk cache under uploads/previews, bounded in total size and
+ * evicted least recently used first. Rendering runs on a small fixed pool with a bounded queue,
+ * and each document may only have a few renders queued at once, so paging quickly through one
+ * large PDF cannot take all render threads; requests beyond that are rejected rather than queued.
+ *
+ * A preview is opened while the cache is locked, so an eviction that deletes its file afterwards
+ * does not cut off a response already streaming it. Page counts of rendered PDFs are remembered,
+ * so requests for pages past the end are answered without parsing the PDF again.
+ */
+@Service
+public class PagePreviewService {
+    private static final Logger logger = LoggerFactory.getLogger(PagePreviewService.class);
+
+    private static final String PREVIEW_DIR = "uploads/previews";
+    private static final int MAX_PAGE_COUNTS = 10_000;
+    // Renders of a page evicted again before it could be opened, e.g. with a very small cache
+    private static final int MAX_RENDER_ATTEMPTS = 3;
+
+    /**
+     * An open preview PNG of {@code size} bytes; the caller closes the stream.
+     */
+    public record Preview(long size, InputStream content) {
+    }
+
+    /**
+     * Thrown when the render pool or the document's share of it is full; worth retrying shortly.
+     */
+    public static class BusyException extends Exception {
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+
+    @Value("${app.documents.previews.dpi:110}")
+    private int dpi;
+
+    @Value("${app.documents.previews.max-cache-mb:512}")
+    private long maxCacheMb;
+
+    @Value("${app.documents.previews.render-threads:2}")
+    private int renderThreads;
+
+    @Value("${app.documents.previews.max-queued:32}")
+    private int maxQueued;
+
+    @Value("${app.documents.previews.max-queued-per-document:4}")
+    private int maxQueuedPerDocument;
+
+    @Value("${app.documents.previews.render-timeout-seconds:30}")
+    private long renderTimeoutSeconds;
+
+    private ThreadPoolExecutor executor;
+
+    // Guarded by "this"; access order makes it an LRU of cached files and their sizes
+    private final LinkedHashMap<Path, Long> cached = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    // Guarded by "this"; number of pages of documents rendered before, LRU
+    private final LinkedHashMap<Long, Integer> pageCounts = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Renders in progress, so concurrent requests for the same page share one render
+    private final ConcurrentHashMap<Path, Future<Path>> rendering = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Integer> queuedByDocument = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() throws IOException {
+        AtomicInteger threads = new AtomicInteger();
+        executor = new ThreadPoolExecutor(renderThreads, renderThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueued), runnable -> {
+                    Thread thread = new Thread(runnable, "page-preview-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        // Previews rendered before a restart stay cached, oldest first in the LRU order
+        Path directory = Paths.get(PREVIEW_DIR);
+        Files.createDirectories(directory);
+        List<Map.Entry<Path, BasicFileAttributes>> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (path.getFileName().toString().endsWith(".png")) {
+                    files.add(Map.entry(path, Files.readAttributes(path, BasicFileAttributes.class)));
+                } else {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+        files.sort(Comparator.comparing(entry -> entry.getValue().lastAccessTime()));
+        synchronized (this) {
+            for (Map.Entry<Path, BasicFileAttributes> file : files) {
+                add(file.getKey(), file.getValue().size());
+            }
+        }
+    }
+
+    /**
+     * The PNG of a page, rendering it first if it is not cached.
+     *
+     * @param page page number, starting at 1
+     * @return empty if the PDF has no such page
+     * @throws BusyException if the page is not cached and no render can be queued for it now
+     */
+    public Optional<Preview> page(Long documentId, Path pdf, int page)
+            throws IOException, BusyException, InterruptedException, TimeoutException {
+        Path preview = previewPath(documentId, page);
+        for (int attempt = 0; attempt < MAX_RENDER_ATTEMPTS; attempt++) {
+            synchronized (this) {
+                Integer pages = pageCounts.get(documentId);
+                if (page < 1 || pages != null && page > pages) {
+                    return Optional.empty();
+                }
+                Long size = cached.get(preview);
+                if (size != null) {
+                    return Optional.of(new Preview(size, Files.newInputStream(preview)));
+                }
+            }
+            if (awaitRender(documentId, pdf, page, preview) == null) {
+                return Optional.empty();
+            }
+        }
+        throw new BusyException("Too many pages are being rendered to keep this one cached");
+    }
+
+    /**
+     * Renders a page, or waits for the render already running for it.
+     *
+     * @return the rendered file, or null if the PDF has no such page
+     */
+    private Path awaitRender(Long documentId, Path pdf, int page, Path preview)
+            throws IOException, BusyException, InterruptedException, TimeoutException {
+        Future<Path> render = rendering.get(preview);
+        if (render == null) {
+            if (!acquire(documentId)) {
+                throw new BusyException("Too many pages of this document are being rendered");
+            }
+            FutureTask<Path> task = new FutureTask<>(() -> {
+                try {
+                    return render(documentId, pdf, page, preview);
+                } finally {
+                    rendering.remove(preview);
+                    release(documentId);
+                }
+            });
+            render = rendering.putIfAbsent(preview, task);
+            if (render == null) {
+                render = task;
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    rendering.remove(preview);
+                    release(documentId);
+                    throw new BusyException("Too many pages are being rendered");
+                }
+            } else {
+                release(documentId);
+            }
+        }
+
+        try {
+            return render.get(renderTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Could not render page " + page, e.getCause());
+        }
+    }
+
+    /**
+     * Drops the cached previews of a document.
+     */
+    public void delete(Long documentId) throws IOException {
+        String prefix = documentId + "-";
+        synchronized (this) {
+            pageCounts.remove(documentId);
+            Iterator<Map.Entry<Path, Long>> entries = cached.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<Path, Long> entry = entries.next();
+                if (entry.getKey().getFileName().toString().startsWith(prefix)) {
+                    Files.deleteIfExists(entry.getKey());
+                    cachedBytes -= entry.getValue();
+                    entries.remove();
+                }
+            }
+        }
+    }
+
+    private Path render(Long documentId, Path pdf, int page, Path preview) throws IOException {
+        // Parsed objects of large PDFs are buffered in temp files rather than the heap
+        try (PDDocument document = PDDocument.load(pdf.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            synchronized (this) {
+                pageCounts.put(documentId, document.getNumberOfPages());
+                if (pageCounts.size() > MAX_PAGE_COUNTS) {
+                    Iterator<Long> eldest = pageCounts.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            if (page > document.getNumberOfPages()) {
+                return null;
+            }
+            BufferedImage image = new PDFRenderer(document).renderImageWithDPI(page - 1, dpi, ImageType.RGB);
+            Path temp = Files.createTempFile(preview.getParent(), preview.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    ImageIO.write(image, "png", out);
+                }
+                Files.move(temp, preview, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            long size = Files.size(preview);
+            synchronized (this) {
+                add(preview, size);
+            }
+            logger.debug("Rendered page {} of {} ({} bytes)", page, pdf, size);
+            return preview;
+        }
+    }
+
+    private void add(Path preview, long size) {
+        Long previous = cached.put(preview, size);
+        cachedBytes += size - (previous != null ? previous : 0);
+        long maxBytes = maxCacheMb * 1024 * 1024;
+        Iterator<Map.Entry<Path, Long>> eldest = cached.entrySet().iterator();
+        // The newest preview stays even if it alone exceeds the limit
+        while (cachedBytes > maxBytes && cached.size() > 1) {
+            Map.Entry<Path, Long> entry = eldest.next();
+            try {
+                Files.deleteIfExists(entry.getKey());
+            } catch (IOException e) {
+                logger.warn("Could not evict preview {}: {}", entry.getKey(), e.getMessage());
+            }
+            cachedBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    private boolean acquire(Long documentId) {
+        boolean[] acquired = new boolean[1];
+        queuedByDocument.compute(documentId, (id, queued) -> {
+            int count = queued != null ? queued : 0;
+            acquired[0] = count < maxQueuedPerDocument;
+            return acquired[0] ? count + 1 : queued;
+        });
+        return acquired[0];
+    }
+
+    private void release(Long documentId) {
+        queuedByDocument.computeIfPresent(documentId, (id, queued) -> queued > 1 ? queued - 1 : null);
+    }
+
+    /**
+     * File name of a page's preview, also its ETag; it only changes when the page would render differently.
+     */
+    public String previewName(Long documentId, int page) {
+        return documentId + "-" + page + "-" + dpi + ".png";
+    }
+
+    private Path previewPath(Long documentId, int page) {
+        return Paths.get(PREVIEW_DIR, previewName(documentId, page));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,158 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.entity.Job;
+import com.kimi.legaleraseai.repository.DocumentAnalysisRepository;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import com.kimi.legaleraseai.repository.ExtractedClauseRepository;
+import com.kimi.legaleraseai.repository.JobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Summarizes and extracts clauses from newly uploaded documents in the background,
+ * so the results are already stored when the user opens the document.
+ *
+ * Each document gets one low-priority PRE_ANALYZE job on the {@link JobQueue}, so the work
+ * survives restarts and runs on whichever worker has a free slot once no other job is due.
+ * A step only runs while the Gemini quota has headroom above the reserve kept for interactive
+ * requests; otherwise the attempt fails and the queue retries it after a backoff. Steps whose
+ * results already exist are skipped, and each user can have at most a fixed number of
+ * documents pre-analyzed per day, counted from the jobs table across all nodes.
+ */
+@Component
+public class PreAnalysisService {
+    private static final Logger logger = LoggerFactory.getLogger(PreAnalysisService.class);
+
+    private static final Set<Job.JobStatus> PENDING = EnumSet.of(Job.JobStatus.QUEUED, Job.JobStatus.RUNNING);
+
+    private enum Step {
+        SUMMARY, CLAUSES
+    }
+
+    @Value("${app.ai.pre-analysis.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.ai.pre-analysis.max-documents-per-user-per-day:20}")
+    private int maxDocumentsPerUserPerDay;
+
+    @Value("${app.ai.pre-analysis.max-attempts:20}")
+    private int maxAttempts;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentAnalysisRepository analysisRepository;
+
+    @Autowired
+    private ExtractedClauseRepository clauseRepository;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private JobQueue jobQueue;
+
+    @Autowired
+    private GeminiAiService geminiAiService;
+
+    @Autowired
+    private GeminiQuotaBudget quotaBudget;
+
+    @Autowired
+    private DocumentVersionService documentVersionService;
+
+    @EventListener
+    public void onDocumentExtracted(DocumentExtractedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Document document = documentRepository.findById(event.documentId()).orElse(null);
+        if (document == null || document.getProcessingStatus() != Document.ProcessingStatus.COMPLETED) {
+            return;
+        }
+
+        // Only documents that still need work count against the daily limit
+        if (isDone(document, Step.SUMMARY) && isDone(document, Step.CLAUSES)) {
+            return;
+        }
+        if (jobRepository.existsByDocumentIdAndJobTypeAndStatusIn(document.getId(), Job.JobType.PRE_ANALYZE, PENDING)) {
+            return;
+        }
+        long queuedToday = jobRepository.countByUserIdAndJobTypeAndCreatedAtGreaterThanEqual(
+                event.userId(), Job.JobType.PRE_ANALYZE, LocalDate.now().atStartOfDay());
+        if (queuedToday >= maxDocumentsPerUserPerDay) {
+            logger.info("Skipping pre-analysis of document {}: user {} reached the daily limit of {}",
+                    event.documentId(), event.userId(), maxDocumentsPerUserPerDay);
+            return;
+        }
+
+        jobQueue.enqueue(Job.JobType.PRE_ANALYZE, document.getId(), event.userId(), null,
+                Job.LOW_PRIORITY, maxAttempts);
+    }
+
+    /**
+     * Runs the steps whose results do not exist yet. Called by the {@link JobWorker} for PRE_ANALYZE jobs.
+     *
+     * @throws IllegalStateException if there is no spare quota or the model failed, so the job is retried
+     */
+    public void preAnalyze(Document document) throws Exception {
+        if (document.getProcessingStatus() != Document.ProcessingStatus.COMPLETED) {
+            return;
+        }
+
+        for (Step step : Step.values()) {
+            if (isDone(document, step)) {
+                continue;
+            }
+            if (!quotaBudget.hasOptionalHeadroom()) {
+                throw new IllegalStateException("No spare Gemini quota for pre-analysis at " + step);
+            }
+
+            if (step == Step.SUMMARY) {
+                // An earlier version lets one incremental pass cover both steps. Near-identical uploads
+                // are only used as a base when the user picks one (POST .../reanalyze-from/{baseDocumentId})
+                Document base = document.getPreviousVersion() != null
+                        ? documentVersionService.findPreviousVersion(document)
+                        : null;
+                if (base != null) {
+                    logger.debug("Pre-analyzing document {} incrementally against document {}", document.getId(), base.getId());
+                    documentVersionService.reanalyzeFrom(document, base);
+                    return;
+                }
+            }
+
+            logger.debug("Pre-analyzing document {}: {}", document.getId(), step);
+            switch (step) {
+                case SUMMARY -> {
+                    DocumentAnalysis summary = geminiAiService.summarizeDocument(document);
+                    if (summary.getStatus() == DocumentAnalysis.AnalysisStatus.FAILED) {
+                        throw new IllegalStateException(summary.getErrorMessage());
+                    }
+                }
+                case CLAUSES -> geminiAiService.extractClauses(document);
+            }
+        }
+    }
+
+    /**
+     * Whether the step's result already exists, e.g. because the user asked for it first.
+     */
+    private boolean isDone(Document document, Step step) {
+        return switch (step) {
+            case SUMMARY -> analysisRepository.existsByDocumentAndAnalysisTypeAndStatus(
+                    document, DocumentAnalysis.AnalysisType.SUMMARY, DocumentAnalysis.AnalysisStatus.COMPLETED);
+            case CLAUSES -> clauseRepository.existsByDocument(document);
+        };
+    }
+}
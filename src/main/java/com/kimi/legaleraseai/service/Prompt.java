@@ -0,0 +1,80 @@
+package com.kimi.legaleraseai.service;
+
+import org.apache.commons.io.input.CharSequenceReader;
+import org.apache.commons.io.input.SequenceReader;
+
+import java.io.Reader;
+
+/**
+ * A prompt built by {@link PromptBuilder}: an instruction followed by (compressed) document text,
+ * with a local token estimate checked against the budget for its purpose.
+ */
+public class Prompt {
+    private final String instruction;
+    private final String documentText;
+    private final int estimatedTokens;
+    private final int budget;
+    // Limit on the length of the response, or 0 for the request writer's default
+    private final int maxOutputTokens;
+
+    public Prompt(String instruction, String documentText, int estimatedTokens, int budget) {
+        this(instruction, documentText, estimatedTokens, budget, 0);
+    }
+
+    private Prompt(String instruction, String documentText, int estimatedTokens, int budget, int maxOutputTokens) {
+        this.instruction = instruction;
+        this.documentText = documentText;
+        this.estimatedTokens = estimatedTokens;
+        this.budget = budget;
+        this.maxOutputTokens = maxOutputTokens;
+    }
+
+    /**
+     * The same prompt with room for a longer (or shorter) response than the default.
+     */
+    public Prompt withMaxOutputTokens(int maxOutputTokens) {
+        return new Prompt(instruction, documentText, estimatedTokens, budget, maxOutputTokens);
+    }
+
+    public String getInstruction() {
+        return instruction;
+    }
+
+    public String getDocumentText() {
+        return documentText;
+    }
+
+    public int getEstimatedTokens() {
+        return estimatedTokens;
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+
+    public int getMaxOutputTokens() {
+        return maxOutputTokens;
+    }
+
+    public boolean fitsBudget() {
+        return estimatedTokens <= budget;
+    }
+
+    /**
+     * Number of characters in the full prompt text.
+     */
+    public int length() {
+        return instruction.length() + documentText.length();
+    }
+
+    /**
+     * Reads the instruction followed by the document text without concatenating them.
+     */
+    public Reader openReader() {
+        return new SequenceReader(new CharSequenceReader(instruction), new CharSequenceReader(documentText));
+    }
+
+    public String text() {
+        return documentText.isEmpty() ? instruction : instruction + documentText;
+    }
+}
@@ -0,0 +1,362 @@
+package com.kimi.legaleraseai.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Builds model prompts with a local token estimate and a per-purpose token budget.
+ *
+ * Document text is compressed before it is counted: whitespace is collapsed,
+ * running headers/footers are kept only once, and page numbers and empty signature
+ * lines are dropped. Only lines next to a page break (form feed) are taken for
+ * headers, footers and page numbers, so repeated or numeric lines in the body of a
+ * page are kept. Prompts that still exceed their budget are reported as such so
+ * the caller can switch to chunked processing via {@link #split(String, Purpose)}.
+ */
+@Component
+public class PromptBuilder {
+    private static final Logger logger = LoggerFactory.getLogger(PromptBuilder.class);
+
+    // Repeated lines shorter than this are treated as running headers/footers
+    private static final int MAX_REPEATED_LINE_LENGTH = 100;
+    private static final int MIN_REPEATED_LINE_LENGTH = 12;
+    private static final int MIN_REPEATS = 3;
+    // Non-empty lines at the top and bottom of each page that may be a header, footer or page number
+    private static final int PAGE_MARGIN_LINES = 3;
+
+    private static final Pattern PAGE_NUMBER_LINE = Pattern.compile(
+            "(?i)(?:page\\s*)?\\d{1,4}(?:\\s*(?:of|/)\\s*\\d{1,4})?|-\\s*\\d{1,4}\\s*-");
+    private static final Pattern PAGE_REFERENCE = Pattern.compile("(?i)\\bpage\\s*\\d{1,4}(?:\\s*(?:of|/)\\s*\\d{1,4})?");
+    private static final Pattern PAGE_OF_TOTAL = Pattern.compile("(?i)\\bpage\\s*\\d{1,4}\\s*(?:of|/)\\s*\\d{1,4}\\b");
+    private static final Pattern SIGNATURE_LABEL = Pattern.compile(
+            "(?i)^(?:by|name|print name|title|date|signature|its|witness)\\s*:?\\s*");
+
+    public enum Purpose {
+        SUMMARY, CLAUSE_EXTRACTION, QUESTION_ANSWER, TEMPLATE
+    }
+
+    @Value("${app.ai.prompt.max-tokens.summary:28000}")
+    private int summaryBudget = 28000;
+
+    @Value("${app.ai.prompt.max-tokens.clause-extraction:12000}")
+    private int clauseExtractionBudget = 12000;
+
+    @Value("${app.ai.prompt.max-tokens.question-answer:28000}")
+    private int questionAnswerBudget = 28000;
+
+    @Value("${app.ai.prompt.max-tokens.template:4000}")
+    private int templateBudget = 4000;
+
+    /**
+     * Builds a prompt from an instruction and raw document text.
+     *
+     * @param purpose what the prompt is for; selects the token budget
+     * @param instruction text placed before the document
+     * @param documentText raw extracted text, or null for prompts without a document
+     */
+    public Prompt build(Purpose purpose, String instruction, String documentText) {
+        String compressed = compress(documentText);
+        int tokens = estimateTokens(instruction) + estimateTokens(compressed);
+        Prompt prompt = new Prompt(instruction, compressed, tokens, budgetFor(purpose));
+
+        if (!prompt.fitsBudget()) {
+            logger.info("{} prompt needs ~{} tokens, budget is {}; switching to chunked processing",
+                    purpose, tokens, prompt.getBudget());
+        }
+        return prompt;
+    }
+
+    /**
+     * Wraps already compressed text (e.g. a chunk from {@link #split(String, Purpose)}) without copying it.
+     */
+    public Prompt wrap(String instruction, String compressedText) {
+        int tokens = estimateTokens(instruction) + estimateTokens(compressedText);
+        return new Prompt(instruction, compressedText, tokens, Integer.MAX_VALUE);
+    }
+
+    public int budgetFor(Purpose purpose) {
+        return switch (purpose) {
+            case SUMMARY -> summaryBudget;
+            case CLAUSE_EXTRACTION -> clauseExtractionBudget;
+            case QUESTION_ANSWER -> questionAnswerBudget;
+            case TEMPLATE -> templateBudget;
+        };
+    }
+
+    /**
+     * Estimates the number of model tokens for the given text without calling the API.
+     *
+     * Uses the larger of ~4 characters per token and ~1.3 tokens per word plus one per
+     * punctuation mark, which tracks SentencePiece counts closely for English legal prose.
+     */
+    public int estimateTokens(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+        int words = 0;
+        int punctuation = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (!inWord) {
+                    words++;
+                    inWord = true;
+                }
+            } else {
+                inWord = false;
+                if (!Character.isWhitespace(c)) {
+                    punctuation++;
+                }
+            }
+        }
+        int byCharacters = (text.length() + 3) / 4;
+        int byWords = (int) Math.ceil(words * 1.3) + punctuation;
+        return Math.max(byCharacters, byWords);
+    }
+
+    /**
+     * Removes layout noise from extracted text while keeping its wording intact.
+     */
+    public String compress(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+
+        List<String> lines = new ArrayList<>();
+        BitSet margins = new BitSet();
+        for (String page : text.split("\\f", -1)) {
+            int first = lines.size();
+            for (String line : page.split("\\r?\\n", -1)) {
+                lines.add(collapseWhitespace(line));
+            }
+            markPageMargins(lines, first, lines.size(), margins);
+        }
+        // Without page breaks there is nothing to tell a running header from a repeated line of the body
+        boolean paged = text.indexOf('\f') >= 0;
+
+        Map<String, Integer> repeatCounts = new HashMap<>();
+        if (paged) {
+            for (int i = margins.nextSetBit(0); i >= 0; i = margins.nextSetBit(i + 1)) {
+                String key = repeatKey(lines.get(i));
+                if (key != null) {
+                    repeatCounts.merge(key, 1, Integer::sum);
+                }
+            }
+        }
+
+        StringBuilder out = new StringBuilder(text.length());
+        Set<String> emittedRepeats = new HashSet<>();
+        boolean pendingBlank = false;
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isEmpty()) {
+                pendingBlank = out.length() > 0;
+                continue;
+            }
+            if (isSignatureFill(line)) {
+                continue;
+            }
+            if (paged && margins.get(i)) {
+                if (PAGE_NUMBER_LINE.matcher(line).matches() || isPageFooter(line)) {
+                    continue;
+                }
+                String key = repeatKey(line);
+                if (key != null && repeatCounts.get(key) >= MIN_REPEATS && !emittedRepeats.add(key)) {
+                    continue;
+                }
+            }
+
+            if (pendingBlank) {
+                out.append('\n');
+                pendingBlank = false;
+            }
+            out.append(line).append('\n');
+        }
+
+        int length = out.length();
+        if (length > 0 && out.charAt(length - 1) == '\n') {
+            out.setLength(length - 1);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Marks the first and last few non-empty lines of the page held in lines[from, to).
+     */
+    private static void markPageMargins(List<String> lines, int from, int to, BitSet margins) {
+        int marked = 0;
+        for (int i = from; i < to && marked < PAGE_MARGIN_LINES; i++) {
+            if (!lines.get(i).isEmpty()) {
+                margins.set(i);
+                marked++;
+            }
+        }
+        marked = 0;
+        for (int i = to - 1; i >= from && marked < PAGE_MARGIN_LINES; i--) {
+            if (!lines.get(i).isEmpty()) {
+                margins.set(i);
+                marked++;
+            }
+        }
+    }
+
+    /**
+     * Splits compressed text into chunks that each fit the budget for the purpose,
+     * leaving headroom for the instruction. Splits on paragraph boundaries where possible.
+     */
+    public List<String> split(String text, Purpose purpose) {
+        return split(text, Math.max(256, budgetFor(purpose) - 1024));
+    }
+
+    /**
+     * Splits compressed text into chunks of at most roughly maxTokens each, on paragraph boundaries where possible.
+     */
+    public List<String> split(String text, int maxTokens) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int currentTokens = 0;
+
+        for (String paragraph : text.split("\\n\\n")) {
+            int tokens = estimateTokens(paragraph);
+            if (tokens > maxTokens) {
+                if (current.length() > 0) {
+                    chunks.add(current.toString());
+                    current.setLength(0);
+                    currentTokens = 0;
+                }
+                splitOversized(paragraph, maxTokens, chunks);
+                continue;
+            }
+            if (currentTokens + tokens > maxTokens && current.length() > 0) {
+                chunks.add(current.toString());
+                current.setLength(0);
+                currentTokens = 0;
+            }
+            if (current.length() > 0) {
+                current.append("\n\n");
+            }
+            current.append(paragraph);
+            currentTokens += tokens;
+        }
+        if (current.length() > 0) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+
+    /**
+     * Picks the chunks most relevant to a question, keeping document order, until the budget is used.
+     */
+    public String selectRelevant(List<String> chunks, String question, int maxTokens) {
+        Set<String> terms = new HashSet<>();
+        for (String term : question.toLowerCase().split("\\W+")) {
+            if (term.length() > 3) {
+                terms.add(term);
+            }
+        }
+
+        Integer[] order = new Integer[chunks.size()];
+        int[] scores = new int[chunks.size()];
+        for (int i = 0; i < chunks.size(); i++) {
+            order[i] = i;
+            for (String word : chunks.get(i).toLowerCase().split("\\W+")) {
+                if (terms.contains(word)) {
+                    scores[i]++;
+                }
+            }
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(scores[b], scores[a]));
+
+        boolean[] selected = new boolean[chunks.size()];
+        int used = 0;
+        for (int index : order) {
+            int tokens = estimateTokens(chunks.get(index));
+            if (used + tokens > maxTokens) {
+                continue;
+            }
+            selected[index] = true;
+            used += tokens;
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < chunks.size(); i++) {
+            if (selected[i]) {
+                if (text.length() > 0) {
+                    text.append("\n\n[...]\n\n");
+                }
+                text.append(chunks.get(i));
+            }
+        }
+        return text.toString();
+    }
+
+    private void splitOversized(String paragraph, int maxTokens, List<String> chunks) {
+        int maxChars = maxTokens * 3;
+        int start = 0;
+        while (start < paragraph.length()) {
+            int end = Math.min(paragraph.length(), start + maxChars);
+            if (end < paragraph.length()) {
+                int lineBreak = paragraph.lastIndexOf('\n', end);
+                int space = paragraph.lastIndexOf(' ', end);
+                int cut = Math.max(lineBreak, space);
+                if (cut > start) {
+                    end = cut;
+                }
+            }
+            chunks.add(paragraph.substring(start, end).trim());
+            start = end;
+        }
+    }
+
+    private static String collapseWhitespace(String line) {
+        StringBuilder out = new StringBuilder(line.length());
+        boolean space = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                space = out.length() > 0;
+            } else {
+                if (space) {
+                    out.append(' ');
+                    space = false;
+                }
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private static String repeatKey(String line) {
+        if (line.length() > MAX_REPEATED_LINE_LENGTH) {
+            return null;
+        }
+        String key = PAGE_REFERENCE.matcher(line).replaceAll("").trim();
+        return key.length() >= MIN_REPEATED_LINE_LENGTH ? key : null;
+    }
+
+    private static boolean isPageFooter(String line) {
+        // Short lines such as "Lease Agreement - Page 3 of 12"
+        return line.length() <= MAX_REPEATED_LINE_LENGTH && PAGE_OF_TOTAL.matcher(line).find();
+    }
+
+    private static boolean isSignatureFill(String line) {
+        String rest = SIGNATURE_LABEL.matcher(line).replaceFirst("");
+        int fill = 0;
+        for (int i = 0; i < rest.length(); i++) {
+            char c = rest.charAt(i);
+            if (c == '_' || c == '.') {
+                fill++;
+            } else if (c != ' ') {
+                return false;
+            }
+        }
+        return fill >= 3;
+    }
+}
@@ -0,0 +1,251 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.repository.DocumentAnalysisRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-document cache of answered questions that also matches reworded questions.
+ *
+ * Questions are normalized (lower case, stop words removed, light suffix stemming and a
+ * few synonym groups such as when/date/deadline) into a set of key terms. A new question
+ * is served from the cache only when its key terms are exactly those of a cached question,
+ * returning the earlier QUESTION_ANSWER analysis without a model call. A similarity score
+ * over sets this small cannot tell "when does the lease start" from "when does it end", so
+ * partial overlaps never count. Entries remember a hash of the document text and are
+ * dropped when it changes.
+ */
+@Component
+public class QuestionAnswerCache {
+    private static final Logger logger = LoggerFactory.getLogger(QuestionAnswerCache.class);
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "the", "this", "that", "these", "those", "is", "are", "was", "were", "be", "been",
+            "do", "does", "did", "of", "in", "on", "at", "to", "for", "from", "by", "with", "about", "as",
+            "and", "or", "any", "there", "it", "its", "i", "we", "you", "my", "our", "your", "me", "us",
+            "can", "could", "would", "should", "will", "shall", "may", "might", "must", "please", "tell",
+            "what", "which", "document", "contract", "agreement", "say", "says", "regarding");
+
+    private static final Map<String, String> SYNONYMS = Map.ofEntries(
+            Map.entry("date", "when"), Map.entry("dates", "when"), Map.entry("day", "when"),
+            Map.entry("deadline", "when"), Map.entry("end", "terminate"), Map.entry("ends", "terminate"),
+            Map.entry("expire", "terminate"), Map.entry("expires", "terminate"),
+            Map.entry("expiration", "terminate"), Map.entry("expiry", "terminate"),
+            Map.entry("cost", "price"), Map.entry("costs", "price"), Map.entry("fee", "price"),
+            Map.entry("fees", "price"));
+
+    private static final String[] SUFFIXES = {
+            "ational", "ations", "ation", "ating", "ated", "ates", "ate", "ings", "ing",
+            "ments", "ment", "ies", "ied", "al", "ed", "es", "s"
+    };
+
+    // Questions with fewer key terms (e.g. "What is the rent?") are too vague to share an answer
+    @Value("${app.ai.answer-cache.min-terms:2}")
+    private int minTerms = 2;
+
+    @Value("${app.ai.answer-cache.max-documents:1000}")
+    private int maxDocuments = 1000;
+
+    @Value("${app.ai.answer-cache.max-questions-per-document:200}")
+    private int maxQuestionsPerDocument = 200;
+
+    @Autowired
+    private DocumentAnalysisRepository analysisRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Access-ordered so the least recently used document is evicted first; guarded by "this"
+    private final LinkedHashMap<Long, DocumentEntry> documents = new LinkedHashMap<>(16, 0.75f, true);
+
+    private Counter hits;
+    private Counter misses;
+    private Timer servedLatency;
+
+    @PostConstruct
+    void init() {
+        hits = Counter.builder("ai.answer-cache.hits")
+                .description("Questions answered from the semantic answer cache")
+                .register(meterRegistry);
+        misses = Counter.builder("ai.answer-cache.misses")
+                .description("Questions that had to be sent to the model")
+                .register(meterRegistry);
+        servedLatency = Timer.builder("ai.answer-cache.served")
+                .description("Time to serve a cached answer")
+                .register(meterRegistry);
+        Gauge.builder("ai.answer-cache.hit-ratio", this, cache -> {
+                    double total = cache.hits.count() + cache.misses.count();
+                    return total == 0 ? 0 : cache.hits.count() / total;
+                })
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the earlier answer to an equivalent question about the same document text, if any.
+     */
+    public Optional<DocumentAnalysis> lookup(Document document, String question) {
+        long start = System.nanoTime();
+        Set<String> terms = normalize(question);
+        if (document.getId() == null || terms.size() < minTerms) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        DocumentEntry entry = entryFor(document);
+        Long analysisId;
+        synchronized (this) {
+            analysisId = entry.questions.get(terms);
+        }
+        if (analysisId != null) {
+            Optional<DocumentAnalysis> analysis = analysisRepository.findById(analysisId);
+            if (analysis.isPresent()) {
+                hits.increment();
+                servedLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                logger.debug("Answer cache hit for document {}: \"{}\"", document.getId(), question);
+                return analysis;
+            }
+            synchronized (this) {
+                entry.questions.remove(terms, analysisId);
+            }
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Remembers a completed answer so equivalent questions can reuse it.
+     */
+    public void put(Document document, String question, DocumentAnalysis analysis) {
+        if (document.getId() == null || analysis.getId() == null || analysis.getStatus() != DocumentAnalysis.AnalysisStatus.COMPLETED) {
+            return;
+        }
+        Set<String> terms = normalize(question);
+        if (terms.size() < minTerms) {
+            return;
+        }
+        DocumentEntry entry = entryFor(document);
+        synchronized (this) {
+            entry.add(terms, analysis.getId(), maxQuestionsPerDocument);
+        }
+    }
+
+    /**
+     * Drops everything cached for the document, e.g. after its text was replaced.
+     */
+    public synchronized void invalidate(Long documentId) {
+        documents.remove(documentId);
+    }
+
+    /**
+     * Current entry for the document, rebuilt from stored answers when missing or when the text changed.
+     * The stored answers are read without holding the lock, so a slow query does not stall lookups
+     * for other documents.
+     */
+    private DocumentEntry entryFor(Document document) {
+        int textHash = Objects.hashCode(document.getExtractedText());
+        synchronized (this) {
+            DocumentEntry entry = documents.get(document.getId());
+            if (entry != null && entry.textHash == textHash) {
+                return entry;
+            }
+        }
+
+        DocumentEntry loaded = load(document, textHash);
+
+        synchronized (this) {
+            DocumentEntry entry = documents.get(document.getId());
+            if (entry != null && entry.textHash == textHash) {
+                // Another thread loaded it in the meantime and may already have added to it
+                return entry;
+            }
+            documents.put(document.getId(), loaded);
+            while (documents.size() > maxDocuments) {
+                Iterator<Long> eldest = documents.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            return loaded;
+        }
+    }
+
+    private DocumentEntry load(Document document, int textHash) {
+        DocumentEntry entry = new DocumentEntry(textHash);
+        // Answers given since the text was last modified are still valid
+        List<DocumentAnalysis> answered = analysisRepository.findByDocumentAndAnalysisTypeOrderByCreatedAtDesc(
+                document, DocumentAnalysis.AnalysisType.QUESTION_ANSWER);
+        // Oldest first, so the newest answer to a question wins and the oldest are evicted first
+        for (int i = answered.size() - 1; i >= 0; i--) {
+            DocumentAnalysis analysis = answered.get(i);
+            if (analysis.getStatus() != DocumentAnalysis.AnalysisStatus.COMPLETED || analysis.getPrompt() == null) {
+                continue;
+            }
+            if (document.getUpdatedAt() != null && analysis.getCreatedAt() != null
+                    && analysis.getCreatedAt().isBefore(document.getUpdatedAt())) {
+                continue;
+            }
+            Set<String> terms = normalize(analysis.getPrompt());
+            if (terms.size() >= minTerms) {
+                entry.add(terms, analysis.getId(), maxQuestionsPerDocument);
+            }
+        }
+        return entry;
+    }
+
+    static Set<String> normalize(String question) {
+        Set<String> terms = new HashSet<>();
+        for (String word : question.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() < 2 || STOP_WORDS.contains(word)) {
+                continue;
+            }
+            terms.add(stem(SYNONYMS.getOrDefault(word, word)));
+        }
+        return terms;
+    }
+
+    static String stem(String word) {
+        for (String suffix : SUFFIXES) {
+            if (word.endsWith(suffix) && word.length() - suffix.length() >= 3) {
+                word = word.substring(0, word.length() - suffix.length());
+                break;
+            }
+        }
+        if (word.endsWith("e") && word.length() > 3) {
+            word = word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+
+    private static class DocumentEntry {
+        private final int textHash;
+        // Key terms to the id of the answer, oldest first
+        private final LinkedHashMap<Set<String>, Long> questions = new LinkedHashMap<>();
+
+        DocumentEntry(int textHash) {
+            this.textHash = textHash;
+        }
+
+        void add(Set<String> terms, Long analysisId, int limit) {
+            questions.remove(terms);
+            questions.put(terms, analysisId);
+            while (questions.size() > limit) {
+                Iterator<Set<String>> eldest = questions.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Micro-batches questions about the same document.
+ *
+ * The first question for a document opens a short window; questions for that document
+ * arriving within the window are merged into one {@link GeminiAiService#answerQuestions}
+ * call, so the document is sent to the model once per batch instead of once per question.
+ * A batch is dispatched early when it reaches the maximum size.
+ */
+@Component
+public class QuestionBatcher {
+    private static final Logger logger = LoggerFactory.getLogger(QuestionBatcher.class);
+
+    @Value("${app.ai.question-batching.window-ms:0}")
+    private long windowMillis;
+
+    @Value("${app.ai.question-batching.max-batch-size:8}")
+    private int maxBatchSize;
+
+    @Autowired
+    private GeminiAiService geminiAiService;
+
+    // Guarded by "this"
+    private final Map<Long, PendingBatch> pending = new HashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "question-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    public boolean isEnabled() {
+        return windowMillis > 0;
+    }
+
+    /**
+     * Queues a question for the document's current batch.
+     *
+     * @return future completed with the persisted answer once the batch has been answered
+     */
+    public CompletableFuture<DocumentAnalysis> submit(Document document, String question) {
+        CompletableFuture<DocumentAnalysis> future = new CompletableFuture<>();
+        PendingBatch fullBatch = null;
+
+        synchronized (this) {
+            Long documentId = document.getId();
+            PendingBatch batch = pending.get(documentId);
+            if (batch == null) {
+                PendingBatch newBatch = new PendingBatch(document);
+                newBatch.timer = scheduler.schedule(() -> flush(documentId, newBatch), windowMillis, TimeUnit.MILLISECONDS);
+                pending.put(documentId, newBatch);
+                batch = newBatch;
+            }
+            batch.questions.add(question);
+            batch.futures.add(future);
+
+            if (batch.questions.size() >= maxBatchSize) {
+                pending.remove(documentId);
+                batch.timer.cancel(false);
+                fullBatch = batch;
+            }
+        }
+
+        if (fullBatch != null) {
+            dispatch(fullBatch);
+        }
+        return future;
+    }
+
+    private void flush(Long documentId, PendingBatch batch) {
+        synchronized (this) {
+            if (!pending.remove(documentId, batch)) {
+                return; // Already dispatched because it filled up
+            }
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(PendingBatch batch) {
+        logger.debug("Answering {} batched questions for document {}", batch.questions.size(), batch.document.getId());
+        workers.execute(() -> {
+            try {
+                List<DocumentAnalysis> answers = geminiAiService.answerQuestions(batch.document, batch.questions);
+                for (int i = 0; i < batch.futures.size(); i++) {
+                    batch.futures.get(i).complete(answers.get(i));
+                }
+            } catch (Exception e) {
+                logger.error("Question batch for document {} failed: {}", batch.document.getId(), e.getMessage(), e);
+                batch.futures.forEach(future -> future.completeExceptionally(e));
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+        workers.shutdown();
+    }
+
+    private static class PendingBatch {
+        private final Document document;
+        private final List<String> questions = new ArrayList<>();
+        private final List<CompletableFuture<DocumentAnalysis>> futures = new ArrayList<>();
+        private ScheduledFuture<?> timer;
+
+        PendingBatch(Document document) {
+            this.document = document;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issues a second, identical Gemini request when the first one is slower than
+ * the observed p95 latency. Whichever response arrives first wins.
+ *
+ * Hedging is only applied to analysis types whose requests are safe to send
+ * twice, and every hedge must fit into the {@link GeminiQuotaBudget}. A hedge
+ * is only ever sent because the primary is slow, never because it failed:
+ * errors of the primary are returned as they are, without a second call.
+ *
+ * The p95 is taken from the primary requests alone, separately per analysis
+ * type, so long summaries and risk analyses do not raise the delay of quick
+ * questions. A primary that loses to its hedge still runs to completion, so
+ * the slow tail stays in the samples and the delay does not drift down to the
+ * latency of the winners.
+ */
+@Component
+public class RequestHedger {
+    private static final Logger logger = LoggerFactory.getLogger(RequestHedger.class);
+    private static final int SAMPLE_SIZE = 512;
+    private static final int MIN_SAMPLES = 20;
+
+    @Value("${app.ai.hedging.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.ai.hedging.idempotent-types:QUESTION_ANSWER}")
+    private List<String> idempotentTypeNames;
+
+    @Value("${app.ai.hedging.initial-delay-ms:3000}")
+    private long initialDelayMillis;
+
+    @Value("${app.ai.hedging.min-delay-ms:250}")
+    private long minDelayMillis;
+
+    @Autowired
+    private GeminiQuotaBudget quotaBudget;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<DocumentAnalysis.AnalysisType, LatencySamples> latencies =
+            new EnumMap<>(DocumentAnalysis.AnalysisType.class);
+
+    private Set<DocumentAnalysis.AnalysisType> idempotentTypes;
+    private Counter hedgesFired;
+    private Counter hedgesWon;
+    private Timer requestTimer;
+
+    @PostConstruct
+    void init() {
+        idempotentTypes = EnumSet.noneOf(DocumentAnalysis.AnalysisType.class);
+        for (String name : idempotentTypeNames) {
+            idempotentTypes.add(DocumentAnalysis.AnalysisType.valueOf(name.trim().toUpperCase()));
+        }
+        for (DocumentAnalysis.AnalysisType type : DocumentAnalysis.AnalysisType.values()) {
+            latencies.put(type, new LatencySamples());
+        }
+        hedgesFired = Counter.builder("gemini.hedge.fired")
+                .description("Hedged Gemini requests issued after the primary exceeded p95")
+                .register(meterRegistry);
+        hedgesWon = Counter.builder("gemini.hedge.won")
+                .description("Hedged Gemini requests that answered before the primary")
+                .register(meterRegistry);
+        requestTimer = Timer.builder("gemini.request.latency")
+                .description("Latency of Gemini generateContent calls")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Executes the given request, hedging it when enabled for the analysis type.
+     *
+     * @param request cold publisher; every subscription must issue a new upstream call
+     * @param analysisType type of analysis the request belongs to
+     * @return publisher of the first successful response
+     */
+    public <T> Mono<T> execute(Mono<T> request, DocumentAnalysis.AnalysisType analysisType) {
+        quotaBudget.record();
+
+        if (!enabled || analysisType == null || !idempotentTypes.contains(analysisType)) {
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                return request.doOnSuccess(response -> recordLatency(analysisType, start));
+            });
+        }
+
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            Duration delay = hedgeDelay(analysisType);
+
+            // Subscribed on its own, so losing the race does not cancel it and its latency is still recorded
+            CompletableFuture<T> primaryCall = request.doOnSuccess(response -> recordLatency(analysisType, start)).toFuture();
+            Mono<Attempt<T>> primary = Mono.fromFuture(primaryCall, true)
+                    .map(response -> new Attempt<>(response, false));
+
+            // A failed hedge never decides the race; the primary's outcome does
+            Mono<Attempt<T>> hedge = Mono.delay(delay)
+                    .filter(tick -> !primaryCall.isDone() && quotaBudget.tryAcquireOptional())
+                    .flatMap(tick -> {
+                        hedgesFired.increment();
+                        logger.debug("Primary {} request exceeded {} ms, issuing hedge", analysisType, delay.toMillis());
+                        return request.map(response -> new Attempt<>(response, true));
+                    })
+                    .onErrorResume(e -> {
+                        logger.debug("Hedged {} request failed: {}", analysisType, e.getMessage());
+                        return Mono.never();
+                    })
+                    .switchIfEmpty(Mono.never());
+
+            return Mono.firstWithSignal(primary, hedge)
+                    .doOnNext(attempt -> {
+                        if (attempt.hedged()) {
+                            hedgesWon.increment();
+                        }
+                    })
+                    .map(Attempt::response);
+        });
+    }
+
+    /**
+     * Current hedge delay for the analysis type: the observed p95 of its requests, or
+     * the configured initial delay until enough samples have been collected.
+     */
+    public Duration hedgeDelay(DocumentAnalysis.AnalysisType analysisType) {
+        long p95 = latencies.get(analysisType).p95();
+        if (p95 < 0) {
+            return Duration.ofMillis(initialDelayMillis);
+        }
+        return Duration.ofMillis(Math.max(minDelayMillis, TimeUnit.NANOSECONDS.toMillis(p95)));
+    }
+
+    private void recordLatency(DocumentAnalysis.AnalysisType analysisType, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        requestTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        if (analysisType != null) {
+            latencies.get(analysisType).add(elapsed);
+        }
+    }
+
+    /**
+     * Ring buffer of the latest latencies of one analysis type.
+     */
+    private static class LatencySamples {
+        private final long[] samples = new long[SAMPLE_SIZE];
+        private int count;
+        private int next;
+
+        synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % SAMPLE_SIZE;
+            if (count < SAMPLE_SIZE) {
+                count++;
+            }
+        }
+
+        // -1 until MIN_SAMPLES have been recorded
+        synchronized long p95() {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(count * 0.95) - 1];
+        }
+    }
+
+    private record Attempt<T>(T response, boolean hedged) {
+    }
+}
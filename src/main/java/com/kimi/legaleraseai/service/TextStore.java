@@ -0,0 +1,281 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Extracted text stored as UTF-8 files, so slices of it can be served without loading the
+ * extracted_text column.
+ *
+ * Next to each text file is a small index with the byte offset of every {@link #INDEX_STRIDE}th
+ * character. A character offset is turned into a byte offset by starting from the nearest sample
+ * and walking at most one stride of UTF-8 in a memory-mapped view of the file; the bytes
+ * themselves are copied to the response with {@link FileChannel#transferTo}.
+ */
+@Service
+public class TextStore {
+    private static final Logger logger = LoggerFactory.getLogger(TextStore.class);
+
+    private static final String TEXT_DIR = "uploads/text";
+    private static final int INDEX_MAGIC = 0x4C455831;     // "LEX1"
+    private static final int INDEX_STRIDE = 4096;
+
+    /**
+     * An indexed text file.
+     *
+     * @param sampleChars character offsets of the index samples, ascending, starting at 0
+     * @param sampleBytes byte offsets of the same samples
+     * @param contentHash hex hash of the UTF-8 bytes, used for ETags
+     */
+    public record TextFile(Path path, int charLength, long byteLength, String contentHash,
+                           int[] sampleChars, long[] sampleBytes) {
+    }
+
+    @Value("${app.documents.text-store.max-cached-indexes:1000}")
+    private int maxCachedIndexes;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    // Guarded by "this"; access order makes it an LRU
+    private final LinkedHashMap<Long, TextFile> indexes = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Writes (or replaces) the text file and index of a document.
+     */
+    public TextFile write(Long documentId, String text) throws IOException {
+        Path directory = Paths.get(TEXT_DIR);
+        Files.createDirectories(directory);
+        MessageDigest digest = sha256();
+
+        List<Integer> sampleChars = new ArrayList<>();
+        List<Long> sampleBytes = new ArrayList<>();
+        long byteLength = 0;
+        Path textTemp = Files.createTempFile(directory, documentId + "-", ".txt.tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(textTemp))) {
+            int start = 0;
+            while (start < text.length()) {
+                sampleChars.add(start);
+                sampleBytes.add(byteLength);
+                int end = Math.min(start + INDEX_STRIDE, text.length());
+                // Never split a surrogate pair between two samples
+                if (end < text.length() && Character.isLowSurrogate(text.charAt(end))) {
+                    end++;
+                }
+                byte[] bytes = text.substring(start, end).getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                digest.update(bytes);
+                byteLength += bytes.length;
+                start = end;
+            }
+        }
+        if (sampleChars.isEmpty()) {
+            sampleChars.add(0);
+            sampleBytes.add(0L);
+        }
+
+        TextFile file = new TextFile(textPath(documentId), text.length(), byteLength,
+                HexFormat.of().formatHex(digest.digest(), 0, 16),
+                sampleChars.stream().mapToInt(Integer::intValue).toArray(),
+                sampleBytes.stream().mapToLong(Long::longValue).toArray());
+
+        Path indexTemp = Files.createTempFile(directory, documentId + "-", ".idx.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexTemp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(file.charLength());
+            out.writeLong(file.byteLength());
+            out.writeUTF(file.contentHash());
+            out.writeInt(file.sampleChars().length);
+            for (int i = 0; i < file.sampleChars().length; i++) {
+                out.writeInt(file.sampleChars()[i]);
+                out.writeLong(file.sampleBytes()[i]);
+            }
+        }
+
+        // Text first: an index never describes a text file it was not written for
+        synchronized (this) {
+            Files.move(textTemp, file.path(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(indexTemp, indexPath(documentId), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            cache(documentId, file);
+        }
+        return file;
+    }
+
+    /**
+     * The document's text file, written from the database on first access for documents
+     * extracted before text files existed.
+     *
+     * @return empty if the document has no extracted text
+     */
+    public Optional<TextFile> open(Long documentId) throws IOException {
+        synchronized (this) {
+            TextFile cached = indexes.get(documentId);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+
+        Path index = indexPath(documentId);
+        if (Files.exists(index) && Files.exists(textPath(documentId))) {
+            try {
+                TextFile file = readIndex(documentId, index);
+                synchronized (this) {
+                    cache(documentId, file);
+                }
+                return Optional.of(file);
+            } catch (IOException e) {
+                logger.warn("Unreadable text index for document {}, rewriting it: {}", documentId, e.getMessage());
+            }
+        }
+
+        Optional<String> text = documentRepository.findExtractedTextById(documentId);
+        if (text.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(write(documentId, text.get()));
+    }
+
+    public void delete(Long documentId) throws IOException {
+        synchronized (this) {
+            indexes.remove(documentId);
+            Files.deleteIfExists(indexPath(documentId));
+            Files.deleteIfExists(textPath(documentId));
+        }
+    }
+
+    /**
+     * Byte offset of a character offset. An offset inside a surrogate pair is rounded down to the
+     * start of the pair.
+     */
+    public long byteOffset(TextFile file, int charOffset) throws IOException {
+        if (charOffset <= 0) {
+            return 0;
+        }
+        if (charOffset >= file.charLength()) {
+            return file.byteLength();
+        }
+        int sample = Arrays.binarySearch(file.sampleChars(), charOffset);
+        if (sample >= 0) {
+            return file.sampleBytes()[sample];
+        }
+        sample = -sample - 2;
+
+        int chars = file.sampleChars()[sample];
+        long start = file.sampleBytes()[sample];
+        // At most three bytes per UTF-16 unit, and four for a pair
+        long length = Math.min(file.byteLength() - start, (long) (charOffset - chars) * 3 + 4);
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            int position = 0;
+            while (chars < charOffset && position < length) {
+                int lead = bytes.get(position) & 0xFF;
+                int sequence = lead < 0x80 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+                int units = sequence == 4 ? 2 : 1;
+                if (chars + units > charOffset) {
+                    break;
+                }
+                chars += units;
+                position += sequence;
+            }
+            return start + position;
+        }
+    }
+
+    /**
+     * Copies bytes [start, start + count) of the text file to the output without buffering them.
+     */
+    public void transfer(TextFile file, long start, long count, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    private TextFile readIndex(Long documentId, Path index) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            if (in.readInt() != INDEX_MAGIC) {
+                throw new IOException("Not a text index");
+            }
+            int charLength = in.readInt();
+            long byteLength = in.readLong();
+            String contentHash = in.readUTF();
+            int samples = in.readInt();
+            int[] sampleChars = new int[samples];
+            long[] sampleBytes = new long[samples];
+            for (int i = 0; i < samples; i++) {
+                sampleChars[i] = in.readInt();
+                sampleBytes[i] = in.readLong();
+            }
+            Path text = textPath(documentId);
+            if (Files.size(text) != byteLength) {
+                throw new IOException("Text file does not match its index");
+            }
+            return new TextFile(text, charLength, byteLength, contentHash, sampleChars, sampleBytes);
+        }
+    }
+
+    private void cache(Long documentId, TextFile file) {
+        indexes.put(documentId, file);
+        if (indexes.size() > maxCachedIndexes) {
+            Iterator<Long> eldest = indexes.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private static Path textPath(Long documentId) {
+        return Paths.get(TEXT_DIR, documentId + ".txt");
+    }
+
+    private static Path indexPath(Long documentId) {
+        return Paths.get(TEXT_DIR, documentId + ".idx");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
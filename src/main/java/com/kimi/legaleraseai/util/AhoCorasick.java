@@ -0,0 +1,200 @@
+package com.kimi.legaleraseai.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Aho-Corasick automaton that finds every occurrence of a fixed set of phrases in one pass.
+ *
+ * Matching ignores case, treats any run of whitespace in the text as a single space and only
+ * reports whole-word matches. Transitions are compiled into one open-addressing table of
+ * primitive arrays, so a search allocates nothing beyond the handler's own work.
+ */
+public final class AhoCorasick {
+
+    @FunctionalInterface
+    public interface MatchHandler {
+        /**
+         * @param keyword index of the phrase in the list given to the constructor
+         * @param start offset of the first character of the match in the text
+         * @param end offset just after the last character of the match
+         */
+        void onMatch(int keyword, int start, int end);
+    }
+
+    private static final int[] NO_OUTPUTS = new int[0];
+
+    private final int[] keywordLengths;
+    private final int maxKeywordLength;
+    private final int[] fail;
+    private final int[][] outputs;
+
+    // Open addressing: key is (state << 16 | char) + 1, so 0 marks an empty slot
+    private final long[] edgeKeys;
+    private final int[] edgeTargets;
+    private final int edgeMask;
+
+    public AhoCorasick(List<String> keywords) {
+        keywordLengths = new int[keywords.size()];
+        String[] normalized = new String[keywords.size()];
+        int maxStates = 1;
+        int longest = 1;
+        for (int k = 0; k < keywords.size(); k++) {
+            normalized[k] = normalize(keywords.get(k));
+            if (normalized[k].isEmpty()) {
+                throw new IllegalArgumentException("Empty keyword at index " + k);
+            }
+            keywordLengths[k] = normalized[k].length();
+            longest = Math.max(longest, keywordLengths[k]);
+            maxStates += keywordLengths[k];
+        }
+        maxKeywordLength = longest;
+
+        int capacity = Integer.highestOneBit(Math.max(4, maxStates * 2 - 1)) << 1;
+        edgeKeys = new long[capacity];
+        edgeTargets = new int[capacity];
+        edgeMask = capacity - 1;
+
+        // Trie with children as sibling lists and keywords per state as linked lists
+        int[] firstChild = new int[maxStates];
+        int[] nextSibling = new int[maxStates];
+        char[] label = new char[maxStates];
+        int[] firstKeyword = new int[maxStates];
+        int[] nextKeyword = new int[keywords.size()];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(firstKeyword, -1);
+        int states = 1;
+        for (int k = 0; k < normalized.length; k++) {
+            int state = 0;
+            for (int i = 0; i < normalized[k].length(); i++) {
+                char c = normalized[k].charAt(i);
+                int next = next(state, c);
+                if (next < 0) {
+                    next = states++;
+                    label[next] = c;
+                    nextSibling[next] = firstChild[state];
+                    firstChild[state] = next;
+                    putEdge(state, c, next);
+                }
+                state = next;
+            }
+            nextKeyword[k] = firstKeyword[state];
+            firstKeyword[state] = k;
+        }
+
+        // Breadth-first, so a state's failure link is always resolved before its children's
+        fail = new int[states];
+        outputs = new int[states][];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = 0;
+        while (head < tail) {
+            int state = queue[head++];
+            int own = 0;
+            for (int k = firstKeyword[state]; k >= 0; k = nextKeyword[k]) {
+                own++;
+            }
+            int[] inherited = state == 0 ? NO_OUTPUTS : outputs[fail[state]];
+            if (own == 0) {
+                outputs[state] = inherited;
+            } else {
+                int[] merged = new int[own + inherited.length];
+                int i = 0;
+                for (int k = firstKeyword[state]; k >= 0; k = nextKeyword[k]) {
+                    merged[i++] = k;
+                }
+                System.arraycopy(inherited, 0, merged, own, inherited.length);
+                outputs[state] = merged;
+            }
+
+            for (int child = firstChild[state]; child >= 0; child = nextSibling[child]) {
+                if (state == 0) {
+                    fail[child] = 0;
+                } else {
+                    int target = fail[state];
+                    int next;
+                    while ((next = next(target, label[child])) < 0 && target != 0) {
+                        target = fail[target];
+                    }
+                    fail[child] = Math.max(next, 0);
+                }
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Reports every whole-word match in {@code text[from, to)}, in order of end offset.
+     */
+    public void search(CharSequence text, int from, int to, MatchHandler handler) {
+        // Offsets of the last processed characters, to map a match back to the original text
+        int[] positions = new int[maxKeywordLength];
+        int processed = 0;
+        boolean previousSpace = true;
+        int state = 0;
+
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (previousSpace) {
+                    continue;
+                }
+                c = ' ';
+                previousSpace = true;
+            } else {
+                c = Character.toLowerCase(c);
+                previousSpace = false;
+            }
+            positions[processed++ % maxKeywordLength] = i;
+
+            int next;
+            while ((next = next(state, c)) < 0 && state != 0) {
+                state = fail[state];
+            }
+            state = Math.max(next, 0);
+
+            for (int keyword : outputs[state]) {
+                int start = positions[(processed - keywordLengths[keyword]) % maxKeywordLength];
+                if (isBoundary(text, start - 1, from, to) && isBoundary(text, i + 1, from, to)) {
+                    handler.onMatch(keyword, start, i + 1);
+                }
+            }
+        }
+    }
+
+    public void search(CharSequence text, MatchHandler handler) {
+        search(text, 0, text.length(), handler);
+    }
+
+    private static boolean isBoundary(CharSequence text, int index, int from, int to) {
+        return index < from || index >= to || !Character.isLetterOrDigit(text.charAt(index));
+    }
+
+    private static String normalize(String keyword) {
+        return keyword.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private int next(int state, char c) {
+        long key = ((long) state << 16 | c) + 1;
+        int slot = (int) MinHash.mix(key) & edgeMask;
+        while (edgeKeys[slot] != 0) {
+            if (edgeKeys[slot] == key) {
+                return edgeTargets[slot];
+            }
+            slot = (slot + 1) & edgeMask;
+        }
+        return -1;
+    }
+
+    private void putEdge(int state, char c, int target) {
+        long key = ((long) state << 16 | c) + 1;
+        int slot = (int) MinHash.mix(key) & edgeMask;
+        while (edgeKeys[slot] != 0) {
+            slot = (slot + 1) & edgeMask;
+        }
+        edgeKeys[slot] = key;
+        edgeTargets[slot] = target;
+    }
+}
@@ -0,0 +1,268 @@
+package com.kimi.legaleraseai.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Locality-sensitive hashing index over MinHash signatures.
+ *
+ * A signature is cut into bands of rows; documents that agree on every row of at least one
+ * band become candidates, so a lookup costs one hash probe per band regardless of corpus size.
+ * Each entry also carries a partition (e.g. the owning user) that is mixed into the band keys,
+ * so lookups never see other partitions.
+ *
+ * Storage is primitive arrays: an open-addressing table from band key to the head of a chain
+ * of document ids, about 12 bytes per document per band plus the table itself.
+ */
+public final class LshIndex {
+    private static final int EMPTY = 0;             // Slot never used; ends a probe sequence
+    private static final int NO_ENTRIES = -1;       // Slot keeps its key but its chain is empty
+    private static final double MAX_LOAD = 0.6;
+
+    private final int bands;
+    private final int rows;
+    private final int maxBucketScan;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Table slots: band key and head entry (entry index + 1, or EMPTY / NO_ENTRIES)
+    private long[] keys;
+    private int[] heads;
+    private int usedSlots;
+
+    // Entry pool: chains of document ids linked through next (entry index + 1, 0 ends the chain)
+    private long[] entryIds;
+    private int[] entryNext;
+    private int entryCount;
+    private int freeEntry;
+
+    private int size;
+
+    /**
+     * @param maxBucketScan upper bound on entries read per band, so huge clusters of identical
+     *                      documents cannot make a lookup slow; the newest entries are read first
+     */
+    public LshIndex(int bands, int rows, int expectedDocuments, int maxBucketScan) {
+        if (bands <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("bands and rows must be positive");
+        }
+        this.bands = bands;
+        this.rows = rows;
+        this.maxBucketScan = maxBucketScan;
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedDocuments * bands / MAX_LOAD)) - 1) << 1;
+        this.keys = new long[capacity];
+        this.heads = new int[capacity];
+        this.entryIds = new long[Math.max(16, expectedDocuments * bands)];
+        this.entryNext = new int[entryIds.length];
+    }
+
+    public int signatureLength() {
+        return bands * rows;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a document unless it is already in the index with the same partition and signature.
+     *
+     * @return false if it was already there
+     */
+    public boolean add(long id, long partition, int[] signature) {
+        checkLength(signature);
+        lock.writeLock().lock();
+        try {
+            // The same signature maps to the same slots, so the first band's chain tells
+            int first = findSlot(bandKey(partition, 0, signature));
+            if (first >= 0 && contains(first, id)) {
+                return false;
+            }
+            for (int band = 0; band < bands; band++) {
+                int slot = findOrInsertSlot(bandKey(partition, band, signature));
+                int entry = allocateEntry();
+                entryIds[entry] = id;
+                entryNext[entry] = heads[slot] > 0 ? heads[slot] : 0;
+                heads[slot] = entry + 1;
+            }
+            size++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a document; the signature and partition must be the ones it was added with.
+     */
+    public boolean remove(long id, long partition, int[] signature) {
+        checkLength(signature);
+        lock.writeLock().lock();
+        try {
+            boolean removed = false;
+            for (int band = 0; band < bands; band++) {
+                int slot = findSlot(bandKey(partition, band, signature));
+                if (slot >= 0 && unlink(slot, id)) {
+                    removed = true;
+                }
+            }
+            if (removed) {
+                size--;
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Documents sharing at least one band with the signature, with the number of shared bands.
+     * More shared bands means a higher similarity.
+     */
+    public Map<Long, Integer> candidates(long partition, int[] signature) {
+        checkLength(signature);
+        Map<Long, Integer> candidates = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (int band = 0; band < bands; band++) {
+                int slot = findSlot(bandKey(partition, band, signature));
+                if (slot < 0) {
+                    continue;
+                }
+                int scanned = 0;
+                for (int entry = heads[slot]; entry > 0 && scanned < maxBucketScan; entry = entryNext[entry - 1]) {
+                    candidates.merge(entryIds[entry - 1], 1, Integer::sum);
+                    scanned++;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return candidates;
+    }
+
+    private long bandKey(long partition, int band, int[] signature) {
+        long key = MinHash.mix(partition * 31 + band);
+        for (int row = band * rows, end = row + rows; row < end; row++) {
+            key = MinHash.mix(key ^ (signature[row] & 0xFFFFFFFFL));
+        }
+        return key;
+    }
+
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        for (int slot = spread(key) & mask; heads[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int findOrInsertSlot(long key) {
+        int existing = findSlot(key);
+        if (existing >= 0) {
+            return existing;
+        }
+        if (usedSlots + 1 > keys.length * MAX_LOAD) {
+            rehash();
+        }
+        int mask = keys.length - 1;
+        int slot = spread(key) & mask;
+        while (heads[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        heads[slot] = NO_ENTRIES;
+        usedSlots++;
+        return slot;
+    }
+
+    private boolean contains(int slot, long id) {
+        for (int entry = heads[slot]; entry > 0; entry = entryNext[entry - 1]) {
+            if (entryIds[entry - 1] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean unlink(int slot, long id) {
+        int previous = 0;
+        for (int entry = heads[slot]; entry > 0; previous = entry, entry = entryNext[entry - 1]) {
+            if (entryIds[entry - 1] != id) {
+                continue;
+            }
+            int next = entryNext[entry - 1];
+            if (previous == 0) {
+                heads[slot] = next > 0 ? next : NO_ENTRIES;
+            } else {
+                entryNext[previous - 1] = next;
+            }
+            entryNext[entry - 1] = freeEntry;
+            freeEntry = entry;
+            return true;
+        }
+        return false;
+    }
+
+    private int allocateEntry() {
+        if (freeEntry > 0) {
+            int entry = freeEntry - 1;
+            freeEntry = entryNext[entry];
+            return entry;
+        }
+        if (entryCount == entryIds.length) {
+            entryIds = Arrays.copyOf(entryIds, entryIds.length * 2);
+            entryNext = Arrays.copyOf(entryNext, entryNext.length * 2);
+        }
+        return entryCount++;
+    }
+
+    /**
+     * Doubles the table (or just compacts it if most slots lost their entries), dropping empty chains.
+     */
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldHeads = heads;
+        int live = 0;
+        for (int head : oldHeads) {
+            if (head > 0) {
+                live++;
+            }
+        }
+        int capacity = live + 1 > oldKeys.length * MAX_LOAD / 2 ? oldKeys.length * 2 : oldKeys.length;
+        keys = new long[capacity];
+        heads = new int[capacity];
+        usedSlots = 0;
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] > 0) {
+                int slot = spread(oldKeys[i]) & mask;
+                while (heads[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                heads[slot] = oldHeads[i];
+                usedSlots++;
+            }
+        }
+    }
+
+    private static int spread(long key) {
+        return (int) (key ^ (key >>> 32));
+    }
+
+    private void checkLength(int[] signature) {
+        if (signature.length != bands * rows) {
+            throw new IllegalArgumentException("Expected a signature of " + bands * rows + " values");
+        }
+    }
+}
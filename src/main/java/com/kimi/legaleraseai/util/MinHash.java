@@ -0,0 +1,128 @@
+package com.kimi.legaleraseai.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * MinHash signatures over word shingles.
+ *
+ * The fraction of equal positions in two signatures estimates the Jaccard similarity of the
+ * documents' shingle sets, so near-identical contracts (the same template with different party
+ * names) have signatures that agree in most positions. Words are compared case-insensitively
+ * and punctuation is ignored.
+ */
+public final class MinHash {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private final long[] seeds;
+    private final int shingleSize;
+
+    public MinHash(int numHashes, int shingleSize, long seed) {
+        if (numHashes <= 0 || shingleSize <= 0) {
+            throw new IllegalArgumentException("numHashes and shingleSize must be positive");
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        this.seeds = new long[numHashes];
+        for (int i = 0; i < numHashes; i++) {
+            seeds[i] = random.nextLong();
+        }
+        this.shingleSize = shingleSize;
+    }
+
+    public int numHashes() {
+        return seeds.length;
+    }
+
+    /**
+     * Signature of the text; all positions stay at Integer.MAX_VALUE if it has no words.
+     */
+    public int[] signature(CharSequence text) {
+        int[] signature = new int[seeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        // Hashes of the last shingleSize words, as a ring buffer
+        long[] window = new long[shingleSize];
+        int words = 0;
+        long wordHash = FNV_OFFSET;
+        boolean inWord = false;
+        for (int i = 0, length = text.length(); i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                wordHash = (wordHash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inWord = true;
+            } else if (inWord) {
+                window[words % shingleSize] = wordHash;
+                words++;
+                if (words >= shingleSize) {
+                    update(signature, shingleHash(window, words));
+                }
+                wordHash = FNV_OFFSET;
+                inWord = false;
+            }
+        }
+        if (words > 0 && words < shingleSize) {
+            // Shorter than one shingle: the whole text is the only shingle
+            update(signature, shingleHash(window, words));
+        }
+        return signature;
+    }
+
+    public static boolean isEmpty(int[] signature) {
+        return signature[0] == Integer.MAX_VALUE && Arrays.stream(signature).allMatch(v -> v == Integer.MAX_VALUE);
+    }
+
+    /**
+     * Estimated Jaccard similarity of the documents behind two signatures.
+     */
+    public static double similarity(int[] a, int[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Signatures have different lengths");
+        }
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / a.length;
+    }
+
+    public static byte[] toBytes(int[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(signature.length * Integer.BYTES);
+        buffer.asIntBuffer().put(signature);
+        return buffer.array();
+    }
+
+    public static int[] fromBytes(byte[] bytes) {
+        int[] signature = new int[bytes.length / Integer.BYTES];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+        return signature;
+    }
+
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private long shingleHash(long[] window, int words) {
+        int size = Math.min(words, shingleSize);
+        long hash = 0;
+        for (int j = words - size; j < words; j++) {
+            hash = mix(hash * GOLDEN_GAMMA + window[j % shingleSize]);
+        }
+        return hash;
+    }
+
+    private void update(int[] signature, long shingleHash) {
+        for (int i = 0; i < seeds.length; i++) {
+            int value = (int) (mix(shingleHash ^ seeds[i]) >>> 32);
+            if (value < signature[i]) {
+                signature[i] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.kimi.legaleraseai.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the section tree of a contract from its extracted text in a single pass over its lines.
+ *
+ * Recognized are articles and similar top-level parts ("ARTICLE IV", "Schedule 2"), numbered
+ * sections ("7.", "7.2", "7.2.1", "Section 7.2", "IV."), short all-caps headings and definitions
+ * ("\"Affiliate\" means ..."). Nesting follows the numbering style rather than fixed levels: a
+ * heading in a style that is already open closes everything opened since and becomes its sibling,
+ * any other style opens a child. The stack of open styles is at most a few entries deep, so
+ * building the outline is linear in the length of the text.
+ *
+ * Lettered and roman list items ("(a)", "(iv)") are deliberately not sections, which keeps the
+ * outline small enough to send to clients in one piece.
+ */
+public final class OutlineBuilder {
+
+    public enum Kind { ARTICLE, SECTION, HEADING, DEFINITION }
+
+    /**
+     * @param parent index of the enclosing section in the outline, -1 at the top level
+     * @param level depth in the tree, 0 at the top level
+     * @param number the numbering as written ("7.2", "IV"), or null
+     * @param title the heading, or the defined term of a definition; null for untitled sections
+     * @param start offset of the first character of the heading line
+     * @param end offset just after the last non-blank character of the section and its subsections
+     */
+    public record Section(int parent, int level, Kind kind, String number, String title, int start, int end) {
+    }
+
+    private static final int MAX_TITLE_WORDS = 10;
+    private static final int MAX_TITLE_LENGTH = 100;
+
+    // Styles that decide nesting; decimal numbers get one style per depth
+    private static final int STYLE_ARTICLE = 0;
+    private static final int STYLE_ROMAN = 1;
+    private static final int STYLE_CAPS = 2;
+    private static final int STYLE_DECIMAL = 3;
+
+    // "ARTICLE IV", "Schedule 2 - Fees"; an untitled article may have its title on the next line
+    private static final Pattern ARTICLE = Pattern.compile(
+            "((?i:article|part|schedule|exhibit|annex|appendix))\\s+([ivxlcdmIVXLCDM]{1,7}|\\d{1,3}|[A-Z])\\b\\.?" +
+            "\\s*[-:.\u2013\u2014]?\\s*(\\p{Lu}.*)?$");
+    // "7.", "7.2", "7.2.1" or "Section 7.2", then either a title or the section's first sentence
+    private static final Pattern DECIMAL = Pattern.compile(
+            "(?:(?i:section|clause)\\s+)?(\\d{1,3}(?:\\.\\d{1,3}){0,2})(\\.?)\\s+[-:\u2013\u2014]?\\s*" +
+            "(\\p{Lu}.*|[\"\u201c].*)");
+    // "IV. Term": well-formed numerals up to XXXIX, so lettered items like "C. The Company" are not sections
+    private static final Pattern ROMAN = Pattern.compile("(X{0,3}(?:IX|IV|V?I{0,3}))\\.\\s+(\\p{Lu}.*)");
+    // "\"Affiliate\" means", also numbered as in "1.1 \"Affiliate\" means" or "(a) \"Affiliate\" means"
+    private static final Pattern DEFINITION = Pattern.compile(
+            "(?:(\\d{1,3}(?:\\.\\d{1,3}){0,2}|\\(?[a-z]{1,4}\\))\\.?\\s+)?[\"\u201c]([^\"\u201c\u201d\\n]{1,80})[\"\u201d]\\s*,?\\s+" +
+            "(?i:shall\\s+)?(?i:means?|has\\s+the\\s+meaning|have\\s+the\\s+meanings?|refers?\\s+to|includes?|shall\\s+include)\\b");
+
+    private OutlineBuilder() {
+    }
+
+    public static List<Section> build(String text) {
+        return new Builder(text).build();
+    }
+
+    /**
+     * The titles from the top level down to the given section, e.g. "Article IV Confidentiality > 4.2 Exceptions".
+     */
+    public static String path(List<Section> outline, int index) {
+        List<String> parts = new ArrayList<>();
+        for (int i = index; i >= 0; i = outline.get(i).parent()) {
+            parts.add(label(outline.get(i)));
+        }
+        StringBuilder path = new StringBuilder();
+        for (int i = parts.size() - 1; i >= 0; i--) {
+            if (!path.isEmpty()) {
+                path.append(" > ");
+            }
+            path.append(parts.get(i));
+        }
+        return path.toString();
+    }
+
+    public static String label(Section section) {
+        if (section.kind() == Kind.DEFINITION) {
+            return "\"" + section.title() + "\"";
+        }
+        if (section.number() == null) {
+            return section.title() != null ? section.title() : "";
+        }
+        return section.title() != null ? section.number() + " " + section.title() : section.number();
+    }
+
+    private static final class Builder {
+        private final String text;
+        private final Matcher article;
+        private final Matcher decimal;
+        private final Matcher roman;
+        private final Matcher definition;
+
+        // Sections in document order; the end offsets are filled in when a section is closed
+        private final List<Section> sections = new ArrayList<>();
+        private int[] ends = new int[64];
+
+        // Open sections and their styles, innermost last
+        private final int[] openSections = new int[16];
+        private final int[] openStyles = new int[16];
+        private int depth;
+
+        private int openDefinition = -1;
+        private int untitledArticle = -1;   // Set while the previous line was an article without a title
+        private int contentEnd;
+
+        Builder(String text) {
+            this.text = text;
+            this.article = ARTICLE.matcher(text);
+            this.decimal = DECIMAL.matcher(text);
+            this.roman = ROMAN.matcher(text);
+            this.definition = DEFINITION.matcher(text);
+        }
+
+        List<Section> build() {
+            int lineStart = 0;
+            while (lineStart < text.length()) {
+                int lineEnd = text.indexOf('\n', lineStart);
+                if (lineEnd < 0) {
+                    lineEnd = text.length();
+                }
+                int start = lineStart;
+                int end = lineEnd;
+                while (start < end && Character.isWhitespace(text.charAt(start))) {
+                    start++;
+                }
+                while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                    end--;
+                }
+                if (start == end) {
+                    // A definition ends with its paragraph
+                    closeDefinition();
+                } else {
+                    line(start, end);
+                    contentEnd = end;
+                }
+                lineStart = lineEnd + 1;
+            }
+            closeDefinition();
+            closeTo(0);
+
+            List<Section> outline = new ArrayList<>(sections.size());
+            for (int i = 0; i < sections.size(); i++) {
+                Section section = sections.get(i);
+                outline.add(new Section(section.parent(), section.level(), section.kind(), section.number(),
+                        section.title(), section.start(), ends[i]));
+            }
+            return outline;
+        }
+
+        private void line(int start, int end) {
+            int previousUntitled = untitledArticle;
+            untitledArticle = -1;
+            if (definition.region(start, end).lookingAt()) {
+                closeDefinition();
+                openDefinition = add(Kind.DEFINITION, definition.group(1), definition.group(2).strip(), start);
+                return;
+            }
+
+            if (article.region(start, end).lookingAt()) {
+                closeDefinition();
+                String title = title(article.start(3), article.end(3));
+                int index = open(STYLE_ARTICLE, Kind.ARTICLE,
+                        capitalize(article.group(1)) + " " + article.group(2), title, start);
+                if (title == null) {
+                    untitledArticle = index;
+                }
+                return;
+            }
+            if (decimal.region(start, end).lookingAt()) {
+                String number = decimal.group(1);
+                // "7 Term" without a period is too often a number in running text
+                if (decimal.end(2) > decimal.start(2) || number.indexOf('.') >= 0
+                        || decimal.start(1) > start) {
+                    closeDefinition();
+                    int components = 1;
+                    for (int i = 0; i < number.length(); i++) {
+                        if (number.charAt(i) == '.') {
+                            components++;
+                        }
+                    }
+                    open(STYLE_DECIMAL + components - 1, Kind.SECTION, number,
+                            title(decimal.start(3), decimal.end(3)), start);
+                    return;
+                }
+            }
+            if (roman.region(start, end).lookingAt() && isRomanSection(roman.group(1))) {
+                closeDefinition();
+                open(STYLE_ROMAN, Kind.SECTION, roman.group(1), title(roman.start(2), roman.end(2)), start);
+                return;
+            }
+            if (previousUntitled >= 0) {
+                // "ARTICLE IV" on one line and its title on the next
+                String title = title(start, end);
+                if (title != null && title.length() == end - start) {
+                    Section section = sections.get(previousUntitled);
+                    sections.set(previousUntitled, new Section(section.parent(), section.level(), section.kind(),
+                            section.number(), title, section.start(), section.end()));
+                    return;
+                }
+            }
+            if (isCapsHeading(start, end)) {
+                closeDefinition();
+                open(STYLE_CAPS, Kind.HEADING, null, text.substring(start, end), start);
+            }
+        }
+
+        // "V." and "X." may just as well be list letters; they only count while roman sections are open
+        private boolean isRomanSection(String number) {
+            if (number.isEmpty()) {
+                return false;
+            }
+            if (number.length() > 1 || number.equals("I")) {
+                return true;
+            }
+            for (int i = 0; i < depth; i++) {
+                if (openStyles[i] == STYLE_ROMAN) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int open(int style, Kind kind, String number, String title, int start) {
+            // A sibling of the open section in this style; "3." also closes an open "2.1"
+            for (int i = 0; i < depth; i++) {
+                if (openStyles[i] == style || (style >= STYLE_DECIMAL && openStyles[i] > style)) {
+                    closeTo(i);
+                    break;
+                }
+            }
+            if (depth == openSections.length) {
+                // Deeper than any real contract; treat as a sibling of the innermost section
+                closeTo(depth - 1);
+            }
+            int index = add(kind, number, title, start);
+            openSections[depth] = index;
+            openStyles[depth] = style;
+            depth++;
+            return index;
+        }
+
+        private int add(Kind kind, String number, String title, int start) {
+            int parent = depth > 0 ? openSections[depth - 1] : -1;
+            int index = sections.size();
+            sections.add(new Section(parent, depth, kind, number, title, start, -1));
+            if (index == ends.length) {
+                ends = Arrays.copyOf(ends, ends.length * 2);
+            }
+            ends[index] = -1;
+            return index;
+        }
+
+        private void closeTo(int newDepth) {
+            while (depth > newDepth) {
+                depth--;
+                ends[openSections[depth]] = contentEnd;
+            }
+        }
+
+        private void closeDefinition() {
+            if (openDefinition >= 0) {
+                ends[openDefinition] = contentEnd;
+                openDefinition = -1;
+            }
+        }
+
+        /**
+         * The title of a heading: the text up to the first sentence end if that is short, otherwise
+         * null, as the line is then the first sentence of an untitled section.
+         */
+        private String title(int start, int end) {
+            if (start < 0 || start >= end) {
+                return null;
+            }
+            int stop = start;
+            int words = 0;
+            boolean inWord = false;
+            while (stop < end) {
+                char c = text.charAt(stop);
+                if (c == '.' || c == ':' || c == ';') {
+                    break;
+                }
+                boolean wordChar = !Character.isWhitespace(c);
+                if (wordChar && !inWord && ++words > MAX_TITLE_WORDS) {
+                    return null;
+                }
+                inWord = wordChar;
+                stop++;
+            }
+            while (stop > start && Character.isWhitespace(text.charAt(stop - 1))) {
+                stop--;
+            }
+            if (stop == start || stop - start > MAX_TITLE_LENGTH) {
+                return null;
+            }
+            return text.substring(start, stop);
+        }
+
+        /**
+         * A short line with letters that are all upper case, e.g. "CONFIDENTIALITY" or "TERM AND TERMINATION".
+         */
+        private boolean isCapsHeading(int start, int end) {
+            if (end - start > MAX_TITLE_LENGTH) {
+                return false;
+            }
+            int letters = 0;
+            int words = 0;
+            boolean inWord = false;
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (Character.isLetter(c)) {
+                    if (!Character.isUpperCase(c)) {
+                        return false;
+                    }
+                    letters++;
+                }
+                boolean wordChar = !Character.isWhitespace(c);
+                if (wordChar && !inWord) {
+                    words++;
+                }
+                inWord = wordChar;
+            }
+            char last = text.charAt(end - 1);
+            return letters >= 3 && words <= MAX_TITLE_WORDS && last != ',' && last != ';';
+        }
+
+        private static String capitalize(String word) {
+            return word.isEmpty() ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1).toLowerCase();
+        }
+    }
+}
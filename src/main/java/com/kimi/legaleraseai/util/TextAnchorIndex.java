@@ -0,0 +1,262 @@
+package com.kimi.legaleraseai.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds where quoted passages (e.g. clause texts returned by the model) occur in a document.
+ *
+ * The document is normalized once (lower case, whitespace runs collapsed, curly quotes and dashes
+ * folded) with a map back to original offsets, and its word 3-shingles are indexed. All passages
+ * of a document are then anchored together: exact matches come from a single Aho-Corasick scan of
+ * the normalized text, and passages the model paraphrased or shortened are placed by shingle
+ * voting - each shared shingle votes for an alignment of passage and document, and the span of
+ * the best-supported alignment is taken if enough of the passage's shingles agree with it.
+ */
+public final class TextAnchorIndex {
+    private static final int SHINGLE_WORDS = 3;
+    // Alignments within this many words of each other count as one, to absorb small insertions and deletions
+    private static final int DIAGONAL_BAND = 8;
+    // Shingles this frequent (boilerplate phrases) are too ambiguous to vote
+    private static final int MAX_SHINGLE_OCCURRENCES = 64;
+
+    /**
+     * @param start offset of the first character in the original text
+     * @param end offset just after the last character
+     * @param similarity 1 for an exact (normalized) match, otherwise the share of the passage's shingles found
+     */
+    public record Span(int start, int end, double similarity) {
+    }
+
+    private final String normalized;
+    private final int[] origins;        // Original offset of each normalized character
+    private final int[] wordStarts;     // Word boundaries in the normalized text
+    private final int[] wordEnds;
+    private final Map<Long, int[]> shingles = new HashMap<>();   // [count, word positions...]
+
+    public TextAnchorIndex(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        int[] map = new int[text.length()];
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (!space) {
+                    map[builder.length()] = i;
+                    builder.append(' ');
+                    space = true;
+                }
+                continue;
+            }
+            map[builder.length()] = i;
+            builder.append(fold(c));
+            space = false;
+        }
+        normalized = builder.toString();
+        origins = map;
+
+        List<int[]> words = words(normalized);
+        wordStarts = new int[words.size()];
+        wordEnds = new int[words.size()];
+        long[] wordHashes = new long[words.size()];
+        for (int w = 0; w < words.size(); w++) {
+            wordStarts[w] = words.get(w)[0];
+            wordEnds[w] = words.get(w)[1];
+            wordHashes[w] = hash(normalized, wordStarts[w], wordEnds[w]);
+        }
+        for (int w = 0; w + SHINGLE_WORDS <= wordHashes.length; w++) {
+            int[] positions = shingles.computeIfAbsent(shingle(wordHashes, w), key -> new int[4]);
+            if (positions[0] + 1 == positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+                shingles.put(shingle(wordHashes, w), positions);
+            }
+            positions[++positions[0]] = w;
+        }
+    }
+
+    /**
+     * Anchors every passage in one go.
+     *
+     * @param minSimilarity share of a paraphrased passage's shingles that must line up with the text
+     * @return one span per passage, in order, or null where a passage could not be placed
+     */
+    public Span[] anchorAll(List<String> passages, double minSimilarity) {
+        Span[] spans = new Span[passages.size()];
+        List<String> keys = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int p = 0; p < passages.size(); p++) {
+            String key = passages.get(p) == null ? "" : trimQuotes(normalize(passages.get(p)));
+            if (!key.isEmpty()) {
+                keys.add(key);
+                owners.add(p);
+            }
+        }
+
+        if (!keys.isEmpty() && !normalized.isEmpty()) {
+            new AhoCorasick(keys).search(normalized, (keyword, start, end) -> {
+                int passage = owners.get(keyword);
+                if (spans[passage] == null) {
+                    spans[passage] = new Span(origins[start], origins[end - 1] + 1, 1);
+                }
+            });
+        }
+
+        for (int i = 0; i < keys.size(); i++) {
+            int passage = owners.get(i);
+            if (spans[passage] == null) {
+                spans[passage] = fuzzy(keys.get(i), minSimilarity);
+            }
+        }
+        return spans;
+    }
+
+    private Span fuzzy(String key, double minSimilarity) {
+        List<int[]> words = words(key);
+        int shingleCount = words.size() - SHINGLE_WORDS + 1;
+        if (shingleCount <= 0) {
+            return null;
+        }
+        long[] wordHashes = new long[words.size()];
+        for (int w = 0; w < words.size(); w++) {
+            wordHashes[w] = hash(key, words.get(w)[0], words.get(w)[1]);
+        }
+
+        // Votes per alignment band: the document word position minus the passage word position
+        Map<Integer, Integer> votes = new HashMap<>();
+        for (int q = 0; q < shingleCount; q++) {
+            int[] positions = shingles.get(shingle(wordHashes, q));
+            if (positions == null || positions[0] > MAX_SHINGLE_OCCURRENCES) {
+                continue;
+            }
+            for (int i = 1; i <= positions[0]; i++) {
+                votes.merge(Math.floorDiv(positions[i] - q, DIAGONAL_BAND), 1, Integer::sum);
+            }
+        }
+        if (votes.isEmpty()) {
+            return null;
+        }
+        int bestBand = 0;
+        int bestVotes = -1;
+        for (int band : votes.keySet()) {
+            int total = votes.get(band) + votes.getOrDefault(band + 1, 0);
+            if (total > bestVotes) {
+                bestVotes = total;
+                bestBand = band;
+            }
+        }
+
+        // Span of the shingles that agree with the best alignment
+        int low = bestBand * DIAGONAL_BAND;
+        int high = (bestBand + 2) * DIAGONAL_BAND;
+        int firstWord = Integer.MAX_VALUE;
+        int lastWord = -1;
+        int matched = 0;
+        for (int q = 0; q < shingleCount; q++) {
+            int[] positions = shingles.get(shingle(wordHashes, q));
+            if (positions == null || positions[0] > MAX_SHINGLE_OCCURRENCES) {
+                continue;
+            }
+            for (int i = 1; i <= positions[0]; i++) {
+                int diagonal = positions[i] - q;
+                if (diagonal >= low && diagonal < high) {
+                    matched++;
+                    firstWord = Math.min(firstWord, positions[i]);
+                    lastWord = Math.max(lastWord, positions[i] + SHINGLE_WORDS - 1);
+                    break;
+                }
+            }
+        }
+        double similarity = (double) matched / shingleCount;
+        if (matched == 0 || similarity < minSimilarity) {
+            return null;
+        }
+        return new Span(origins[wordStarts[firstWord]], origins[wordEnds[lastWord] - 1] + 1, similarity);
+    }
+
+    private static String normalize(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (!space) {
+                    builder.append(' ');
+                    space = true;
+                }
+            } else {
+                builder.append(fold(c));
+                space = false;
+            }
+        }
+        int end = builder.length();
+        while (end > 0 && builder.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return builder.substring(0, end);
+    }
+
+    /**
+     * Drops quotes the model wraps passages in and ellipses it marks shortened passages with.
+     */
+    private static String trimQuotes(String key) {
+        int start = 0;
+        int end = key.length();
+        while (start < end && isTrimmable(key.charAt(start))) {
+            start++;
+        }
+        while (end > start && isTrimmable(key.charAt(end - 1))) {
+            end--;
+        }
+        return key.substring(start, end);
+    }
+
+    private static boolean isTrimmable(char c) {
+        return c == '"' || c == '.' || c == '\u2026' || c == ' ';
+    }
+
+    private static char fold(char c) {
+        return switch (c) {
+            case '\u2018', '\u2019', '\u201a', '\u201b', '`' -> '\'';
+            case '\u201c', '\u201d', '\u201e' -> '"';
+            case '\u2010', '\u2011', '\u2012', '\u2013', '\u2014', '\u2212' -> '-';
+            default -> Character.toLowerCase(c);
+        };
+    }
+
+    /**
+     * [start, end) of each run of letters and digits.
+     */
+    private static List<int[]> words(String text) {
+        List<int[]> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(new int[]{start, i});
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static long hash(String text, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long shingle(long[] wordHashes, int first) {
+        long hash = 0;
+        for (int i = 0; i < SHINGLE_WORDS; i++) {
+            hash = MinHash.mix(hash ^ wordHashes[first + i]);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,257 @@
+package com.kimi.legaleraseai.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Line diff using Myers' O(ND) algorithm.
+ *
+ * Runs in time proportional to the input size times the number of edits and in space linear
+ * in the input size, so diffing two versions of a long contract with a few amended paragraphs
+ * is cheap. The common prefix and suffix are stripped first; if the remaining edit distance
+ * exceeds the limit, everything between them is reported as changed instead of searching further.
+ */
+public final class TextDiff {
+
+    private TextDiff() {
+    }
+
+    /**
+     * Half-open range of line indexes.
+     */
+    public record Range(int start, int end) {
+        public int length() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Per-line outcome: removed[i] is set for old lines that are not in the new text,
+     * added[j] for new lines that are not in the old text. All other lines are unchanged.
+     */
+    public record Result(boolean[] removed, boolean[] added) {
+
+        public int removedCount() {
+            return count(removed);
+        }
+
+        public int addedCount() {
+            return count(added);
+        }
+
+        public boolean isUnchanged() {
+            return removedCount() == 0 && addedCount() == 0;
+        }
+
+        public List<Range> removedRanges() {
+            return ranges(removed);
+        }
+
+        public List<Range> addedRanges() {
+            return ranges(added);
+        }
+
+        private static int count(boolean[] flags) {
+            int count = 0;
+            for (boolean flag : flags) {
+                if (flag) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private static List<Range> ranges(boolean[] flags) {
+            List<Range> ranges = new ArrayList<>();
+            int start = -1;
+            for (int i = 0; i <= flags.length; i++) {
+                boolean changed = i < flags.length && flags[i];
+                if (changed && start < 0) {
+                    start = i;
+                } else if (!changed && start >= 0) {
+                    ranges.add(new Range(start, i));
+                    start = -1;
+                }
+            }
+            return ranges;
+        }
+    }
+
+    /**
+     * Diffs two lists of lines, comparing them with equals.
+     */
+    public static Result diffLines(List<String> oldLines, List<String> newLines, int maxEdits) {
+        Map<String, Integer> ids = new HashMap<>();
+        int[] a = new int[oldLines.size()];
+        int[] b = new int[newLines.size()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = ids.computeIfAbsent(oldLines.get(i), line -> ids.size());
+        }
+        for (int j = 0; j < b.length; j++) {
+            b[j] = ids.computeIfAbsent(newLines.get(j), line -> ids.size());
+        }
+        return diff(a, b, maxEdits);
+    }
+
+    /**
+     * Diffs two sequences of line ids.
+     */
+    public static Result diff(int[] a, int[] b, int maxEdits) {
+        boolean[] removed = new boolean[a.length];
+        boolean[] added = new boolean[b.length];
+
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length && a[prefix] == b[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < a.length - prefix && suffix < b.length - prefix
+                && a[a.length - 1 - suffix] == b[b.length - 1 - suffix]) {
+            suffix++;
+        }
+
+        int[] oldMiddle = Arrays.copyOfRange(a, prefix, a.length - suffix);
+        int[] newMiddle = Arrays.copyOfRange(b, prefix, b.length - suffix);
+        if (!myers(oldMiddle, newMiddle, maxEdits, removed, added, prefix)) {
+            Arrays.fill(removed, prefix, a.length - suffix, true);
+            Arrays.fill(added, prefix, b.length - suffix, true);
+        }
+        return new Result(removed, added);
+    }
+
+    /**
+     * Linear-space variant of Myers' algorithm: finds the middle snake of the shortest edit
+     * script with a forward and a backward search that meet halfway, then diffs the parts
+     * before and after it recursively. Only two frontiers of size n + m are kept, however many
+     * edits there are; the limit bounds the time of the top-level search.
+     *
+     * @return false if more than maxEdits edits are needed
+     */
+    private static boolean myers(int[] a, int[] b, int maxEdits, boolean[] removed, boolean[] added, int offset) {
+        Search search = new Search(a, b, removed, added, offset);
+        return search.diff(0, a.length, 0, b.length, maxEdits);
+    }
+
+    private static final class Search {
+        private final int[] a;
+        private final int[] b;
+        private final boolean[] removed;
+        private final boolean[] added;
+        private final int offset;
+        // Furthest x reached per diagonal by the forward search and, from the ends, by the backward search
+        private final int[] forward;
+        private final int[] backward;
+        private final int center;
+        // Middle snake of the last search, as start x, start y, end x, end y
+        private final int[] snake = new int[4];
+
+        Search(int[] a, int[] b, boolean[] removed, boolean[] added, int offset) {
+            this.a = a;
+            this.b = b;
+            this.removed = removed;
+            this.added = added;
+            this.offset = offset;
+            this.center = a.length + b.length + 1;
+            this.forward = new int[2 * center + 1];
+            this.backward = new int[2 * center + 1];
+        }
+
+        boolean diff(int aStart, int aEnd, int bStart, int bEnd, int maxEdits) {
+            while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+                aStart++;
+                bStart++;
+            }
+            while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+                aEnd--;
+                bEnd--;
+            }
+            if (aStart == aEnd || bStart == bEnd) {
+                Arrays.fill(removed, offset + aStart, offset + aEnd, true);
+                Arrays.fill(added, offset + bStart, offset + bEnd, true);
+                return true;
+            }
+
+            // Both ends differ, so at least two edits are needed and each half below has fewer
+            if (middleSnake(aStart, aEnd, bStart, bEnd, maxEdits) < 0) {
+                return false;
+            }
+            int snakeStartX = snake[0];
+            int snakeStartY = snake[1];
+            int snakeEndX = snake[2];
+            int snakeEndY = snake[3];
+            diff(aStart, snakeStartX, bStart, snakeStartY, Integer.MAX_VALUE);
+            diff(snakeEndX, aEnd, snakeEndY, bEnd, Integer.MAX_VALUE);
+            return true;
+        }
+
+        /**
+         * Stores the middle snake of the shortest edit script between the two ranges in {@link #snake}.
+         *
+         * @return the length of that script, or -1 if it exceeds maxEdits
+         */
+        private int middleSnake(int aStart, int aEnd, int bStart, int bEnd, int maxEdits) {
+            int n = aEnd - aStart;
+            int m = bEnd - bStart;
+            int delta = n - m;
+            boolean odd = (delta & 1) != 0;
+            int maxD = (int) Math.min((n + m + 1) / 2, (maxEdits + 1L) / 2);
+            forward[center + 1] = 0;
+            backward[center + 1] = 0;
+
+            for (int d = 0; d <= maxD; d++) {
+                for (int k = -d; k <= d; k += 2) {
+                    int x = k == -d || (k != d && forward[center + k - 1] < forward[center + k + 1])
+                            ? forward[center + k + 1]
+                            : forward[center + k - 1] + 1;
+                    int y = x - k;
+                    int startX = x;
+                    int startY = y;
+                    while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+                        x++;
+                        y++;
+                    }
+                    forward[center + k] = x;
+                    // Diagonal k is diagonal delta - k of the backward search, which has done d - 1 edits
+                    int reverseK = delta - k;
+                    if (odd && reverseK >= -(d - 1) && reverseK <= d - 1
+                            && x + backward[center + reverseK] >= n) {
+                        return found(2 * d - 1, maxEdits, aStart + startX, bStart + startY, aStart + x, bStart + y);
+                    }
+                }
+                for (int k = -d; k <= d; k += 2) {
+                    int x = k == -d || (k != d && backward[center + k - 1] < backward[center + k + 1])
+                            ? backward[center + k + 1]
+                            : backward[center + k - 1] + 1;
+                    int y = x - k;
+                    int startX = x;
+                    int startY = y;
+                    while (x < n && y < m && a[aEnd - 1 - x] == b[bEnd - 1 - y]) {
+                        x++;
+                        y++;
+                    }
+                    backward[center + k] = x;
+                    int forwardK = delta - k;
+                    if (!odd && forwardK >= -d && forwardK <= d
+                            && x + forward[center + forwardK] >= n) {
+                        return found(2 * d, maxEdits, aEnd - x, bEnd - y, aEnd - startX, bEnd - startY);
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private int found(int edits, int maxEdits, int startX, int startY, int endX, int endY) {
+            if (edits > maxEdits) {
+                return -1;
+            }
+            snake[0] = startX;
+            snake[1] = startY;
+            snake[2] = endX;
+            snake[3] = endY;
+            return edits;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.kimi.legaleraseai.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local text-similarity vectors: word unigrams and bigrams hashed into a fixed number of
+ * dimensions, weighted by log term frequency, L2-normalized and quantized to signed bytes.
+ *
+ * No model call is needed, vectors are 256 bytes each, and the dot product of two vectors
+ * divided by {@link #SCALE_SQUARED} approximates the cosine similarity of the texts.
+ */
+public final class TextVectors {
+    public static final int DIMENSIONS = 256;
+    public static final int SCALE_SQUARED = 127 * 127;
+
+    // Words that appear in nearly every clause and carry no meaning for similarity
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it", "its",
+            "of", "on", "or", "such", "that", "the", "this", "to", "with", "shall", "will", "any",
+            "all", "may", "hereby", "herein", "thereof", "which");
+
+    private TextVectors() {
+    }
+
+    public static byte[] vectorize(String text) {
+        float[] weights = new float[DIMENSIONS];
+        if (text != null) {
+            Map<String, Integer> counts = new HashMap<>();
+            List<String> words = words(text);
+            for (int i = 0; i < words.size(); i++) {
+                counts.merge(words.get(i), 1, Integer::sum);
+                if (i > 0) {
+                    counts.merge(words.get(i - 1) + ' ' + words.get(i), 1, Integer::sum);
+                }
+            }
+            for (Map.Entry<String, Integer> term : counts.entrySet()) {
+                long hash = MinHash.mix(term.getKey().hashCode());
+                int dimension = (int) ((hash >>> 1) % DIMENSIONS);
+                // A hash bit picks the sign so colliding terms cancel out instead of piling up
+                float weight = (float) (1 + Math.log(term.getValue()));
+                weights[dimension] += (hash & 1) == 0 ? weight : -weight;
+            }
+        }
+
+        double norm = 0;
+        for (float weight : weights) {
+            norm += weight * weight;
+        }
+        byte[] vector = new byte[DIMENSIONS];
+        if (norm == 0) {
+            return vector;
+        }
+        double scale = 127 / Math.sqrt(norm);
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (byte) Math.round(weights[i] * scale);
+        }
+        return vector;
+    }
+
+    /**
+     * Dot product of a vector with the vector stored at an offset of a packed array.
+     */
+    public static int dot(byte[] vector, byte[] packed, int offset) {
+        int sum = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            sum += vector[i] * packed[offset + i];
+        }
+        return sum;
+    }
+
+    public static double cosine(byte[] vector, byte[] packed, int offset) {
+        return (double) dot(vector, packed, offset) / SCALE_SQUARED;
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (!word.isEmpty()) {
+                String token = word.toString().toLowerCase(Locale.ROOT);
+                if (!STOP_WORDS.contains(token)) {
+                    words.add(token);
+                }
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+}
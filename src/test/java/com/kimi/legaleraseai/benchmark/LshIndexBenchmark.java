@@ -0,0 +1,98 @@
+package com.kimi.legaleraseai.benchmark;
+
+import com.kimi.legaleraseai.util.LshIndex;
+import com.kimi.legaleraseai.util.MinHash;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Near-duplicate lookup latency with a million documents in the LSH index, using the default
+ * configuration (16 bands of 7 rows). The index holds random signatures spread over 5,000 users
+ * plus one user with a cluster of 1,000 copies of the same template, the worst case for bucket
+ * scans. "signature" measures computing the MinHash of a ~2,000 word contract.
+ *
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.kimi.legaleraseai.benchmark.LshIndexBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class LshIndexBenchmark {
+    private static final int DOCUMENTS = 1_000_000;
+    private static final int BANDS = 16;
+    private static final int ROWS = 7;
+    private static final long TEMPLATE_USER = -1L;
+
+    private MinHash minHash;
+    private LshIndex index;
+    private String contract;
+    private int[] amendedSignature;
+    private int[] unrelatedSignature;
+
+    @Setup
+    public void setUp() {
+        minHash = new MinHash(BANDS * ROWS, 4, 42);
+        index = new LshIndex(BANDS, ROWS, DOCUMENTS, 256);
+
+        SplittableRandom random = new SplittableRandom(7);
+        int[] signature = new int[BANDS * ROWS];
+        for (int document = 0; document < DOCUMENTS; document++) {
+            for (int i = 0; i < signature.length; i++) {
+                signature[i] = random.nextInt();
+            }
+            index.add(document, document % 5_000, signature);
+        }
+
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            words.add("term" + random.nextInt(3_000));
+        }
+        contract = String.join(" ", words);
+        int[] template = minHash.signature(contract);
+        for (int copy = 0; copy < 1_000; copy++) {
+            index.add(DOCUMENTS + copy, TEMPLATE_USER, template);
+        }
+
+        // The same template with different party names
+        for (int i = 0; i < words.size(); i += 100) {
+            words.set(i, "Acme");
+        }
+        amendedSignature = minHash.signature(String.join(" ", words));
+        unrelatedSignature = signature.clone();
+    }
+
+    @Benchmark
+    public Map<Long, Integer> lookupNearDuplicate() {
+        return index.candidates(TEMPLATE_USER, amendedSignature);
+    }
+
+    @Benchmark
+    public Map<Long, Integer> lookupNoMatch() {
+        return index.candidates(42, unrelatedSignature);
+    }
+
+    @Benchmark
+    public int[] signature() {
+        return minHash.signature(contract);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(LshIndexBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
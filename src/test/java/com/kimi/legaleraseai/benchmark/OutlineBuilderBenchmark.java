@@ -0,0 +1,102 @@
+package com.kimi.legaleraseai.benchmark;
+
+import com.kimi.legaleraseai.util.OutlineBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outline building time for generated contracts of 100 KB, 1 MB and 10 MB of text (a 10 MB
+ * extraction is a several-thousand-page master agreement with schedules). Each contract has
+ * articles with all-caps titles on their own line, two levels of numbered sections, a
+ * definitions article and long body paragraphs with "(a)" list items and numbers in running
+ * text. Time per megabyte should stay flat across the sizes.
+ *
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.kimi.legaleraseai.benchmark.OutlineBuilderBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class OutlineBuilderBenchmark {
+    private static final String[] WORDS = {
+            "the", "Supplier", "shall", "provide", "Services", "to", "Customer", "in", "accordance", "with",
+            "this", "Agreement", "and", "any", "applicable", "Statement", "of", "Work", "including", "all",
+            "reasonable", "costs", "incurred", "by", "either", "party", "under", "clause", "notice", "days"
+    };
+
+    @Param({"100000", "1000000", "10000000"})
+    private int characters;
+
+    private String contract;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(11);
+        StringBuilder text = new StringBuilder(characters + 4096);
+        text.append("MASTER SERVICES AGREEMENT\n\nThis Agreement is entered into by the parties below.\n\n");
+
+        text.append("ARTICLE I\nDEFINITIONS\n\n");
+        for (int term = 1; term <= 40; term++) {
+            text.append("1.").append(term).append(" \"Defined Term ").append(term).append("\" means ");
+            sentence(text, random, 20 + random.nextInt(30));
+            text.append("\n\n");
+        }
+
+        int article = 1;
+        while (text.length() < characters) {
+            article++;
+            text.append("ARTICLE ").append(article).append('\n');
+            text.append("OBLIGATIONS OF THE PARTIES ").append(article).append("\n\n");
+            for (int section = 1; section <= 8 && text.length() < characters; section++) {
+                text.append(article).append('.').append(section).append(" Heading Number ").append(section).append(". ");
+                sentence(text, random, 60 + random.nextInt(120));
+                text.append("\n\n");
+                for (int subsection = 1; subsection <= 3; subsection++) {
+                    text.append(article).append('.').append(section).append('.').append(subsection).append(' ');
+                    text.append("The Customer shall pay 1.5 times the fees within 30 days. ");
+                    sentence(text, random, 40 + random.nextInt(80));
+                    text.append('\n');
+                    text.append("(a) ");
+                    sentence(text, random, 20);
+                    text.append("\n(b) ");
+                    sentence(text, random, 20);
+                    text.append("\n\n");
+                }
+            }
+        }
+        contract = text.toString();
+    }
+
+    @Benchmark
+    public List<OutlineBuilder.Section> build() {
+        return OutlineBuilder.build(contract);
+    }
+
+    private static void sentence(StringBuilder text, SplittableRandom random, int words) {
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(i % 17 == 0 ? '\n' : ' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        text.append('.');
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(OutlineBuilderBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
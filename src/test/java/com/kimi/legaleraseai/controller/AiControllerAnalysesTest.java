@@ -0,0 +1,136 @@
+package com.kimi.legaleraseai.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.repository.DocumentAnalysisRepository;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import com.kimi.legaleraseai.security.UserPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * GET /api/ai/documents/{id}/analyses with view=list and fields, against stubbed list rows.
+ */
+class AiControllerAnalysesTest {
+
+    private static final Long DOCUMENT_ID = 7L;
+    private static final Long USER_ID = 3L;
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2026, 1, 15, 9, 30);
+
+    private DocumentAnalysisRepository analysisRepository;
+    private DocumentRepository documentRepository;
+    private AiController controller;
+    private final List<Object[]> listRows = new ArrayList<>();
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final Authentication authentication = new UsernamePasswordAuthenticationToken(
+            new UserPrincipal(USER_ID, "alice", "alice@example.com", "", List.of()), null, List.of());
+
+    @BeforeEach
+    void setUp() {
+        analysisRepository = mock(DocumentAnalysisRepository.class);
+        documentRepository = mock(DocumentRepository.class);
+        when(documentRepository.existsByIdAndUserId(DOCUMENT_ID, USER_ID)).thenReturn(true);
+        when(analysisRepository.findListRowsByDocumentId(DOCUMENT_ID)).thenAnswer(invocation -> List.copyOf(listRows));
+
+        controller = new AiController();
+        ReflectionTestUtils.setField(controller, "analysisRepository", analysisRepository);
+        ReflectionTestUtils.setField(controller, "documentRepository", documentRepository);
+    }
+
+    @Test
+    void listViewHasPreviewsAndNeitherResultsNorPrompts() {
+        listRows.add(new Object[]{2L, DocumentAnalysis.AnalysisType.QUESTION_ANSWER, "Monthly.", 8, 0.8,
+                DocumentAnalysis.AnalysisStatus.COMPLETED, null, "session-1", CREATED_AT});
+        listRows.add(new Object[]{1L, DocumentAnalysis.AnalysisType.SUMMARY, "A one-year lease...", 4000, 0.9,
+                DocumentAnalysis.AnalysisStatus.COMPLETED, null, null, CREATED_AT});
+
+        JsonNode items = get("list", null);
+
+        assertEquals(2, items.size());
+        for (JsonNode item : items) {
+            assertEquals(List.of("id", "analysisType", "resultPreview", "resultLength", "confidenceScore", "status",
+                    "errorMessage", "sessionId", "createdAt"), fieldNames(item));
+        }
+        assertEquals("A one-year lease...", items.get(1).get("resultPreview").asText());
+        assertEquals(4000, items.get(1).get("resultLength").asInt());
+        // Neither whole analyses nor results are loaded
+        verify(analysisRepository, never()).findByDocumentOrderByCreatedAtDesc(any());
+        verify(analysisRepository, never()).findResultsByIds(any());
+    }
+
+    @Test
+    void fieldsSelectsOnlyTheNamedFieldsInTheOrderGiven() {
+        listRows.add(new Object[]{1L, DocumentAnalysis.AnalysisType.SUMMARY, "A one-year lease.", 17, 0.9,
+                DocumentAnalysis.AnalysisStatus.COMPLETED, null, null, CREATED_AT});
+
+        JsonNode items = get(null, List.of("status", "id"));
+
+        assertEquals(1, items.size());
+        assertEquals(List.of("status", "id"), fieldNames(items.get(0)));
+        assertEquals("COMPLETED", items.get(0).get("status").asText());
+        assertEquals(1L, items.get(0).get("id").asLong());
+    }
+
+    @Test
+    void fillsInPreviewsOfOlderAnalysesOnce() {
+        String result = "The lease runs for one year.\n\n" + "Rent is due monthly. ".repeat(30);
+        listRows.add(new Object[]{1L, DocumentAnalysis.AnalysisType.SUMMARY, null, null, 0.9,
+                DocumentAnalysis.AnalysisStatus.COMPLETED, null, null, CREATED_AT});
+        // Failed analyses have no result to preview
+        listRows.add(new Object[]{2L, DocumentAnalysis.AnalysisType.SUMMARY, null, null, null,
+                DocumentAnalysis.AnalysisStatus.FAILED, "Model unavailable", null, CREATED_AT});
+        when(analysisRepository.findResultsByIds(Set.of(1L))).thenReturn(List.<Object[]>of(new Object[]{1L, result}));
+
+        JsonNode items = get("list", null);
+
+        assertEquals(DocumentAnalysis.preview(result), items.get(0).get("resultPreview").asText());
+        assertEquals(result.length(), items.get(0).get("resultLength").asInt());
+        assertFalse(items.get(1).hasNonNull("resultPreview"));
+        verify(analysisRepository).updatePreview(1L, DocumentAnalysis.preview(result), result.length());
+    }
+
+    @Test
+    void unknownFieldsAreRejectedBeforeAnyQuery() {
+        ResponseEntity<?> response = controller.getDocumentAnalyses(DOCUMENT_ID, null, List.of("id", "result"),
+                authentication);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(documentRepository, never()).existsByIdAndUserId(anyLong(), anyLong());
+        verify(analysisRepository, never()).findListRowsByDocumentId(anyLong());
+    }
+
+    private JsonNode get(String view, List<String> fields) {
+        ResponseEntity<?> response = controller.getDocumentAnalyses(DOCUMENT_ID, view, fields, authentication);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return objectMapper.valueToTree(response.getBody());
+    }
+
+    private static List<String> fieldNames(JsonNode item) {
+        List<String> names = new ArrayList<>();
+        for (Iterator<String> it = item.fieldNames(); it.hasNext(); ) {
+            names.add(it.next());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,136 @@
+package com.kimi.legaleraseai.controller;
+
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import com.kimi.legaleraseai.security.UserPrincipal;
+import com.kimi.legaleraseai.service.TextStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * GET /api/documents/{id}/text against a real text file of a stubbed document.
+ */
+class DocumentControllerTextTest {
+
+    private static final Long DOCUMENT_ID = 990_002L;
+    private static final Long USER_ID = 3L;
+    private static final String TEXT = "1. Rent. The tenant pays €500 monthly.\n2. Term. One year.";
+
+    private DocumentRepository documentRepository;
+    private TextStore textStore;
+    private DocumentController controller;
+    private final Authentication authentication = new UsernamePasswordAuthenticationToken(
+            new UserPrincipal(USER_ID, "alice", "alice@example.com", "", List.of()), null, List.of());
+
+    @BeforeEach
+    void setUp() throws Exception {
+        documentRepository = mock(DocumentRepository.class);
+        when(documentRepository.existsByIdAndUserId(DOCUMENT_ID, USER_ID)).thenReturn(true);
+
+        textStore = new TextStore();
+        ReflectionTestUtils.setField(textStore, "maxCachedIndexes", 10);
+        ReflectionTestUtils.setField(textStore, "documentRepository", documentRepository);
+        textStore.write(DOCUMENT_ID, TEXT);
+
+        controller = new DocumentController();
+        ReflectionTestUtils.setField(controller, "documentRepository", documentRepository);
+        ReflectionTestUtils.setField(controller, "textStore", textStore);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        textStore.delete(DOCUMENT_ID);
+    }
+
+    @Test
+    void servesACharacterSliceAsUtf8() throws Exception {
+        int from = TEXT.indexOf('€');
+
+        ResponseEntity<StreamingResponseBody> response = get(from, from + 4, new HttpHeaders());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("€500", body(response));
+        assertEquals(6, response.getHeaders().getContentLength());
+        assertEquals(String.valueOf(TEXT.length()), response.getHeaders().getFirst("X-Text-Length"));
+    }
+
+    @Test
+    void servesAByteRangeOfTheSlice() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=3-6");
+        int from = TEXT.indexOf("The");
+
+        ResponseEntity<StreamingResponseBody> response = get(from, null, headers);
+
+        int sliceBytes = TEXT.substring(from).getBytes(StandardCharsets.UTF_8).length;
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 3-6/" + sliceBytes, response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(" ten", body(response));
+    }
+
+    @Test
+    void answersAMatchingETagWithNotModified() throws Exception {
+        String etag = get(0, 10, new HttpHeaders()).getHeaders().getETag();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+
+        ResponseEntity<StreamingResponseBody> response = get(0, 10, headers);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        // Another slice has its own tag
+        assertEquals(HttpStatus.OK, get(0, 11, headers).getStatusCode());
+    }
+
+    @Test
+    void rejectsARangePastTheEndOfTheSlice() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=100-200");
+
+        ResponseEntity<StreamingResponseBody> response = get(0, 10, headers);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void rejectsAnInvalidSlice() throws Exception {
+        assertEquals(HttpStatus.BAD_REQUEST, get(-1, null, new HttpHeaders()).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, get(20, 10, new HttpHeaders()).getStatusCode());
+    }
+
+    @Test
+    void readFailuresAreNotReportedAsBadRequests() throws Exception {
+        TextStore failingStore = mock(TextStore.class);
+        when(failingStore.open(DOCUMENT_ID)).thenThrow(new IOException("Disk unavailable"));
+        ReflectionTestUtils.setField(controller, "textStore", failingStore);
+
+        assertThrows(IOException.class, () -> get(0, 10, new HttpHeaders()));
+    }
+
+    private ResponseEntity<StreamingResponseBody> get(Integer from, Integer to, HttpHeaders headers) throws IOException {
+        return controller.getDocumentText(DOCUMENT_ID, from, to, headers, authentication);
+    }
+
+    private static String body(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
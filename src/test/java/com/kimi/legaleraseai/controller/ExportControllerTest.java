@@ -0,0 +1,56 @@
+package com.kimi.legaleraseai.controller;
+
+import com.kimi.legaleraseai.security.UserPrincipal;
+import com.kimi.legaleraseai.service.ExportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ExportControllerTest {
+
+    private final UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+            new UserPrincipal(3L, "alice", "alice@example.com", "", List.of()), null, List.of());
+
+    private ExportService exportService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        exportService = mock(ExportService.class);
+        ExportController controller = new ExportController();
+        ReflectionTestUtils.setField(controller, "exportService", exportService);
+        ReflectionTestUtils.setField(controller, "requestTimeoutMinutes", 30L);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void unknownFormatsAreRejectedWithAMessage() throws Exception {
+        mockMvc.perform(get("/api/export").param("format", "xml").principal(authentication))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Error exporting: Unknown format: xml"));
+
+        verify(exportService, never()).export(anyLong(), any(), anyBoolean(), anyBoolean(), anyBoolean(), any());
+    }
+
+    @Test
+    void unknownRecordKindsAreRejectedWithAMessage() throws Exception {
+        mockMvc.perform(get("/api/export").param("include", "analyses,documents").principal(authentication))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Error exporting: Unknown record kind: documents"));
+    }
+}
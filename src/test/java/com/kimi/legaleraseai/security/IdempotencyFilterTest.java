@@ -0,0 +1,211 @@
+package com.kimi.legaleraseai.security;
+
+import com.kimi.legaleraseai.service.IdempotencyStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyFilterTest {
+
+    private static final String PATH = "/api/ai/documents/1/summarize";
+
+    private IdempotencyFilter filter;
+    private final AtomicInteger executions = new AtomicInteger();
+    private volatile int status = 200;
+
+    // Echoes the body it received, so a test can tell which request was executed
+    private final FilterChain chain = (request, response) -> {
+        int execution = executions.incrementAndGet();
+        String body = new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        ((MockHttpServletResponse) response).setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getOutputStream().write(("{\"execution\":" + execution + ",\"body\":" + body + "}")
+                .getBytes(StandardCharsets.UTF_8));
+    };
+
+    @BeforeEach
+    void setUp() {
+        filter = new IdempotencyFilter();
+        ReflectionTestUtils.setField(filter, "idempotencyStore", new IdempotencyStore());
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "paths", List.of("/api/ai/documents/*/summarize"));
+        ReflectionTestUtils.setField(filter, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(filter, "clientErrorTtlSeconds", 0L);
+        ReflectionTestUtils.setField(filter, "waitTimeoutSeconds", 5L);
+        ReflectionTestUtils.setField(filter, "maxStoredBodyBytes", 1 << 20);
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void replaysStoredResponseToDuplicate() throws Exception {
+        MockHttpServletResponse first = send("key-1", "{\"a\":1}");
+        MockHttpServletResponse second = send("key-1", "{\"a\":1}");
+
+        assertEquals(1, executions.get());
+        assertEquals(200, second.getStatus());
+        assertEquals(first.getContentAsString(), second.getContentAsString());
+        assertEquals("{\"execution\":1,\"body\":{\"a\":1}}", second.getContentAsString());
+        assertEquals("true", second.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void rejectsKeyReusedForDifferentBody() throws Exception {
+        send("key-1", "{\"a\":1}");
+        MockHttpServletResponse reused = send("key-1", "{\"a\":2}");
+
+        assertEquals(1, executions.get());
+        assertEquals(422, reused.getStatus());
+        assertTrue(reused.getContentAsString().contains("different request"));
+    }
+
+    @Test
+    void keysAreScopedToTheirPath() throws Exception {
+        send("key-1", "{\"a\":1}");
+        MockHttpServletRequest other = request("key-1", "{\"a\":1}");
+        other.setRequestURI("/api/ai/documents/2/summarize");
+        filter.doFilter(other, new MockHttpServletResponse(), chain);
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void duplicateInFlightWaitsForTheFirstExecution() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        FilterChain slowChain = (request, response) -> {
+            entered.countDown();
+            try {
+                proceed.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            chain.doFilter(request, response);
+        };
+
+        CompletableFuture<MockHttpServletResponse> first = CompletableFuture.supplyAsync(() -> {
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+            try {
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                filter.doFilter(request("key-1", "{\"a\":1}"), response, slowChain);
+                return response;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<MockHttpServletResponse> duplicate = CompletableFuture.supplyAsync(() -> {
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+            try {
+                return send("key-1", "{\"a\":1}");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        proceed.countDown();
+
+        assertEquals(first.get(5, TimeUnit.SECONDS).getContentAsString(),
+                duplicate.get(5, TimeUnit.SECONDS).getContentAsString());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void duplicateInFlightPastTheWaitTimeoutIsAConflict() throws Exception {
+        ReflectionTestUtils.setField(filter, "waitTimeoutSeconds", 0L);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        FilterChain blockedChain = (request, response) -> {
+            entered.countDown();
+            try {
+                proceed.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            chain.doFilter(request, response);
+        };
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+            try {
+                filter.doFilter(request("key-1", "{\"a\":1}"), new MockHttpServletResponse(), blockedChain);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        MockHttpServletResponse duplicate = send("key-1", "{\"a\":1}");
+        proceed.countDown();
+        first.get(5, TimeUnit.SECONDS);
+
+        assertEquals(409, duplicate.getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void clientErrorsAreNotReplayedAfterTheirShortTtl() throws Exception {
+        status = 400;
+        send("key-1", "{\"a\":1}");
+        status = 200;
+        MockHttpServletResponse retry = send("key-1", "{\"a\":1}");
+
+        assertEquals(2, executions.get());
+        assertEquals(200, retry.getStatus());
+        assertNull(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void serverErrorsAreNotStored() throws Exception {
+        status = 503;
+        send("key-1", "{\"a\":1}");
+        status = 200;
+        MockHttpServletResponse retry = send("key-1", "{\"a\":1}");
+
+        assertEquals(2, executions.get());
+        assertEquals(200, retry.getStatus());
+    }
+
+    private MockHttpServletResponse send(String idempotencyKey, String body) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(idempotencyKey, body), response, chain);
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String idempotencyKey, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", PATH);
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
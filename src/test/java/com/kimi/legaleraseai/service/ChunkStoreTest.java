@@ -0,0 +1,167 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentChunk;
+import com.kimi.legaleraseai.repository.DocumentChunkRepository;
+import com.kimi.legaleraseai.util.OutlineBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChunkStoreTest {
+
+    private static final int TARGET_TOKENS = 40;
+
+    private DocumentChunkRepository chunkRepository;
+    private ChunkStore chunkStore;
+
+    @BeforeEach
+    void setUp() {
+        chunkRepository = mock(DocumentChunkRepository.class);
+        when(chunkRepository.streamSummaries(anyLong())).thenAnswer(invocation -> Stream.empty());
+
+        chunkStore = new ChunkStore();
+        ReflectionTestUtils.setField(chunkStore, "targetTokens", TARGET_TOKENS);
+        ReflectionTestUtils.setField(chunkStore, "chunkRepository", chunkRepository);
+        ReflectionTestUtils.setField(chunkStore, "outlineService", mock(OutlineService.class));
+        ReflectionTestUtils.setField(chunkStore, "promptBuilder", new PromptBuilder());
+        ReflectionTestUtils.setField(chunkStore, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+    }
+
+    @Test
+    void chunksStartAtSectionsAndCoverTheWholeText() {
+        String text = contract(6, "");
+        Document document = document(1L, text);
+
+        List<DocumentChunk> chunks = build(document);
+
+        assertTrue(chunks.size() >= 6);
+        assertEquals(0, chunks.get(0).getStartPosition());
+        for (int i = 0; i < chunks.size(); i++) {
+            DocumentChunk chunk = chunks.get(i);
+            assertEquals(i, chunk.getChunkIndex());
+            assertEquals(text.substring(chunk.getStartPosition(), chunk.getEndPosition()), chunk.getText());
+            assertTrue(chunk.getTokenEstimate() <= TARGET_TOKENS * 2, "chunk " + i);
+            if (i > 0) {
+                assertTrue(chunk.getStartPosition() >= chunks.get(i - 1).getEndPosition());
+                assertTrue(text.substring(chunks.get(i - 1).getEndPosition(), chunk.getStartPosition()).isBlank());
+            }
+        }
+        for (int section = 1; section <= 6; section++) {
+            int start = text.indexOf(section + ". Section " + section);
+            assertTrue(chunks.stream().anyMatch(chunk -> chunk.getStartPosition() == start), "section " + section);
+        }
+        assertEquals("1 Section 1", chunks.get(0).getSectionPath());
+        verify(chunkRepository).deleteByDocumentId(1L);
+        verify(chunkRepository).saveAll(chunks);
+    }
+
+    @Test
+    void countsPagesAtFormFeeds() {
+        String text = "1. Term\nThe lease runs for one year from the start date.\f"
+                + "2. Rent\nRent is one thousand dollars per month, due on the first.\f"
+                + "3. Deposit\nThe deposit is one month of rent.";
+
+        List<DocumentChunk> chunks = build(document(1L, text));
+
+        assertEquals(List.of(1, 2, 3), chunks.stream().map(DocumentChunk::getPageNumber).toList());
+    }
+
+    @Test
+    void cutsLinesLongerThanAChunkAtSpaces() {
+        String text = String.join(" ", Collections.nCopies(200, "The tenant shall keep the premises clean."));
+
+        List<DocumentChunk> chunks = build(document(1L, text));
+
+        assertTrue(chunks.size() > 1);
+        assertEquals(text.length(), chunks.get(chunks.size() - 1).getEndPosition());
+        for (DocumentChunk chunk : chunks) {
+            assertTrue(chunk.getTokenEstimate() <= TARGET_TOKENS * 2);
+        }
+    }
+
+    @Test
+    void carriesPartialSummariesOfUnchangedChunksToTheNextVersion() {
+        Document previous = document(1L, contract(4, ""));
+        List<DocumentChunk> previousChunks = build(previous);
+        DocumentChunk summarized = previousChunks.get(previousChunks.size() - 1);
+        when(chunkRepository.streamSummaries(1L)).thenAnswer(invocation -> Stream.<Object[]>of(
+                new Object[]{summarized.getContentHash(), "group-key", "Deposit terms."}));
+
+        Document next = document(2L, contract(4, "amended "));
+        next.setPreviousVersion(previous);
+        List<DocumentChunk> chunks = build(next);
+
+        DocumentChunk carried = chunks.get(chunks.size() - 1);
+        assertEquals(summarized.getContentHash(), carried.getContentHash());
+        assertEquals("Deposit terms.", carried.getSummary());
+        assertEquals("group-key", carried.getSummaryKey());
+        assertNull(chunks.get(0).getSummary());
+    }
+
+    @Test
+    void anEditChangesOnlyTheGroupsAroundIt() {
+        Document original = document(1L, contract(40, ""));
+        Document edited = document(2L, contract(40, "").replace(
+                "Obligations of section 20 continue", "Obligations of section 20 end"));
+        stored(original, build(original));
+        stored(edited, build(edited));
+
+        List<ChunkStore.Group> before = chunkStore.groups(original, TARGET_TOKENS * 6);
+        List<ChunkStore.Group> after = chunkStore.groups(edited, TARGET_TOKENS * 6);
+
+        Set<String> keysBefore = new HashSet<>();
+        before.forEach(group -> keysBefore.add(group.key()));
+        long changed = after.stream().filter(group -> !keysBefore.contains(group.key())).count();
+        assertTrue(before.size() > 5);
+        assertTrue(changed >= 1 && changed <= 2, changed + " of " + after.size() + " groups changed");
+    }
+
+    private List<DocumentChunk> build(Document document) {
+        return chunkStore.build(document, OutlineBuilder.build(document.getExtractedText()));
+    }
+
+    private void stored(Document document, List<DocumentChunk> chunks) {
+        when(chunkRepository.streamByDocumentIdOrderByChunkIndex(document.getId()))
+                .thenAnswer(invocation -> new ArrayList<>(chunks).stream());
+    }
+
+    // Numbered sections of two paragraphs each; the first section's text is prefixed with amendment
+    private static String contract(int sections, String amendment) {
+        StringBuilder text = new StringBuilder();
+        for (int section = 1; section <= sections; section++) {
+            text.append(section).append(". Section ").append(section).append('\n');
+            text.append(section == 1 ? amendment : "")
+                    .append("The parties agree to the terms of section ").append(section)
+                    .append(" as set out below, subject to the schedules.\n\n");
+            text.append("Obligations of section ").append(section)
+                    .append(" continue for the term of this agreement and any renewal.\n\n");
+        }
+        return text.toString();
+    }
+
+    private static Document document(Long id, String text) {
+        Document document = new Document();
+        document.setId(id);
+        document.setExtractedText(text);
+        return document;
+    }
+}
@@ -0,0 +1,185 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import com.kimi.legaleraseai.entity.User;
+import com.kimi.legaleraseai.repository.ExtractedClauseRepository;
+import com.kimi.legaleraseai.util.TextVectors;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ClauseIndexTest {
+
+    private static final String TERMINATION = "Either party may terminate this agreement with thirty days written notice.";
+    private static final String PAYMENT = "The tenant shall pay the monthly rent on the first day of each month.";
+
+    private ExtractedClauseRepository clauseRepository;
+    private ClauseIndex clauseIndex;
+    private ClauseIndexListener listener;
+    private final List<Object[]> storedRows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        clauseRepository = mock(ExtractedClauseRepository.class);
+        when(clauseRepository.findIndexRowsByUserId(anyLong())).thenAnswer(invocation -> new ArrayList<>(storedRows));
+        when(clauseRepository.findUnindexedRowsByUserId(anyLong())).thenReturn(List.of());
+
+        clauseIndex = new ClauseIndex();
+        ReflectionTestUtils.setField(clauseIndex, "maxUsers", 10);
+        ReflectionTestUtils.setField(clauseIndex, "typeWeight", 0.1);
+        ReflectionTestUtils.setField(clauseIndex, "refreshCheckSeconds", 60L);
+        ReflectionTestUtils.setField(clauseIndex, "clauseRepository", clauseRepository);
+
+        listener = new ClauseIndexListener();
+        ReflectionTestUtils.setField(listener, "clauseIndex", clauseIndex);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void findsMostSimilarClausesOfTheUser() {
+        storedRows.add(row(1L, "Termination", TERMINATION));
+        storedRows.add(row(2L, "Payment", PAYMENT));
+
+        List<ClauseIndex.Match> matches = search("Either party may terminate the agreement on notice.");
+
+        assertEquals(1L, matches.get(0).clauseId());
+        assertEquals(2, matches.size());
+        verify(clauseRepository, times(1)).findIndexRowsByUserId(7L);
+    }
+
+    @Test
+    void appliesChangesToLoadedUsersOnly() {
+        clauseIndex.apply(ClauseIndex.Change.of(clause(1L, "Termination", TERMINATION), false));
+        search(TERMINATION);
+
+        clauseIndex.apply(ClauseIndex.Change.of(clause(2L, "Payment", PAYMENT), false));
+
+        // Clause 1 was saved before the user was loaded and is not in the stored rows here
+        assertEquals(List.of(2L), search(PAYMENT).stream().map(ClauseIndex.Match::clauseId).toList());
+
+        clauseIndex.apply(ClauseIndex.Change.of(clause(2L, "Payment", PAYMENT), true));
+        assertTrue(search(PAYMENT).isEmpty());
+    }
+
+    @Test
+    void changesDuringALoadAreAppliedAfterIt() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        when(clauseRepository.findIndexRowsByUserId(anyLong())).thenAnswer(invocation -> {
+            loading.countDown();
+            proceed.await(5, TimeUnit.SECONDS);
+            return List.<Object[]>of(row(1L, "Termination", TERMINATION));
+        });
+
+        CompletableFuture<List<ClauseIndex.Match>> firstSearch = CompletableFuture.supplyAsync(() -> search(PAYMENT));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        // Committed after the load query ran, so the query does not return it
+        CompletableFuture<Void> change = CompletableFuture.runAsync(() ->
+                clauseIndex.apply(ClauseIndex.Change.of(clause(2L, "Payment", PAYMENT), false)));
+        Thread.sleep(100);
+        assertFalse(change.isDone());
+        proceed.countDown();
+
+        change.get(5, TimeUnit.SECONDS);
+        firstSearch.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(2L, 1L), search(PAYMENT).stream().map(ClauseIndex.Match::clauseId).toList());
+        verify(clauseRepository, times(1)).findIndexRowsByUserId(7L);
+    }
+
+    @Test
+    void reloadsUsersWhoseClausesChangedOnAnotherNode() {
+        storedRows.add(row(1L, "Termination", TERMINATION));
+        search(PAYMENT);
+
+        // Saved by another node, so no change reaches this index
+        storedRows.add(row(2L, "Payment", PAYMENT));
+        when(clauseRepository.findFingerprintByUserId(7L)).thenReturn(List.<Object[]>of(new Object[]{2L, 3L}));
+        assertEquals(List.of(1L), search(PAYMENT).stream().map(ClauseIndex.Match::clauseId).toList());
+
+        ReflectionTestUtils.setField(clauseIndex, "refreshCheckSeconds", 0L);
+        assertEquals(List.of(2L, 1L), search(PAYMENT).stream().map(ClauseIndex.Match::clauseId).toList());
+        // Now current, so the next check does not reload again
+        search(PAYMENT);
+        verify(clauseRepository, times(2)).findIndexRowsByUserId(7L);
+    }
+
+    @Test
+    void listenerAppliesChangesOnlyAfterCommit() {
+        search(PAYMENT);
+        ExtractedClause saved = clause(2L, "Payment", PAYMENT);
+        ExtractedClause deleted = clause(3L, "Payment", PAYMENT + " Late payments bear interest.");
+        clauseIndex.apply(ClauseIndex.Change.of(deleted, false));
+
+        TransactionSynchronizationManager.initSynchronization();
+        listener.onPostInsert(new PostInsertEvent(saved, saved.getId(), new Object[0], null, null));
+        listener.onPostDelete(new PostDeleteEvent(deleted, deleted.getId(), new Object[0], null, null));
+
+        assertEquals(List.of(3L), search(PAYMENT).stream().map(ClauseIndex.Match::clauseId).toList());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        synchronizations.forEach(synchronization ->
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertEquals(List.of(2L), search(PAYMENT).stream().map(ClauseIndex.Match::clauseId).toList());
+    }
+
+    @Test
+    void listenerDropsChangesOfRolledBackTransactions() {
+        search(PAYMENT);
+        ExtractedClause saved = clause(2L, "Payment", PAYMENT);
+
+        TransactionSynchronizationManager.initSynchronization();
+        listener.onPostInsert(new PostInsertEvent(saved, saved.getId(), new Object[0], null, null));
+        TransactionSynchronizationManager.getSynchronizations().forEach(synchronization ->
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertTrue(search(PAYMENT).isEmpty());
+    }
+
+    private List<ClauseIndex.Match> search(String text) {
+        return clauseIndex.search(7L, TextVectors.vectorize(text), null, null, null, null, 10);
+    }
+
+    private static Object[] row(Long clauseId, String type, String text) {
+        return new Object[]{clauseId, 100L, type, ExtractedClause.ImportanceLevel.MEDIUM, TextVectors.vectorize(text)};
+    }
+
+    private static ExtractedClause clause(Long id, String type, String text) {
+        User user = new User();
+        user.setId(7L);
+        Document document = new Document();
+        document.setId(100L);
+        document.setUser(user);
+        ExtractedClause clause = new ExtractedClause(type, text, document);
+        clause.setId(id);
+        return clause;
+    }
+}
@@ -0,0 +1,77 @@
+package com.kimi.legaleraseai.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClausePreClassifierTest {
+
+    private static final String PREAMBLE = "This Services Agreement is made between Acme Corp and Beta LLC. "
+            + "It shall be governed by the laws of the State of New York, and all notices shall be in writing.";
+    private static final String GOVERNING_LAW = "12. Governing Law\n"
+            + "This Agreement shall be governed by the laws of the State of New York.";
+
+    private ClausePreClassifier classifier;
+
+    @BeforeEach
+    void setUp() {
+        classifier = new ClausePreClassifier();
+        ReflectionTestUtils.setField(classifier, "enabled", true);
+        ReflectionTestUtils.setField(classifier, "maxSectionWords", 400);
+        ReflectionTestUtils.setField(classifier, "meterRegistry", new SimpleMeterRegistry());
+        classifier.init();
+    }
+
+    @Test
+    void sendsTextWithoutHeadingsToTheModel() {
+        String text = "The consultant is an independent contractor.\n"
+                + "This Agreement shall be governed by the laws of the State of New York.\n"
+                + "The parties may sign it in one or more counterparts.";
+
+        ClausePreClassifier.Classification classification = classifier.classify(text);
+
+        assertTrue(classification.detections().isEmpty());
+        assertEquals(text, classification.remainingText());
+    }
+
+    @Test
+    void sendsAPreambleOnlyDocumentToTheModel() {
+        ClausePreClassifier.Classification classification = classifier.classify(PREAMBLE);
+
+        assertTrue(classification.detections().isEmpty());
+        assertEquals(PREAMBLE, classification.remainingText());
+    }
+
+    @Test
+    void labelsABoilerplateSectionUnderItsHeadingAndKeepsThePreamble() {
+        String text = PREAMBLE + "\n\n" + GOVERNING_LAW;
+
+        ClausePreClassifier.Classification classification = classifier.classify(text);
+
+        assertEquals(1, classification.detections().size());
+        ClausePreClassifier.Detection detection = classification.detections().get(0);
+        assertEquals("Governing Law", detection.type());
+        assertEquals(ClausePreClassifier.HEADING_AND_PHRASE_CONFIDENCE, detection.confidence());
+        assertEquals(GOVERNING_LAW, text.substring(detection.start(), detection.end()));
+        assertEquals(PREAMBLE, classification.remainingText());
+    }
+
+    @Test
+    void sendsBoilerplateSectionsThatMentionAHighImportanceClauseToTheModel() {
+        String text = "1. Notices\nNotices of termination shall be in writing. Either party may terminate "
+                + "this agreement with thirty days notice.\n"
+                + "2. Severability\nIf any provision is held invalid, the remaining provisions shall continue in full force.";
+
+        ClausePreClassifier.Classification classification = classifier.classify(text);
+
+        assertEquals(List.of("Severability"),
+                classification.detections().stream().map(ClausePreClassifier.Detection::type).toList());
+        assertTrue(classification.remainingText().startsWith("1. Notices"));
+    }
+}
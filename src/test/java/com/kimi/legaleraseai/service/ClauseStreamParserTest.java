@@ -0,0 +1,119 @@
+package com.kimi.legaleraseai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClauseStreamParserTest {
+
+    private static final String CLAUSES = "[" +
+            "{\"clauseType\":\"Termination\",\"clauseText\":\"Either party may end this {lease} on \\\"notice\\\".\"," +
+            "\"explanation\":\"Ends with notice [30 days].\",\"importance\":\"HIGH\"}," +
+            "{\"clauseType\":\"Payment\",\"clauseText\":\"Rent is due monthly.\",\"explanation\":\"Pay monthly.\"}" +
+            "]";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Document document = new Document();
+
+    @Test
+    void parsesRootArray() {
+        List<ExtractedClause> clauses = ClauseStreamParser.parseAll(objectMapper, document, CLAUSES);
+
+        assertEquals(2, clauses.size());
+        assertEquals("Termination", clauses.get(0).getClauseType());
+        assertEquals("Either party may end this {lease} on \"notice\".", clauses.get(0).getClauseText());
+        assertEquals(ExtractedClause.ImportanceLevel.HIGH, clauses.get(0).getImportanceLevel());
+        assertEquals(ExtractedClause.ImportanceLevel.MEDIUM, clauses.get(1).getImportanceLevel());
+    }
+
+    @Test
+    void emitsEachClauseAsSoonAsItClosesWhateverTheChunkBoundaries() {
+        String response = "```json\n" + CLAUSES + "\n```";
+        for (int size = 1; size <= 7; size++) {
+            ClauseStreamParser parser = new ClauseStreamParser(objectMapper, document);
+            List<ExtractedClause> clauses = new ArrayList<>();
+            int firstClauseAt = -1;
+            for (int i = 0; i < response.length(); i += size) {
+                clauses.addAll(parser.feed(response.substring(i, Math.min(response.length(), i + size))));
+                if (firstClauseAt < 0 && !clauses.isEmpty()) {
+                    firstClauseAt = i;
+                }
+            }
+            clauses.addAll(parser.finish());
+
+            assertEquals(2, clauses.size(), "chunk size " + size);
+            assertEquals("Either party may end this {lease} on \"notice\".", clauses.get(0).getClauseText());
+            assertTrue(firstClauseAt < response.indexOf("Payment"), "chunk size " + size);
+        }
+    }
+
+    @Test
+    void keepsClausesBeforeTruncation() {
+        String response = CLAUSES.substring(0, CLAUSES.indexOf("Rent"));
+
+        List<ExtractedClause> clauses = ClauseStreamParser.parseAll(objectMapper, document, response);
+
+        assertEquals(1, clauses.size());
+        assertEquals("Termination", clauses.get(0).getClauseType());
+    }
+
+    @Test
+    void unwrapsClausesFromRootObject() {
+        String response = "{\"document\":{\"title\":\"Lease\"},\"clauses\":" + CLAUSES + "}";
+
+        List<ExtractedClause> clauses = ClauseStreamParser.parseAll(objectMapper, document, response);
+
+        assertEquals(2, clauses.size());
+        assertEquals("Payment", clauses.get(1).getClauseType());
+    }
+
+    @Test
+    void acceptsSingleClauseObjectWithArrayField() {
+        String response = "{\"clauseType\":\"Payment\",\"clauseText\":\"Rent is due monthly.\",\"tags\":[\"rent\"]}";
+
+        List<ExtractedClause> clauses = ClauseStreamParser.parseAll(objectMapper, document, response);
+
+        assertEquals(1, clauses.size());
+        assertEquals("Payment", clauses.get(0).getClauseType());
+    }
+
+    @Test
+    void skipsObjectsThatAreNotClauses() {
+        String response = "[{\"note\":\"No further clauses.\"}," + CLAUSES.substring(1);
+
+        List<ExtractedClause> clauses = ClauseStreamParser.parseAll(objectMapper, document, response);
+
+        assertEquals(2, clauses.size());
+        assertEquals("Termination", clauses.get(0).getClauseType());
+    }
+
+    @Test
+    void ignoresBracketsInProseBeforeTheJson() {
+        String response = "Here are the clauses [see below] as requested:\n" +
+                "[1] The lease contains two key clauses.\n" +
+                CLAUSES;
+
+        List<ExtractedClause> clauses = ClauseStreamParser.parseAll(objectMapper, document, response);
+
+        assertEquals(2, clauses.size());
+        assertEquals(0.8, clauses.get(0).getConfidenceScore());
+    }
+
+    @Test
+    void fallsBackToLineParsingWithoutJson() {
+        String response = "1. **Clause type:** Termination\n   **Clause text:** Either party may end this lease.\n";
+
+        List<ExtractedClause> clauses = ClauseStreamParser.parseAll(objectMapper, document, response);
+
+        assertEquals(1, clauses.size());
+        assertEquals("Termination", clauses.get(0).getClauseType());
+        assertEquals(0.6, clauses.get(0).getConfidenceScore());
+    }
+}
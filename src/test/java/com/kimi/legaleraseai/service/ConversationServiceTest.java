@@ -0,0 +1,94 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sessions with local chunk sets under a 1 MB cap; each test document holds about 400 KB of text.
+ */
+class ConversationServiceTest {
+
+    private static final long USER_ID = 3L;
+
+    private ConversationService conversationService;
+
+    @BeforeEach
+    void setUp() {
+        conversationService = new ConversationService();
+        ReflectionTestUtils.setField(conversationService, "idleTtlMinutes", 30L);
+        ReflectionTestUtils.setField(conversationService, "maxLifetimeMinutes", 120L);
+        ReflectionTestUtils.setField(conversationService, "maxMemoryMb", 1L);
+        ReflectionTestUtils.setField(conversationService, "maxRecentTurns", 4);
+        ReflectionTestUtils.setField(conversationService, "chunkTokens", 1500);
+        ReflectionTestUtils.setField(conversationService, "promptBuilder", new PromptBuilder());
+    }
+
+    @Test
+    void startsALocalSessionOverTheWholeDocument() {
+        Document document = document(1L);
+
+        ConversationSession session = conversationService.start(document, USER_ID);
+
+        assertFalse(session.usesProviderCache());
+        assertNull(session.getCachedContentName());
+        assertTrue(session.getContextChunks().size() > 1);
+        assertEquals(document.getExtractedText().length(),
+                String.join("\n\n", session.getContextChunks()).length());
+        assertTrue(conversationService.find(session.getId(), USER_ID).isPresent());
+        assertTrue(conversationService.find(session.getId(), USER_ID + 1).isEmpty());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyAccessedSessionAboveTheMemoryCap() throws Exception {
+        ConversationSession first = conversationService.start(document(1L), USER_ID);
+        Thread.sleep(5);
+        ConversationSession second = conversationService.start(document(2L), USER_ID);
+        Thread.sleep(5);
+        // Using the older session makes the second one the least recently accessed
+        assertTrue(conversationService.find(first.getId(), USER_ID).isPresent());
+        Thread.sleep(5);
+
+        ConversationSession third = conversationService.start(document(3L), USER_ID);
+
+        assertTrue(conversationService.find(second.getId(), USER_ID).isEmpty());
+        assertTrue(conversationService.find(first.getId(), USER_ID).isPresent());
+        assertTrue(conversationService.find(third.getId(), USER_ID).isPresent());
+    }
+
+    @Test
+    void keepsSessionsThatFitUnderTheCap() {
+        ConversationSession first = conversationService.start(document(1L), USER_ID);
+        ConversationSession second = conversationService.start(document(2L), USER_ID);
+
+        assertTrue(conversationService.find(first.getId(), USER_ID).isPresent());
+        assertTrue(conversationService.find(second.getId(), USER_ID).isPresent());
+    }
+
+    @Test
+    void endedSessionsAreGone() {
+        ConversationSession session = conversationService.start(document(1L), USER_ID);
+
+        conversationService.end(session);
+
+        assertTrue(conversationService.find(session.getId(), USER_ID).isEmpty());
+    }
+
+    // About 200,000 characters of paragraphs, 400 KB as UTF-16
+    private static Document document(Long id) {
+        String paragraph = "Section " + id + ". The tenant shall keep the premises in good repair and return them "
+                + "in the same condition at the end of the term, fair wear and tear excepted.";
+        Document document = new Document();
+        document.setId(id);
+        document.setExtractedText(String.join("\n\n", Collections.nCopies(200_000 / paragraph.length(), paragraph)));
+        return document;
+    }
+}
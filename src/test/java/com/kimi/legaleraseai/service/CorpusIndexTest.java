@@ -0,0 +1,125 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.User;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CorpusIndexTest {
+
+    private static final String LEASE = "The tenant shall pay rent monthly.\f"
+            + "The landlord may terminate the lease with sixty days notice.";
+    private static final String NDA = "The recipient keeps confidential information secret for three years.";
+
+    private DocumentRepository documentRepository;
+    private CorpusIndex corpusIndex;
+
+    @BeforeEach
+    void setUp() {
+        documentRepository = mock(DocumentRepository.class);
+        corpusIndex = new CorpusIndex();
+        ReflectionTestUtils.setField(corpusIndex, "chunkWords", 200);
+        ReflectionTestUtils.setField(corpusIndex, "maxUsers", 10);
+        ReflectionTestUtils.setField(corpusIndex, "maxRemovedRatio", 0.9);
+        ReflectionTestUtils.setField(corpusIndex, "refreshCheckSeconds", 60L);
+        ReflectionTestUtils.setField(corpusIndex, "documentRepository", documentRepository);
+    }
+
+    @Test
+    void findsPassagesWithTheirPages() {
+        when(documentRepository.findTextsByUserIdAfter(eq(7L), eq(0L), any()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "lease.pdf", LEASE}, new Object[]{2L, "nda.pdf", NDA}));
+
+        List<CorpusIndex.Passage> passages = corpusIndex.search(7L, "When can the landlord terminate?", 5);
+
+        assertEquals(1, passages.size());
+        assertEquals("lease.pdf", passages.get(0).documentName());
+        assertEquals(2, passages.get(0).page());
+        assertTrue(corpusIndex.search(7L, "confidential information", 5).get(0).text().contains("three years"));
+        assertNull(corpusIndex.search(7L, "confidential information", 5).get(0).page());
+    }
+
+    @Test
+    void documentsIndexedDuringALoadAreNotMissed() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        when(documentRepository.findTextsByUserIdAfter(anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            loading.countDown();
+            proceed.await(5, TimeUnit.SECONDS);
+            return List.<Object[]>of(new Object[]{1L, "lease.pdf", LEASE});
+        });
+
+        CompletableFuture<List<CorpusIndex.Passage>> firstSearch =
+                CompletableFuture.supplyAsync(() -> corpusIndex.search(7L, "rent", 5));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        // Stored after the load query ran, so the query does not return it
+        CompletableFuture<Void> indexing = CompletableFuture.runAsync(() -> corpusIndex.index(document(2L, NDA)));
+        Thread.sleep(100);
+        assertFalse(indexing.isDone());
+        proceed.countDown();
+
+        indexing.get(5, TimeUnit.SECONDS);
+        assertEquals(1, firstSearch.get(5, TimeUnit.SECONDS).size());
+        assertEquals(2L, corpusIndex.search(7L, "confidential information", 5).get(0).documentId());
+        verify(documentRepository, times(1)).findTextsByUserIdAfter(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void removedDocumentsAreNotFound() {
+        when(documentRepository.findTextsByUserIdAfter(eq(7L), eq(0L), any()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "lease.pdf", LEASE}, new Object[]{2L, "nda.pdf", NDA}));
+        corpusIndex.search(7L, "rent", 5);
+
+        corpusIndex.remove(document(1L, LEASE));
+
+        assertTrue(corpusIndex.search(7L, "rent", 5).isEmpty());
+        assertEquals(1, corpusIndex.search(7L, "confidential", 5).size());
+    }
+
+    @Test
+    void reloadsUsersWhoseDocumentsChangedOnAnotherNode() {
+        when(documentRepository.findTextsByUserIdAfter(eq(7L), eq(0L), any()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "lease.pdf", LEASE}));
+        assertTrue(corpusIndex.search(7L, "confidential information", 5).isEmpty());
+
+        // Extracted by another node, so it was never indexed here
+        when(documentRepository.findTextsByUserIdAfter(eq(7L), eq(0L), any()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "lease.pdf", LEASE}, new Object[]{2L, "nda.pdf", NDA}));
+        when(documentRepository.findTextFingerprintByUserId(7L)).thenReturn(List.<Object[]>of(new Object[]{2L, 3L}));
+        ReflectionTestUtils.setField(corpusIndex, "refreshCheckSeconds", 0L);
+
+        assertEquals(2L, corpusIndex.search(7L, "confidential information", 5).get(0).documentId());
+        corpusIndex.search(7L, "rent", 5);
+        verify(documentRepository, times(2)).findTextsByUserIdAfter(anyLong(), anyLong(), any());
+    }
+
+    private static Document document(Long id, String text) {
+        User user = new User();
+        user.setId(7L);
+        Document document = new Document();
+        document.setId(id);
+        document.setUser(user);
+        document.setOriginalName("document-" + id + ".pdf");
+        document.setExtractedText(text);
+        return document;
+    }
+}
@@ -0,0 +1,225 @@
+package com.kimi.legaleraseai.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kimi.legaleraseai.controller.DocumentController;
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.entity.DocumentBundle;
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import com.kimi.legaleraseai.entity.User;
+import com.kimi.legaleraseai.repository.DocumentAnalysisRepository;
+import com.kimi.legaleraseai.repository.DocumentBundleRepository;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import com.kimi.legaleraseai.repository.ExtractedClauseRepository;
+import com.kimi.legaleraseai.security.UserPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Builds, serves and updates the bundle of one stubbed document, keeping the stored bundle in a field
+ * like the database row; without a transaction, changes are applied as soon as they are reported.
+ */
+class DocumentBundleServiceTest {
+
+    private static final Long DOCUMENT_ID = 7L;
+    private static final Long USER_ID = 3L;
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2026, 1, 15, 9, 30);
+
+    private DocumentBundleRepository bundleRepository;
+    private ExtractedClauseRepository clauseRepository;
+    private DocumentBundleService bundleService;
+    private DocumentController controller;
+    private DocumentBundle stored;
+    private final List<ExtractedClause> clauses = new ArrayList<>();
+    private final List<Object[]> summaryRows = new ArrayList<>();
+    private final List<Object[]> answerRows = new ArrayList<>();
+    private final Authentication authentication = new UsernamePasswordAuthenticationToken(
+            new UserPrincipal(USER_ID, "alice", "alice@example.com", "", List.of()), null, List.of());
+
+    @BeforeEach
+    void setUp() {
+        User user = new User("alice", "alice@example.com", "");
+        user.setId(USER_ID);
+        Document document = new Document("lease.pdf", "lease.pdf", "application/pdf", 2048L, user);
+        document.setId(DOCUMENT_ID);
+        document.setProcessingStatus(Document.ProcessingStatus.COMPLETED);
+        document.setExtractedText("1. Rent. The tenant pays monthly.");
+        clauses.add(clause(1L, "Payment", ExtractedClause.ImportanceLevel.MEDIUM));
+
+        bundleRepository = mock(DocumentBundleRepository.class);
+        when(bundleRepository.findByDocumentIdAndUserId(DOCUMENT_ID, USER_ID))
+                .thenAnswer(invocation -> Optional.ofNullable(stored));
+        when(bundleRepository.findForUpdate(DOCUMENT_ID)).thenAnswer(invocation -> Optional.ofNullable(stored));
+        when(bundleRepository.findEtag(DOCUMENT_ID, USER_ID, DocumentBundleService.FORMAT))
+                .thenAnswer(invocation -> Optional.ofNullable(stored).map(DocumentBundle::getEtag));
+        when(bundleRepository.save(any())).thenAnswer(invocation -> stored = invocation.getArgument(0));
+
+        DocumentRepository documentRepository = mock(DocumentRepository.class);
+        when(documentRepository.existsByIdAndUserId(DOCUMENT_ID, USER_ID)).thenReturn(true);
+        when(documentRepository.findById(DOCUMENT_ID)).thenReturn(Optional.of(document));
+        when(documentRepository.getReferenceById(DOCUMENT_ID)).thenReturn(document);
+
+        clauseRepository = mock(ExtractedClauseRepository.class);
+        when(clauseRepository.findByDocumentOrderByImportanceLevelDescCreatedAtDesc(document))
+                .thenAnswer(invocation -> List.copyOf(clauses));
+
+        DocumentAnalysisRepository analysisRepository = mock(DocumentAnalysisRepository.class);
+        when(analysisRepository.findResultRows(eq(DOCUMENT_ID), eq(DocumentAnalysis.AnalysisType.SUMMARY),
+                eq(DocumentAnalysis.AnalysisStatus.COMPLETED), any()))
+                .thenAnswer(invocation -> List.copyOf(summaryRows));
+        when(analysisRepository.findAnswerRows(eq(DOCUMENT_ID), eq(DocumentAnalysis.AnalysisType.QUESTION_ANSWER),
+                eq(DocumentAnalysis.AnalysisStatus.COMPLETED), any()))
+                .thenAnswer(invocation -> List.copyOf(answerRows));
+
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        bundleService = new DocumentBundleService();
+        ReflectionTestUtils.setField(bundleService, "recentQuestions", 10);
+        ReflectionTestUtils.setField(bundleService, "bundleRepository", bundleRepository);
+        ReflectionTestUtils.setField(bundleService, "documentRepository", documentRepository);
+        ReflectionTestUtils.setField(bundleService, "analysisRepository", analysisRepository);
+        ReflectionTestUtils.setField(bundleService, "clauseRepository", clauseRepository);
+        ReflectionTestUtils.setField(bundleService, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(bundleService, "transactionManager", transactionManager);
+        bundleService.init();
+
+        controller = new DocumentController();
+        ReflectionTestUtils.setField(controller, "documentBundleService", bundleService);
+    }
+
+    @Test
+    void servesTheGzippedAndThePlainBundleUnderDifferentETags() throws Exception {
+        ResponseEntity<byte[]> gzipped = getBundle(gzipHeaders());
+        ResponseEntity<byte[]> plain = getBundle(new HttpHeaders());
+
+        assertEquals(HttpStatus.OK, gzipped.getStatusCode());
+        assertEquals(HttpStatus.OK, plain.getStatusCode());
+        assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(plain.getBody(), gunzip(gzipped.getBody()));
+        assertEquals(stored.getEtag(), plain.getHeaders().getETag());
+        assertNotEquals(plain.getHeaders().getETag(), gzipped.getHeaders().getETag());
+        // Built once, on the first read
+        verify(bundleRepository, times(1)).save(any());
+    }
+
+    @Test
+    void answersAMatchingETagWithNotModified() throws Exception {
+        String etag = getBundle(gzipHeaders()).getHeaders().getETag();
+        HttpHeaders headers = gzipHeaders();
+        headers.setIfNoneMatch(etag);
+
+        ResponseEntity<byte[]> response = getBundle(headers);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals(etag, response.getHeaders().getETag());
+        assertNull(response.getBody());
+        // Answered from the ETag alone, without reading the content
+        verify(bundleRepository, times(1)).findByDocumentIdAndUserId(DOCUMENT_ID, USER_ID);
+
+        // The tag of the gzipped bundle does not match the plain one
+        HttpHeaders plainHeaders = new HttpHeaders();
+        plainHeaders.setIfNoneMatch(etag);
+        assertEquals(HttpStatus.OK, getBundle(plainHeaders).getStatusCode());
+    }
+
+    @Test
+    void rewritesTheClausesWhenClausesChange() throws Exception {
+        JsonNode before = bundle();
+        String etag = getBundle(gzipHeaders()).getHeaders().getETag();
+
+        clauses.add(clause(2L, "Termination", ExtractedClause.ImportanceLevel.CRITICAL));
+        bundleService.changed(DOCUMENT_ID, DocumentBundleService.Part.CLAUSES);
+
+        JsonNode after = bundle();
+        assertEquals(before.get("version").asLong() + 1, after.get("version").asLong());
+        assertEquals(2, after.get("clauses").size());
+        assertEquals("Termination", after.get("clauses").get(0).get("clauseType").asText());
+        assertEquals("Payment", after.get("clauses").get(1).get("clauseType").asText());
+
+        // The page's cached copy is stale now
+        HttpHeaders headers = gzipHeaders();
+        headers.setIfNoneMatch(etag);
+        ResponseEntity<byte[]> response = getBundle(headers);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotEquals(etag, response.getHeaders().getETag());
+    }
+
+    @Test
+    void rewritesOnlyTheAnalysesWhenAnalysesChange() throws Exception {
+        JsonNode before = bundle();
+        assertTrue(before.get("summary").isNull());
+        String etag = stored.getEtag();
+
+        summaryRows.add(new Object[]{20L, DocumentAnalysis.AnalysisType.SUMMARY, "A one-year lease.", 0.9,
+                DocumentAnalysis.AnalysisStatus.COMPLETED, null, null, CREATED_AT});
+        answerRows.add(new Object[]{21L, "Monthly.", 0.8, "session-1", CREATED_AT, "When is rent due?"});
+        bundleService.changed(DOCUMENT_ID, DocumentBundleService.Part.ANALYSES);
+
+        JsonNode after = bundle();
+        assertNotEquals(etag, stored.getEtag());
+        assertEquals("A one-year lease.", after.get("summary").get("result").asText());
+        assertEquals("When is rent due?", after.get("recentQuestions").get(0).get("prompt").asText());
+        assertEquals("Monthly.", after.get("recentQuestions").get(0).get("result").asText());
+        assertEquals(before.get("clauses"), after.get("clauses"));
+        // The clauses were kept from the stored bundle instead of being queried again
+        verify(clauseRepository, times(1)).findByDocumentOrderByImportanceLevelDescCreatedAtDesc(any());
+    }
+
+    private ResponseEntity<byte[]> getBundle(HttpHeaders headers) {
+        return controller.getDocumentBundle(DOCUMENT_ID, headers, authentication);
+    }
+
+    private JsonNode bundle() throws IOException {
+        return new ObjectMapper().readTree(bundleService.json(bundleService.get(DOCUMENT_ID, USER_ID).orElseThrow()));
+    }
+
+    private static HttpHeaders gzipHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        return headers;
+    }
+
+    private static byte[] gunzip(byte[] content) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static ExtractedClause clause(Long id, String type, ExtractedClause.ImportanceLevel importance) {
+        ExtractedClause clause = new ExtractedClause(type, type + " clause text.", null);
+        clause.setId(id);
+        clause.setImportanceLevel(importance);
+        clause.setConfidenceScore(0.9);
+        clause.setCreatedAt(CREATED_AT);
+        return clause;
+    }
+}
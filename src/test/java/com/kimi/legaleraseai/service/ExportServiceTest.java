@@ -0,0 +1,138 @@
+package com.kimi.legaleraseai.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import com.kimi.legaleraseai.repository.DocumentAnalysisRepository;
+import com.kimi.legaleraseai.repository.ExtractedClauseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Exports stubbed rows that span several pages of {@code PAGE_SIZE} (200) ids.
+ */
+class ExportServiceTest {
+
+    private static final Long USER_ID = 3L;
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2026, 1, 15, 9, 30);
+
+    private DocumentAnalysisRepository analysisRepository;
+    private ExtractedClauseRepository clauseRepository;
+    private ExportService exportService;
+    private final List<Object[]> analysisRows = new ArrayList<>();
+    private final List<Object[]> clauseRows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        analysisRepository = mock(DocumentAnalysisRepository.class);
+        clauseRepository = mock(ExtractedClauseRepository.class);
+        when(analysisRepository.findExportRowsByUserIdAfter(eq(USER_ID), anyLong(), any()))
+                .thenAnswer(invocation -> page(analysisRows, invocation.getArgument(1), invocation.getArgument(2)));
+        when(clauseRepository.findExportRowsByUserIdAfter(eq(USER_ID), anyLong(), any()))
+                .thenAnswer(invocation -> page(clauseRows, invocation.getArgument(1), invocation.getArgument(2)));
+
+        exportService = new ExportService();
+        ReflectionTestUtils.setField(exportService, "analysisRepository", analysisRepository);
+        ReflectionTestUtils.setField(exportService, "clauseRepository", clauseRepository);
+        ReflectionTestUtils.setField(exportService, "transactionManager", mock(PlatformTransactionManager.class));
+        exportService.init();
+    }
+
+    @Test
+    void exportsEveryRowOfEveryPageOnceInIdOrder() throws Exception {
+        // Ids with gaps, as after deletions; 450 analyses are three pages, 400 clauses exactly two
+        for (long id = 1; id <= 450; id++) {
+            analysisRows.add(analysisRow(id * 3));
+        }
+        for (long id = 1; id <= 400; id++) {
+            clauseRows.add(clauseRow(id * 2));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = exportService.export(USER_ID, ExportService.Format.NDJSON, true, true, false, out);
+
+        List<String> expected = new ArrayList<>();
+        analysisRows.forEach(row -> expected.add("analysis:" + row[0]));
+        clauseRows.forEach(row -> expected.add("clause:" + row[0]));
+        List<String> exported = new ArrayList<>();
+        ObjectMapper objectMapper = new ObjectMapper();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonNode record = objectMapper.readTree(line);
+            exported.add(record.get("record").asText() + ":" + record.get("id").asLong());
+        }
+        assertEquals(expected, exported);
+        assertEquals(850, count);
+        // The last, empty page of clauses is what ends a full page
+        verify(analysisRepository, times(3)).findExportRowsByUserIdAfter(eq(USER_ID), anyLong(), any());
+        verify(clauseRepository, times(3)).findExportRowsByUserIdAfter(eq(USER_ID), anyLong(), any());
+    }
+
+    @Test
+    void writesCsvWithEveryColumnAndEscapedText() throws Exception {
+        clauseRows.add(clauseRow(7L));
+        clauseRows.get(0)[9] = "=HYPERLINK(\"http://example.com\")";
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(USER_ID, ExportService.Format.CSV, false, true, true, out);
+
+        String csv = new String(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())).readAllBytes(),
+                StandardCharsets.UTF_8);
+        String[] lines = csv.split("\r\n");
+        assertEquals("record,id,documentId,documentName,type,status,importance,confidenceScore,"
+                + "startPosition,endPosition,createdAt,text,explanation,errorMessage", lines[0]);
+        assertEquals("clause,7,1,\"lease, final.pdf\",Payment,,HIGH,0.95,10,40,2026-01-15T09:30,"
+                + "\"'=HYPERLINK(\"\"http://example.com\"\")\",Pay monthly.,", lines[1]);
+        assertEquals(2, lines.length);
+    }
+
+    @Test
+    void skipsRecordKindsThatWereNotRequested() throws Exception {
+        analysisRows.add(analysisRow(1L));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(USER_ID, ExportService.Format.NDJSON, true, false, false, out);
+
+        assertFalse(out.toString(StandardCharsets.UTF_8).contains("\"clause\""));
+        verify(clauseRepository, times(0)).findExportRowsByUserIdAfter(anyLong(), anyLong(), any());
+    }
+
+    // Rows after the given id, at most one page, like the id-keyed query
+    private static List<Object[]> page(List<Object[]> rows, long afterId, Pageable pageable) {
+        return rows.stream()
+                .filter(row -> (Long) row[0] > afterId)
+                .limit(pageable.getPageSize())
+                .toList();
+    }
+
+    private static Object[] analysisRow(Long id) {
+        return new Object[]{id, 1L, "lease.pdf", DocumentAnalysis.AnalysisType.SUMMARY,
+                DocumentAnalysis.AnalysisStatus.COMPLETED, 0.9, CREATED_AT, "Summary " + id, null};
+    }
+
+    private static Object[] clauseRow(Long id) {
+        return new Object[]{id, 1L, "lease, final.pdf", "Payment", ExtractedClause.ImportanceLevel.HIGH, 0.95,
+                10, 40, CREATED_AT, "The tenant shall pay rent.", "Pay monthly."};
+    }
+}
@@ -0,0 +1,127 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.entity.ExtractedClause;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the parts against a stubbed model service with a one second deadline.
+ */
+class FullAnalysisServiceTest {
+
+    private GeminiAiService geminiAiService;
+    private FullAnalysisService fullAnalysisService;
+    private Document document;
+
+    // Counted down when the slow summary is interrupted instead of running to the end
+    private final CountDownLatch summaryInterrupted = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        geminiAiService = mock(GeminiAiService.class);
+        fullAnalysisService = new FullAnalysisService();
+        ReflectionTestUtils.setField(fullAnalysisService, "timeoutSeconds", 1L);
+        ReflectionTestUtils.setField(fullAnalysisService, "geminiAiService", geminiAiService);
+
+        document = new Document();
+        document.setId(5L);
+        document.setExtractedText("The tenant shall pay rent monthly.");
+    }
+
+    @Test
+    void returnsEveryPart() throws Exception {
+        DocumentAnalysis summary = new DocumentAnalysis();
+        DocumentAnalysis answer = new DocumentAnalysis();
+        ExtractedClause clause = new ExtractedClause();
+        when(geminiAiService.summarizeDocument(any())).thenReturn(summary);
+        when(geminiAiService.extractClauses(any())).thenReturn(List.of(clause));
+        when(geminiAiService.answerQuestions(any(), any())).thenReturn(List.of(answer));
+
+        FullAnalysisService.FullAnalysis analysis = fullAnalysisService.analyze(document, List.of("Who pays?"));
+
+        assertSame(summary, analysis.summary());
+        assertEquals(List.of(clause), analysis.clauses());
+        assertEquals(List.of(answer), analysis.answers());
+    }
+
+    @Test
+    void failedClauseExtractionFailsTheAnalysisAndInterruptsTheOtherParts() throws Exception {
+        slowSummary();
+        when(geminiAiService.extractClauses(any())).thenAnswer(invocation -> {
+            throw new IllegalStateException("Gemini API error: 503");
+        });
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> fullAnalysisService.analyze(document, List.of()));
+
+        assertEquals("Gemini API error: 503", e.getMessage());
+        assertTrue(summaryInterrupted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void partsStillRunningAtTheDeadlineAreInterrupted() throws Exception {
+        slowSummary();
+        when(geminiAiService.extractClauses(any())).thenReturn(List.of());
+
+        assertThrows(TimeoutException.class, () -> fullAnalysisService.analyze(document, List.of()));
+
+        assertTrue(summaryInterrupted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void interruptingTheCallerCancelsTheParts() throws Exception {
+        CountDownLatch summaryStarted = new CountDownLatch(1);
+        when(geminiAiService.summarizeDocument(any())).thenAnswer(invocation -> {
+            summaryStarted.countDown();
+            return sleepUntilInterrupted();
+        });
+        when(geminiAiService.extractClauses(any())).thenReturn(List.of());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread caller = new Thread(() -> {
+            try {
+                fullAnalysisService.analyze(document, List.of());
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        caller.start();
+        assertTrue(summaryStarted.await(1, TimeUnit.SECONDS));
+        caller.interrupt();
+        caller.join(1000);
+
+        assertInstanceOf(InterruptedException.class, failure.get());
+        assertTrue(summaryInterrupted.await(1, TimeUnit.SECONDS));
+    }
+
+    private void slowSummary() {
+        when(geminiAiService.summarizeDocument(any())).thenAnswer(invocation -> sleepUntilInterrupted());
+    }
+
+    private DocumentAnalysis sleepUntilInterrupted() {
+        try {
+            Thread.sleep(10_000);
+        } catch (InterruptedException e) {
+            summaryInterrupted.countDown();
+        }
+        return new DocumentAnalysis();
+    }
+}
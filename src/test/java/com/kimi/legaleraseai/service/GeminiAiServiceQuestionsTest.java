@@ -0,0 +1,170 @@
+package com.kimi.legaleraseai.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.repository.DocumentAnalysisRepository;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs batched questions against a local stub of the generateContent endpoint that answers
+ * every numbered question in the prompt, or truncates its answer map when told to.
+ */
+class GeminiAiServiceQuestionsTest {
+
+    private static final Pattern NUMBERED_QUESTION = Pattern.compile("(?m)^(\\d+)\\. (.+)$");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Questions and maxOutputTokens of every call the stub received
+    private final List<List<String>> calls = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> outputLimits = Collections.synchronizedList(new ArrayList<>());
+
+    private HttpServer server;
+    private GeminiAiService service;
+    private volatile boolean truncateBatches;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/generate", exchange -> {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String prompt = request.path("contents").path(0).path("parts").path(0).path("text").asText();
+            outputLimits.add(request.path("generationConfig").path("maxOutputTokens").asInt());
+
+            String answer;
+            if (prompt.contains("answer each of these questions")) {
+                List<String> questions = new ArrayList<>();
+                StringBuilder answers = new StringBuilder("{");
+                Matcher matcher = NUMBERED_QUESTION.matcher(prompt.substring(0, prompt.indexOf("Document content:")));
+                while (matcher.find()) {
+                    questions.add(matcher.group(2));
+                    answers.append(answers.length() > 1 ? "," : "")
+                            .append('"').append(matcher.group(1)).append("\":\"Answer to ").append(matcher.group(2)).append('"');
+                }
+                calls.add(questions);
+                answer = truncateBatches ? answers.substring(0, answers.length() / 2) : answers.append('}').toString();
+            } else {
+                String question = prompt.substring(prompt.indexOf("answer this question: ") + 22, prompt.indexOf('\n'));
+                calls.add(List.of(question));
+                answer = "Single answer to " + question;
+            }
+
+            byte[] body = objectMapper.writeValueAsBytes(objectMapper.createObjectNode().set("candidates",
+                    objectMapper.createArrayNode().add(objectMapper.createObjectNode().set("content",
+                            objectMapper.createObjectNode().set("parts",
+                                    objectMapper.createArrayNode().add(objectMapper.createObjectNode().put("text", answer)))))));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        DocumentAnalysisRepository analysisRepository = mock(DocumentAnalysisRepository.class);
+        when(analysisRepository.save(any(DocumentAnalysis.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RequestHedger requestHedger = new RequestHedger();
+        ReflectionTestUtils.setField(requestHedger, "idempotentTypeNames", List.of());
+        ReflectionTestUtils.setField(requestHedger, "quotaBudget", new GeminiQuotaBudget());
+        ReflectionTestUtils.setField(requestHedger, "meterRegistry", meterRegistry);
+        requestHedger.init();
+
+        QuestionAnswerCache answerCache = new QuestionAnswerCache();
+        ReflectionTestUtils.setField(answerCache, "analysisRepository", analysisRepository);
+        ReflectionTestUtils.setField(answerCache, "meterRegistry", meterRegistry);
+        answerCache.init();
+
+        service = new GeminiAiService();
+        ReflectionTestUtils.setField(service, "apiUrl", "http://localhost:" + server.getAddress().getPort() + "/generate");
+        ReflectionTestUtils.setField(service, "apiKey", "test-key");
+        ReflectionTestUtils.setField(service, "questionsPerCall", 4);
+        ReflectionTestUtils.setField(service, "analysisRepository", analysisRepository);
+        ReflectionTestUtils.setField(service, "requestHedger", requestHedger);
+        ReflectionTestUtils.setField(service, "promptBuilder", new PromptBuilder());
+        ReflectionTestUtils.setField(service, "answerCache", answerCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void splitsLargeBatchesIntoCallsOfLimitedSize() {
+        List<String> questions = questions(10);
+
+        List<DocumentAnalysis> answers = service.answerQuestions(document(), questions);
+
+        assertEquals(10, answers.size());
+        for (int i = 0; i < questions.size(); i++) {
+            assertEquals("Answer to " + questions.get(i), answers.get(i).getResult());
+            assertEquals(questions.get(i), answers.get(i).getPrompt());
+        }
+        assertEquals(List.of(questions.subList(0, 4), questions.subList(4, 8), questions.subList(8, 10)), calls);
+        // The response limit grows with the number of questions in the call
+        assertEquals(List.of(4096, 4096, 2048), outputLimits);
+    }
+
+    @Test
+    void remainderOfOneIsAskedOnItsOwn() {
+        List<String> questions = questions(5);
+
+        List<DocumentAnalysis> answers = service.answerQuestions(document(), questions);
+
+        assertEquals(2, calls.size());
+        assertEquals(List.of(questions.get(4)), calls.get(1));
+        assertEquals("Single answer to " + questions.get(4), answers.get(4).getResult());
+    }
+
+    @Test
+    void answersIndividuallyWhenBatchResponseCannotBeParsed() {
+        truncateBatches = true;
+        List<String> questions = questions(3);
+
+        List<DocumentAnalysis> answers = service.answerQuestions(document(), questions);
+
+        assertEquals(4, calls.size());
+        assertEquals(questions, calls.get(0));
+        for (int i = 0; i < questions.size(); i++) {
+            assertEquals(List.of(questions.get(i)), calls.get(i + 1));
+            assertEquals("Single answer to " + questions.get(i), answers.get(i).getResult());
+            assertEquals(DocumentAnalysis.AnalysisStatus.COMPLETED, answers.get(i).getStatus());
+        }
+    }
+
+    private static Document document() {
+        Document document = new Document();
+        document.setExtractedText("The tenant pays rent of $1,000 per month. The lease ends on 31 December 2027.");
+        return document;
+    }
+
+    private static List<String> questions(int count) {
+        List<String> questions = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            questions.add("What does section " + i + " require?");
+        }
+        return questions;
+    }
+}
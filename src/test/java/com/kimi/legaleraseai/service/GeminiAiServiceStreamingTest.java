@@ -0,0 +1,95 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.repository.DocumentAnalysisRepository;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the streaming analysis path against a local stub of the streamGenerateContent SSE endpoint.
+ */
+class GeminiAiServiceStreamingTest {
+
+    private static final String[] CHUNKS = {
+            "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"This lease \"}]}}]}",
+            "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"ends in 2027.\"}]}}]}",
+            "{\"candidates\":[{\"content\":{\"parts\":[]},\"finishReason\":\"STOP\"}]}"
+    };
+
+    private HttpServer server;
+    private GeminiAiService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/stream", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (String chunk : CHUNKS) {
+                    out.write(("data: " + chunk + "\n\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            }
+        });
+        server.start();
+
+        DocumentAnalysisRepository analysisRepository = mock(DocumentAnalysisRepository.class);
+        when(analysisRepository.save(any(DocumentAnalysis.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service = new GeminiAiService();
+        ReflectionTestUtils.setField(service, "streamUrl", "http://localhost:" + server.getAddress().getPort() + "/stream");
+        ReflectionTestUtils.setField(service, "apiKey", "test-key");
+        ReflectionTestUtils.setField(service, "analysisRepository", analysisRepository);
+        ReflectionTestUtils.setField(service, "quotaBudget", new GeminiQuotaBudget());
+        ReflectionTestUtils.setField(service, "promptBuilder", new PromptBuilder());
+
+        QuestionAnswerCache answerCache = new QuestionAnswerCache();
+        ReflectionTestUtils.setField(answerCache, "analysisRepository", analysisRepository);
+        ReflectionTestUtils.setField(answerCache, "meterRegistry", new SimpleMeterRegistry());
+        answerCache.init();
+        ReflectionTestUtils.setField(service, "answerCache", answerCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void relaysDeltasAndPersistsAssembledAnswer() {
+        Document document = new Document();
+        document.setExtractedText("The term of this lease ends on 31 December 2027.");
+
+        List<AnalysisStreamEvent> events = service.streamAnswer(document, "When does the lease end?")
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertEquals(3, events.size());
+        assertEquals("This lease ", events.get(0).delta());
+        assertEquals("ends in 2027.", events.get(1).delta());
+
+        AnalysisStreamEvent last = events.get(2);
+        assertTrue(last.isCompleted());
+        assertEquals(DocumentAnalysis.AnalysisStatus.COMPLETED, last.analysis().getStatus());
+        assertEquals("This lease ends in 2027.", last.analysis().getResult());
+        assertEquals("When does the lease end?", last.analysis().getPrompt());
+    }
+}
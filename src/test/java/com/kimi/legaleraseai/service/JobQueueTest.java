@@ -0,0 +1,151 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Job;
+import com.kimi.legaleraseai.repository.JobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exercises the jobs table leasing against a throwaway Postgres container, since SKIP LOCKED and
+ * the database clock are what is being tested. Skipped where Docker is not available.
+ */
+@SpringBootTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@Testcontainers(disabledWithoutDocker = true)
+class JobQueueTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    // Jobs in these tests do not reference real documents or users
+    private static final Long DOCUMENT_ID = -1L;
+    private static final Long USER_ID = -1L;
+
+    @Autowired
+    private JobQueue jobQueue;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    private final List<Long> created = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() {
+        jobRepository.deleteAllById(created);
+    }
+
+    @Test
+    void concurrentWorkersNeverLeaseTheSameJob() throws Exception {
+        Set<Long> ours = new HashSet<>();
+        for (int i = 0; i < 60; i++) {
+            ours.add(enqueue().getId());
+        }
+
+        int workers = 6;
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Long>>> results = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            String workerId = "test-worker-" + w;
+            results.add(executor.submit(() -> {
+                start.await();
+                List<Long> leased = new ArrayList<>();
+                List<Job> batch;
+                while (!(batch = jobQueue.lease(workerId, 3, 300)).isEmpty()) {
+                    batch.forEach(job -> leased.add(job.getId()));
+                }
+                return leased;
+            }));
+        }
+        start.countDown();
+
+        Map<Long, Integer> leaseCounts = new HashMap<>();
+        for (Future<List<Long>> result : results) {
+            for (Long id : result.get(30, TimeUnit.SECONDS)) {
+                leaseCounts.merge(id, 1, Integer::sum);
+            }
+        }
+        executor.shutdown();
+
+        assertTrue(leaseCounts.keySet().containsAll(ours), "every job should have been leased");
+        for (Long id : ours) {
+            assertEquals(1, leaseCounts.get(id), "job " + id + " was leased more than once");
+            Job job = jobRepository.findById(id).orElseThrow();
+            assertEquals(Job.JobStatus.RUNNING, job.getStatus());
+            assertEquals(1, job.getAttempts());
+        }
+    }
+
+    @Test
+    void failedJobIsRetriedLaterThenDeadLettered() {
+        Job job = enqueue();
+        job.setMaxAttempts(2);
+        jobRepository.save(job);
+
+        Job leased = leaseOurs("worker-a", job.getId());
+        jobQueue.fail(leased, "worker-a", "model unavailable");
+
+        Job retrying = jobRepository.findById(job.getId()).orElseThrow();
+        assertEquals(Job.JobStatus.QUEUED, retrying.getStatus());
+        assertEquals("model unavailable", retrying.getLastError());
+        assertNull(retrying.getLockedBy());
+        // Backed off, so not due yet
+        assertTrue(jobQueue.lease("worker-b", 100, 300).stream().noneMatch(j -> j.getId().equals(job.getId())));
+
+        // Make it due again and use up the last attempt
+        retrying.setRunAt(retrying.getRunAt().minusHours(1));
+        jobRepository.save(retrying);
+        Job lastAttempt = leaseOurs("worker-b", job.getId());
+        assertEquals(2, lastAttempt.getAttempts());
+        jobQueue.fail(lastAttempt, "worker-b", "model unavailable");
+
+        assertEquals(Job.JobStatus.DEAD, jobRepository.findById(job.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void expiredLeaseIsReclaimedByAnotherWorker() throws Exception {
+        Job job = enqueue();
+
+        Job first = leaseOurs("worker-a", job.getId(), 0);
+        Thread.sleep(50);
+        Job second = leaseOurs("worker-b", job.getId(), 300);
+        assertEquals(2, second.getAttempts());
+
+        // The first worker lost its lease, so its late result must not change the job
+        jobQueue.complete(first, "worker-a", null);
+        assertEquals(Job.JobStatus.RUNNING, jobRepository.findById(job.getId()).orElseThrow().getStatus());
+
+        jobQueue.complete(second, "worker-b", 42L);
+        Job done = jobRepository.findById(job.getId()).orElseThrow();
+        assertEquals(Job.JobStatus.SUCCEEDED, done.getStatus());
+        assertEquals(42L, done.getResultAnalysisId());
+    }
+
+    private Job enqueue() {
+        Job job = jobQueue.enqueue(Job.JobType.SUMMARIZE, DOCUMENT_ID, USER_ID, null);
+        created.add(job.getId());
+        return job;
+    }
+
+    private Job leaseOurs(String workerId, Long jobId) {
+        return leaseOurs(workerId, jobId, 300);
+    }
+
+    private Job leaseOurs(String workerId, Long jobId, long leaseSeconds) {
+        return jobQueue.lease(workerId, 100, leaseSeconds).stream()
+                .filter(job -> job.getId().equals(jobId))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("job " + jobId + " was not leased"));
+    }
+}
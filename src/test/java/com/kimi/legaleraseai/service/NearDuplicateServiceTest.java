@@ -0,0 +1,122 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.User;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import com.kimi.legaleraseai.util.LshIndex;
+import com.kimi.legaleraseai.util.MinHash;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NearDuplicateServiceTest {
+
+    private static final String NDA = "This Mutual Non-Disclosure Agreement is entered into by Acme Corp and Beta LLC. "
+            + "Each party agrees to keep the Confidential Information of the other party secret, to use it only "
+            + "to evaluate the proposed transaction, and to return or destroy it on request. The obligations "
+            + "survive for three years after the disclosure. This agreement is governed by the laws of Delaware.";
+
+    private DocumentRepository documentRepository;
+    private NearDuplicateService service;
+    private final List<Document> stored = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        documentRepository = mock(DocumentRepository.class);
+        // Serves signatures of the stored documents, like the query does
+        when(documentRepository.findSignatures(any(), anyLong())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            Long userId = invocation.getArgument(1);
+            return stored.stream()
+                    .filter(document -> ids.contains(document.getId()) && document.getUser().getId().equals(userId))
+                    .map(document -> new Object[]{document.getId(), document.getMinhashSignature()})
+                    .toList();
+        });
+
+        service = new NearDuplicateService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "similarityThreshold", 0.6);
+        ReflectionTestUtils.setField(service, "shingleSize", 4);
+        ReflectionTestUtils.setField(service, "bands", 16);
+        ReflectionTestUtils.setField(service, "rows", 7);
+        ReflectionTestUtils.setField(service, "maxCandidates", 10);
+        ReflectionTestUtils.setField(service, "maxBucketScan", 256);
+        ReflectionTestUtils.setField(service, "expectedDocuments", 100);
+        ReflectionTestUtils.setField(service, "documentRepository", documentRepository);
+        service.init();
+    }
+
+    @Test
+    void findsTheUsersNearIdenticalDocuments() {
+        Document original = document(1L, 10L, NDA);
+        document(2L, 20L, NDA);
+        document(3L, 10L, "The tenant shall pay rent of one thousand dollars on the first day of each month "
+                + "and keep the premises in good repair. The landlord may enter with reasonable notice.");
+        Document copy = document(4L, 10L, NDA.replace("Acme Corp", "Gamma Inc"));
+
+        List<NearDuplicateService.NearDuplicate> matches = service.findNearDuplicates(copy);
+
+        assertEquals(1, matches.size());
+        assertEquals(original.getId(), matches.get(0).documentId());
+        assertTrue(matches.get(0).similarity() >= 0.6);
+    }
+
+    @Test
+    void removedDocumentsAreNoLongerFound() {
+        Document original = document(1L, 10L, NDA);
+        Document copy = document(2L, 10L, NDA);
+
+        service.remove(original);
+
+        assertTrue(service.findNearDuplicates(copy).isEmpty());
+    }
+
+    @Test
+    void rebuildDoesNotAddDocumentsIndexedMeanwhile() throws Exception {
+        Document indexed = document(1L, 10L, NDA);
+        Document notIndexed = new Document();
+        notIndexed.setId(2L);
+        notIndexed.setUser(indexed.getUser());
+        notIndexed.setMinhashSignature(service.computeSignature(NDA + " Schedule A is attached."));
+        when(documentRepository.findSignaturesAfter(eq(0L), any())).thenReturn(List.of(
+                new Object[]{1L, 10L, indexed.getMinhashSignature()},
+                new Object[]{2L, 10L, notIndexed.getMinhashSignature()}));
+
+        service.rebuildIndex();
+
+        // Rows are loaded in order, so once the second is in the index the first has been handled
+        LshIndex index = (LshIndex) ReflectionTestUtils.getField(service, "index");
+        int[] signature = MinHash.fromBytes(notIndexed.getMinhashSignature());
+        for (int i = 0; i < 100 && !index.candidates(10L, signature).containsKey(2L); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(index.candidates(10L, signature).containsKey(2L));
+        assertEquals(2, index.size());
+    }
+
+    // A stored and indexed document
+    private Document document(Long id, Long userId, String text) {
+        User user = new User();
+        user.setId(userId);
+        Document document = new Document();
+        document.setId(id);
+        document.setUser(user);
+        document.setExtractedText(text);
+        document.setMinhashSignature(service.computeSignature(text));
+        stored.add(document);
+        service.index(document);
+        return document;
+    }
+}
@@ -0,0 +1,105 @@
+package com.kimi.legaleraseai.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Renders a two-page PDF at a low resolution into the preview directory.
+ */
+class PagePreviewServiceTest {
+
+    private static final Long DOCUMENT_ID = 990_003L;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G'};
+
+    private PagePreviewService previewService;
+    private Path pdf;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        previewService = new PagePreviewService();
+        ReflectionTestUtils.setField(previewService, "dpi", 20);
+        ReflectionTestUtils.setField(previewService, "maxCacheMb", 16L);
+        ReflectionTestUtils.setField(previewService, "renderThreads", 1);
+        ReflectionTestUtils.setField(previewService, "maxQueued", 4);
+        ReflectionTestUtils.setField(previewService, "maxQueuedPerDocument", 2);
+        ReflectionTestUtils.setField(previewService, "renderTimeoutSeconds", 30L);
+        previewService.init();
+
+        pdf = Files.createTempFile("preview-test-", ".pdf");
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            document.addPage(new PDPage());
+            document.save(pdf.toFile());
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        previewService.delete(DOCUMENT_ID);
+        previewService.shutdown();
+        Files.deleteIfExists(pdf);
+    }
+
+    @Test
+    void rendersAPageOnceAndThenServesItFromTheCache() throws Exception {
+        byte[] rendered = read(previewService.page(DOCUMENT_ID, pdf, 2));
+        assertArrayEquals(PNG_SIGNATURE, Arrays.copyOf(rendered, PNG_SIGNATURE.length));
+
+        // Without the PDF, only a cached page can still be served
+        Files.delete(pdf);
+        assertArrayEquals(rendered, read(previewService.page(DOCUMENT_ID, pdf, 2)));
+    }
+
+    @Test
+    void pagesPastTheEndAreNotFoundWithoutParsingThePdfAgain() throws Exception {
+        read(previewService.page(DOCUMENT_ID, pdf, 1));
+        Files.delete(pdf);
+
+        assertTrue(previewService.page(DOCUMENT_ID, pdf, 3).isEmpty());
+    }
+
+    @Test
+    void anOpenPreviewCanStillBeReadAfterItIsEvicted() throws Exception {
+        // Each new preview evicts all others
+        ReflectionTestUtils.setField(previewService, "maxCacheMb", 0L);
+        PagePreviewService.Preview first = previewService.page(DOCUMENT_ID, pdf, 1).orElseThrow();
+
+        read(previewService.page(DOCUMENT_ID, pdf, 2));
+
+        assertFalse(Files.exists(Paths.get("uploads/previews", previewService.previewName(DOCUMENT_ID, 1))));
+        try (InputStream content = first.content()) {
+            assertEquals(first.size(), content.readAllBytes().length);
+        }
+    }
+
+    @Test
+    void unreadablePdfsAreIoFailures() throws Exception {
+        Files.writeString(pdf, "not a pdf");
+
+        assertThrows(IOException.class, () -> previewService.page(DOCUMENT_ID, pdf, 1));
+    }
+
+    private static byte[] read(Optional<PagePreviewService.Preview> preview) throws IOException {
+        try (InputStream content = preview.orElseThrow().content()) {
+            return content.readAllBytes();
+        }
+    }
+}
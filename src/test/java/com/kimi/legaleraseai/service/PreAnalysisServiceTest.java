@@ -0,0 +1,149 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.entity.Job;
+import com.kimi.legaleraseai.repository.DocumentAnalysisRepository;
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import com.kimi.legaleraseai.repository.ExtractedClauseRepository;
+import com.kimi.legaleraseai.repository.JobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PreAnalysisServiceTest {
+
+    private static final Long USER_ID = 3L;
+    private static final int DAILY_LIMIT = 20;
+    private static final int MAX_ATTEMPTS = 20;
+
+    private DocumentAnalysisRepository analysisRepository;
+    private ExtractedClauseRepository clauseRepository;
+    private JobRepository jobRepository;
+    private JobQueue jobQueue;
+    private GeminiAiService geminiAiService;
+    private GeminiQuotaBudget quotaBudget;
+    private PreAnalysisService preAnalysisService;
+    private Document document;
+
+    @BeforeEach
+    void setUp() {
+        document = new Document();
+        document.setId(9L);
+        document.setProcessingStatus(Document.ProcessingStatus.COMPLETED);
+
+        DocumentRepository documentRepository = mock(DocumentRepository.class);
+        when(documentRepository.findById(9L)).thenReturn(Optional.of(document));
+        analysisRepository = mock(DocumentAnalysisRepository.class);
+        clauseRepository = mock(ExtractedClauseRepository.class);
+        jobRepository = mock(JobRepository.class);
+        jobQueue = mock(JobQueue.class);
+        geminiAiService = mock(GeminiAiService.class);
+        quotaBudget = mock(GeminiQuotaBudget.class);
+        when(quotaBudget.hasOptionalHeadroom()).thenReturn(true);
+
+        preAnalysisService = new PreAnalysisService();
+        ReflectionTestUtils.setField(preAnalysisService, "enabled", true);
+        ReflectionTestUtils.setField(preAnalysisService, "maxDocumentsPerUserPerDay", DAILY_LIMIT);
+        ReflectionTestUtils.setField(preAnalysisService, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(preAnalysisService, "documentRepository", documentRepository);
+        ReflectionTestUtils.setField(preAnalysisService, "analysisRepository", analysisRepository);
+        ReflectionTestUtils.setField(preAnalysisService, "clauseRepository", clauseRepository);
+        ReflectionTestUtils.setField(preAnalysisService, "jobRepository", jobRepository);
+        ReflectionTestUtils.setField(preAnalysisService, "jobQueue", jobQueue);
+        ReflectionTestUtils.setField(preAnalysisService, "geminiAiService", geminiAiService);
+        ReflectionTestUtils.setField(preAnalysisService, "quotaBudget", quotaBudget);
+        ReflectionTestUtils.setField(preAnalysisService, "documentVersionService", mock(DocumentVersionService.class));
+    }
+
+    @Test
+    void queuesALowPriorityJobForANewDocument() {
+        when(jobRepository.countByUserIdAndJobTypeAndCreatedAtGreaterThanEqual(eq(USER_ID), eq(Job.JobType.PRE_ANALYZE), any()))
+                .thenReturn(DAILY_LIMIT - 1L);
+
+        preAnalysisService.onDocumentExtracted(new DocumentExtractedEvent(9L, USER_ID));
+
+        verify(jobQueue).enqueue(Job.JobType.PRE_ANALYZE, 9L, USER_ID, null, Job.LOW_PRIORITY, MAX_ATTEMPTS);
+    }
+
+    @Test
+    void documentsWithEveryResultDoNotUseTheDailyLimit() {
+        summaryExists();
+        when(clauseRepository.existsByDocument(document)).thenReturn(true);
+
+        preAnalysisService.onDocumentExtracted(new DocumentExtractedEvent(9L, USER_ID));
+
+        verify(jobRepository, never()).countByUserIdAndJobTypeAndCreatedAtGreaterThanEqual(anyLong(), any(), any());
+        verify(jobQueue, never()).enqueue(any(), anyLong(), anyLong(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void documentsAlreadyQueuedAreNotQueuedAgain() {
+        when(jobRepository.existsByDocumentIdAndJobTypeAndStatusIn(eq(9L), eq(Job.JobType.PRE_ANALYZE), any()))
+                .thenReturn(true);
+
+        preAnalysisService.onDocumentExtracted(new DocumentExtractedEvent(9L, USER_ID));
+
+        verify(jobRepository, never()).countByUserIdAndJobTypeAndCreatedAtGreaterThanEqual(anyLong(), any(), any());
+        verify(jobQueue, never()).enqueue(any(), anyLong(), anyLong(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void usersAtTheDailyLimitAreSkipped() {
+        when(jobRepository.countByUserIdAndJobTypeAndCreatedAtGreaterThanEqual(eq(USER_ID), eq(Job.JobType.PRE_ANALYZE), any()))
+                .thenReturn((long) DAILY_LIMIT);
+
+        preAnalysisService.onDocumentExtracted(new DocumentExtractedEvent(9L, USER_ID));
+
+        verify(jobQueue, never()).enqueue(any(), anyLong(), anyLong(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void runsOnlyTheStepsWithoutAResult() throws Exception {
+        summaryExists();
+
+        preAnalysisService.preAnalyze(document);
+
+        verify(geminiAiService, never()).summarizeDocument(any());
+        verify(geminiAiService).extractClauses(document);
+    }
+
+    @Test
+    void failsTheAttemptWithoutSpareQuota() throws Exception {
+        when(quotaBudget.hasOptionalHeadroom()).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> preAnalysisService.preAnalyze(document));
+
+        verify(geminiAiService, never()).summarizeDocument(any());
+        verify(geminiAiService, never()).extractClauses(any());
+    }
+
+    @Test
+    void failsTheAttemptWhenTheSummaryFailed() throws Exception {
+        DocumentAnalysis failed = new DocumentAnalysis();
+        failed.setStatus(DocumentAnalysis.AnalysisStatus.FAILED);
+        failed.setErrorMessage("Gemini API error: 503");
+        when(geminiAiService.summarizeDocument(document)).thenReturn(failed);
+
+        assertThrows(IllegalStateException.class, () -> preAnalysisService.preAnalyze(document));
+
+        verify(geminiAiService, never()).extractClauses(any());
+    }
+
+    private void summaryExists() {
+        when(analysisRepository.existsByDocumentAndAnalysisTypeAndStatus(document,
+                DocumentAnalysis.AnalysisType.SUMMARY, DocumentAnalysis.AnalysisStatus.COMPLETED)).thenReturn(true);
+    }
+}
@@ -0,0 +1,120 @@
+package com.kimi.legaleraseai.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compression and budgeting checks for {@link PromptBuilder}, including the tokens saved
+ * on the sample contracts in src/test/resources/prompt-corpus.
+ */
+class PromptBuilderTest {
+
+    private final PromptBuilder promptBuilder = new PromptBuilder();
+
+    @Test
+    void savesTokensOnSampleCorpus() throws Exception {
+        Resource[] corpus = new PathMatchingResourcePatternResolver().getResources("classpath:prompt-corpus/*.txt");
+        assertTrue(corpus.length > 0, "sample corpus is missing");
+
+        long rawTokens = 0;
+        long compressedTokens = 0;
+        for (Resource resource : corpus) {
+            String text = resource.getContentAsString(StandardCharsets.UTF_8);
+            String compressed = promptBuilder.compress(text);
+
+            int before = promptBuilder.estimateTokens(text);
+            int after = promptBuilder.estimateTokens(compressed);
+            rawTokens += before;
+            compressedTokens += after;
+            assertTrue(after < before * 0.9, resource.getFilename() + ": " + before + " -> " + after + " tokens");
+            assertFalse(compressed.contains("\f"), resource.getFilename());
+        }
+
+        assertTrue(compressedTokens < rawTokens * 0.85, "total: " + rawTokens + " -> " + compressedTokens + " tokens");
+    }
+
+    @Test
+    void removesLayoutNoiseButKeepsWording() {
+        String text = String.join("\n",
+                "ACME LEASE AGREEMENT - CONFIDENTIAL",
+                "1.   TERM",
+                "   The   term shall be five years.",
+                "",
+                "",
+                "",
+                "Page 1 of 3",
+                "\fACME LEASE AGREEMENT - CONFIDENTIAL",
+                "2. RENT",
+                "Rent is $1,000 per month.",
+                "- 2 -",
+                "\fACME LEASE AGREEMENT - CONFIDENTIAL",
+                "By: ______________________",
+                "Name: ____________________",
+                "3");
+
+        String compressed = promptBuilder.compress(text);
+
+        assertEquals(String.join("\n",
+                "ACME LEASE AGREEMENT - CONFIDENTIAL",
+                "1. TERM",
+                "The term shall be five years.",
+                "",
+                "2. RENT",
+                "Rent is $1,000 per month."), compressed);
+    }
+
+    @Test
+    void keepsRepeatedAndNumericLinesWithinPages() {
+        String text = String.join("\n",
+                "MASTER SERVICES AGREEMENT",
+                "Recitals",
+                "The parties agree as follows.",
+                "The Supplier shall notify the Customer.",
+                "Fees payable per month:",
+                "250",
+                "The Supplier shall notify the Customer.",
+                "Maximum users:",
+                "25",
+                "The Supplier shall notify the Customer.",
+                "Signed by the parties.",
+                "Final page.",
+                "1");
+        String paged = text + "\fMASTER SERVICES AGREEMENT\nSchedule\nNothing further.\n2";
+
+        String compressed = promptBuilder.compress(paged);
+
+        assertTrue(compressed.contains("Fees payable per month:\n250\n"), compressed);
+        assertTrue(compressed.contains("Maximum users:\n25\n"), compressed);
+        assertEquals(3, compressed.split("The Supplier shall notify the Customer\\.", -1).length - 1, compressed);
+        assertFalse(compressed.endsWith("2"), compressed);
+        assertFalse(compressed.contains("Final page.\n1"), compressed);
+
+        // Without page breaks nothing is taken for a header or page number
+        assertEquals(text, promptBuilder.compress(text));
+    }
+
+    @Test
+    void oversizedDocumentsAreSplitWithinBudget() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 4000; i++) {
+            text.append("Section ").append(i).append(". The tenant shall pay all charges when due under this lease.\n\n");
+        }
+
+        Prompt prompt = promptBuilder.build(PromptBuilder.Purpose.CLAUSE_EXTRACTION, "Extract clauses:\n\n", text.toString());
+        assertFalse(prompt.fitsBudget());
+
+        List<String> chunks = promptBuilder.split(prompt.getDocumentText(), PromptBuilder.Purpose.CLAUSE_EXTRACTION);
+        assertTrue(chunks.size() > 1);
+        for (String chunk : chunks) {
+            assertTrue(promptBuilder.estimateTokens(chunk) <= promptBuilder.budgetFor(PromptBuilder.Purpose.CLAUSE_EXTRACTION));
+        }
+    }
+}
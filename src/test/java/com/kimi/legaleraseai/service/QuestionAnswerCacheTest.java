@@ -0,0 +1,108 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.Document;
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import com.kimi.legaleraseai.repository.DocumentAnalysisRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QuestionAnswerCacheTest {
+
+    private DocumentAnalysisRepository analysisRepository;
+    private QuestionAnswerCache cache;
+    private Document document;
+    private long nextId = 1;
+
+    @BeforeEach
+    void setUp() {
+        analysisRepository = mock(DocumentAnalysisRepository.class);
+        when(analysisRepository.findById(anyLong()))
+                .thenAnswer(invocation -> Optional.of(answer(invocation.getArgument(0), "stored")));
+
+        cache = new QuestionAnswerCache();
+        ReflectionTestUtils.setField(cache, "analysisRepository", analysisRepository);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        cache.init();
+
+        document = new Document();
+        document.setId(7L);
+        document.setExtractedText("The lease starts on 1 January 2025 and ends on 31 December 2027.");
+    }
+
+    @Test
+    void servesRewordedQuestionWithSameKeyTerms() {
+        DocumentAnalysis answer = put("When does the lease end?");
+
+        assertEquals(answer.getId(), cache.lookup(document, "When does the lease expire?").orElseThrow().getId());
+        assertEquals(answer.getId(), cache.lookup(document, "What is the expiry date of the lease?").orElseThrow().getId());
+    }
+
+    @Test
+    void doesNotServeNearMisses() {
+        put("When does the lease start?");
+        put("Who pays the rent?");
+        put("What is the term of the lease?");
+
+        assertTrue(cache.lookup(document, "When does the lease end?").isEmpty());
+        assertTrue(cache.lookup(document, "Who pays the deposit?").isEmpty());
+        assertTrue(cache.lookup(document, "Who pays the rent and the deposit?").isEmpty());
+        assertTrue(cache.lookup(document, "What is the notice period of the lease?").isEmpty());
+    }
+
+    @Test
+    void ignoresQuestionsWithTooFewKeyTerms() {
+        put("What is the rent?");
+
+        assertTrue(cache.lookup(document, "What is the rent?").isEmpty());
+    }
+
+    @Test
+    void dropsEntriesWhenTheTextChanges() {
+        put("Who pays the rent?");
+
+        document.setExtractedText("The tenant pays the rent.");
+
+        assertTrue(cache.lookup(document, "Who pays the rent?").isEmpty());
+    }
+
+    @Test
+    void loadsStoredAnswersOncePerDocument() {
+        DocumentAnalysis stored = answer(42L, "The tenant.");
+        stored.setPrompt("Who pays the rent?");
+        when(analysisRepository.findByDocumentAndAnalysisTypeOrderByCreatedAtDesc(any(), any()))
+                .thenReturn(List.of(stored));
+
+        assertEquals(42L, cache.lookup(document, "Who is paying the rent?").orElseThrow().getId());
+        assertTrue(cache.lookup(document, "Who pays the deposit?").isEmpty());
+
+        verify(analysisRepository, times(1)).findByDocumentAndAnalysisTypeOrderByCreatedAtDesc(
+                document, DocumentAnalysis.AnalysisType.QUESTION_ANSWER);
+    }
+
+    private DocumentAnalysis put(String question) {
+        DocumentAnalysis analysis = answer(nextId++, "Answer to " + question);
+        analysis.setPrompt(question);
+        cache.put(document, question, analysis);
+        return analysis;
+    }
+
+    private DocumentAnalysis answer(Long id, String result) {
+        DocumentAnalysis analysis = new DocumentAnalysis(DocumentAnalysis.AnalysisType.QUESTION_ANSWER, result, document);
+        analysis.setId(id);
+        return analysis;
+    }
+}
@@ -0,0 +1,117 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.entity.DocumentAnalysis;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Races stubbed requests through the hedger with a 100 ms initial hedge delay.
+ */
+class RequestHedgerTest {
+
+    private static final DocumentAnalysis.AnalysisType TYPE = DocumentAnalysis.AnalysisType.QUESTION_ANSWER;
+
+    private RequestHedger hedger;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        GeminiQuotaBudget quotaBudget = new GeminiQuotaBudget();
+        ReflectionTestUtils.setField(quotaBudget, "requestsPerMinute", 1000);
+        ReflectionTestUtils.setField(quotaBudget, "optionalReserve", 0);
+
+        hedger = new RequestHedger();
+        ReflectionTestUtils.setField(hedger, "enabled", true);
+        ReflectionTestUtils.setField(hedger, "idempotentTypeNames", List.of(TYPE.name()));
+        ReflectionTestUtils.setField(hedger, "initialDelayMillis", 100L);
+        ReflectionTestUtils.setField(hedger, "minDelayMillis", 10L);
+        ReflectionTestUtils.setField(hedger, "quotaBudget", quotaBudget);
+        ReflectionTestUtils.setField(hedger, "meterRegistry", meterRegistry);
+        hedger.init();
+    }
+
+    @Test
+    void fastPrimaryFailureIsNotHedged() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Mono<String> request = Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(new IllegalStateException("400 Bad Request"));
+        });
+
+        assertThrows(IllegalStateException.class, () -> hedger.execute(request, TYPE).block());
+        Thread.sleep(200);
+
+        assertEquals(1, calls.get());
+        assertEquals(0.0, meterRegistry.counter("gemini.hedge.fired").count());
+    }
+
+    @Test
+    void slowPrimaryIsHedged() {
+        AtomicInteger calls = new AtomicInteger();
+        Mono<String> request = Mono.defer(() -> calls.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofMillis(1000)).map(tick -> "primary")
+                : Mono.just("hedge"));
+
+        assertEquals("hedge", hedger.execute(request, TYPE).block());
+        assertEquals(2, calls.get());
+        assertEquals(1.0, meterRegistry.counter("gemini.hedge.fired").count());
+        assertEquals(1.0, meterRegistry.counter("gemini.hedge.won").count());
+    }
+
+    @Test
+    void failedHedgeDoesNotFailTheRequest() {
+        AtomicInteger calls = new AtomicInteger();
+        Mono<String> request = Mono.defer(() -> calls.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofMillis(300)).map(tick -> "primary")
+                : Mono.error(new IllegalStateException("503 Service Unavailable")));
+
+        assertEquals("primary", hedger.execute(request, TYPE).block());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void recordsLatencyOfPrimaryEvenWhenHedgeWins() throws Exception {
+        Mono<String> request = primaryTakes(Duration.ofMillis(400));
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("hedge", hedger.execute(request, TYPE).block());
+        }
+        Thread.sleep(600);
+
+        // The samples are the 400 ms primaries, not the ~100 ms winners
+        assertTrue(hedger.hedgeDelay(TYPE).toMillis() >= 400, "delay was " + hedger.hedgeDelay(TYPE));
+        assertEquals(20, meterRegistry.timer("gemini.request.latency").count());
+    }
+
+    @Test
+    void slowRequestsOfOtherTypesDoNotRaiseTheHedgeDelay() {
+        Mono<String> summary = Mono.delay(Duration.ofMillis(300)).map(tick -> "summary");
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("summary", hedger.execute(summary, DocumentAnalysis.AnalysisType.SUMMARY).block());
+        }
+
+        assertEquals(100, hedger.hedgeDelay(TYPE).toMillis());
+        assertTrue(hedger.hedgeDelay(DocumentAnalysis.AnalysisType.SUMMARY).toMillis() >= 300);
+    }
+
+    // Every other subscription is a primary taking the given time; the ones in between answer at once
+    private static Mono<String> primaryTakes(Duration latency) {
+        AtomicInteger calls = new AtomicInteger();
+        return Mono.defer(() -> calls.incrementAndGet() % 2 == 1
+                ? Mono.delay(latency).map(tick -> "primary")
+                : Mono.just("hedge"));
+    }
+}
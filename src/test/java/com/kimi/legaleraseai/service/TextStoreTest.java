@@ -0,0 +1,85 @@
+package com.kimi.legaleraseai.service;
+
+import com.kimi.legaleraseai.repository.DocumentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TextStoreTest {
+
+    private static final Long DOCUMENT_ID = 990_001L;
+
+    // One, two, three and four UTF-8 bytes per code point, repeated past several index samples
+    private static final String TEXT = "Rent été €500 📄 due.\n".repeat(1000);
+
+    private TextStore textStore;
+    private DocumentRepository documentRepository;
+
+    @BeforeEach
+    void setUp() {
+        documentRepository = mock(DocumentRepository.class);
+        textStore = new TextStore();
+        ReflectionTestUtils.setField(textStore, "maxCachedIndexes", 10);
+        ReflectionTestUtils.setField(textStore, "documentRepository", documentRepository);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        textStore.delete(DOCUMENT_ID);
+    }
+
+    @Test
+    void byteOffsetsMatchTheUtf8EncodingOfThePrefix() throws Exception {
+        TextStore.TextFile file = textStore.write(DOCUMENT_ID, TEXT);
+
+        assertEquals(TEXT.getBytes(StandardCharsets.UTF_8).length, file.byteLength());
+        for (int offset = 0; offset <= TEXT.length(); offset += 7) {
+            int whole = offset < TEXT.length() && Character.isLowSurrogate(TEXT.charAt(offset)) ? offset - 1 : offset;
+            assertEquals(TEXT.substring(0, whole).getBytes(StandardCharsets.UTF_8).length,
+                    textStore.byteOffset(file, offset), "offset " + offset);
+        }
+    }
+
+    @Test
+    void offsetsInsideASurrogatePairRoundDownToItsStart() throws Exception {
+        TextStore.TextFile file = textStore.write(DOCUMENT_ID, TEXT);
+        int pair = TEXT.indexOf('\ud83d');
+
+        assertEquals(textStore.byteOffset(file, pair), textStore.byteOffset(file, pair + 1));
+        assertEquals(textStore.byteOffset(file, pair) + 4, textStore.byteOffset(file, pair + 2));
+    }
+
+    @Test
+    void transfersTheRequestedBytes() throws Exception {
+        TextStore.TextFile file = textStore.write(DOCUMENT_ID, TEXT);
+        int from = TEXT.indexOf('€', 5000);
+        long start = textStore.byteOffset(file, from);
+        long end = textStore.byteOffset(file, from + 5);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        textStore.transfer(file, start, end - start, out);
+
+        assertEquals(TEXT.substring(from, from + 5), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writesTheFileFromTheDatabaseOnFirstOpen() throws Exception {
+        textStore.delete(DOCUMENT_ID);
+        when(documentRepository.findExtractedTextById(DOCUMENT_ID)).thenReturn(Optional.of(TEXT));
+
+        Optional<TextStore.TextFile> file = textStore.open(DOCUMENT_ID);
+
+        assertTrue(file.isPresent());
+        assertEquals(TEXT.length(), file.get().charLength());
+    }
+}
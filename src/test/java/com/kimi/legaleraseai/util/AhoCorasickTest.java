@@ -0,0 +1,66 @@
+package com.kimi.legaleraseai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AhoCorasickTest {
+
+    @Test
+    void findsOverlappingKeywordsInOnePass() {
+        AhoCorasick automaton = new AhoCorasick(List.of("governing law", "law", "the governing law clause"));
+
+        List<String> matches = search(automaton, "Under the governing law clause, law applies.");
+
+        // Keywords ending at the same offset are reported longest first
+        assertEquals(List.of("0:10-23", "1:20-23", "2:6-30", "1:32-35"), matches);
+    }
+
+    @Test
+    void ignoresCaseAndCollapsesWhitespace() {
+        AhoCorasick automaton = new AhoCorasick(List.of("Force  Majeure"));
+
+        assertEquals(List.of("0:4-20"), search(automaton, "Any FORCE \n\t majeure event"));
+    }
+
+    @Test
+    void reportsOnlyWholeWords() {
+        AhoCorasick automaton = new AhoCorasick(List.of("term", "rent"));
+
+        assertEquals(List.of("0:20-24", "1:28-32"), search(automaton, "Determined terms; a term of rent, parents"));
+    }
+
+    @Test
+    void followsFailureLinksAcrossPartialMatches() {
+        AhoCorasick automaton = new AhoCorasick(List.of("notice period", "period of notice"));
+
+        assertEquals(List.of("1:0-16", "0:10-23"), search(automaton, "period of notice period"));
+    }
+
+    @Test
+    void searchesOnlyTheGivenRange() {
+        AhoCorasick automaton = new AhoCorasick(List.of("lease"));
+        String text = "lease xlease lease";
+
+        List<String> matches = new ArrayList<>();
+        automaton.search(text, 7, 12, (keyword, start, end) -> matches.add(start + "-" + end));
+
+        // The range starts inside a word, which counts as a boundary
+        assertEquals(List.of("7-12"), matches);
+    }
+
+    @Test
+    void rejectsEmptyKeywords() {
+        assertThrows(IllegalArgumentException.class, () -> new AhoCorasick(List.of("rent", "  ")));
+    }
+
+    private static List<String> search(AhoCorasick automaton, String text) {
+        List<String> matches = new ArrayList<>();
+        automaton.search(text, (keyword, start, end) -> matches.add(keyword + ":" + start + "-" + end));
+        return matches;
+    }
+}
@@ -0,0 +1,133 @@
+package com.kimi.legaleraseai.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LshIndexTest {
+
+    private static final int BANDS = 4;
+    private static final int ROWS = 3;
+
+    private final SplittableRandom random = new SplittableRandom(7);
+
+    @Test
+    void findsDocumentsSharingBandsWithinTheirPartition() {
+        LshIndex index = new LshIndex(BANDS, ROWS, 16, 256);
+        int[] signature = randomSignature();
+        int[] similar = signature.clone();
+        similar[0]++;
+
+        index.add(1, 10, signature);
+        index.add(2, 20, signature);
+
+        assertEquals(Map.of(1L, BANDS - 1), index.candidates(10, similar));
+        assertEquals(Map.of(2L, BANDS), index.candidates(20, signature));
+        assertTrue(index.candidates(30, signature).isEmpty());
+    }
+
+    @Test
+    void ignoresDocumentsAddedTwice() {
+        LshIndex index = new LshIndex(BANDS, ROWS, 16, 256);
+        int[] signature = randomSignature();
+
+        assertTrue(index.add(1, 10, signature));
+        assertFalse(index.add(1, 10, signature));
+
+        assertEquals(1, index.size());
+        assertEquals(Map.of(1L, BANDS), index.candidates(10, signature));
+    }
+
+    @Test
+    void unlinksFromHeadMiddleAndTailOfChains() {
+        LshIndex index = new LshIndex(BANDS, ROWS, 16, 256);
+        int[] signature = randomSignature();
+        for (long id = 1; id <= 4; id++) {
+            index.add(id, 10, signature);
+        }
+
+        // Chains are newest first: 4 is the head, 1 the tail
+        assertTrue(index.remove(2, 10, signature));
+        assertTrue(index.remove(4, 10, signature));
+        assertTrue(index.remove(1, 10, signature));
+        assertFalse(index.remove(1, 10, signature));
+
+        assertEquals(Map.of(3L, BANDS), index.candidates(10, signature));
+        assertEquals(1, index.size());
+
+        assertTrue(index.remove(3, 10, signature));
+        assertTrue(index.candidates(10, signature).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void reusesEntriesOfRemovedDocuments() {
+        LshIndex index = new LshIndex(BANDS, ROWS, 16, 256);
+        int[][] signatures = new int[10][];
+        for (int id = 0; id < signatures.length; id++) {
+            signatures[id] = randomSignature();
+            index.add(id, 10, signatures[id]);
+        }
+        int entries = (int) ReflectionTestUtils.getField(index, "entryCount");
+
+        for (int round = 0; round < 100; round++) {
+            int id = round % signatures.length;
+            index.remove(id, 10, signatures[id]);
+            signatures[id] = randomSignature();
+            index.add(id, 10, signatures[id]);
+        }
+
+        assertEquals(entries, ReflectionTestUtils.getField(index, "entryCount"));
+        for (int id = 0; id < signatures.length; id++) {
+            assertEquals(Map.of((long) id, BANDS), index.candidates(10, signatures[id]));
+        }
+    }
+
+    @Test
+    void keepsEveryDocumentWhenTheTableGrows() {
+        LshIndex index = new LshIndex(BANDS, ROWS, 1, 256);
+        int[][] signatures = new int[2000][];
+        for (int id = 0; id < signatures.length; id++) {
+            signatures[id] = randomSignature();
+            index.add(id, id % 7, signatures[id]);
+        }
+        // Removing half leaves empty chains that a later rehash drops
+        for (int id = 0; id < signatures.length; id += 2) {
+            index.remove(id, id % 7, signatures[id]);
+        }
+        for (int id = signatures.length; id < signatures.length + 500; id++) {
+            index.add(id, id % 7, randomSignature());
+        }
+
+        assertEquals(1500, index.size());
+        for (int id = 1; id < signatures.length; id += 2) {
+            assertEquals(BANDS, index.candidates(id % 7, signatures[id]).get((long) id));
+        }
+        assertTrue(index.candidates(0, signatures[0]).isEmpty());
+    }
+
+    @Test
+    void scansAtMostTheNewestEntriesOfABucket() {
+        LshIndex index = new LshIndex(BANDS, ROWS, 16, 3);
+        int[] signature = randomSignature();
+        for (long id = 1; id <= 5; id++) {
+            index.add(id, 10, signature);
+        }
+
+        assertEquals(Map.of(5L, BANDS, 4L, BANDS, 3L, BANDS), index.candidates(10, signature));
+    }
+
+    private int[] randomSignature() {
+        int[] signature = new int[BANDS * ROWS];
+        for (int i = 0; i < signature.length; i++) {
+            signature[i] = random.nextInt();
+        }
+        return signature;
+    }
+}
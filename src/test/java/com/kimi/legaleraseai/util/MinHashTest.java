@@ -0,0 +1,53 @@
+package com.kimi.legaleraseai.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MinHashTest {
+
+    private static final String NDA = "This Mutual Non-Disclosure Agreement is entered into by Acme Corp and Beta LLC. "
+            + "Each party agrees to keep the Confidential Information of the other party secret, to use it only "
+            + "to evaluate the proposed transaction, and to return or destroy it on request. The obligations "
+            + "survive for three years after the disclosure. This agreement is governed by the laws of Delaware.";
+
+    private final MinHash minHash = new MinHash(112, 4, 42);
+
+    @Test
+    void sameTemplateWithOtherPartiesIsSimilar() {
+        String other = NDA.replace("Acme Corp", "Gamma Inc").replace("Beta LLC", "Delta Ltd");
+
+        assertTrue(MinHash.similarity(minHash.signature(NDA), minHash.signature(other)) > 0.7);
+    }
+
+    @Test
+    void unrelatedTextIsNotSimilar() {
+        String lease = "The tenant shall pay rent of one thousand dollars on the first day of each month "
+                + "and keep the premises in good repair. The landlord may enter with reasonable notice.";
+
+        assertTrue(MinHash.similarity(minHash.signature(NDA), minHash.signature(lease)) < 0.1);
+    }
+
+    @Test
+    void ignoresCaseAndPunctuation() {
+        assertArrayEquals(minHash.signature(NDA),
+                minHash.signature(NDA.toUpperCase().replace(",", "").replace(".", " ;")));
+    }
+
+    @Test
+    void textWithoutWordsHasEmptySignature() {
+        assertTrue(MinHash.isEmpty(minHash.signature(" -- ... ")));
+        assertFalse(MinHash.isEmpty(minHash.signature("Short text")));
+    }
+
+    @Test
+    void roundTripsThroughBytes() {
+        int[] signature = minHash.signature(NDA);
+
+        assertArrayEquals(signature, MinHash.fromBytes(MinHash.toBytes(signature)));
+        assertEquals(1.0, MinHash.similarity(signature, MinHash.fromBytes(MinHash.toBytes(signature))));
+    }
+}
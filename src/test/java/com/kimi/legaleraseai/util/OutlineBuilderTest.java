@@ -0,0 +1,58 @@
+package com.kimi.legaleraseai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OutlineBuilderTest {
+
+    @Test
+    void nestsDecimalSectionsUnderArticles() {
+        List<OutlineBuilder.Section> outline = OutlineBuilder.build(String.join("\n",
+                "ARTICLE I",
+                "Definitions",
+                "1.1 Interpretation",
+                "1.2 Headings",
+                "ARTICLE II Term",
+                "2.1 Renewal"));
+
+        assertEquals(List.of("Article I Definitions", "1.1 Interpretation", "1.2 Headings",
+                "Article II Term", "2.1 Renewal"), numbers(outline));
+        assertEquals(-1, outline.get(0).parent());
+        assertEquals(0, outline.get(1).parent());
+        assertEquals(0, outline.get(2).parent());
+        assertEquals(3, outline.get(4).parent());
+    }
+
+    @Test
+    void readsRomanNumeralsAsSections() {
+        List<OutlineBuilder.Section> outline = OutlineBuilder.build(String.join("\n",
+                "I. Parties",
+                "II. Services",
+                "IV. Fees",
+                "V. Term",
+                "X. Notices"));
+
+        assertEquals(List.of("I Parties", "II Services", "IV Fees", "V Term", "X Notices"), numbers(outline));
+        outline.forEach(section -> assertEquals(-1, section.parent()));
+    }
+
+    @Test
+    void lettersOfAListAreNotRomanNumerals() {
+        List<OutlineBuilder.Section> outline = OutlineBuilder.build(String.join("\n",
+                "WHEREAS",
+                "A. The Supplier provides hosting services.",
+                "C. The Company wishes to use them.",
+                "L. Large Customers are billed quarterly.",
+                "V. Vendors are listed in Schedule 1.",
+                "IIII. Not a numeral either."));
+
+        assertEquals(List.of("WHEREAS"), numbers(outline));
+    }
+
+    private static List<String> numbers(List<OutlineBuilder.Section> outline) {
+        return outline.stream().map(OutlineBuilder::label).toList();
+    }
+}
@@ -0,0 +1,78 @@
+package com.kimi.legaleraseai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextAnchorIndexTest {
+
+    private static final String LEASE = "1. Term\n"
+            + "The lease starts on 1 January 2025 and ends on 31 December 2027.\n\n"
+            + "2. Rent\n"
+            + "The Tenant shall pay the Landlord a monthly rent of $1,000 on the first day of each month, "
+            + "without any deduction or set-off.\n\n"
+            + "3. Termination\n"
+            + "Either party may terminate this lease by giving the other party \u201Csixty days\u201D written notice.";
+
+    private final TextAnchorIndex index = new TextAnchorIndex(LEASE);
+
+    @Test
+    void anchorsExactPassagesAtTheirOriginalOffsets() {
+        String passage = "The lease starts on 1 January 2025 and ends on 31 December 2027.";
+
+        TextAnchorIndex.Span span = index.anchorAll(List.of(passage), 0.5)[0];
+
+        // Surrounding quotes and full stops are not part of the span
+        assertEquals(LEASE.indexOf(passage), span.start());
+        assertEquals(LEASE.indexOf(passage) + passage.length() - 1, span.end());
+        assertEquals(1.0, span.similarity());
+    }
+
+    @Test
+    void toleratesCaseWhitespaceAndQuoteDifferences() {
+        String passage = "\"either party may terminate this lease by giving the other party\n\"sixty days\" written notice.\"";
+
+        TextAnchorIndex.Span span = index.anchorAll(List.of(passage), 0.5)[0];
+
+        assertEquals(LEASE.indexOf("Either party"), span.start());
+        assertEquals(LEASE.length() - 1, span.end());
+    }
+
+    @Test
+    void placesParaphrasedPassagesBySharedShingles() {
+        String passage = "The Tenant shall pay the Landlord a monthly rent of $1,000 on the first day of every month, "
+                + "without deduction or set-off.";
+
+        TextAnchorIndex.Span span = index.anchorAll(List.of(passage), 0.5)[0];
+
+        int start = LEASE.indexOf("The Tenant");
+        assertTrue(Math.abs(span.start() - start) <= 1, "start " + span.start());
+        assertTrue(span.end() >= LEASE.indexOf("set-off") && span.end() <= LEASE.indexOf("3. Termination"),
+                "end " + span.end());
+        assertTrue(span.similarity() >= 0.5 && span.similarity() < 1);
+    }
+
+    @Test
+    void leavesUnrelatedOrEmptyPassagesUnplaced() {
+        TextAnchorIndex.Span[] spans = index.anchorAll(Arrays.asList(
+                "The recipient shall keep all confidential information strictly secret.", "", null), 0.5);
+
+        assertNull(spans[0]);
+        assertNull(spans[1]);
+        assertNull(spans[2]);
+    }
+
+    @Test
+    void anchorsEveryPassageOfABatch() {
+        TextAnchorIndex.Span[] spans = index.anchorAll(List.of("2. Rent", "1. Term", "Either party may terminate"), 0.5);
+
+        assertEquals(LEASE.indexOf("2. Rent"), spans[0].start());
+        assertEquals(0, spans[1].start());
+        assertEquals(LEASE.indexOf("Either party"), spans[2].start());
+    }
+}
@@ -0,0 +1,141 @@
+package com.kimi.legaleraseai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextDiffTest {
+
+    @Test
+    void identicalTextsAreUnchanged() {
+        TextDiff.Result diff = TextDiff.diffLines(List.of("a", "b", "c"), List.of("a", "b", "c"), 10);
+
+        assertTrue(diff.isUnchanged());
+    }
+
+    @Test
+    void marksReplacedLines() {
+        TextDiff.Result diff = TextDiff.diffLines(
+                List.of("1. Term", "The lease runs for one year.", "2. Rent", "Rent is $1,000."),
+                List.of("1. Term", "The lease runs for two years.", "2. Rent", "Rent is $1,000."), 10);
+
+        assertArrayEquals(new boolean[]{false, true, false, false}, diff.removed());
+        assertArrayEquals(new boolean[]{false, true, false, false}, diff.added());
+        assertEquals(List.of(new TextDiff.Range(1, 2)), diff.addedRanges());
+    }
+
+    @Test
+    void marksInsertionsAndDeletionsInTheMiddle() {
+        TextDiff.Result diff = TextDiff.diffLines(
+                List.of("a", "b", "c", "d", "e", "f"),
+                List.of("a", "x", "c", "d", "y", "z", "f"), 10);
+
+        assertEquals(List.of(new TextDiff.Range(1, 2), new TextDiff.Range(4, 5)), diff.removedRanges());
+        assertEquals(List.of(new TextDiff.Range(1, 2), new TextDiff.Range(4, 6)), diff.addedRanges());
+    }
+
+    @Test
+    void findsShortestEditScriptsOfRandomTexts() {
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            int[] a = randomLines(random, random.nextInt(30));
+            int[] b = mutate(random, a);
+
+            TextDiff.Result diff = TextDiff.diff(a, b, Integer.MAX_VALUE);
+
+            int common = a.length - diff.removedCount();
+            assertEquals(common, b.length - diff.addedCount(), "round " + round);
+            assertEquals(longestCommonSubsequence(a, b), common, "round " + round);
+            // The unchanged lines of both texts are the same sequence
+            assertEquals(unchanged(a, diff.removed()), unchanged(b, diff.added()), "round " + round);
+        }
+    }
+
+    @Test
+    void reportsEverythingBetweenCommonEndsAsChangedPastTheLimit() {
+        int[] a = {0, 1, 2, 3, 4, 5, 9};
+        int[] b = {0, 5, 4, 3, 2, 1, 9};
+
+        TextDiff.Result limited = TextDiff.diff(a, b, 4);
+        TextDiff.Result full = TextDiff.diff(a, b, 100);
+
+        assertEquals(5, limited.removedCount());
+        assertEquals(5, limited.addedCount());
+        assertEquals(List.of(new TextDiff.Range(1, 6)), limited.removedRanges());
+        assertEquals(8, full.removedCount() + full.addedCount());
+    }
+
+    @Test
+    void diffsLongTextsWithFewEditsQuickly() {
+        int size = 200_000;
+        int[] a = new int[size];
+        for (int i = 0; i < size; i++) {
+            a[i] = i;
+        }
+        int[] b = a.clone();
+        for (int i = 1_000; i < size; i += 20_000) {
+            b[i] = -i;
+        }
+
+        long start = System.nanoTime();
+        TextDiff.Result diff = TextDiff.diff(a, b, 5000);
+
+        assertEquals(10, diff.removedCount());
+        assertEquals(10, diff.addedCount());
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+    }
+
+    private static int[] randomLines(Random random, int length) {
+        int[] lines = new int[length];
+        for (int i = 0; i < length; i++) {
+            lines[i] = random.nextInt(5);
+        }
+        return lines;
+    }
+
+    private static int[] mutate(Random random, int[] lines) {
+        List<Integer> mutated = new ArrayList<>();
+        for (int line : lines) {
+            int roll = random.nextInt(10);
+            if (roll == 0) {
+                continue;
+            }
+            if (roll == 1) {
+                mutated.add(random.nextInt(5));
+            }
+            mutated.add(line);
+        }
+        if (random.nextBoolean()) {
+            mutated.add(random.nextInt(5));
+        }
+        return mutated.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static List<Integer> unchanged(int[] lines, boolean[] changed) {
+        List<Integer> unchanged = new ArrayList<>();
+        for (int i = 0; i < lines.length; i++) {
+            if (!changed[i]) {
+                unchanged.add(lines[i]);
+            }
+        }
+        return unchanged;
+    }
+
+    private static int longestCommonSubsequence(int[] a, int[] b) {
+        int[][] lengths = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; i--) {
+            for (int j = b.length - 1; j >= 0; j--) {
+                lengths[i][j] = a[i] == b[j]
+                        ? lengths[i + 1][j + 1] + 1
+                        : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+        return lengths[0][0];
+    }
+}